@@ -0,0 +1,105 @@
+/*******************************************************************************
+ * Copyright 2015
+ * Ubiquitous Knowledge Processing (UKP) Lab
+ * Technische Universität Darmstadt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package org.dkpro.jotl;
+
+/**
+ * Blocked Bloom filter for strings. Each key sets a fixed number of bits
+ * within a single block of 512 bits, such that a lookup touches only one
+ * cache line. The filter answers whether a key has possibly been added;
+ * a negative answer is definite. The filter is not thread safe while keys
+ * are added, but can be queried concurrently afterwards.
+ */
+public class BloomFilter {
+
+	/** Number of bits set per key. */
+	public static final int HASH_COUNT = 7;
+
+	/** Number of long words of each block. */
+	protected static final int BLOCK_WORDS = 8;
+
+	protected long[] bits;
+	protected int blockCount;
+	protected int size;
+
+	/** Instanciates a new, empty filter.
+	 *  @param expectedKeys The number of keys to be added.
+	 *  @param bitsPerKey The number of bits per key; 10 bits yield a false
+	 *  		positive rate of roughly 1%. */
+	public BloomFilter(final int expectedKeys, final int bitsPerKey) {
+		long bitCount = Math.max((long) expectedKeys * bitsPerKey, 1);
+		blockCount = (int) Math.min((bitCount + 511) / 512, Integer.MAX_VALUE / BLOCK_WORDS);
+		bits = new long[blockCount * BLOCK_WORDS];
+	}
+
+	/** Adds the given key. */
+	public void add(final String key) {
+		long hash = hash(key);
+		int block = blockIndex(hash) * BLOCK_WORDS;
+		int h = (int) hash;
+		for (int i = 0; i < HASH_COUNT; i++) {
+			int bit = (h >>> 23) & 511; // Uses the upper 9 bits.
+			bits[block + (bit >>> 6)] |= 1L << bit;
+			h *= 0x9E3779B9;
+			h ^= h >>> 16;
+		}
+		size++;
+	}
+
+	/** Returns false if the given key has definitely not been added. */
+	public boolean mightContain(final String key) {
+		long hash = hash(key);
+		int block = blockIndex(hash) * BLOCK_WORDS;
+		int h = (int) hash;
+		for (int i = 0; i < HASH_COUNT; i++) {
+			int bit = (h >>> 23) & 511;
+			if ((bits[block + (bit >>> 6)] & (1L << bit)) == 0)
+				return false;
+			h *= 0x9E3779B9;
+			h ^= h >>> 16;
+		}
+		return true;
+	}
+
+	/** Returns the number of added keys. */
+	public int size() {
+		return size;
+	}
+
+	/** Returns the size of the filter in bytes. */
+	public long getMemorySize() {
+		return bits.length * 8L;
+	}
+
+	protected int blockIndex(final long hash) {
+		return (int) (((hash >>> 32) * blockCount) >>> 32);
+	}
+
+	/** 64 bit FNV-1a hash of the characters with a final avalanche step. */
+	protected static long hash(final String key) {
+		long result = 0xCBF29CE484222325L;
+		for (int i = 0; i < key.length(); i++) {
+			result ^= key.charAt(i);
+			result *= 0x100000001B3L;
+		}
+		result ^= result >>> 33;
+		result *= 0xFF51AFD7ED558CCDL;
+		result ^= result >>> 33;
+		return result;
+	}
+
+}
@@ -0,0 +1,61 @@
+/*******************************************************************************
+ * Copyright 2015
+ * Ubiquitous Knowledge Processing (UKP) Lab
+ * Technische Universität Darmstadt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package org.dkpro.jotl;
+
+/**
+ * A value cached by an {@link OTSynset} or {@link OTTerm} together with
+ * the generation of the snapshot that was active when loading it; see
+ * {@link DatabaseStatements#getSnapshotGeneration()}. Once another
+ * snapshot is activated, the value is outdated and needs to be loaded
+ * again. Both are published together, such that concurrent readers never
+ * see a value with the generation of another one.
+ */
+public class CachedValue<T> {
+
+	protected final T value;
+	protected final int generation;
+
+	/** Instanciates a new cached value.
+	 *  @param value The cached value.
+	 *  @param generation The snapshot generation read before loading the
+	 *  		value. */
+	public CachedValue(final T value, final int generation) {
+		this.value = value;
+		this.generation = generation;
+	}
+
+	/** @return The cached value. */
+	public T getValue() {
+		return value;
+	}
+
+	/** @return The snapshot generation the value was loaded with. */
+	public int getGeneration() {
+		return generation;
+	}
+
+	/** Returns the value of the given cache entry if it has been loaded
+	 *  with the given snapshot generation.
+	 *  @param cached The cache entry; may be null.
+	 *  @param generation The current snapshot generation.
+	 *  @return The cached value or null if there is no valid value. */
+	public static <T> T get(final CachedValue<T> cached, final int generation) {
+		return (cached != null && cached.generation == generation ? cached.value : null);
+	}
+
+}
@@ -28,11 +28,21 @@ public class DatabaseConfiguration {
 	protected String user;
 	protected String password;
 	protected int language;
+	protected boolean createIndexes;
 
 	/** Instanciates a new, empty database configuration. Use the setters to
 	 *  define the configuration values. */
 	public DatabaseConfiguration() {}
 
+	/** Instanciates a new database configuration with the settings of the
+	 *  given one.
+	 *  @param dbConfig The configuration to be copied. */
+	public DatabaseConfiguration(final DatabaseConfiguration dbConfig) {
+		this(dbConfig.host, dbConfig.database, dbConfig.user,
+				dbConfig.password, dbConfig.language);
+		this.createIndexes = dbConfig.createIndexes;
+	}
+
 	/** Instanciates a new database configuration with the given settings.
 	 *  @param host The host name.
 	 *  @param database The name of the database.
@@ -102,4 +112,17 @@ public class DatabaseConfiguration {
 		this.language = language;
 	}
 
+	/** @return true if missing indexes are created when connecting. */
+	public boolean getCreateIndexes() {
+		return createIndexes;
+	}
+
+	/** @param createIndexes Create the indexes recommended by the
+	 *  		{@link SchemaVerifier} if they are missing when connecting
+	 *  		to the database. This requires the INDEX privilege and may
+	 *  		take a while for large databases (default: false). */
+	public void setCreateIndexes(final boolean createIndexes) {
+		this.createIndexes = createIndexes;
+	}
+
 }
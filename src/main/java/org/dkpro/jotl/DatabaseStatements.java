@@ -21,19 +21,53 @@ import java.sql.Connection;
 import java.sql.DriverManager;
 import java.sql.PreparedStatement;
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 /**
- * Internal object of the API for caching prepared statements.
+ * Internal object of the API for caching prepared statements. If an
+ * {@link OTSnapshot} has been activated, it is shared by all API objects
+ * through this object.
  */
 public class DatabaseStatements {
 
+	/** The maximum number of ids queried by a batch statement. */
+	public static final int BATCH_SIZE = 1024;
+
+	/** The maximum number of filtered and batch variants of the prepared
+	 *  statements kept open; see {@link #getVariant(String, String)}. */
+	public static final int MAX_VARIANTS = 256;
+
+	protected static final Logger LOGGER = Logger.getLogger(DatabaseStatements.class.getName());
+
+	/** The schema warnings most recently logged for each database; see
+	 *  {@link #getSchemaKey(DatabaseConfiguration)}. */
+	protected static final Map<String, List<String>> SCHEMA_WARNINGS
+			= new ConcurrentHashMap<String, List<String>>();
+
 	protected Map<String, PreparedStatement> prepStatement;
+	protected LRUCache<String, PreparedStatement> variants;
+	protected Map<String, String> statementSql;
+	protected Map<String, String> batchSql;
 	protected Connection dbConnection;
 	protected int language;
 	protected boolean caseSensitive;
 	protected DatabaseConfiguration dbConfig;
+	protected volatile OTSnapshot snapshot;
+	protected volatile int snapshotGeneration;
+	protected List<String> schemaWarnings = Collections.emptyList();
+	protected List<DatabaseStatements> replicas;
+	protected ReplicaRouter router;
+	protected volatile QueryLog queryLog;
+	protected volatile StatementMonitor monitor;
+	protected volatile HotKeySet hotKeys;
 
 	/** Initializes frequently used prepared statements.
 	 *  @param dbConfig DatabaseConfiguration
@@ -41,87 +75,275 @@ public class DatabaseStatements {
 	 *  @throws SQLException in case of database errors. */
 	public DatabaseStatements(final DatabaseConfiguration dbConfig,
 			final boolean caseSensitive) throws SQLException {
+		this(dbConfig, caseSensitive, true);
+	}
+
+	/** Initializes frequently used prepared statements, optionally without
+	 *  verifying the schema, e.g., for replicas of a verified database. */
+	protected DatabaseStatements(final DatabaseConfiguration dbConfig,
+			final boolean caseSensitive, final boolean verify) throws SQLException {
 		prepStatement = new HashMap<String, PreparedStatement>();
-		this.dbConfig = dbConfig;
+		statementSql = new HashMap<String, String>();
+		batchSql = new HashMap<String, String>();
+		variants = createVariantCache();
+		this.dbConfig = new DatabaseConfiguration(dbConfig);
 		language = dbConfig.getLanguage();
 		dbConnection = getConnection(dbConfig);
 		this.caseSensitive  = caseSensitive;
-		initStatements();
+		try {
+			initStatements();
+			if (verify)
+				verifySchema();
+		} catch (SQLException e) {
+			close();
+			throw e;
+		}
+	}
+
+	/** Initializes the prepared statements for each of the given replicas
+	 *  of the OpenThesaurus database. The queries are distributed among the
+	 *  replicas by a {@link ReplicaRouter}; the first replica is used for
+	 *  loading snapshots. Only the schema of the first replica is
+	 *  verified, since the replicas are expected to be copies of it.
+	 *  @param dbConfigs The configurations of the replicas.
+	 *  @param caseSensitive Case Sensitivity Setting
+	 *  @throws SQLException in case of database errors. */
+	public DatabaseStatements(final List<DatabaseConfiguration> dbConfigs,
+			final boolean caseSensitive) throws SQLException {
+		this(dbConfigs.get(0), caseSensitive);
+		if (dbConfigs.size() > 1) {
+			replicas = new ArrayList<DatabaseStatements>();
+			replicas.add(this);
+			try {
+				for (int i = 1; i < dbConfigs.size(); i++)
+					replicas.add(new DatabaseStatements(dbConfigs.get(i), caseSensitive, false));
+			} catch (SQLException e) {
+				close();
+				throw e;
+			}
+			router = new ReplicaRouter(replicas.size());
+		}
+	}
+
+	/** Initializes the internal object without a database connection. All
+	 *  queries are answered by the given snapshot.
+	 *  @param snapshot The in-memory OpenThesaurus data.
+	 *  @param language The default language of queries.
+	 *  @param caseSensitive Case Sensitivity Setting */
+	public DatabaseStatements(final OTSnapshot snapshot, final int language,
+			final boolean caseSensitive) {
+		prepStatement = new HashMap<String, PreparedStatement>();
+		statementSql = new HashMap<String, String>();
+		batchSql = new HashMap<String, String>();
+		variants = createVariantCache();
+		this.snapshot = snapshot;
+		this.language = language;
+		this.caseSensitive = caseSensitive;
+	}
+
+	/** Creates the cache of the filtered and batch variants of the
+	 *  prepared statements, which closes the least recently used variants
+	 *  once {@link #MAX_VARIANTS} is exceeded. */
+	protected LRUCache<String, PreparedStatement> createVariantCache() {
+		return new LRUCache<String, PreparedStatement>(MAX_VARIANTS) {
+
+			private static final long serialVersionUID = -3012887416310742517L;
+
+			@Override
+			protected boolean removeEldestEntry(final Map.Entry<String, PreparedStatement> eldest) {
+				if (size() <= capacity)
+					return false;
+
+				statementSql.remove(eldest.getKey());
+				try {
+					eldest.getValue().close();
+				} catch (SQLException e) {
+					LOGGER.log(Level.FINE, "Unable to close " + eldest.getKey(), e);
+				}
+				return true;
+			}
+
+		};
 	}
 
 	/** Initialize the prepared statements using the current configuration.
 	 *  @throws SQLException in case of database errors. */
 	protected void initStatements() throws SQLException{
 		initCaseSensitiveStatements();
-		PreparedStatement pstmt = null;
 
 		// SelectSynset 1-int: synset.id
 		String sql = "SELECT id FROM synset WHERE id=?";
-		pstmt = dbConnection.prepareStatement(sql);
-		prepStatement.put("SelectSynset", pstmt);
+		prepare("SelectSynset", sql);
 
-		// SynsetLinks  1-int: synset_id; 2-int: target_synset_id, 3-int: link_type_id
-		sql = "SELECT * FROM synset_link WHERE synset_id=? OR target_synset_id=?" +
-				" AND link_type_id=?";
-		pstmt = dbConnection.prepareStatement(sql);
-		prepStatement.put("SynsetLinks", pstmt);
+		// SynsetLinks 1-int: synset_id; use getSynsetLinkStatement for
+		// restricting the link types.
+		sql = "SELECT target_synset_id FROM synset_link WHERE synset_id=?";
+		prepare("SynsetLinks", sql);
+
+		// SynsetLinksBackwards 1-int: target_synset_id
+		sql = "SELECT synset_id FROM synset_link WHERE target_synset_id=?";
+		prepare("SynsetLinksBackwards", sql);
 
 		// TermLinks, 1-int: termId; 2-int: link_type_id
 		sql = "SELECT * FROM term INNER JOIN term_link ON " +
 			 " term.id=term_link.target_term_id" +
 			 " WHERE term_link.term_id=?" +
 			 " AND term_link.link_type_id=?";
-		pstmt = dbConnection.prepareStatement(sql);
-		prepStatement.put("TermLinks", pstmt);
+		prepare("TermLinks", sql);
+
+		// TermLinksAnyType, 1-int: termId
+		sql = "SELECT * FROM term INNER JOIN term_link ON " +
+			 " term.id=term_link.target_term_id" +
+			 " WHERE term_link.term_id=?";
+		prepare("TermLinksAnyType", sql);
+
+		// BatchTermLinks 1-int: link_type_id; 2..n-int: term_id
+		batchSql.put("BatchTermLinks", "SELECT term_link.term_id AS source_term_id,"
+				+ " term.* FROM term INNER JOIN term_link"
+				+ " ON term.id=term_link.target_term_id"
+				+ " WHERE term_link.link_type_id=? AND term_link.term_id IN (?...)");
+
+		// BatchTermLinksAnyType 1..n-int: term_id
+		batchSql.put("BatchTermLinksAnyType", "SELECT term_link.term_id AS source_term_id,"
+				+ " term.* FROM term INNER JOIN term_link"
+				+ " ON term.id=term_link.target_term_id"
+				+ " WHERE term_link.term_id IN (?...)");
 
 		// AllSynsets
 		sql = "SELECT id FROM synset";
-		pstmt = dbConnection.prepareStatement(sql);
-		prepStatement.put("AllSynsets", pstmt);
+		prepare("AllSynsets", sql);
 
 		// Count synsets
 		sql = "SELECT COUNT(id) as num FROM synset";
-		pstmt = dbConnection.prepareStatement(sql);
-		prepStatement.put("CountSynsets", pstmt);
+		prepare("CountSynsets", sql);
 
 		// Term by id.
 		sql = "SELECT * FROM term WHERE id=?";
-		pstmt = dbConnection.prepareStatement(sql);
-		prepStatement.put("SelectTermById", pstmt);
+		prepare("SelectTermById", sql);
 
 		// Term by synset_id.
 		sql = "SELECT * FROM term WHERE synset_id=?";
-		pstmt = dbConnection.prepareStatement(sql);
-		prepStatement.put("SelectTermBySynset", pstmt);
+		prepare("SelectTermBySynset", sql);
 
 		// Categories for a synset.
 		sql = "SELECT c.id, c.category_name, c.category_type_id, c.is_disabled FROM category c "
 				+ "INNER JOIN category_link l ON l.category_id = c.id "
 				+ "WHERE l.synset_id=?";
-		pstmt = dbConnection.prepareStatement(sql);
-		prepStatement.put("SynsetCategories", pstmt);
+		prepare("SynsetCategories", sql);
 
 		// Tags for a term.
 		sql = "SELECT t.name FROM tag t "
 				+ "INNER JOIN term_tag tt ON tt.tag_id = t.id "
 				+ "WHERE tt.term_tags_id=?";
-		pstmt = dbConnection.prepareStatement(sql);
-		prepStatement.put("TermTags", pstmt);
+		prepare("TermTags", sql);
+
+		// BatchTermsBySynset 1..n-int: synset_id
+		batchSql.put("BatchTermsBySynset", "SELECT * FROM term WHERE synset_id IN (?...)");
+
+		// BatchSynsetLinks 1..n-int: synset_id; use
+		// getSynsetLinkBatchStatement for restricting the link types.
+		batchSql.put("BatchSynsetLinks", "SELECT target_synset_id FROM synset_link"
+				+ " WHERE synset_id IN (?...)");
+
+		// BatchSynsetLinksBackwards 1..n-int: target_synset_id
+		batchSql.put("BatchSynsetLinksBackwards", "SELECT synset_id FROM synset_link"
+				+ " WHERE target_synset_id IN (?...)");
+
+		// BatchTermTags 1..n-int: term_id
+		batchSql.put("BatchTermTags", "SELECT tt.term_tags_id, t.name FROM tag t"
+				+ " INNER JOIN term_tag tt ON tt.tag_id = t.id"
+				+ " WHERE tt.term_tags_id IN (?...)");
+
+		// Projected id queries that avoid loading entire rows.
+		sql = "SELECT synset_id FROM term WHERE id=?";
+		prepare("SelectSynsetIdByTermId", sql);
+
+		sql = "SELECT id FROM term WHERE synset_id=?";
+		prepare("SelectTermIdBySynset", sql);
+
+		// TermLinkIds 1-int: term_id; 2-int: link_type_id
+		sql = "SELECT target_term_id FROM term_link WHERE term_id=?"
+				+ " AND link_type_id=?";
+		prepare("TermLinkIds", sql);
+
+		// TermLinkIdsAnyType 1-int: term_id
+		sql = "SELECT target_term_id FROM term_link WHERE term_id=?";
+		prepare("TermLinkIdsAnyType", sql);
 	}
 
 	/** Initialize Prepared Statements, that depend on case sensitivity.
+	 *  Case sensitive comparisons cast the parameter rather than the
+	 *  column to BINARY, such that the indexes on the columns remain
+	 *  usable.
 	 *  @throws SQLException in case of database errors. */
 	protected void initCaseSensitiveStatements() throws SQLException{
-		String binary = (caseSensitive ? " BINARY " : "");
+		String binary = (caseSensitive ? "BINARY " : "");
+		String where = getWordCondition("=" + binary + "?");
 
-		// SelectTerm, 1-int: term.id; 2-String: normalized_word; 3-String: word; 4-int: synset_id
-		String sql = "SELECT * FROM term WHERE ((normalized_word != '' AND "
-				+ binary + "normalized_word=?)"
-				+ " OR " + binary + "word=?)"
-				+ " AND language_id=" + language;
-		PreparedStatement pstmt = dbConnection.prepareStatement(sql);
+		// SelectTermByWord, 1-String: normalized_word; 2-String: word; 3-int: language_id
+		prepare("SelectTermByWord", "SELECT * FROM term" + where);
+		closeFilteredStatements("SelectTermByWord");
 
-		prepStatement.put("SelectTermByWord", pstmt);
+		// Projections of SelectTermByWord with the same parameters.
+		prepare("SelectTermIdByWord", "SELECT id FROM term" + where);
+		closeFilteredStatements("SelectTermIdByWord");
+		prepare("SelectSynsetIdByWord", "SELECT synset_id FROM term" + where);
+		closeFilteredStatements("SelectSynsetIdByWord");
+
+		// BatchTermsByWord 1..n-String: normalized_word; n+1..2n-String:
+		// word; 2n+1-int: language_id
+		batchSql.put("BatchTermsByWord", "SELECT * FROM term"
+				+ getWordCondition(" IN (" + binary + "?...)"));
+		closeFilteredStatements("BatchTermsByWord");
+	}
+
+	/** Returns the where clause of the word lookups using the given
+	 *  comparison of the normalized word and the word. */
+	protected static String getWordCondition(final String comparison) {
+		return " WHERE ((normalized_word != '' AND normalized_word" + comparison + ")"
+				+ " OR word" + comparison + ")"
+				+ " AND language_id=?";
+	}
+
+	/** Checks the database for missing indexes and the prepared statements
+	 *  for full table scans using a {@link SchemaVerifier}, and creates the
+	 *  missing indexes if enabled by the database configuration. The
+	 *  problems found are available from {@link #getSchemaWarnings()} and
+	 *  logged with level WARNING, unless the same problems have already
+	 *  been logged for the database by a previous verification, e.g.,
+	 *  of another instance connected to it.
+	 *  @throws SQLException in case the indexes could not be created. */
+	protected void verifySchema() throws SQLException {
+		List<String> warnings;
+		SchemaVerifier verifier = new SchemaVerifier(dbConnection);
+		try {
+			warnings = Collections.unmodifiableList(verifier.verify(
+					statementSql, dbConfig.getCreateIndexes()));
+		} catch (SQLException e) {
+			if (dbConfig.getCreateIndexes())
+				throw e;
+
+			// Verification is optional, e.g., if EXPLAIN is not permitted.
+			warnings = Collections.singletonList(
+					"Unable to verify the schema: " + e.getMessage());
+		}
+		if (!warnings.equals(SCHEMA_WARNINGS.put(getSchemaKey(dbConfig), warnings)))
+			for (String warning : warnings)
+				LOGGER.log(Level.WARNING, dbConfig.getDatabase() + "@"
+						+ dbConfig.getHost() + ": " + warning);
+		schemaWarnings = warnings;
+	}
+
+	/** Returns the key identifying a verified database. */
+	protected static String getSchemaKey(final DatabaseConfiguration dbConfig) {
+		return dbConfig.getHost() + "/" + dbConfig.getDatabase() + "?user="
+				+ dbConfig.getUser();
+	}
+
+	/** @return The problems of the database schema found when connecting,
+	 *  		e.g., missing indexes; empty if there are none. */
+	public List<String> getSchemaWarnings() {
+		return schemaWarnings;
 	}
 
 	/** Creates connection to the MySQL Database using the given database
@@ -132,25 +354,283 @@ public class DatabaseStatements {
 	 *  @throws SQLException in case of any errors. */
 	public Connection getConnection(final DatabaseConfiguration dbConfig)
 			throws SQLException {
+		dbConnection = openConnection(dbConfig);
+		return dbConnection;
+	}
+
+	/** Opens a new connection to the MySQL Database using the given
+	 *  database configuration. The caller is responsible for closing it.
+	 *  @param dbConfig The database configuration that is used to establish
+	 *  		the database connection.
+	 *  @return The JDBC database connection.
+	 *  @throws SQLException in case of any errors. */
+	public static Connection openConnection(final DatabaseConfiguration dbConfig)
+			throws SQLException {
 		try {
 			Class.forName("org.gjt.mm.mysql.Driver");
 		} catch (ClassNotFoundException e) {
 			throw new SQLException(e);
 		}
 
-		dbConnection = DriverManager.getConnection(
+		return DriverManager.getConnection(
 				"jdbc:mysql://" + dbConfig.getHost() + "/"
 				+ dbConfig.getDatabase()
 				+ "?user=" + dbConfig.getUser()
 				+ "&password=" + dbConfig.getPassword());
-		return dbConnection;
 	}
 
 	/** Returns the prepared statement with the given name.
 	 *  @param name Name of Prepared Statement
 	 *  @return PreparedStatement */
 	public PreparedStatement getPreparedStatement(final String name) {
-		return prepStatement.get(name);
+		if (router != null)
+			return monitor(name, "", route(statementSql.get(name)));
+		return monitor(name, "", prepStatement.get(name));
+	}
+
+	/** Returns a variant of the prepared statement with the given name
+	 *  whose where clause is extended by the predicates of the given
+	 *  filter. The variants are prepared on first use and the most
+	 *  recently used ones are cached for subsequent calls. The parameters
+	 *  of the statement are not changed by the filter.
+	 *  @param name Name of a Prepared Statement on the term table.
+	 *  @param filter The filter; may be null.
+	 *  @return PreparedStatement
+	 *  @throws SQLException in case of database errors. */
+	public PreparedStatement getPreparedStatement(final String name,
+			final OTTermFilter filter) throws SQLException {
+		String condition = (filter == null ? "" : filter.toSqlCondition("term"));
+		if (router != null)
+			return monitor(name, condition, route(statementSql.get(name) + condition));
+		return monitor(name, condition, getVariant(name, condition));
+	}
+
+	/** Returns a prepared statement for querying the ids of the synsets
+	 *  linked to (or from) a given synset by means of the given link types.
+	 *  The only parameter of the statement is the id of the given synset.
+	 *  The link types are embedded into the query, such that it can be
+	 *  answered by a seek on the composite index (synset_id, link_type_id)
+	 *  or (target_synset_id, link_type_id), respectively. The variants are
+	 *  prepared on first use and cached for subsequent calls.
+	 *  @param backwards Query incoming rather than outgoing links.
+	 *  @param synsetLinkTypes The link types; no types selects the links
+	 *  		of all types.
+	 *  @return PreparedStatement
+	 *  @throws SQLException in case of database errors. */
+	public PreparedStatement getSynsetLinkStatement(final boolean backwards,
+			final int... synsetLinkTypes) throws SQLException {
+		String name = (backwards ? "SynsetLinksBackwards" : "SynsetLinks");
+		String condition = getLinkTypeCondition(synsetLinkTypes);
+		if (router != null)
+			return monitor(name, condition, route(statementSql.get(name) + condition));
+		return monitor(name, condition, getVariant(name, condition));
+	}
+
+	/** Returns a batch statement for querying the ids of the synsets linked
+	 *  to (or from) many synsets at once by means of the given link types;
+	 *  see {@link #getSynsetLinkStatement(boolean, int...)} and
+	 *  {@link #getBatchStatement(String, int)}.
+	 *  @param backwards Query incoming rather than outgoing links.
+	 *  @param count The number of synset ids; at most {@link #BATCH_SIZE}.
+	 *  @param synsetLinkTypes The link types; no types selects the links
+	 *  		of all types.
+	 *  @return PreparedStatement
+	 *  @throws SQLException in case of database errors. */
+	public PreparedStatement getSynsetLinkBatchStatement(final boolean backwards,
+			final int count, final int... synsetLinkTypes) throws SQLException {
+		return getBatchStatement(backwards ? "BatchSynsetLinksBackwards"
+				: "BatchSynsetLinks", getLinkTypeCondition(synsetLinkTypes), count);
+	}
+
+	protected static String getLinkTypeCondition(final int[] synsetLinkTypes) {
+		if (synsetLinkTypes.length == 0)
+			return "";
+		else if (synsetLinkTypes.length == 1)
+			return " AND link_type_id=" + synsetLinkTypes[0];
+		else
+			return " AND link_type_id IN "
+					+ OTTermFilter.toSqlList(OTTermFilter.toSet(synsetLinkTypes));
+	}
+
+	/** Returns a prepared statement for querying the rows of the given
+	 *  batch statement for many ids at once. Each list of the statement
+	 *  (written as, e.g., "(?...)" in its template) is expanded to the
+	 *  given number of parameters; set them using
+	 *  {@link #setBatchParameters(PreparedStatement, int, IntList, int, int)}.
+	 *  To avoid preparing a statement for each number of ids, the number
+	 *  of parameters is rounded up to the next power of two. The variants
+	 *  are prepared on first use and cached for subsequent calls.
+	 *  @param name Name of a batch statement.
+	 *  @param count The number of ids; at most {@link #BATCH_SIZE}.
+	 *  @return PreparedStatement
+	 *  @throws SQLException in case of database errors. */
+	public PreparedStatement getBatchStatement(final String name,
+			final int count) throws SQLException {
+		return getBatchStatement(name, "", count);
+	}
+
+	/** Returns the variant of a batch statement whose where clause is
+	 *  extended by the given condition following the list of ids. */
+	protected PreparedStatement getBatchStatement(final String name,
+			final String condition, final int count) throws SQLException {
+		int size = getBatchSize(count);
+		String variantName = name + "#" + size + condition;
+		StringBuilder sql = new StringBuilder(batchSql.get(name));
+		int end;
+		while ((end = sql.indexOf("...)")) >= 0) {
+			int start = sql.lastIndexOf("(", end) + 1;
+			String parameter = sql.substring(start, end);
+			StringBuilder list = new StringBuilder(parameter);
+			for (int i = 1; i < size; i++)
+				list.append(",").append(parameter);
+			sql.replace(start, end + 3, list.toString());
+		}
+		sql.append(condition);
+		if (router != null)
+			return monitor(variantName, sql.toString(), route(sql.toString()));
+
+		PreparedStatement result;
+		synchronized (variants) {
+			result = variants.get(variantName);
+			if (result == null)
+				result = prepareVariant(variantName, sql.toString());
+		}
+		return monitor(variantName, "", result);
+	}
+
+	/** Returns the number of parameters of a batch statement for the
+	 *  given number of ids, i.e., the next power of two. */
+	protected static int getBatchSize(final int count) {
+		if (count < 1 || count > BATCH_SIZE)
+			throw new IllegalArgumentException("Invalid batch size: " + count);
+		return (count == 1 ? 1 : Integer.highestOneBit(count - 1) << 1);
+	}
+
+	/** Sets the ids of a batch statement obtained from
+	 *  {@link #getBatchStatement(String, int)}. The remaining parameters
+	 *  are padded with the last id.
+	 *  @param pstmt The batch statement.
+	 *  @param offset The number of parameters preceding the ids.
+	 *  @param ids The ids.
+	 *  @param from The index of the first id of the batch.
+	 *  @param to The index after the last id of the batch.
+	 *  @throws SQLException in case of database errors. */
+	public static void setBatchParameters(final PreparedStatement pstmt,
+			final int offset, final IntList ids, final int from, final int to)
+			throws SQLException {
+		int size = getBatchSize(to - from);
+		for (int i = 0; i < size; i++)
+			pstmt.setInt(offset + i + 1, ids.get(Math.min(from + i, to - 1)));
+	}
+
+	/** Sets a list of string parameters of a batch statement obtained from
+	 *  {@link #getBatchStatement(String, int)}, e.g., the words of
+	 *  "BatchTermsByWord". The remaining parameters are padded with the
+	 *  last value.
+	 *  @param pstmt The batch statement.
+	 *  @param offset The number of parameters preceding the list.
+	 *  @param values The values of the list.
+	 *  @throws SQLException in case of database errors. */
+	public static void setBatchParameters(final PreparedStatement pstmt,
+			final int offset, final List<String> values) throws SQLException {
+		int size = getBatchSize(values.size());
+		for (int i = 0; i < size; i++)
+			pstmt.setString(offset + i + 1, values.get(Math.min(i, values.size() - 1)));
+	}
+
+	/** Wraps the given variant of a prepared statement for observing its
+	 *  executions if a monitor is active. */
+	protected PreparedStatement monitor(final String name, final String condition,
+			final PreparedStatement statement) {
+		StatementMonitor monitor = this.monitor;
+		if (monitor == null)
+			return statement;
+		String sql = statementSql.get(name);
+		return monitor.wrap(name, (sql != null ? sql + condition : condition), statement);
+	}
+
+	/** Returns the variant of the prepared statement with the given name
+	 *  whose where clause is extended by the given condition. The variants
+	 *  are prepared on first use; at most {@link #MAX_VARIANTS} of them are
+	 *  kept open, such that arbitrary filters do not accumulate statements
+	 *  on the database server. */
+	protected PreparedStatement getVariant(final String name,
+			final String condition) throws SQLException {
+		if (condition.isEmpty())
+			return prepStatement.get(name);
+
+		String variantName = name + condition;
+		synchronized (variants) {
+			PreparedStatement result = variants.get(variantName);
+			if (result == null)
+				result = prepareVariant(variantName, statementSql.get(name) + condition);
+			return result;
+		}
+	}
+
+	/** Returns a statement that executes the given SQL query on one of the
+	 *  replicas. Each execution prepares a new statement on the chosen
+	 *  replica, since a hedged execution may still be running when the
+	 *  next query is issued. */
+	protected PreparedStatement route(final String sql) {
+		return router.createStatement(new ReplicaRouter.StatementSource() {
+			public PreparedStatement prepare(final int replica) throws SQLException {
+				return replicas.get(replica).dbConnection.prepareStatement(sql);
+			}
+		});
+	}
+
+	/** @return The router distributing the queries among the replicas or
+	 *  		null if there is only a single database. */
+	public ReplicaRouter getReplicaRouter() {
+		return router;
+	}
+
+	/** Prepares the given SQL query and caches it using the given name.
+	 *  @param name Name of Prepared Statement
+	 *  @param sql The SQL query.
+	 *  @return PreparedStatement
+	 *  @throws SQLException in case of database errors. */
+	protected PreparedStatement prepare(final String name, final String sql)
+			throws SQLException {
+		PreparedStatement result = dbConnection.prepareStatement(sql);
+		PreparedStatement previous = prepStatement.put(name, result);
+		if (previous != null)
+			previous.close();
+		statementSql.put(name, sql);
+		return result;
+	}
+
+	/** Prepares the given SQL query as a variant of a prepared statement
+	 *  and caches it using the given name; the caller needs to
+	 *  synchronize on the variants. */
+	protected PreparedStatement prepareVariant(final String name,
+			final String sql) throws SQLException {
+		PreparedStatement result = dbConnection.prepareStatement(sql);
+		statementSql.put(name, sql);
+		variants.put(name, result);
+		return result;
+	}
+
+	/** Closes and removes all filtered and batch variants of the prepared
+	 *  statement with the given name.
+	 *  @param name Name of Prepared Statement
+	 *  @throws SQLException in case of database errors. */
+	protected void closeFilteredStatements(final String name)
+			throws SQLException {
+		synchronized (variants) {
+			Iterator<Map.Entry<String, PreparedStatement>> iter
+					= variants.entrySet().iterator();
+			while (iter.hasNext()) {
+				Map.Entry<String, PreparedStatement> entry = iter.next();
+				if (entry.getKey().startsWith(name + " ")
+						|| entry.getKey().startsWith(name + "#")) {
+					entry.getValue().close();
+					statementSql.remove(entry.getKey());
+					iter.remove();
+				}
+			}
+		}
 	}
 
 	/** @return Case Sensitivity setting */
@@ -163,24 +643,167 @@ public class DatabaseStatements {
 	 *  @throws SQLException */
 	public void setIsCaseSensitive(final boolean caseSensitive) throws SQLException {
 		this.caseSensitive = caseSensitive;
-		initCaseSensitiveStatements();
+		if (dbConnection != null)
+			initCaseSensitiveStatements();
+		if (replicas != null)
+			for (int i = 1; i < replicas.size(); i++)
+				replicas.get(i).setIsCaseSensitive(caseSensitive);
+	}
+
+	/** @return The in-memory snapshot used for answering queries or null,
+	 *  		if queries are answered by the database. */
+	public OTSnapshot getSnapshot() {
+		return snapshot;
+	}
+
+	/** Activates the given in-memory snapshot for answering queries. The
+	 *  snapshot is swapped atomically, such that concurrent queries use
+	 *  either the previous or the new snapshot. The snapshot generation is
+	 *  incremented after the swap.
+	 *  @param snapshot The new snapshot or null for querying the database. */
+	public synchronized void setSnapshot(final OTSnapshot snapshot) {
+		if (snapshot == null && dbConnection == null)
+			throw new IllegalStateException("No database connection available");
+		this.snapshot = snapshot;
+		snapshotGeneration++;
+	}
+
+	/** Returns the number of snapshot swaps so far. Synsets and terms
+	 *  record the generation read before loading their data and discard
+	 *  their cached data once the generation changes; see
+	 *  {@link CachedValue}.
+	 *  @return The current snapshot generation. */
+	public int getSnapshotGeneration() {
+		return snapshotGeneration;
 	}
 
-	/** @return The current database configuration. */
+	/** @return The log capturing the API calls or null. */
+	public QueryLog getQueryLog() {
+		return queryLog;
+	}
+
+	/** @param queryLog The log capturing the API calls or null for
+	 *  		disabling the capture. */
+	public void setQueryLog(final QueryLog queryLog) {
+		this.queryLog = queryLog;
+	}
+
+	/** @return The monitor observing the statement executions or null. */
+	public StatementMonitor getStatementMonitor() {
+		return monitor;
+	}
+
+	/** @param monitor The monitor observing the statement executions or
+	 *  		null for disabling the monitoring. */
+	public void setStatementMonitor(final StatementMonitor monitor) {
+		this.monitor = monitor;
+	}
+
+	/** @return The set tracking the frequently queried keys or null. */
+	public HotKeySet getHotKeySet() {
+		return hotKeys;
+	}
+
+	/** @param hotKeys The set tracking the frequently queried keys or
+	 *  		null for disabling the tracking. */
+	public void setHotKeySet(final HotKeySet hotKeys) {
+		this.hotKeys = hotKeys;
+	}
+
+	/** @return A copy of the current database configuration. */
 	public DatabaseConfiguration getDatabaseConfiguration() {
-		return dbConfig;
+		return new DatabaseConfiguration(dbConfig);
+	}
+
+	/** @return true if a database connection is available. */
+	public boolean hasDatabaseConnection() {
+		return dbConnection != null;
+	}
+
+	/** @return The default language used for queries that do not specify
+	 *  		a language explicitly. */
+	public int getLanguage() {
+		return language;
 	}
 
 	/** Sets DatabaseConfiguration and initializes the prepared statements.
+	 *  The database connection is only reestablished if the new
+	 *  configuration refers to a different database or user or changes
+	 *  the creation of missing indexes; a change of the language just
+	 *  changes the default language of the queries. Reconnecting closes
+	 *  all replicas, i.e., queries are subsequently answered by the new
+	 *  database only. The configuration is copied, such that later changes
+	 *  of the given object have no effect. The statements are prepared and
+	 *  the schema is verified before the previous connection is closed; if
+	 *  any of these steps fails, the previous connection and configuration
+	 *  remain in use.
 	 *  @param dbConfig New database configuration settings.
 	 *  @throws SQLException in case of database errors. */
 	public void setDatabaseConfiguration(final DatabaseConfiguration dbConfig)
 			throws SQLException {
-		this.dbConfig = dbConfig;
-		language = dbConfig.getLanguage();
-		dbConnection = getConnection(dbConfig);
-		initStatements();
-		this.dbConfig = dbConfig;
+		DatabaseConfiguration config = new DatabaseConfiguration(dbConfig);
+		if (this.dbConfig != null && isSameDatabase(this.dbConfig, config)
+				&& this.dbConfig.getCreateIndexes() == config.getCreateIndexes()) {
+			this.dbConfig = config;
+			language = config.getLanguage();
+			return;
+		}
+
+		DatabaseStatements next = new DatabaseStatements(config, caseSensitive);
+		try {
+			close();
+		} catch (SQLException e) {
+			// The previous connection is no longer used anyway.
+		}
+		prepStatement = next.prepStatement;
+		variants = next.variants;
+		statementSql = next.statementSql;
+		batchSql = next.batchSql;
+		dbConnection = next.dbConnection;
+		schemaWarnings = next.schemaWarnings;
+		this.dbConfig = config;
+		language = config.getLanguage();
+	}
+
+	/** Closes all prepared statements and the database connection.
+	 *  @throws SQLException in case of database errors. */
+	public void close() throws SQLException {
+		if (replicas != null) {
+			for (int i = 1; i < replicas.size(); i++)
+				replicas.get(i).close();
+			if (router != null)
+				router.close();
+			replicas = null;
+			router = null;
+		}
+		try {
+			for (PreparedStatement pstmt : prepStatement.values())
+				pstmt.close();
+			synchronized (variants) {
+				for (PreparedStatement pstmt : variants.values())
+					pstmt.close();
+			}
+		} finally {
+			prepStatement.clear();
+			synchronized (variants) {
+				variants.clear();
+			}
+			statementSql.clear();
+			if (dbConnection != null)
+				dbConnection.close();
+		}
+	}
+
+	protected static boolean isSameDatabase(final DatabaseConfiguration config1,
+			final DatabaseConfiguration config2) {
+		return equals(config1.getHost(), config2.getHost())
+				&& equals(config1.getDatabase(), config2.getDatabase())
+				&& equals(config1.getUser(), config2.getUser())
+				&& equals(config1.getPassword(), config2.getPassword());
+	}
+
+	protected static boolean equals(final String value1, final String value2) {
+		return (value1 == null ? value2 == null : value1.equals(value2));
 	}
 
 }
@@ -0,0 +1,200 @@
+/*******************************************************************************
+ * Copyright 2015
+ * Ubiquitous Knowledge Processing (UKP) Lab
+ * Technische Universität Darmstadt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package org.dkpro.jotl;
+
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * A configuration class holding the settings of a query expansion. See
+ * {@link OpenThesaurus#expand(String, ExpansionConfiguration)}. The weight
+ * of an expansion term is the weight of its relation, multiplied by the
+ * depth decay for each synset link beyond the first, and by the penalty
+ * factor of its term level.
+ */
+public class ExpansionConfiguration {
+
+	protected double synonymWeight = 1.0;
+	protected double hypernymWeight = 0.5;
+	protected int hypernymDepth = 1;
+	protected double hyponymWeight = 0.3;
+	protected int hyponymDepth = 1;
+	protected double associationWeight = 0.0;
+	protected double depthDecay = 0.5;
+	protected Map<Integer, Double> termLevelPenalties;
+	protected int maxResults;
+
+	/** Instanciates a new expansion configuration with default settings:
+	 *  synonyms (weight 1.0), direct hypernyms (0.5), and direct hyponyms
+	 *  (0.3) are considered; associations are not. Use the setters to
+	 *  change the configuration values. */
+	public ExpansionConfiguration() {
+		termLevelPenalties = new TreeMap<Integer, Double>();
+	}
+
+	/** Instanciates a copy of the given expansion configuration. */
+	public ExpansionConfiguration(final ExpansionConfiguration config) {
+		synonymWeight = config.synonymWeight;
+		hypernymWeight = config.hypernymWeight;
+		hypernymDepth = config.hypernymDepth;
+		hyponymWeight = config.hyponymWeight;
+		hyponymDepth = config.hyponymDepth;
+		associationWeight = config.associationWeight;
+		depthDecay = config.depthDecay;
+		termLevelPenalties = new TreeMap<Integer, Double>(config.termLevelPenalties);
+		maxResults = config.maxResults;
+	}
+
+	/** @return The weight of synonyms. */
+	public double getSynonymWeight() {
+		return synonymWeight;
+	}
+
+	/** @param synonymWeight The weight of synonyms; 0 excludes them. */
+	public void setSynonymWeight(final double synonymWeight) {
+		this.synonymWeight = synonymWeight;
+	}
+
+	/** @return The weight of terms in direct hypernyms. */
+	public double getHypernymWeight() {
+		return hypernymWeight;
+	}
+
+	/** @param hypernymWeight The weight of terms in direct hypernyms. */
+	public void setHypernymWeight(final double hypernymWeight) {
+		this.hypernymWeight = hypernymWeight;
+	}
+
+	/** @return The maximum number of hypernymy links to follow. */
+	public int getHypernymDepth() {
+		return hypernymDepth;
+	}
+
+	/** @param hypernymDepth The maximum number of hypernymy links to
+	 *  		follow; 0 excludes hypernyms. */
+	public void setHypernymDepth(final int hypernymDepth) {
+		this.hypernymDepth = hypernymDepth;
+	}
+
+	/** @return The weight of terms in direct hyponyms. */
+	public double getHyponymWeight() {
+		return hyponymWeight;
+	}
+
+	/** @param hyponymWeight The weight of terms in direct hyponyms. */
+	public void setHyponymWeight(final double hyponymWeight) {
+		this.hyponymWeight = hyponymWeight;
+	}
+
+	/** @return The maximum number of inverse hypernymy links to follow. */
+	public int getHyponymDepth() {
+		return hyponymDepth;
+	}
+
+	/** @param hyponymDepth The maximum number of inverse hypernymy links to
+	 *  		follow; 0 excludes hyponyms. */
+	public void setHyponymDepth(final int hyponymDepth) {
+		this.hyponymDepth = hyponymDepth;
+	}
+
+	/** @return The weight of terms in associated synsets. */
+	public double getAssociationWeight() {
+		return associationWeight;
+	}
+
+	/** @param associationWeight The weight of terms in associated synsets;
+	 *  		0 (default) excludes them. */
+	public void setAssociationWeight(final double associationWeight) {
+		this.associationWeight = associationWeight;
+	}
+
+	/** @return The factor applied for each synset link beyond the first. */
+	public double getDepthDecay() {
+		return depthDecay;
+	}
+
+	/** @param depthDecay The factor applied for each synset link beyond the
+	 *  		first. */
+	public void setDepthDecay(final double depthDecay) {
+		this.depthDecay = depthDecay;
+	}
+
+	/** @return The penalty factor for terms of the given level; 1.0 if
+	 *  		no penalty has been defined.
+	 *  @param termLevel The term level; see {@link OTTermLevelType}. */
+	public double getTermLevelPenalty(final int termLevel) {
+		Double result = termLevelPenalties.get(termLevel);
+		return (result == null ? 1.0 : result);
+	}
+
+	/** @param termLevel The term level; use the constants in
+	 *  		{@link OTTermLevelType} or 0 for terms without a level.
+	 *  @param penalty The factor by which the weight of terms of this level
+	 *  		is multiplied; 0 excludes them. */
+	public void setTermLevelPenalty(final int termLevel, final double penalty) {
+		termLevelPenalties.put(termLevel, penalty);
+	}
+
+	/** @return The maximum number of expansion terms; 0 for no limit. */
+	public int getMaxResults() {
+		return maxResults;
+	}
+
+	/** @param maxResults The maximum number of expansion terms; 0 (default)
+	 *  		for no limit. */
+	public void setMaxResults(final int maxResults) {
+		this.maxResults = maxResults;
+	}
+
+	@Override
+	public int hashCode() {
+		final int prime = 31;
+		int result = 1;
+		result = prime * result + Double.valueOf(synonymWeight).hashCode();
+		result = prime * result + Double.valueOf(hypernymWeight).hashCode();
+		result = prime * result + hypernymDepth;
+		result = prime * result + Double.valueOf(hyponymWeight).hashCode();
+		result = prime * result + hyponymDepth;
+		result = prime * result + Double.valueOf(associationWeight).hashCode();
+		result = prime * result + Double.valueOf(depthDecay).hashCode();
+		result = prime * result + termLevelPenalties.hashCode();
+		result = prime * result + maxResults;
+		return result;
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj)
+			return true;
+		if (obj == null)
+			return false;
+		if (getClass() != obj.getClass())
+			return false;
+		ExpansionConfiguration other = (ExpansionConfiguration) obj;
+		return synonymWeight == other.synonymWeight
+				&& hypernymWeight == other.hypernymWeight
+				&& hypernymDepth == other.hypernymDepth
+				&& hyponymWeight == other.hyponymWeight
+				&& hyponymDepth == other.hyponymDepth
+				&& associationWeight == other.associationWeight
+				&& depthDecay == other.depthDecay
+				&& termLevelPenalties.equals(other.termLevelPenalties)
+				&& maxResults == other.maxResults;
+	}
+
+}
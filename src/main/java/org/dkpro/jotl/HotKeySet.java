@@ -0,0 +1,410 @@
+/*******************************************************************************
+ * Copyright 2015
+ * Ubiquitous Knowledge Processing (UKP) Lab
+ * Technische Universität Darmstadt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package org.dkpro.jotl;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Tracks the most frequently queried words and synset ids, such that the
+ * caches of a new instance can be pre-warmed with them at startup; see
+ * {@link OpenThesaurus#prewarm(HotKeySet, int)}. The frequencies are
+ * estimated by a count-min sketch of fixed size; only the keys whose
+ * estimate exceeds the smallest frequency of the current hot keys are
+ * kept, such that the memory is bounded by the capacity. Register the set
+ * using {@link OpenThesaurus#setHotKeySet(HotKeySet)}, persist it
+ * periodically by {@link #schedulePersistence(File, long, TimeUnit)}, and
+ * reload it by {@link #load(File)}. External word frequency lists can be
+ * added by {@link #addWordFrequencies(Reader, int)}. The frequencies do
+ * not decay by themselves; use {@link #scheduleDecay(long, TimeUnit)} for
+ * halving them periodically, such that keys that are no longer queried
+ * leave the set. The set is thread safe and records lookups without
+ * locking.
+ */
+public class HotKeySet {
+
+	/** Default number of hot keys. */
+	public static final int DEFAULT_CAPACITY = 10000;
+
+	protected static final int DEPTH = 4;
+	protected static final int WIDTH = 1 << 16;
+
+	protected static final Comparator<Map.Entry<String, Integer>> BY_COUNT =
+			new Comparator<Map.Entry<String, Integer>>() {
+				public int compare(final Map.Entry<String, Integer> entry1,
+						final Map.Entry<String, Integer> entry2) {
+					int result = entry2.getValue().compareTo(entry1.getValue());
+					return (result != 0 ? result : entry1.getKey().compareTo(entry2.getKey()));
+				}
+			};
+
+	protected static final Logger LOGGER = Logger.getLogger(HotKeySet.class.getName());
+
+	protected AtomicIntegerArray counters;
+	protected int capacity;
+	protected Set<String> candidates;
+	protected volatile int threshold;
+	protected ReentrantLock pruneLock;
+	protected ScheduledExecutorService persistenceExecutor;
+
+	/** Instanciates a new set holding {@link #DEFAULT_CAPACITY} keys. */
+	public HotKeySet() {
+		this(DEFAULT_CAPACITY);
+	}
+
+	/** Instanciates a new set.
+	 *  @param capacity The maximum number of hot keys. */
+	public HotKeySet(final int capacity) {
+		if (capacity < 1)
+			throw new IllegalArgumentException("Invalid capacity: " + capacity);
+
+		this.capacity = capacity;
+		counters = new AtomicIntegerArray(DEPTH * WIDTH);
+		candidates = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+		pruneLock = new ReentrantLock();
+	}
+
+	/** @return The maximum number of hot keys. */
+	public int getCapacity() {
+		return capacity;
+	}
+
+	/** Records a lookup of the given word in the given language. */
+	public void recordWord(final String word, final int language) {
+		if (word != null)
+			record(toWordKey(word, language), 1);
+	}
+
+	/** Records an access to the synset with the given id. */
+	public void recordSynset(final int synsetId) {
+		record(toSynsetKey(synsetId), 1);
+	}
+
+	/** Returns the most frequent words of the given language.
+	 *  @param language The language of the words.
+	 *  @param limit The maximum number of words.
+	 *  @return The words ordered by descending frequency. */
+	public List<String> getHotWords(final int language, final int limit) {
+		String prefix = toWordKey("", language);
+		List<String> result = new ArrayList<String>();
+		for (String key : getHotKeys())
+			if (result.size() < limit && key.startsWith(prefix))
+				result.add(key.substring(prefix.length()));
+		return result;
+	}
+
+	/** Returns the languages of the hot words in ascending order. */
+	public int[] getWordLanguages() {
+		TreeSet<Integer> languages = new TreeSet<Integer>();
+		for (String key : getHotKeys())
+			if (key.charAt(0) == 'w')
+				languages.add(Integer.parseInt(key.substring(1, key.indexOf(':'))));
+		int i = 0;
+		int[] result = new int[languages.size()];
+		for (Integer language : languages)
+			result[i++] = language;
+		return result;
+	}
+
+	/** Returns the ids of the most frequently accessed synsets.
+	 *  @param limit The maximum number of ids.
+	 *  @return The synset ids ordered by descending frequency. */
+	public int[] getHotSynsetIds(final int limit) {
+		IntList result = new IntList();
+		for (String key : getHotKeys())
+			if (result.size() < limit && key.charAt(0) == 's')
+				result.add(Integer.parseInt(key.substring(1)));
+		return result.toArray();
+	}
+
+	/** Returns the estimated number of lookups of the given word. */
+	public int getWordFrequency(final String word, final int language) {
+		return estimate(toWordKey(word, language));
+	}
+
+	/** Returns the estimated number of accesses to the given synset. */
+	public int getSynsetFrequency(final int synsetId) {
+		return estimate(toSynsetKey(synsetId));
+	}
+
+	/** Adds the frequencies of an external word frequency list, e.g., of a
+	 *  corpus or a query log of another application. Each line contains a
+	 *  word optionally followed by whitespace and its frequency; lines
+	 *  without a frequency count once. Empty lines and lines starting with
+	 *  "#" are ignored.
+	 *  @param reader The word frequency list; it is not closed.
+	 *  @param language The language of the words.
+	 *  @throws IOException if the list cannot be read. */
+	public void addWordFrequencies(final Reader reader, final int language)
+			throws IOException {
+		BufferedReader lines = new BufferedReader(reader);
+		String line;
+		while ((line = lines.readLine()) != null) {
+			line = line.trim();
+			if (line.isEmpty() || line.startsWith("#"))
+				continue;
+
+			String word = line;
+			int count = 1;
+			int separator = lineSeparatorIndex(line);
+			if (separator > 0)
+				try {
+					count = Integer.parseInt(line.substring(separator + 1).trim());
+					word = line.substring(0, separator).trim();
+				} catch (NumberFormatException e) {
+					// Multi-word term without a frequency.
+				}
+			if (count > 0)
+				record(toWordKey(word, language), count);
+		}
+	}
+
+	protected static int lineSeparatorIndex(final String line) {
+		int result = line.lastIndexOf('\t');
+		return (result >= 0 ? result : line.lastIndexOf(' '));
+	}
+
+	/** Writes the hot keys and their frequencies to the given file. The
+	 *  file is replaced atomically, such that a concurrently starting
+	 *  instance never reads a partially written file.
+	 *  @throws IOException if the file cannot be written. */
+	public void save(final File file) throws IOException {
+		List<String> keys = getHotKeys();
+		File tempFile = new File(file.getPath() + ".tmp");
+		Writer writer = new BufferedWriter(new OutputStreamWriter(
+				new FileOutputStream(tempFile), "UTF-8"));
+		try {
+			for (String key : keys)
+				writer.write(estimate(key) + "\t" + key + "\n");
+		} finally {
+			writer.close();
+		}
+		Files.move(tempFile.toPath(), file.toPath(),
+				StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+	}
+
+	/** Adds the hot keys and frequencies written by {@link #save(File)} to
+	 *  this set.
+	 *  @throws IOException if the file cannot be read. */
+	public void load(final File file) throws IOException {
+		BufferedReader reader = new BufferedReader(new InputStreamReader(
+				new FileInputStream(file), "UTF-8"));
+		try {
+			String line;
+			while ((line = reader.readLine()) != null) {
+				int tab = line.indexOf('\t');
+				if (tab > 0)
+					record(line.substring(tab + 1), Integer.parseInt(line.substring(0, tab)));
+			}
+		} catch (NumberFormatException e) {
+			throw new IOException("Invalid hot key file " + file, e);
+		} finally {
+			reader.close();
+		}
+	}
+
+	/** Periodically writes the hot keys to the given file in a background
+	 *  thread; see {@link #save(File)}. Failed writes are logged and
+	 *  retried at the next period.
+	 *  @param file The file to be written.
+	 *  @param period The time between two writes.
+	 *  @param unit The time unit of the period.
+	 *  @return A future for cancelling the persistence. */
+	public ScheduledFuture<?> schedulePersistence(final File file,
+			final long period, final TimeUnit unit) {
+		return getPersistenceExecutor().scheduleWithFixedDelay(new Runnable() {
+			public void run() {
+				try {
+					save(file);
+				} catch (IOException e) {
+					// Keep the previous file and retry next time.
+					LOGGER.log(Level.WARNING, "Unable to save the hot keys to " + file, e);
+				}
+			}
+		}, period, period, unit);
+	}
+
+	/** Periodically halves the frequencies in a background thread; see
+	 *  {@link #decay()}.
+	 *  @param period The time between two decays, i.e., the half-life of
+	 *  		the frequencies.
+	 *  @param unit The time unit of the period.
+	 *  @return A future for cancelling the decay. */
+	public ScheduledFuture<?> scheduleDecay(final long period, final TimeUnit unit) {
+		return getPersistenceExecutor().scheduleWithFixedDelay(new Runnable() {
+			public void run() {
+				decay();
+			}
+		}, period, period, unit);
+	}
+
+	/** Halves the estimated frequencies of all keys, such that recent
+	 *  lookups outweigh older ones. Lookups recorded concurrently may be
+	 *  halved or not. */
+	public void decay() {
+		for (int i = 0; i < counters.length(); i++) {
+			int value;
+			do {
+				value = counters.get(i);
+			} while (value != 0 && !counters.compareAndSet(i, value, value >>> 1));
+		}
+		threshold = threshold >>> 1;
+		pruneLock.lock();
+		try {
+			Iterator<String> iter = candidates.iterator();
+			while (iter.hasNext())
+				if (estimate(iter.next()) == 0)
+					iter.remove();
+		} finally {
+			pruneLock.unlock();
+		}
+	}
+
+	protected synchronized ScheduledExecutorService getPersistenceExecutor() {
+		if (persistenceExecutor == null)
+			persistenceExecutor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+				public Thread newThread(final Runnable runnable) {
+					Thread result = new Thread(runnable, "jotl-hot-keys");
+					result.setDaemon(true);
+					return result;
+				}
+			});
+		return persistenceExecutor;
+	}
+
+	/** Adds the given count to the sketch and updates the candidates. The
+	 *  keys already kept are only looked up, such that the hottest keys
+	 *  are recorded without locking. */
+	protected void record(final String key, final int count) {
+		int estimate = add(key, count);
+		if (estimate <= threshold || candidates.contains(key))
+			return;
+
+		candidates.add(key);
+		if (candidates.size() > 2 * capacity && pruneLock.tryLock())
+			try {
+				prune();
+			} finally {
+				pruneLock.unlock();
+			}
+	}
+
+	/** Keeps the candidates with the highest estimates and raises the
+	 *  threshold for new candidates to the smallest kept estimate. */
+	protected void prune() {
+		List<Map.Entry<String, Integer>> entries = getEstimates();
+		if (entries.size() <= capacity)
+			return;
+
+		for (Map.Entry<String, Integer> entry : entries.subList(capacity, entries.size()))
+			candidates.remove(entry.getKey());
+		threshold = entries.get(capacity - 1).getValue();
+	}
+
+	/** Returns the candidates with their current estimates ordered by
+	 *  descending frequency. */
+	protected List<Map.Entry<String, Integer>> getEstimates() {
+		List<Map.Entry<String, Integer>> result = new ArrayList<Map.Entry<String, Integer>>();
+		for (String key : candidates)
+			result.add(new AbstractMap.SimpleEntry<String, Integer>(key, estimate(key)));
+		Collections.sort(result, BY_COUNT);
+		return result;
+	}
+
+	/** Returns the hot keys ordered by descending frequency. */
+	protected List<String> getHotKeys() {
+		List<Map.Entry<String, Integer>> entries = getEstimates();
+		List<String> result = new ArrayList<String>(Math.min(entries.size(), capacity));
+		for (Map.Entry<String, Integer> entry : entries)
+			if (result.size() < capacity && entry.getValue() > 0)
+				result.add(entry.getKey());
+		return result;
+	}
+
+	/** Increments the counters of the given key in each row of the sketch.
+	 *  @return The new estimate, i.e., the minimum of the counters. */
+	protected int add(final String key, final int count) {
+		long hash = BloomFilter.hash(key);
+		int hash1 = (int) hash;
+		int hash2 = (int) (hash >>> 32) | 1;
+		int result = Integer.MAX_VALUE;
+		for (int row = 0; row < DEPTH; row++) {
+			int column = (hash1 + row * hash2) & (WIDTH - 1);
+			int value = counters.addAndGet(row * WIDTH + column, count);
+			if (value < 0) {
+				// Saturate rather than overflow.
+				counters.set(row * WIDTH + column, Integer.MAX_VALUE);
+				value = Integer.MAX_VALUE;
+			}
+			result = Math.min(result, value);
+		}
+		return result;
+	}
+
+	/** Returns the estimated frequency of the given key, which is never
+	 *  smaller than its actual frequency. */
+	protected int estimate(final String key) {
+		long hash = BloomFilter.hash(key);
+		int hash1 = (int) hash;
+		int hash2 = (int) (hash >>> 32) | 1;
+		int result = Integer.MAX_VALUE;
+		for (int row = 0; row < DEPTH; row++) {
+			int column = (hash1 + row * hash2) & (WIDTH - 1);
+			result = Math.min(result, counters.get(row * WIDTH + column));
+		}
+		return result;
+	}
+
+	protected static String toWordKey(final String word, final int language) {
+		return "w" + language + ":" + word;
+	}
+
+	protected static String toSynsetKey(final int synsetId) {
+		return "s" + synsetId;
+	}
+
+}
@@ -0,0 +1,106 @@
+/*******************************************************************************
+ * Copyright 2015
+ * Ubiquitous Knowledge Processing (UKP) Lab
+ * Technische Universität Darmstadt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package org.dkpro.jotl;
+
+import java.util.Arrays;
+
+/**
+ * Growable list of primitive int values. Used for building the in-memory
+ * data structures and for returning ids without boxing them.
+ */
+public class IntList {
+
+	protected int[] values;
+	protected int size;
+
+	/** Instanciates a new, empty list. */
+	public IntList() {
+		this(16);
+	}
+
+	/** Instanciates a new, empty list with the given initial capacity. */
+	public IntList(final int capacity) {
+		values = new int[Math.max(capacity, 1)];
+	}
+
+	/** Appends the given value to the list. */
+	public void add(final int value) {
+		if (size == values.length)
+			values = Arrays.copyOf(values, size + (size >> 1) + 1);
+		values[size++] = value;
+	}
+
+	/** Appends all values of the given list. */
+	public void addAll(final IntList other) {
+		if (size + other.size > values.length)
+			values = Arrays.copyOf(values, Math.max(size + other.size, size + (size >> 1) + 1));
+		System.arraycopy(other.values, 0, values, size, other.size);
+		size += other.size;
+	}
+
+	/** Returns the value at the given position. */
+	public int get(final int index) {
+		if (index >= size)
+			throw new IndexOutOfBoundsException(index + " >= " + size);
+		return values[index];
+	}
+
+	/** Replaces the value at the given position. */
+	public void set(final int index, final int value) {
+		if (index >= size)
+			throw new IndexOutOfBoundsException(index + " >= " + size);
+		values[index] = value;
+	}
+
+	/** Returns the number of values in the list. */
+	public int size() {
+		return size;
+	}
+
+	/** Returns true if the list contains no values. */
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	/** Removes all values from the list. */
+	public void clear() {
+		size = 0;
+	}
+
+	/** Returns a copy of the values as an array. */
+	public int[] toArray() {
+		return Arrays.copyOf(values, size);
+	}
+
+	/** Returns the sorted values as an array without duplicates. */
+	public int[] toSortedUniqueArray() {
+		int[] result = toArray();
+		Arrays.sort(result);
+		int count = 0;
+		for (int i = 0; i < result.length; i++)
+			if (i == 0 || result[i] != result[i - 1])
+				result[count++] = result[i];
+		return (count == result.length ? result : Arrays.copyOf(result, count));
+	}
+
+	@Override
+	public String toString() {
+		return Arrays.toString(toArray());
+	}
+
+}
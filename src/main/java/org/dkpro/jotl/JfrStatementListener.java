@@ -0,0 +1,162 @@
+/*******************************************************************************
+ * Copyright 2015
+ * Ubiquitous Knowledge Processing (UKP) Lab
+ * Technische Universität Darmstadt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package org.dkpro.jotl;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Arrays;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Emits a JDK Flight Recorder event {@value #EVENT_NAME} for each statement
+ * execution observed by a {@link StatementMonitor}. The event contains the
+ * statement name, the SQL query, the bound parameters, the number of rows,
+ * and the execution time. Since the library is compiled for Java 8, the
+ * event type is defined at runtime using <code>jdk.jfr.EventFactory</code>,
+ * which requires Java 11 or later; see {@link #isAvailable()}. On older
+ * runtimes, the listener does nothing. Whether the event is enabled is
+ * updated whenever a recording changes its state, such that no event
+ * object is created while the event is not enabled in any recording.
+ */
+public class JfrStatementListener implements StatementListener {
+
+	/** Name of the Flight Recorder event type. */
+	public static final String EVENT_NAME = "org.dkpro.jotl.Statement";
+
+	protected static final Logger LOGGER = Logger.getLogger(
+			JfrStatementListener.class.getName());
+
+	protected volatile boolean enabled;
+	protected Object factory;
+	protected Object eventType;
+	protected Method isEventTypeEnabled;
+	protected Method newEvent;
+	protected Method isEnabled;
+	protected Method set;
+	protected Method commit;
+
+	/** Instanciates a new listener and registers the event type. If the
+	 *  Flight Recorder API is not available, the listener does nothing. */
+	public JfrStatementListener() {
+		try {
+			Class<?> annotationClass = Class.forName("jdk.jfr.AnnotationElement");
+			Constructor<?> annotation = annotationClass.getConstructor(Class.class, Object.class);
+			Class<?> label = Class.forName("jdk.jfr.Label");
+			List<Object> eventAnnotations = Arrays.asList(
+					annotation.newInstance(Class.forName("jdk.jfr.Name"), EVENT_NAME),
+					annotation.newInstance(label, "JOTL Statement"),
+					annotation.newInstance(Class.forName("jdk.jfr.Category"),
+							new String[]{"JOTL"}));
+
+			Constructor<?> field = Class.forName("jdk.jfr.ValueDescriptor")
+					.getConstructor(Class.class, String.class, List.class);
+			List<Object> fields = Arrays.asList(
+					field.newInstance(String.class, "statement",
+							Arrays.asList(annotation.newInstance(label, "Statement"))),
+					field.newInstance(String.class, "sql",
+							Arrays.asList(annotation.newInstance(label, "SQL"))),
+					field.newInstance(String.class, "parameters",
+							Arrays.asList(annotation.newInstance(label, "Parameters"))),
+					field.newInstance(int.class, "rows",
+							Arrays.asList(annotation.newInstance(label, "Rows"))),
+					field.newInstance(long.class, "executionTime", Arrays.asList(
+							annotation.newInstance(label, "Execution Time"),
+							annotation.newInstance(Class.forName("jdk.jfr.Timespan"),
+									"NANOSECONDS"))));
+
+			Class<?> factoryClass = Class.forName("jdk.jfr.EventFactory");
+			factory = factoryClass.getMethod("create", List.class, List.class)
+					.invoke(null, eventAnnotations, fields);
+			newEvent = factoryClass.getMethod("newEvent");
+			Class<?> eventClass = Class.forName("jdk.jfr.Event");
+			isEnabled = eventClass.getMethod("isEnabled");
+			set = eventClass.getMethod("set", int.class, Object.class);
+			commit = eventClass.getMethod("commit");
+
+			eventType = factoryClass.getMethod("getEventType").invoke(factory);
+			isEventTypeEnabled = Class.forName("jdk.jfr.EventType").getMethod("isEnabled");
+			Class<?> recorderClass = Class.forName("jdk.jfr.FlightRecorder");
+			Class<?> recorderListenerClass = Class.forName("jdk.jfr.FlightRecorderListener");
+			Object recorderListener = Proxy.newProxyInstance(
+					recorderListenerClass.getClassLoader(),
+					new Class<?>[]{recorderListenerClass}, new InvocationHandler() {
+						public Object invoke(final Object proxy, final Method method,
+								final Object[] args) throws Throwable {
+							if (method.getDeclaringClass() == Object.class)
+								return StatementMonitor.invoke(this, method, args);
+
+							updateEnabled();
+							return null;
+						}
+					});
+			recorderClass.getMethod("addListener", recorderListenerClass)
+					.invoke(null, recorderListener);
+			updateEnabled();
+		} catch (Exception e) {
+			factory = null;
+			LOGGER.log(Level.INFO, "The Flight Recorder API is not available;"
+					+ " no statement events are emitted", e);
+		}
+	}
+
+	/** Caches whether the event is enabled in any active recording. */
+	protected void updateEnabled() {
+		try {
+			enabled = (Boolean) isEventTypeEnabled.invoke(eventType);
+		} catch (Exception e) {
+			enabled = false;
+		}
+	}
+
+	/** @return true if the Flight Recorder API required by this listener is
+	 *  		available. */
+	public static boolean isAvailable() {
+		try {
+			Class.forName("jdk.jfr.EventFactory");
+			return true;
+		} catch (ClassNotFoundException e) {
+			return false;
+		}
+	}
+
+	public void statementExecuted(final String name, final String sql,
+			final Object[] parameters, final int rows, final long duration) {
+		if (!enabled)
+			return;
+
+		try {
+			Object event = newEvent.invoke(factory);
+			if (!(Boolean) isEnabled.invoke(event))
+				return;
+
+			set.invoke(event, 0, name);
+			set.invoke(event, 1, sql);
+			set.invoke(event, 2, Arrays.toString(parameters));
+			set.invoke(event, 3, rows);
+			set.invoke(event, 4, duration);
+			commit.invoke(event);
+		} catch (Exception e) {
+			throw new IllegalStateException("Unable to emit the Flight Recorder event", e);
+		}
+	}
+
+}
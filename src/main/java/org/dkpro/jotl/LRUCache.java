@@ -0,0 +1,60 @@
+/*******************************************************************************
+ * Copyright 2015
+ * Ubiquitous Knowledge Processing (UKP) Lab
+ * Technische Universität Darmstadt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package org.dkpro.jotl;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Simple size-bounded cache evicting the least recently used entries.
+ * The cache is not synchronized; callers sharing an instance between
+ * threads need to synchronize on it.
+ */
+public class LRUCache<K, V> extends LinkedHashMap<K, V> {
+
+	private static final long serialVersionUID = 4729013865192283105L;
+
+	protected int capacity;
+
+	/** Instanciates a new cache holding at most the given number of
+	 *  entries.
+	 *  @param capacity The maximum number of entries; 0 disables the
+	 *  		cache. */
+	public LRUCache(final int capacity) {
+		super(16, 0.75f, true);
+		this.capacity = capacity;
+	}
+
+	/** @return The maximum number of entries. */
+	public int getCapacity() {
+		return capacity;
+	}
+
+	/** Changes the maximum number of entries. Surplus entries are evicted
+	 *  on the next insertion.
+	 *  @param capacity The maximum number of entries. */
+	public void setCapacity(final int capacity) {
+		this.capacity = capacity;
+	}
+
+	@Override
+	protected boolean removeEldestEntry(final Map.Entry<K, V> eldest) {
+		return size() > capacity;
+	}
+
+}
@@ -0,0 +1,97 @@
+/*******************************************************************************
+ * Copyright 2015
+ * Ubiquitous Knowledge Processing (UKP) Lab
+ * Technische Universität Darmstadt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package org.dkpro.jotl;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock-free histogram of latencies with a relative error below 1%. Values
+ * below 256 are counted exactly; larger values are counted in buckets
+ * covering 1/128 of their power of two, i.e., the reported bounds exceed
+ * the values by less than 1/128.
+ */
+public class LatencyHistogram {
+
+	protected static final int SUB_BUCKETS = 128;
+
+	protected AtomicLongArray counts;
+
+	/** Instanciates an empty histogram for non-negative values. */
+	public LatencyHistogram() {
+		counts = new AtomicLongArray(bucketIndex(Long.MAX_VALUE) + 1);
+	}
+
+	/** Adds the given value; negative values are counted as 0. */
+	public void record(final long value) {
+		counts.incrementAndGet(bucketIndex(Math.max(value, 0)));
+	}
+
+	/** Returns the number of recorded values. */
+	public long getCount() {
+		long result = 0;
+		for (int i = 0; i < counts.length(); i++)
+			result += counts.get(i);
+		return result;
+	}
+
+	/** Returns the value below or at which the given fraction of the
+	 *  recorded values lies, i.e., the upper bound of the bucket
+	 *  containing the percentile.
+	 *  @param percentile The fraction between 0 and 1; e.g., 0.99.
+	 *  @return The value or 0 if the histogram is empty. */
+	public long getPercentile(final double percentile) {
+		long total = getCount();
+		if (total == 0)
+			return 0;
+
+		long target = Math.max((long) Math.ceil(percentile * total), 1);
+		long count = 0;
+		for (int i = 0; i < counts.length(); i++) {
+			count += counts.get(i);
+			if (count >= target)
+				return highestValue(i);
+		}
+		return highestValue(counts.length() - 1);
+	}
+
+	/** Returns the highest recorded value rounded up to its bucket. */
+	public long getMax() {
+		for (int i = counts.length() - 1; i >= 0; i--)
+			if (counts.get(i) > 0)
+				return highestValue(i);
+		return 0;
+	}
+
+	protected static int bucketIndex(final long value) {
+		if (value < 2 * SUB_BUCKETS)
+			return (int) value;
+
+		int shift = 63 - Long.numberOfLeadingZeros(value) - 7;
+		return shift * SUB_BUCKETS + (int) (value >>> shift);
+	}
+
+	protected static long highestValue(final int index) {
+		if (index < 2 * SUB_BUCKETS)
+			return index;
+
+		int shift = index / SUB_BUCKETS - 1;
+		long mantissa = index - shift * SUB_BUCKETS;
+		return ((mantissa + 1) << shift) - 1;
+	}
+
+}
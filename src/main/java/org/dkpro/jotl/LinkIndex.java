@@ -0,0 +1,209 @@
+/*******************************************************************************
+ * Copyright 2015
+ * Ubiquitous Knowledge Processing (UKP) Lab
+ * Technische Universität Darmstadt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package org.dkpro.jotl;
+
+import java.util.Arrays;
+
+/**
+ * Immutable adjacency structure of typed, directed links between the nodes
+ * (synsets or terms) of an {@link OTSnapshot}. Nodes are identified by
+ * their index in the snapshot. The links are stored in compressed sparse
+ * row (CSR) format: the links of node <code>i</code> are found at the
+ * positions <code>getOffsets()[i]</code> (inclusive) to
+ * <code>getOffsets()[i + 1]</code> (exclusive) of the target and type
+ * arrays, ordered by type and target. Use {@link #getStart(int, int)} and
+ * {@link #getEnd(int, int)} or {@link #addTargets(int, int[], IntList)}
+ * for iterating the links of a node without copying them.
+ */
+public class LinkIndex {
+
+	/** The maximum number of nodes supported. */
+	public static final int MAX_NODES = 1 << 23;
+
+	/** The maximum link type supported. */
+	public static final int MAX_TYPE = 0xFF;
+
+	protected int[] offsets;
+	protected int[] targets;
+	protected int[] types;
+
+	/** Instanciates a link index from the given CSR arrays. */
+	public LinkIndex(final int[] offsets, final int[] targets, final int[] types) {
+		this.offsets = offsets;
+		this.targets = targets;
+		this.types = types;
+	}
+
+	/** Builds a link index from the given list of links.
+	 *  @param nodeCount The number of nodes.
+	 *  @param sources The source node index of each link.
+	 *  @param targets The target node index of each link.
+	 *  @param types The link type of each link.
+	 *  @return The new link index. */
+	public static LinkIndex build(final int nodeCount, final int[] sources,
+			final int[] targets, final int[] types) {
+		if (nodeCount >= MAX_NODES)
+			throw new IllegalArgumentException("Too many nodes: " + nodeCount);
+
+		// Sort the links by source, type, and target.
+		long[] keys = new long[sources.length];
+		for (int i = 0; i < sources.length; i++) {
+			if (types[i] < 0 || types[i] > MAX_TYPE)
+				throw new IllegalArgumentException("Invalid link type: " + types[i]);
+			keys[i] = ((long) sources[i] << 40) | ((long) types[i] << 32)
+					| (targets[i] & 0xFFFFFFFFL);
+		}
+		Arrays.sort(keys);
+
+		int[] offsets = new int[nodeCount + 1];
+		int[] resultTargets = new int[keys.length];
+		int[] resultTypes = new int[keys.length];
+		int count = 0;
+		for (int i = 0; i < keys.length; i++) {
+			if (i > 0 && keys[i] == keys[i - 1])
+				continue; // Skip duplicate links.
+			offsets[(int) (keys[i] >>> 40) + 1]++;
+			resultTargets[count] = (int) keys[i];
+			resultTypes[count] = (int) (keys[i] >>> 32) & 0xFF;
+			count++;
+		}
+		for (int i = 0; i < nodeCount; i++)
+			offsets[i + 1] += offsets[i];
+		return new LinkIndex(offsets, Arrays.copyOf(resultTargets, count),
+				Arrays.copyOf(resultTypes, count));
+	}
+
+	/** Returns the position of the given node's first link of the given
+	 *  type in the arrays {@link #getTargets()} and {@link #getTypes()}.
+	 *  @param node The node index.
+	 *  @param type The link type or 0 for links of any type.
+	 *  @return The position (inclusive). */
+	public int getStart(final int node, final int type) {
+		int from = offsets[node];
+		if (type > 0) {
+			int to = offsets[node + 1];
+			while (from < to && types[from] < type)
+				from++;
+		}
+		return from;
+	}
+
+	/** Returns the position after the given node's last link of the given
+	 *  type in the arrays {@link #getTargets()} and {@link #getTypes()}.
+	 *  @param node The node index.
+	 *  @param type The link type or 0 for links of any type.
+	 *  @return The position (exclusive). */
+	public int getEnd(final int node, final int type) {
+		int to = offsets[node + 1];
+		if (type > 0) {
+			int end = getStart(node, type);
+			while (end < to && types[end] == type)
+				end++;
+			to = end;
+		}
+		return to;
+	}
+
+	/** Returns the target node indexes of the given node's links of the given
+	 *  type.
+	 *  @param node The node index.
+	 *  @param type The link type or 0 for links of any type.
+	 *  @return The target node indexes; never null. */
+	public int[] getTargets(final int node, final int type) {
+		return Arrays.copyOfRange(targets, getStart(node, type), getEnd(node, type));
+	}
+
+	/** Returns the target node indexes of the given node's links of any of
+	 *  the given types.
+	 *  @param node The node index.
+	 *  @param types The link types; no types selects links of any type.
+	 *  @return The target node indexes; never null. */
+	public int[] getTargets(final int node, final int[] types) {
+		if (types.length == 0)
+			return getTargets(node, 0);
+		if (types.length == 1)
+			return getTargets(node, types[0]);
+
+		IntList result = new IntList();
+		addTargets(node, types, result);
+		return result.toArray();
+	}
+
+	/** Appends the target node indexes of the given node's links of any of
+	 *  the given types to the given list, which may be reused by the caller.
+	 *  @param node The node index.
+	 *  @param types The link types; no types selects links of any type.
+	 *  @param result The list the target node indexes are added to.
+	 *  @return The number of target node indexes added. */
+	public int addTargets(final int node, final int[] types, final IntList result) {
+		int count = 0;
+		for (int i = offsets[node]; i < offsets[node + 1]; i++) {
+			boolean accepted = (types.length == 0);
+			for (int j = 0; j < types.length && !accepted; j++)
+				accepted = (this.types[i] == types[j]);
+			if (accepted) {
+				result.add(targets[i]);
+				count++;
+			}
+		}
+		return count;
+	}
+
+	/** Returns the number of links of the given node. */
+	public int getDegree(final int node) {
+		return offsets[node + 1] - offsets[node];
+	}
+
+	/** Returns the number of nodes. */
+	public int getNodeCount() {
+		return offsets.length - 1;
+	}
+
+	/** Returns the number of links. */
+	public int getLinkCount() {
+		return targets.length;
+	}
+
+	/** Returns the offsets of each node's links; the array has one entry
+	 *  more than there are nodes. The array must not be modified. */
+	public int[] getOffsets() {
+		return offsets;
+	}
+
+	/** Returns the target node index of each link. The array must not
+	 *  be modified. */
+	public int[] getTargets() {
+		return targets;
+	}
+
+	/** Returns the type of each link. The array must not be modified. */
+	public int[] getTypes() {
+		return types;
+	}
+
+	/** Returns a link index with all links reversed.
+	 *  @return The new link index. */
+	public LinkIndex reverse() {
+		int[] sources = new int[targets.length];
+		for (int node = 0; node < getNodeCount(); node++)
+			for (int i = offsets[node]; i < offsets[node + 1]; i++)
+				sources[i] = node;
+		return build(getNodeCount(), targets, sources, types);
+	}
+
+}
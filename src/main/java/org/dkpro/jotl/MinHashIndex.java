@@ -0,0 +1,443 @@
+/*******************************************************************************
+ * Copyright 2015
+ * Ubiquitous Knowledge Processing (UKP) Lab
+ * Technische Universität Darmstadt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package org.dkpro.jotl;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * Index for finding synsets with overlapping term sets in near-linear
+ * time. Each synset is represented by the set of the folded keys of its
+ * terms' words (see {@link WordNormalizer#fold(String)}). For each
+ * set, a MinHash signature of <code>bands * rows</code> hash values is
+ * computed, whose agreement estimates the Jaccard similarity of two sets.
+ * The signatures are divided into bands of {@link #getRows()} values;
+ * synsets agreeing in all values of any band are candidates, i.e.,
+ * locality-sensitive hashing (LSH). The candidates are verified by their
+ * exact Jaccard similarity.
+ * <p>
+ * Each band is stored as a sorted array of the band's hash (upper 32 bits)
+ * and the synset index (lower 32 bits), such that the synsets of a bucket
+ * are found by binary search. The index is built from the snapshot active
+ * when it is instanciated; create a new index after refreshing the
+ * snapshot.
+ */
+public class MinHashIndex {
+
+	/** Default number of bands. */
+	public static final int DEFAULT_BANDS = 32;
+
+	/** Default number of hash values per band. */
+	public static final int DEFAULT_ROWS = 4;
+
+	/** Number of synsets per task while building the index. */
+	protected static final int CHUNK_SIZE = 4096;
+
+	protected OTSnapshot snapshot;
+	protected DatabaseStatements dbStatements;
+	protected WordNormalizer normalizer;
+	protected int bands;
+	protected int rows;
+	protected long[] seeds;
+	protected int parallelism = Runtime.getRuntime().availableProcessors();
+
+	protected int[] elementOffsets;
+	protected long[] elements;
+	protected int[] signatures;
+	protected long[][] buckets;
+
+	/** Instanciates a new index for the snapshot of the given thesaurus
+	 *  using the default number of bands and rows.
+	 *  @param openThesaurus The thesaurus; needs an in-memory snapshot.
+	 *  @throws JOTLException if the thesaurus has no snapshot. */
+	public MinHashIndex(final OpenThesaurus openThesaurus) throws JOTLException {
+		this(openThesaurus, DEFAULT_BANDS, DEFAULT_ROWS);
+	}
+
+	/** Instanciates a new index for the snapshot of the given thesaurus.
+	 *  Synsets with a Jaccard similarity of <code>s</code> become
+	 *  candidates with the probability
+	 *  <code>1 - (1 - s^rows)^bands</code>; i.e., more rows reduce the
+	 *  false positives and more bands reduce the false negatives.
+	 *  @param openThesaurus The thesaurus; needs an in-memory snapshot.
+	 *  @param bands The number of bands.
+	 *  @param rows The number of hash values per band.
+	 *  @throws JOTLException if the thesaurus has no snapshot. */
+	public MinHashIndex(final OpenThesaurus openThesaurus, final int bands,
+			final int rows) throws JOTLException {
+		snapshot = openThesaurus.getSnapshot();
+		if (snapshot == null)
+			throw new JOTLException("The MinHash index requires an in-memory"
+					+ " snapshot; see OpenThesaurus.loadSnapshot()");
+
+		dbStatements = openThesaurus.dbStatements;
+		normalizer = WordNormalizer.forLanguage(dbStatements.getLanguage());
+		this.bands = bands;
+		this.rows = rows;
+		seeds = new long[bands * rows];
+		long seed = 0x2545F4914F6CDD1DL;
+		for (int i = 0; i < seeds.length; i++) {
+			seed = seed * 6364136223846793005L + 1442695040888963407L;
+			seeds[i] = seed;
+		}
+		build();
+	}
+
+	/** Computes the element sets, signatures, and buckets in parallel. */
+	protected void build() throws JOTLException {
+		final int synsetCount = snapshot.getNumberOfSynsets();
+		elementOffsets = new int[synsetCount + 1];
+		final long[][] sets = new long[synsetCount][];
+		signatures = new int[synsetCount * seeds.length];
+		List<Callable<Void>> tasks = new ArrayList<Callable<Void>>();
+		for (int start = 0; start < synsetCount; start += CHUNK_SIZE) {
+			final int from = start;
+			final int to = Math.min(start + CHUNK_SIZE, synsetCount);
+			tasks.add(new Callable<Void>() {
+				public Void call() {
+					for (int i = from; i < to; i++) {
+						sets[i] = getElements(snapshot.getSynsetTermIndexes(i));
+						computeSignature(sets[i], signatures, i * seeds.length);
+					}
+					return null;
+				}
+			});
+		}
+		invokeAll(tasks);
+
+		int size = 0;
+		for (int i = 0; i < synsetCount; i++)
+			size += sets[i].length;
+		elements = new long[size];
+		for (int i = 0; i < synsetCount; i++) {
+			System.arraycopy(sets[i], 0, elements, elementOffsets[i], sets[i].length);
+			elementOffsets[i + 1] = elementOffsets[i] + sets[i].length;
+		}
+
+		buckets = new long[bands][];
+		tasks.clear();
+		for (int b = 0; b < bands; b++) {
+			final int band = b;
+			tasks.add(new Callable<Void>() {
+				public Void call() {
+					long[] bucket = new long[synsetCount];
+					int count = 0;
+					for (int i = 0; i < synsetCount; i++)
+						if (elementOffsets[i] < elementOffsets[i + 1])
+							bucket[count++] = ((long) bandHash(signatures,
+									i * seeds.length, band) << 32) | i;
+					bucket = Arrays.copyOf(bucket, count);
+					Arrays.sort(bucket);
+					buckets[band] = bucket;
+					return null;
+				}
+			});
+		}
+		invokeAll(tasks);
+	}
+
+	/** Returns the synsets whose term sets have at least the given Jaccard
+	 *  similarity with the term set of the given synset, except for the
+	 *  given synset itself.
+	 *  @param synset The synset.
+	 *  @param threshold The minimum Jaccard similarity between 0 and 1.
+	 *  @return The synsets in descending order of their similarity; never
+	 *  		null. */
+	public List<OTSynset> similarSynsets(final OTSynset synset,
+			final double threshold) {
+		int synsetIndex = snapshot.getSynsetIndex(synset.getSynsetId());
+		if (synsetIndex < 0)
+			return new ArrayList<OTSynset>();
+
+		long[] set = Arrays.copyOfRange(elements, elementOffsets[synsetIndex],
+				elementOffsets[synsetIndex + 1]);
+		return similarSynsets(set, synsetIndex, threshold);
+	}
+
+	/** Returns the synsets whose term sets have at least the given Jaccard
+	 *  similarity with the given bag of words.
+	 *  @param words The words; compared using their folded keys.
+	 *  @param threshold The minimum Jaccard similarity between 0 and 1.
+	 *  @return The synsets in descending order of their similarity; never
+	 *  		null. */
+	public List<OTSynset> similarSynsets(final Collection<String> words,
+			final double threshold) {
+		long[] set = new long[words.size()];
+		int i = 0;
+		for (String word : words)
+			set[i++] = BloomFilter.hash(normalizer.fold(word));
+		return similarSynsets(toSortedSet(set), -1, threshold);
+	}
+
+	protected List<OTSynset> similarSynsets(final long[] set,
+			final int excludedIndex, final double threshold) {
+		List<OTSynset> result = new ArrayList<OTSynset>();
+		if (set.length == 0)
+			return result;
+
+		int[] signature = new int[seeds.length];
+		computeSignature(set, signature, 0);
+		IntList candidates = new IntList();
+		for (int band = 0; band < bands; band++) {
+			long key = (long) bandHash(signature, 0, band) << 32;
+			long[] bucket = buckets[band];
+			int i = Arrays.binarySearch(bucket, key);
+			if (i < 0)
+				i = -i - 1;
+			for (; i < bucket.length && (bucket[i] >>> 32) == (key >>> 32); i++)
+				candidates.add((int) bucket[i]);
+		}
+
+		final int[] indexes = candidates.toSortedUniqueArray();
+		final double[] similarities = new double[indexes.length];
+		List<Integer> accepted = new ArrayList<Integer>();
+		for (int i = 0; i < indexes.length; i++) {
+			if (indexes[i] == excludedIndex)
+				continue;
+			similarities[i] = jaccard(set, 0, set.length, elements,
+					elementOffsets[indexes[i]], elementOffsets[indexes[i] + 1]);
+			if (similarities[i] >= threshold)
+				accepted.add(i);
+		}
+		Collections.sort(accepted, new Comparator<Integer>() {
+			public int compare(final Integer i1, final Integer i2) {
+				int order = Double.compare(similarities[i2], similarities[i1]);
+				return (order != 0 ? order : i1.compareTo(i2));
+			}
+		});
+		for (int i : accepted)
+			result.add(snapshot.createSynset(indexes[i], dbStatements));
+		return result;
+	}
+
+	/** Finds all pairs of synsets whose term sets have at least the given
+	 *  Jaccard similarity. The bands are scanned for candidate pairs and
+	 *  the candidates are verified in parallel.
+	 *  @param threshold The minimum Jaccard similarity between 0 and 1.
+	 *  @return The pairs of synset ids, where the first id is smaller than
+	 *  		the second one, in ascending order; never null.
+	 *  @throws JOTLException if the computation fails. */
+	public List<int[]> findNearDuplicates(final double threshold)
+			throws JOTLException {
+		// Collect the candidate pairs of all buckets as index pairs.
+		final long[][] bandPairs = new long[bands][];
+		List<Callable<Void>> tasks = new ArrayList<Callable<Void>>();
+		for (int b = 0; b < bands; b++) {
+			final int band = b;
+			tasks.add(new Callable<Void>() {
+				public Void call() {
+					bandPairs[band] = getCandidatePairs(buckets[band]);
+					return null;
+				}
+			});
+		}
+		invokeAll(tasks);
+
+		int size = 0;
+		for (long[] pairs : bandPairs)
+			size += pairs.length;
+		long[] pairs = new long[size];
+		size = 0;
+		for (int b = 0; b < bands; b++) {
+			System.arraycopy(bandPairs[b], 0, pairs, size, bandPairs[b].length);
+			size += bandPairs[b].length;
+			bandPairs[b] = null;
+		}
+		final long[] candidates = toSortedSet(pairs);
+
+		// Verify the candidates.
+		final boolean[] verified = new boolean[candidates.length];
+		tasks.clear();
+		for (int start = 0; start < candidates.length; start += CHUNK_SIZE) {
+			final int from = start;
+			final int to = Math.min(start + CHUNK_SIZE, candidates.length);
+			tasks.add(new Callable<Void>() {
+				public Void call() {
+					for (int i = from; i < to; i++) {
+						int index1 = (int) (candidates[i] >>> 32);
+						int index2 = (int) candidates[i];
+						verified[i] = jaccard(elements, elementOffsets[index1],
+								elementOffsets[index1 + 1], elements,
+								elementOffsets[index2], elementOffsets[index2 + 1])
+								>= threshold;
+					}
+					return null;
+				}
+			});
+		}
+		invokeAll(tasks);
+
+		List<int[]> result = new ArrayList<int[]>();
+		for (int i = 0; i < candidates.length; i++)
+			if (verified[i])
+				result.add(new int[]{
+						snapshot.getSynsetId((int) (candidates[i] >>> 32)),
+						snapshot.getSynsetId((int) candidates[i])});
+		return result;
+	}
+
+	/** Returns all pairs of synset indexes within the buckets of the given
+	 *  band as (smaller index, larger index). */
+	protected static long[] getCandidatePairs(final long[] bucket) {
+		long size = 0;
+		for (int start = 0, end; start < bucket.length; start = end) {
+			end = bucketEnd(bucket, start);
+			size += (long) (end - start) * (end - start - 1) / 2;
+		}
+		if (size > Integer.MAX_VALUE)
+			throw new IllegalStateException("Too many candidate pairs: " + size);
+
+		long[] result = new long[(int) size];
+		int count = 0;
+		for (int start = 0, end; start < bucket.length; start = end) {
+			end = bucketEnd(bucket, start);
+			// Within a bucket, the synset indexes are in ascending order.
+			for (int i = start; i < end; i++)
+				for (int j = i + 1; j < end; j++)
+					result[count++] = ((bucket[i] & 0xFFFFFFFFL) << 32)
+							| (bucket[j] & 0xFFFFFFFFL);
+		}
+		return result;
+	}
+
+	protected static int bucketEnd(final long[] bucket, final int start) {
+		int result = start + 1;
+		while (result < bucket.length && (bucket[result] >>> 32) == (bucket[start] >>> 32))
+			result++;
+		return result;
+	}
+
+	/** Returns the sorted, distinct hashes of the folded keys of the given
+	 *  terms' words. */
+	protected long[] getElements(final int[] termIndexes) {
+		long[] result = new long[termIndexes.length];
+		for (int i = 0; i < termIndexes.length; i++)
+			result[i] = BloomFilter.hash(normalizer.fold(
+					snapshot.getWord(termIndexes[i])));
+		return toSortedSet(result);
+	}
+
+	/** Writes the MinHash signature of the given set into the given array
+	 *  at the given offset. */
+	protected void computeSignature(final long[] set, final int[] signature,
+			final int offset) {
+		for (int h = 0; h < seeds.length; h++) {
+			int min = Integer.MAX_VALUE;
+			for (long element : set)
+				min = Math.min(min, mix(element ^ seeds[h]));
+			signature[offset + h] = min;
+		}
+	}
+
+	/** Combines the hash values of the given band into a single hash. */
+	protected int bandHash(final int[] signature, final int offset,
+			final int band) {
+		long result = band;
+		for (int r = 0; r < rows; r++)
+			result = result * 0x100000001B3L + signature[offset + band * rows + r];
+		return mix(result);
+	}
+
+	/** Returns the upper bits of the avalanched value. */
+	protected static int mix(long value) {
+		value ^= value >>> 33;
+		value *= 0xFF51AFD7ED558CCDL;
+		value ^= value >>> 33;
+		value *= 0xC4CEB9FE1A85EC53L;
+		value ^= value >>> 33;
+		return (int) (value >>> 32) & Integer.MAX_VALUE;
+	}
+
+	/** Computes the Jaccard similarity of two sorted sets. */
+	protected static double jaccard(final long[] set1, final int from1,
+			final int to1, final long[] set2, final int from2, final int to2) {
+		int intersection = 0;
+		int i = from1;
+		int j = from2;
+		while (i < to1 && j < to2) {
+			if (set1[i] < set2[j])
+				i++;
+			else if (set1[i] > set2[j])
+				j++;
+			else {
+				intersection++;
+				i++;
+				j++;
+			}
+		}
+		int union = (to1 - from1) + (to2 - from2) - intersection;
+		return (union == 0 ? 0.0 : (double) intersection / union);
+	}
+
+	protected static long[] toSortedSet(final long[] values) {
+		long[] result = values.clone();
+		Arrays.sort(result);
+		int count = 0;
+		for (int i = 0; i < result.length; i++)
+			if (count == 0 || result[i] != result[count - 1])
+				result[count++] = result[i];
+		return (count == result.length ? result : Arrays.copyOf(result, count));
+	}
+
+	protected void invokeAll(final List<Callable<Void>> tasks)
+			throws JOTLException {
+		ForkJoinPool pool = new ForkJoinPool(parallelism);
+		try {
+			for (Future<Void> future : pool.invokeAll(tasks))
+				future.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new JOTLException("Interrupted while computing MinHash signatures", e);
+		} catch (ExecutionException e) {
+			throw new JOTLException("Unable to compute MinHash signatures", e.getCause());
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+	/** @return The number of bands. */
+	public int getBands() {
+		return bands;
+	}
+
+	/** @return The number of hash values per band. */
+	public int getRows() {
+		return rows;
+	}
+
+	/** @param parallelism The number of threads used by
+	 *  		{@link #findNearDuplicates(double)}; defaults to the number of
+	 *  		available processors. */
+	public void setParallelism(final int parallelism) {
+		this.parallelism = parallelism;
+	}
+
+	/** @return The number of threads used for parallel computations. */
+	public int getParallelism() {
+		return parallelism;
+	}
+
+}
@@ -0,0 +1,97 @@
+/*******************************************************************************
+ * Copyright 2015
+ * Ubiquitous Knowledge Processing (UKP) Lab
+ * Technische Universität Darmstadt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package org.dkpro.jotl;
+
+/**
+ * A weighted term produced by a query expansion. See
+ * {@link OpenThesaurus#expand(String, ExpansionConfiguration)}.
+ */
+public class OTExpansionTerm implements Comparable<OTExpansionTerm> {
+
+	/** The term is a synonym of the expanded word. */
+	public static final int SYNONYM = 0;
+
+	/** The term belongs to a hypernym of one of the word's synsets. */
+	public static final int HYPERNYM = 1;
+
+	/** The term belongs to a hyponym of one of the word's synsets. */
+	public static final int HYPONYM = 2;
+
+	/** The term belongs to an associated synset of one of the word's
+	 *  synsets. */
+	public static final int ASSOCIATION = 3;
+
+	protected String word;
+	protected double weight;
+	protected int relation;
+	protected int depth;
+	protected int termId;
+
+	/** Instanciates a new expansion term. */
+	public OTExpansionTerm(final String word, final double weight,
+			final int relation, final int depth, final int termId) {
+		this.word = word;
+		this.weight = weight;
+		this.relation = relation;
+		this.depth = depth;
+		this.termId = termId;
+	}
+
+	/** Returns the word form of the expansion term. */
+	public String getWord() {
+		return word;
+	}
+
+	/** Returns the weight of the expansion term. Higher weights indicate
+	 *  a closer relationship to the expanded word. */
+	public double getWeight() {
+		return weight;
+	}
+
+	/** Returns the relation by which the term has been found; one of the
+	 *  constants {@link #SYNONYM}, {@link #HYPERNYM}, {@link #HYPONYM}, and
+	 *  {@link #ASSOCIATION}. */
+	public int getRelation() {
+		return relation;
+	}
+
+	/** Returns the number of synset links between the expanded word and the
+	 *  term; 0 for synonyms. */
+	public int getDepth() {
+		return depth;
+	}
+
+	/** Returns the id of the term yielding the highest weight. */
+	public int getTermId() {
+		return termId;
+	}
+
+	/** Orders by descending weight, then by word. */
+	public int compareTo(final OTExpansionTerm other) {
+		int result = Double.compare(other.weight, weight);
+		if (result == 0)
+			result = word.compareTo(other.word);
+		return result;
+	}
+
+	@Override
+	public String toString() {
+		return word + "^" + weight;
+	}
+
+}
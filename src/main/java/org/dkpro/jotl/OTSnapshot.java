@@ -0,0 +1,521 @@
+/*******************************************************************************
+ * Copyright 2015
+ * Ubiquitous Knowledge Processing (UKP) Lab
+ * Technische Universität Darmstadt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package org.dkpro.jotl;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Immutable in-memory copy of the OpenThesaurus data. If a snapshot has
+ * been activated for an {@link OpenThesaurus} instance, all queries are
+ * answered from the snapshot rather than the database. Snapshots are
+ * created by a {@link SnapshotBuilder}, typically using a
+ * {@link SnapshotLoader}, and never change afterwards. A new version of
+ * the data is therefore activated by swapping the entire snapshot, such
+ * that concurrent readers always observe a consistent state.
+ * <p>
+ * Optionally, the words of all terms are stored in a compact
+ * {@link StringArena}, which saves a string object per word and word
+ * index key; the words are then decoded when requested.
+ * <p>
+ * Synsets and terms are identified by their index in the arrays of
+ * ascending synset and term ids. The index-based methods are intended for
+ * algorithms working on the entire thesaurus; use the {@link OpenThesaurus}
+ * API for regular queries.
+ */
+public class OTSnapshot {
+
+	protected int[] synsetIds;
+	protected int[] synsetTermOffsets;
+	protected int[] synsetTerms;
+
+	protected int[] termIds;
+	protected int[] termSynsetIds;
+	protected int[] termSynsetIndexes;
+	protected String[] words;
+	protected String[] normalizedWords;
+	protected int[] termLevels;
+	protected int[] termLanguageIds;
+	protected int[] termGrammarIds;
+	protected BitSet acronyms;
+	protected BitSet shortForms;
+
+	protected StringArena arena;
+	protected int[] wordRefs;
+	protected int[] normalizedWordRefs;
+	protected int[] exactKeyOffsets;
+	protected int[] exactKeyTerms;
+	protected int[] foldedKeyOffsets;
+	protected int[] foldedKeyTerms;
+
+	protected LinkIndex synsetLinks;
+	protected LinkIndex synsetLinksBackwards;
+	protected LinkIndex termLinks;
+
+	protected int[] categoryOffsets;
+	protected OTCategory[] categories;
+	protected int[] tagOffsets;
+	protected String[] tags;
+
+	protected Map<String, int[]> wordIndex;
+	protected Map<String, int[]> foldedWordIndex;
+	protected Map<Integer, BitSet> levelFacets;
+	protected Map<Integer, BitSet> languageFacets;
+	protected Map<Integer, BitSet> grammarFacets;
+	protected ConcurrentMap<String, BitSet> filterCache;
+	protected volatile String checksum;
+
+	/** Instanciates a new snapshot. The fields are initialized by the
+	 *  {@link SnapshotBuilder}, which calls {@link #initIndexes(boolean)}
+	 *  afterwards. */
+	protected OTSnapshot() {}
+
+	/** Initializes the word index and the facet bitsets from the term
+	 *  data.
+	 *  @param compactStrings Move the words and the keys of the word index
+	 *  		into a {@link StringArena} instead of keeping them as separate
+	 *  		string objects. */
+	protected void initIndexes(final boolean compactStrings) {
+		levelFacets = new HashMap<Integer, BitSet>();
+		languageFacets = new HashMap<Integer, BitSet>();
+		grammarFacets = new HashMap<Integer, BitSet>();
+		for (int t = 0; t < termIds.length; t++) {
+			addToFacet(levelFacets, termLevels[t], t);
+			addToFacet(languageFacets, termLanguageIds[t], t);
+			addToFacet(grammarFacets, termGrammarIds[t], t);
+		}
+		filterCache = new ConcurrentHashMap<String, BitSet>();
+
+		if (compactStrings) {
+			initArenaIndex();
+			return;
+		}
+
+		Map<String, IntList> exact = new HashMap<String, IntList>();
+		Map<String, IntList> folded = new HashMap<String, IntList>();
+		for (int t = 0; t < termIds.length; t++) {
+			WordNormalizer normalizer = WordNormalizer.forLanguage(termLanguageIds[t]);
+			String word = getWord(t);
+			String normalizedWord = getNormalizedWord(t);
+			addToIndex(exact, folded, normalizer, word, t);
+			if (normalizedWord != null && !normalizedWord.isEmpty()
+					&& !normalizedWord.equals(word))
+				addToIndex(exact, folded, normalizer, normalizedWord, t);
+		}
+		wordIndex = toArrayMap(exact);
+		foldedWordIndex = toArrayMap(folded);
+	}
+
+	/** Moves the words into a string arena and creates the word index as
+	 *  lists of term indexes per arena reference. */
+	protected void initArenaIndex() {
+		StringArena.Builder builder = new StringArena.Builder();
+		wordRefs = new int[termIds.length];
+		normalizedWordRefs = new int[termIds.length];
+		IntList exactKeys = new IntList();
+		IntList exactTerms = new IntList();
+		IntList foldedKeys = new IntList();
+		IntList foldedTerms = new IntList();
+		for (int t = 0; t < termIds.length; t++) {
+			WordNormalizer normalizer = WordNormalizer.forLanguage(termLanguageIds[t]);
+			String word = words[t];
+			String normalizedWord = normalizedWords[t];
+			wordRefs[t] = builder.add(word);
+			normalizedWordRefs[t] = builder.add(normalizedWord);
+			if (normalizedWord == null || normalizedWord.isEmpty()
+					|| normalizedWord.equals(word))
+				normalizedWord = null;
+
+			int exact1 = builder.add(normalizer.normalize(word));
+			int exact2 = builder.add(normalizer.normalize(normalizedWord));
+			int folded1 = builder.add(normalizer.fold(word));
+			int folded2 = builder.add(normalizer.fold(normalizedWord));
+			addToIndex(exactKeys, exactTerms, exact1, t);
+			if (exact2 != exact1)
+				addToIndex(exactKeys, exactTerms, exact2, t);
+			addToIndex(foldedKeys, foldedTerms, folded1, t);
+			if (folded2 != folded1)
+				addToIndex(foldedKeys, foldedTerms, folded2, t);
+		}
+		arena = builder.build();
+		words = null;
+		normalizedWords = null;
+
+		exactKeyOffsets = new int[arena.size() + 1];
+		exactKeyTerms = toTermIndexes(SnapshotBuilder.groupRows(exactKeys.toArray(),
+				arena.size(), exactKeyOffsets), exactTerms);
+		foldedKeyOffsets = new int[arena.size() + 1];
+		foldedKeyTerms = toTermIndexes(SnapshotBuilder.groupRows(foldedKeys.toArray(),
+				arena.size(), foldedKeyOffsets), foldedTerms);
+	}
+
+	protected static void addToIndex(final IntList keys, final IntList terms,
+			final int key, final int termIndex) {
+		if (key < 0)
+			return;
+
+		keys.add(key);
+		terms.add(termIndex);
+	}
+
+	protected static int[] toTermIndexes(final int[] rows, final IntList terms) {
+		int[] result = new int[rows.length];
+		for (int i = 0; i < rows.length; i++)
+			result[i] = terms.get(rows[i]);
+		return result;
+	}
+
+	protected static void addToIndex(final Map<String, IntList> exact,
+			final Map<String, IntList> folded, final WordNormalizer normalizer,
+			final String word, final int termIndex) {
+		if (word == null)
+			return;
+
+		addToIndex(exact, normalizer.normalize(word), termIndex);
+		addToIndex(folded, normalizer.fold(word), termIndex);
+	}
+
+	protected static void addToIndex(final Map<String, IntList> index,
+			final String key, final int termIndex) {
+		IntList termIndexes = index.get(key);
+		if (termIndexes == null) {
+			termIndexes = new IntList(1);
+			index.put(key, termIndexes);
+		}
+		if (termIndexes.isEmpty()
+				|| termIndexes.get(termIndexes.size() - 1) != termIndex)
+			termIndexes.add(termIndex);
+	}
+
+	protected static void addToFacet(final Map<Integer, BitSet> facets,
+			final int value, final int termIndex) {
+		BitSet facet = facets.get(value);
+		if (facet == null) {
+			facet = new BitSet();
+			facets.put(value, facet);
+		}
+		facet.set(termIndex);
+	}
+
+	protected static Map<String, int[]> toArrayMap(final Map<String, IntList> index) {
+		Map<String, int[]> result = new HashMap<String, int[]>(index.size() * 4 / 3 + 1);
+		for (Map.Entry<String, IntList> entry : index.entrySet())
+			result.put(entry.getKey(), entry.getValue().toArray());
+		return result;
+	}
+
+
+	// -- Synsets --
+
+	/** Returns the number of synsets. */
+	public int getNumberOfSynsets() {
+		return synsetIds.length;
+	}
+
+	/** Returns the index of the synset with the given id or -1 if there is
+	 *  no such synset. */
+	public int getSynsetIndex(final int synsetId) {
+		int result = Arrays.binarySearch(synsetIds, synsetId);
+		return (result < 0 ? -1 : result);
+	}
+
+	/** Returns the id of the synset with the given index. */
+	public int getSynsetId(final int synsetIndex) {
+		return synsetIds[synsetIndex];
+	}
+
+	/** Returns the indexes of the terms contained in the synset with the
+	 *  given index. */
+	public int[] getSynsetTermIndexes(final int synsetIndex) {
+		return Arrays.copyOfRange(synsetTerms, synsetTermOffsets[synsetIndex],
+				synsetTermOffsets[synsetIndex + 1]);
+	}
+
+	/** Returns the categories of the synset with the given index. */
+	public OTCategory[] getCategories(final int synsetIndex) {
+		return Arrays.copyOfRange(categories, categoryOffsets[synsetIndex],
+				categoryOffsets[synsetIndex + 1]);
+	}
+
+	/** Returns the synset links indexed by the source synset index. */
+	public LinkIndex getSynsetLinks() {
+		return synsetLinks;
+	}
+
+	/** Returns the synset links indexed by the target synset index. */
+	public LinkIndex getSynsetLinksBackwards() {
+		return synsetLinksBackwards;
+	}
+
+
+	// -- Terms --
+
+	/** Returns the number of terms. */
+	public int getNumberOfTerms() {
+		return termIds.length;
+	}
+
+	/** Returns the index of the term with the given id or -1 if there is
+	 *  no such term. */
+	public int getTermIndex(final int termId) {
+		int result = Arrays.binarySearch(termIds, termId);
+		return (result < 0 ? -1 : result);
+	}
+
+	/** Returns the id of the term with the given index. */
+	public int getTermId(final int termIndex) {
+		return termIds[termIndex];
+	}
+
+	/** Returns the id of the synset containing the term with the given
+	 *  index. */
+	public int getTermSynsetId(final int termIndex) {
+		return termSynsetIds[termIndex];
+	}
+
+	/** Returns the index of the synset containing the term with the given
+	 *  index or -1 if the synset is not part of the snapshot. */
+	public int getTermSynsetIndex(final int termIndex) {
+		return termSynsetIndexes[termIndex];
+	}
+
+	/** Returns the word of the term with the given index. */
+	public String getWord(final int termIndex) {
+		if (arena == null)
+			return words[termIndex];
+
+		int ref = wordRefs[termIndex];
+		return (ref < 0 ? null : arena.get(ref));
+	}
+
+	/** Returns the normalized word of the term with the given index. */
+	public String getNormalizedWord(final int termIndex) {
+		if (arena == null)
+			return normalizedWords[termIndex];
+
+		int ref = normalizedWordRefs[termIndex];
+		return (ref < 0 ? null : arena.get(ref));
+	}
+
+	/** Returns the string arena storing the words or null, if the words
+	 *  are stored as separate string objects. */
+	public StringArena getStringArena() {
+		return arena;
+	}
+
+	/** Returns the level of the term with the given index. */
+	public int getTermLevel(final int termIndex) {
+		return termLevels[termIndex];
+	}
+
+	/** Returns the language of the term with the given index. */
+	public int getLanguageId(final int termIndex) {
+		return termLanguageIds[termIndex];
+	}
+
+	/** Returns the grammar id of the term with the given index. */
+	public int getGrammarId(final int termIndex) {
+		return termGrammarIds[termIndex];
+	}
+
+	/** Returns true if the term with the given index is an acronym. */
+	public boolean getIsAcronym(final int termIndex) {
+		return acronyms.get(termIndex);
+	}
+
+	/** Returns true if the term with the given index is a short form. */
+	public boolean getIsShortForm(final int termIndex) {
+		return shortForms.get(termIndex);
+	}
+
+	/** Returns the tags of the term with the given index. */
+	public String[] getTags(final int termIndex) {
+		return Arrays.copyOfRange(tags, tagOffsets[termIndex],
+				tagOffsets[termIndex + 1]);
+	}
+
+	/** Returns the term links indexed by the source term index. */
+	public LinkIndex getTermLinks() {
+		return termLinks;
+	}
+
+	/** Returns a checksum of the data of this snapshot, e.g., for deriving
+	 *  HTTP entity tags. Snapshots of equal data have equal checksums,
+	 *  independent of how and when they have been loaded. The checksum is
+	 *  computed from the {@link SnapshotWriter} format on first use.
+	 *  @return The checksum as 16 hexadecimal digits. */
+	public String getChecksum() {
+		String result = checksum;
+		if (result != null)
+			return result;
+
+		try {
+			MessageDigest digest = MessageDigest.getInstance("SHA-1");
+			new SnapshotWriter().write(this, new DigestOutputStream(new OutputStream() {
+				@Override
+				public void write(final int b) {}
+
+				@Override
+				public void write(final byte[] b, final int off, final int len) {}
+			}, digest));
+			byte[] hash = digest.digest();
+			StringBuilder hex = new StringBuilder();
+			for (int i = 0; i < 8; i++)
+				hex.append(String.format("%02x", hash[i] & 0xFF));
+			result = hex.toString();
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		} catch (IOException e) {
+			throw new IllegalStateException(e);
+		}
+		checksum = result;
+		return result;
+	}
+
+	/** Returns the indexes of the terms whose word or normalized word
+	 *  equals the given word. Words are compared in their NFC form or,
+	 *  if case insensitive, using the folded keys of the
+	 *  {@link WordNormalizer} of the language. Either way, the lookup is
+	 *  a single hash probe.
+	 *  @param word The word that is searched for.
+	 *  @param language The language of the terms.
+	 *  @param caseSensitive Compare the words in a case sensitive or case
+	 *  		insensitive manner.
+	 *  @return The term indexes in ascending order; never null. */
+	public int[] getTermIndexesByWord(final String word, final int language,
+			final boolean caseSensitive) {
+		WordNormalizer normalizer = WordNormalizer.forLanguage(language);
+		String key = (caseSensitive ? normalizer.normalize(word)
+				: normalizer.getFoldedKey(word));
+		int[] candidates;
+		if (arena != null) {
+			int ref = arena.indexOf(key);
+			if (ref < 0)
+				return new int[0];
+
+			int[] offsets = (caseSensitive ? exactKeyOffsets : foldedKeyOffsets);
+			candidates = Arrays.copyOfRange(caseSensitive ? exactKeyTerms : foldedKeyTerms,
+					offsets[ref], offsets[ref + 1]);
+		} else
+			candidates = (caseSensitive ? wordIndex.get(key) : foldedWordIndex.get(key));
+		if (candidates == null)
+			return new int[0];
+
+		int count = 0;
+		int[] result = new int[candidates.length];
+		for (int t : candidates)
+			if (termLanguageIds[t] == language)
+				result[count++] = t;
+		return (count == result.length ? result : Arrays.copyOf(result, count));
+	}
+
+	/** Returns the set of term indexes satisfying the given filter. The
+	 *  result is computed from the per-facet bitsets and cached for
+	 *  subsequent calls with an equal filter.
+	 *  @param filter The facet predicates.
+	 *  @return The bitset of accepted term indexes or null, if the filter
+	 *  		accepts all terms. The bitset must not be modified. */
+	public BitSet getTermIndexes(final OTTermFilter filter) {
+		String key = (filter == null ? "" : filter.toSqlCondition(""));
+		if (key.isEmpty())
+			return null;
+
+		BitSet result = filterCache.get(key);
+		if (result != null)
+			return result;
+
+		result = new BitSet(termIds.length);
+		result.set(0, termIds.length);
+		if (filter.getTermLevels() != null) {
+			BitSet levels = union(levelFacets, filter.getTermLevels());
+			if (filter.getTermLevelsExcluded())
+				result.andNot(levels);
+			else
+				result.and(levels);
+		}
+		if (filter.getGrammarIds() != null)
+			result.and(union(grammarFacets, filter.getGrammarIds()));
+		if (filter.getLanguageIds() != null)
+			result.and(union(languageFacets, filter.getLanguageIds()));
+		if (filter.getIsAcronym() != null) {
+			if (filter.getIsAcronym())
+				result.and(acronyms);
+			else
+				result.andNot(acronyms);
+		}
+		if (filter.getIsShortForm() != null) {
+			if (filter.getIsShortForm())
+				result.and(shortForms);
+			else
+				result.andNot(shortForms);
+		}
+		BitSet previous = filterCache.putIfAbsent(key, result);
+		return (previous != null ? previous : result);
+	}
+
+	protected static BitSet union(final Map<Integer, BitSet> facets,
+			final Iterable<Integer> values) {
+		BitSet result = new BitSet();
+		for (Integer value : values) {
+			BitSet facet = facets.get(value);
+			if (facet != null)
+				result.or(facet);
+		}
+		return result;
+	}
+
+
+	// -- API objects --
+
+	/** Creates the API object for the synset with the given index. */
+	protected OTSynset createSynset(final int synsetIndex,
+			final DatabaseStatements dbStatements) {
+		return new OTSynset(synsetIds[synsetIndex], dbStatements);
+	}
+
+	/** Creates the API object for the term with the given index.
+	 *  @param synset The synset containing the term or null, if a new
+	 *  		synset object should be created. */
+	protected OTTerm createTerm(final int termIndex, final OTSynset synset,
+			final DatabaseStatements dbStatements) {
+		if (arena != null)
+			return new OTTerm(termIds[termIndex],
+					(synset != null ? synset : new OTSynset(termSynsetIds[termIndex], dbStatements)),
+					arena, wordRefs[termIndex], normalizedWordRefs[termIndex],
+					termLevels[termIndex], acronyms.get(termIndex),
+					shortForms.get(termIndex), termLanguageIds[termIndex],
+					termGrammarIds[termIndex], dbStatements);
+
+		return new OTTerm(termIds[termIndex],
+				(synset != null ? synset : new OTSynset(termSynsetIds[termIndex], dbStatements)),
+				getWord(termIndex), getNormalizedWord(termIndex),
+				termLevels[termIndex], acronyms.get(termIndex),
+				shortForms.get(termIndex), termLanguageIds[termIndex],
+				termGrammarIds[termIndex], dbStatements);
+	}
+
+}
@@ -20,6 +20,9 @@ package org.dkpro.jotl;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.LinkedHashSet;
 import java.util.Set;
@@ -32,7 +35,7 @@ import java.util.Set;
 public class OTSynset {
 
 	protected int synsetId;
-	protected Set<OTTerm> terms;
+	protected volatile CachedValue<Set<OTTerm>> terms;
 	protected DatabaseStatements dbStatements;
 
 	/** Instanciates a new synset with the given synset id.
@@ -46,16 +49,44 @@ public class OTSynset {
 
 	/** Returns the set of {@link OTTerm}s the synsets contains. That is, a list
 	 *  synonymous word senses. The terms are loaded on demand (lazy
-	 *  initialization).
-	 *  @return The set of terms; never null.
+	 *  initialization) and reloaded once another snapshot is activated.
+	 *  @return The unmodifiable set of terms; never null.
 	 *  @throws JOTLException in case of any errors. */
 	public Set<OTTerm> getTerms() throws JOTLException {
-		if (this.terms != null)
-			return terms;
+		HotKeySet hotKeys = (dbStatements != null ? dbStatements.getHotKeySet() : null);
+		if (hotKeys != null)
+			hotKeys.recordSynset(synsetId);
+		QueryLog log = QueryLog.of(dbStatements);
+		long start = (log != null ? System.nanoTime() : 0L);
+		try {
+			return loadTerms();
+		} finally {
+			if (log != null)
+				log.record(QueryLog.GET_TERMS, start, synsetId, null, 0);
+		}
+	}
 
+	protected Set<OTTerm> loadTerms() throws JOTLException {
 		if (dbStatements == null)
 			throw new JOTLException("Please initialize DBStatements");
 
+		int generation = dbStatements.getSnapshotGeneration();
+		Set<OTTerm> terms = CachedValue.get(this.terms, generation);
+		if (terms != null)
+			return terms;
+
+		OTSnapshot snapshot = dbStatements.getSnapshot();
+		if (snapshot != null) {
+			Set<OTTerm> result = new HashSet<OTTerm>();
+			int synsetIndex = snapshot.getSynsetIndex(synsetId);
+			if (synsetIndex >= 0)
+				for (int termIndex : snapshot.getSynsetTermIndexes(synsetIndex))
+					result.add(snapshot.createTerm(termIndex, this, dbStatements));
+			return Collections.unmodifiableSet(result);
+		}
+
+		// Publish the terms only once they are loaded completely, since
+		// the synset may be shared by several threads.
 		terms = new HashSet<OTTerm>();
 		try {
 			PreparedStatement pstmt = dbStatements.getPreparedStatement("SelectTermBySynset");
@@ -78,45 +109,107 @@ public class OTSynset {
 		} catch(SQLException e) {
 			throw new JOTLException("Unable to initialize set of terms in syset " + synsetId, e);
 		}
+		terms = Collections.unmodifiableSet(terms);
+		this.terms = new CachedValue<Set<OTTerm>>(terms, generation);
 		return terms;
 	}
 
-	/** Returns a set of related synsets. That is, synsets that are connected
-	 *  with the current synsets by means of a synset link of the given type
-	 *  (e.g., hypernymy). Note that links are considered in a directed manner.
-	 *  Use {@link #getSynsetLinksBackwards(int)} for incoming links.
-	 *  @param synsetLinkType The type of link; use the constants defined in
-	 *    {@link OTSynsetLinkType} for choosing this parameter.
-	 *  @return The set of related synsets by this type.
-	 *  @throws JOTLException in case of any errors.
-	 *  @see OTSynsetLinkType */
-	public Set<OTSynset> getSynsetLinks(int synsetLinkType) throws JOTLException {
+	/** Publishes the given terms loaded by a bulk query as the terms of
+	 *  this synset.
+	 *  @param terms The complete set of terms; not modified afterwards.
+	 *  @param generation The snapshot generation read before loading the
+	 *  		terms. */
+	protected void setTerms(final Set<OTTerm> terms, final int generation) {
+		this.terms = new CachedValue<Set<OTTerm>>(
+				Collections.unmodifiableSet(terms), generation);
+	}
+
+	/** Returns the set of {@link OTTerm}s of this synset that satisfy the
+	 *  given filter. The predicates of the filter are evaluated by the
+	 *  database. In contrast to {@link #getTerms()}, the result is not cached
+	 *  unless the filter accepts all terms.
+	 *  @param filter The facet predicates the terms need to satisfy; null
+	 *  		accepts all terms.
+	 *  @return The set of terms; never null.
+	 *  @throws JOTLException in case of any errors. */
+	public Set<OTTerm> getTerms(final OTTermFilter filter) throws JOTLException {
+		if (filter == null || filter.toSqlCondition("").isEmpty())
+			return getTerms();
+		Set<OTTerm> terms = (dbStatements == null ? null : CachedValue.get(
+				this.terms, dbStatements.getSnapshotGeneration()));
+		if (terms != null) {
+			Set<OTTerm> result = new HashSet<OTTerm>();
+			for (OTTerm term : terms)
+				if (filter.accept(term))
+					result.add(term);
+			return result;
+		}
+
 		if (dbStatements == null)
 			throw new JOTLException("Please initialize DBStatements");
 
-		Set<OTSynset> result = new HashSet<OTSynset>();
+		Set<OTTerm> result = new HashSet<OTTerm>();
+		OTSnapshot snapshot = dbStatements.getSnapshot();
+		if (snapshot != null) {
+			BitSet accepted = snapshot.getTermIndexes(filter);
+			int synsetIndex = snapshot.getSynsetIndex(synsetId);
+			if (synsetIndex >= 0)
+				for (int termIndex : snapshot.getSynsetTermIndexes(synsetIndex))
+					if (accepted.get(termIndex))
+						result.add(snapshot.createTerm(termIndex, this, dbStatements));
+			return result;
+		}
+
 		try {
-			PreparedStatement pstmt = dbStatements.getPreparedStatement("SynsetLinks");
+			PreparedStatement pstmt = dbStatements.getPreparedStatement("SelectTermBySynset", filter);
 			pstmt.setInt(1, this.synsetId);
-			pstmt.setInt(2, 0);
-			pstmt.setInt(3, synsetLinkType);
 
 			ResultSet rs = pstmt.executeQuery();
 			try {
-				while (rs.next()) {
-					result.add(new OTSynset(rs.getInt("target_synset_id"), this.dbStatements));
-				}
+				while (rs.next())
+					result.add(OTTerm.createFromResultSet(rs, this, dbStatements));
 			} finally {
 				rs.close();
 				pstmt.clearParameters();
 			}
 		} catch(SQLException e) {
-			throw new JOTLException("Unable to load synset links for synset "
-					+ synsetId + " (type: " + synsetLinkType + ")", e);
+			throw new JOTLException("Unable to load filtered terms in synset " + synsetId, e);
 		}
 		return result;
 	}
 
+	/** Returns a set of related synsets. That is, synsets that are connected
+	 *  with the current synsets by means of a synset link of the given type
+	 *  (e.g., hypernymy). Note that links are considered in a directed manner.
+	 *  Use {@link #getSynsetLinksBackwards(int)} for incoming links.
+	 *  @param synsetLinkType The type of link; use the constants defined in
+	 *    {@link OTSynsetLinkType} for choosing this parameter.
+	 *  @return The set of related synsets by this type.
+	 *  @throws JOTLException in case of any errors.
+	 *  @see OTSynsetLinkType */
+	public Set<OTSynset> getSynsetLinks(int synsetLinkType) throws JOTLException {
+		return getSynsetLinks(new int[]{synsetLinkType});
+	}
+
+	/** Returns a set of synsets that are connected with the current synset
+	 *  by means of a synset link of any of the given types. See
+	 *  {@link #getSynsetLinks(int)}.
+	 *  @param synsetLinkTypes The types of link; use the constants defined
+	 *    in {@link OTSynsetLinkType}. If no type is given, the links of all
+	 *    types are returned.
+	 *  @return The set of related synsets by these types.
+	 *  @throws JOTLException in case of any errors. */
+	public Set<OTSynset> getSynsetLinks(int... synsetLinkTypes) throws JOTLException {
+		QueryLog log = QueryLog.of(dbStatements);
+		long start = (log != null ? System.nanoTime() : 0L);
+		try {
+			return loadSynsetLinks(false, synsetLinkTypes);
+		} finally {
+			if (log != null)
+				log.record(QueryLog.GET_SYNSET_LINKS, start, synsetId, null, 0, synsetLinkTypes);
+		}
+	}
+
 	/** Returns a set of backwardly related synsets. That is, synsets that are
 	 *  connected with the current synsets by means of an inverse synset link
 	 *  of the given type (e.g., hypernymy). Note that links are considered in
@@ -128,37 +221,92 @@ public class OTSynset {
 	 *  @see OTSynsetLinkType */
 	public Set<OTSynset> getSynsetLinksBackwards(int synsetLinkType)
 			throws JOTLException {
+		return getSynsetLinksBackwards(new int[]{synsetLinkType});
+	}
+
+	/** Returns a set of synsets that are connected with the current synset
+	 *  by means of an inverse synset link of any of the given types. See
+	 *  {@link #getSynsetLinksBackwards(int)}.
+	 *  @param synsetLinkTypes The types of link; use the constants defined
+	 *    in {@link OTSynsetLinkType}. If no type is given, the links of all
+	 *    types are returned.
+	 *  @return The set of backwardly related synsets by these types.
+	 *  @throws JOTLException in case of any errors. */
+	public Set<OTSynset> getSynsetLinksBackwards(int... synsetLinkTypes)
+			throws JOTLException {
+		QueryLog log = QueryLog.of(dbStatements);
+		long start = (log != null ? System.nanoTime() : 0L);
+		try {
+			return loadSynsetLinks(true, synsetLinkTypes);
+		} finally {
+			if (log != null)
+				log.record(QueryLog.GET_SYNSET_LINKS_BACKWARDS, start, synsetId, null, 0, synsetLinkTypes);
+		}
+	}
+
+	protected Set<OTSynset> loadSynsetLinks(final boolean backwards,
+			final int[] synsetLinkTypes) throws JOTLException {
 		if (dbStatements == null)
 			throw new JOTLException("Please initialize DBStatements");
 
 		Set<OTSynset> result = new HashSet<OTSynset>();
+		OTSnapshot snapshot = dbStatements.getSnapshot();
+		if (snapshot != null) {
+			int synsetIndex = snapshot.getSynsetIndex(synsetId);
+			LinkIndex links = (backwards ? snapshot.getSynsetLinksBackwards()
+					: snapshot.getSynsetLinks());
+			if (synsetIndex >= 0)
+				for (int target : links.getTargets(synsetIndex, synsetLinkTypes))
+					result.add(snapshot.createSynset(target, dbStatements));
+			return result;
+		}
+
 		try {
-			PreparedStatement pstmt = dbStatements.getPreparedStatement("SynsetLinks");
-			pstmt.setInt(1, 0);
-			pstmt.setInt(2, this.synsetId);
-			pstmt.setInt(3, synsetLinkType);
+			PreparedStatement pstmt = dbStatements.getSynsetLinkStatement(
+					backwards, synsetLinkTypes);
+			pstmt.setInt(1, this.synsetId);
 
 			ResultSet rs = pstmt.executeQuery();
 			try {
 				while (rs.next()) {
-					result.add(new OTSynset(rs.getInt("synset_id"), this.dbStatements));
+					result.add(new OTSynset(rs.getInt(1), this.dbStatements));
 				}
 			} finally {
 				rs.close();
 				pstmt.clearParameters();
 			}
 		} catch(SQLException e) {
-			throw new JOTLException("Unable to load backward synset links for synset "
-					+ synsetId + " (type: " + synsetLinkType + ")", e);
+			throw new JOTLException("Unable to load " + (backwards ? "backward " : "")
+					+ "synset links for synset " + synsetId
+					+ " (types: " + Arrays.toString(synsetLinkTypes) + ")", e);
 		}
 		return result;
 	}
 
 	public Set<OTCategory> getCategories() throws JOTLException {
+		QueryLog log = QueryLog.of(dbStatements);
+		long start = (log != null ? System.nanoTime() : 0L);
+		try {
+			return loadCategories();
+		} finally {
+			if (log != null)
+				log.record(QueryLog.GET_CATEGORIES, start, synsetId, null, 0);
+		}
+	}
+
+	protected Set<OTCategory> loadCategories() throws JOTLException {
 		if (dbStatements == null)
 			throw new JOTLException("Please initialize DBStatements");
 
 		Set<OTCategory> result = new LinkedHashSet<OTCategory>();
+		OTSnapshot snapshot = dbStatements.getSnapshot();
+		if (snapshot != null) {
+			int synsetIndex = snapshot.getSynsetIndex(synsetId);
+			if (synsetIndex >= 0)
+				result.addAll(Arrays.asList(snapshot.getCategories(synsetIndex)));
+			return result;
+		}
+
 		try {
 			PreparedStatement pstmt = dbStatements.getPreparedStatement("SynsetCategories");
 			pstmt.setInt(1, this.synsetId);
@@ -0,0 +1,34 @@
+/*******************************************************************************
+ * Copyright 2015
+ * Ubiquitous Knowledge Processing (UKP) Lab
+ * Technische Universität Darmstadt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package org.dkpro.jotl;
+
+/**
+ * Callback for the synsets reached by a traversal of the synset links; see
+ * {@link OpenThesaurus#traverse(int[], int[], int, int, OTSynsetVisitor)}.
+ */
+public interface OTSynsetVisitor {
+
+	/** Called once for each synset reached by the traversal.
+	 *  @param synsetId The id of the synset.
+	 *  @param depth The minimum number of links between one of the start
+	 *  		synsets and this synset; 0 for the start synsets.
+	 *  @return true if the links of this synset are to be followed.
+	 *  @throws JOTLException to abort the traversal. */
+	boolean visit(int synsetId, int depth) throws JOTLException;
+
+}
@@ -20,8 +20,12 @@ package org.dkpro.jotl;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.LinkedHashSet;
+import java.util.Map;
 import java.util.Set;
 
 /**
@@ -43,6 +47,13 @@ public class OTTerm {
 	protected boolean isShortForm;
 	protected int grammarId;
 
+	protected StringArena arena;
+	protected int wordRef;
+	protected int normalizedWordRef;
+
+	protected volatile CachedValue<Map<Integer, Set<OTTerm>>> termLinks;
+	protected volatile CachedValue<Set<String>> tags;
+
 	protected DatabaseStatements dbStatements;
 
 	/*
@@ -73,22 +84,97 @@ public class OTTerm {
 		this.dbStatements = dbStatements;
 	}
 
+	/** Instanciates a new term whose words are stored in the given string
+	 *  arena. The words are decoded on first access.
+	 *  @param wordRef Reference of the word in the arena or -1.
+	 *  @param normalizedWordRef Reference of the normalized word in the
+	 *  		arena or -1. */
+	protected OTTerm(final int termId, final OTSynset synset,
+			final StringArena arena, final int wordRef,
+			final int normalizedWordRef, final int termLevel,
+			final boolean isAcronym, final boolean isShortForm,
+			final int languageId, final int grammarId,
+			DatabaseStatements dbStatements) {
+		this(termId, synset, null, null, termLevel, isAcronym, isShortForm,
+				languageId, grammarId, dbStatements);
+		this.arena = arena;
+		this.wordRef = wordRef;
+		this.normalizedWordRef = normalizedWordRef;
+	}
+
+	/** Instanciates a new term from the current row of the given result set
+	 *  of a query on the term table.
+	 *  @param rs The result set positioned at the term's row.
+	 *  @param synset The synset containing this term or null, if a new
+	 *  		synset object should be created from the "synset_id" field.
+	 *  @param dbStatements Internal object containing prepared statements.
+	 *  @return The new term.
+	 *  @throws SQLException in case of database errors. */
+	protected static OTTerm createFromResultSet(final ResultSet rs,
+			final OTSynset synset, final DatabaseStatements dbStatements)
+			throws SQLException {
+		return new OTTerm(rs.getInt("id"),
+				(synset != null ? synset : new OTSynset(rs.getInt("synset_id"), dbStatements)),
+				rs.getString("word"), rs.getString("normalized_word"),
+				rs.getInt("level_id"),
+				rs.getInt("is_acronym") > 0, rs.getInt("is_short_form") > 0,
+				rs.getInt("language_id"), rs.getInt("word_grammar_id"),
+				dbStatements);
+	}
+
 	/** Returns a set of related terms. That is, word senses that are connected
 	 *  with the current word sense by means of a term link of the given type
-	 *  (e.g., antonymy).
+	 *  (e.g., antonymy). Use
+	 *  {@link OpenThesaurus#getTermLinks(java.util.Collection, int)} for
+	 *  loading and caching them for many terms at once.
 	 *  @param termLinkType The type of link; use the constants defined in
-	 *  		{@link OTTermLinkType} for choosing this parameter.
+	 *  		{@link OTTermLinkType} for choosing this parameter or 0 for
+	 *  		links of any type.
 	 *  @throws JOTLException in case of any errors.
 	 *  @see OTTermLinkType */
 	public Set<OTTerm> getTermLinks(int termLinkType) throws JOTLException {
+		QueryLog log = QueryLog.of(dbStatements);
+		long start = (log != null ? System.nanoTime() : 0L);
+		try {
+			return loadTermLinks(termLinkType);
+		} finally {
+			if (log != null)
+				log.record(QueryLog.GET_TERM_LINKS, start, termId, null, 0, termLinkType);
+		}
+	}
+
+	protected Set<OTTerm> loadTermLinks(int termLinkType) throws JOTLException {
+		Map<Integer, Set<OTTerm>> termLinks = CachedValue.get(this.termLinks,
+				getSnapshotGeneration());
+		if (termLinks != null && termLinks.containsKey(termLinkType))
+			return termLinks.get(termLinkType);
+
 		if (dbStatements == null)
 			throw new JOTLException("Please initialize DBStatements");
 
 		Set<OTTerm> result = new HashSet<OTTerm>();
+		OTSnapshot snapshot = dbStatements.getSnapshot();
+		if (snapshot != null) {
+			int termIndex = snapshot.getTermIndex(termId);
+			if (termIndex >= 0) {
+				LinkIndex links = snapshot.getTermLinks();
+				int end = links.getEnd(termIndex, termLinkType);
+				for (int i = links.getStart(termIndex, termLinkType); i < end; i++)
+					result.add(snapshot.createTerm(links.getTargets()[i], null, dbStatements));
+			}
+			return result;
+		}
+
 		try {
-			PreparedStatement pstmt = dbStatements.getPreparedStatement("TermLinks");
-			pstmt.setInt(1, this.termId);
-			pstmt.setInt(2, termLinkType);
+			PreparedStatement pstmt;
+			if (termLinkType == 0) {
+				pstmt = dbStatements.getPreparedStatement("TermLinksAnyType");
+				pstmt.setInt(1, this.termId);
+			} else {
+				pstmt = dbStatements.getPreparedStatement("TermLinks");
+				pstmt.setInt(1, this.termId);
+				pstmt.setInt(2, termLinkType);
+			}
 
 			ResultSet rs = pstmt.executeQuery();
 			try {
@@ -112,11 +198,57 @@ public class OTTerm {
 		return result;
 	}
 
+	/** Caches the related terms of the given link type loaded by
+	 *  {@link OpenThesaurus#getTermLinks(java.util.Collection, int)}. The
+	 *  cached sets are unmodifiable and replaced rather than changed, since
+	 *  the term may be shared by several threads. Links cached for another
+	 *  snapshot generation are discarded.
+	 *  @return The cached, unmodifiable set of related terms. */
+	protected synchronized Set<OTTerm> setTermLinks(final int termLinkType,
+			final Set<OTTerm> linkedTerms, final int generation) {
+		Map<Integer, Set<OTTerm>> previous = CachedValue.get(termLinks, generation);
+		Map<Integer, Set<OTTerm>> result = (previous == null
+				? new HashMap<Integer, Set<OTTerm>>()
+				: new HashMap<Integer, Set<OTTerm>>(previous));
+		Set<OTTerm> linkedTermSet = Collections.unmodifiableSet(linkedTerms);
+		result.put(termLinkType, linkedTermSet);
+		termLinks = new CachedValue<Map<Integer, Set<OTTerm>>>(result, generation);
+		return linkedTermSet;
+	}
+
+	/** Returns the tags of this term, e.g., "umgangssprachlich". Use
+	 *  {@link OpenThesaurus#getTags(java.util.Collection)} for loading and
+	 *  caching them for many terms at once.
+	 *  @return The set of tags; never null.
+	 *  @throws JOTLException in case of any errors. */
 	public Set<String> getTags() throws JOTLException {
+		QueryLog log = QueryLog.of(dbStatements);
+		long start = (log != null ? System.nanoTime() : 0L);
+		try {
+			return loadTags();
+		} finally {
+			if (log != null)
+				log.record(QueryLog.GET_TAGS, start, termId, null, 0);
+		}
+	}
+
+	protected Set<String> loadTags() throws JOTLException {
+		Set<String> tags = CachedValue.get(this.tags, getSnapshotGeneration());
+		if (tags != null)
+			return tags;
+
 		if (dbStatements == null)
 			throw new JOTLException("Please initialize DBStatements");
 
 		Set<String> result = new LinkedHashSet<String>();
+		OTSnapshot snapshot = dbStatements.getSnapshot();
+		if (snapshot != null) {
+			int termIndex = snapshot.getTermIndex(termId);
+			if (termIndex >= 0)
+				result.addAll(Arrays.asList(snapshot.getTags(termIndex)));
+			return result;
+		}
+
 		try {
 			PreparedStatement pstmt = dbStatements.getPreparedStatement("TermTags");
 			pstmt.setInt(1, this.termId);
@@ -136,6 +268,22 @@ public class OTTerm {
 		return result;
 	}
 
+	/** Caches the tags loaded by
+	 *  {@link OpenThesaurus#getTags(java.util.Collection)} as an
+	 *  unmodifiable set.
+	 *  @return The cached set of tags. */
+	protected Set<String> setTags(final Set<String> tags, final int generation) {
+		Set<String> result = Collections.unmodifiableSet(tags);
+		this.tags = new CachedValue<Set<String>>(result, generation);
+		return result;
+	}
+
+	/** @return The current snapshot generation; see
+	 *  		{@link DatabaseStatements#getSnapshotGeneration()}. */
+	protected int getSnapshotGeneration() {
+		return (dbStatements == null ? 0 : dbStatements.getSnapshotGeneration());
+	}
+
 	/** Returns a unique identifier for this term that is used internally
 	 *  by OpenThesaurus.
 	 *  @return The term identifier. */
@@ -151,10 +299,14 @@ public class OTTerm {
 	/** Returns the word that this term represents, i.e., the written form of
 	 *  this word sense. */
 	public String getWord() {
+		if (word == null && arena != null && wordRef >= 0)
+			word = arena.get(wordRef);
 		return word;
 	}
 
 	public String getNormalizedWord() {
+		if (normalizedWord == null && arena != null && normalizedWordRef >= 0)
+			normalizedWord = arena.get(normalizedWordRef);
 		return normalizedWord;
 	}
 
@@ -182,7 +334,7 @@ public class OTTerm {
 	 *  consists of the term id and the word. */
 	@Override
 	public String toString() {
-		return this.word+"#"+this.termId;
+		return getWord()+"#"+this.termId;
 	}
 
 	@Override
@@ -0,0 +1,234 @@
+/*******************************************************************************
+ * Copyright 2015
+ * Ubiquitous Knowledge Processing (UKP) Lab
+ * Technische Universität Darmstadt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package org.dkpro.jotl;
+
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Facet predicates for restricting the terms returned by a query. A filter
+ * can restrict the term level (see {@link OTTermLevelType}), the grammar id,
+ * the language (see {@link OTLanguage}), and the acronym and short form
+ * flags. All predicates are combined conjunctively; predicates that have
+ * not been set do not restrict the result. The predicates are translated
+ * into the where clause of the database query, such that non-matching
+ * terms are never loaded. Terms without a level have the level 0.
+ * Example: <code>new OTTermFilter().excludeTermLevels(OTTermLevelType.RUDE,
+ * OTTermLevelType.VULGAR).setIsAcronym(false)</code>.
+ */
+public class OTTermFilter {
+
+	protected Set<Integer> termLevels;
+	protected boolean termLevelsExcluded;
+	protected Set<Integer> grammarIds;
+	protected Set<Integer> languageIds;
+	protected Boolean isAcronym;
+	protected Boolean isShortForm;
+
+	/** Instanciates a new filter accepting all terms. Use the setters to
+	 *  define the facet predicates. */
+	public OTTermFilter() {}
+
+	/** Only accept terms having one of the given levels.
+	 *  @param termLevels The accepted term levels; use the constants defined
+	 *  		in {@link OTTermLevelType} or 0 for terms without a level.
+	 *  @return This filter. */
+	public OTTermFilter setTermLevels(final int... termLevels) {
+		this.termLevels = toSet(termLevels);
+		this.termLevelsExcluded = false;
+		return this;
+	}
+
+	/** Reject terms having one of the given levels.
+	 *  @param termLevels The rejected term levels; use the constants defined
+	 *  		in {@link OTTermLevelType} or 0 for terms without a level.
+	 *  @return This filter. */
+	public OTTermFilter excludeTermLevels(final int... termLevels) {
+		this.termLevels = toSet(termLevels);
+		this.termLevelsExcluded = true;
+		return this;
+	}
+
+	/** Only accept terms having one of the given grammar ids.
+	 *  @return This filter. */
+	public OTTermFilter setGrammarIds(final int... grammarIds) {
+		this.grammarIds = toSet(grammarIds);
+		return this;
+	}
+
+	/** Only accept terms of the given languages.
+	 *  @param languageIds The accepted languages; use the constants defined
+	 *  		in {@link OTLanguage}.
+	 *  @return This filter. */
+	public OTTermFilter setLanguageIds(final int... languageIds) {
+		this.languageIds = toSet(languageIds);
+		return this;
+	}
+
+	/** Only accept acronyms (true), non-acronyms (false), or both (null).
+	 *  @return This filter. */
+	public OTTermFilter setIsAcronym(final Boolean isAcronym) {
+		this.isAcronym = isAcronym;
+		return this;
+	}
+
+	/** Only accept short forms (true), other terms (false), or both (null).
+	 *  @return This filter. */
+	public OTTermFilter setIsShortForm(final Boolean isShortForm) {
+		this.isShortForm = isShortForm;
+		return this;
+	}
+
+	/** @return The term levels restricted by this filter or null. */
+	public Set<Integer> getTermLevels() {
+		return termLevels;
+	}
+
+	/** @return true if the term levels returned by {@link #getTermLevels()}
+	 *  		are rejected rather than accepted. */
+	public boolean getTermLevelsExcluded() {
+		return termLevelsExcluded;
+	}
+
+	/** @return The accepted grammar ids or null. */
+	public Set<Integer> getGrammarIds() {
+		return grammarIds;
+	}
+
+	/** @return The accepted languages or null. */
+	public Set<Integer> getLanguageIds() {
+		return languageIds;
+	}
+
+	/** @return The required acronym flag or null. */
+	public Boolean getIsAcronym() {
+		return isAcronym;
+	}
+
+	/** @return The required short form flag or null. */
+	public Boolean getIsShortForm() {
+		return isShortForm;
+	}
+
+	/** Checks the predicates against an already loaded term.
+	 *  @param term The term to be checked.
+	 *  @return true if the term satisfies all predicates of this filter. */
+	public boolean accept(final OTTerm term) {
+		if (termLevels != null
+				&& termLevels.contains(term.getTermLevel()) == termLevelsExcluded)
+			return false;
+		if (grammarIds != null && !grammarIds.contains(term.getGrammarId()))
+			return false;
+		if (languageIds != null && !languageIds.contains(term.getLanguageId()))
+			return false;
+		if (isAcronym != null && isAcronym.booleanValue() != term.getIsAcronym())
+			return false;
+		if (isShortForm != null && isShortForm.booleanValue() != term.getIsShortForm())
+			return false;
+		return true;
+	}
+
+	/** Translates the predicates into a condition for the where clause of
+	 *  a query on the term table. The condition only contains numerical
+	 *  literals and is therefore safe to be embedded into a prepared
+	 *  statement.
+	 *  @param alias The name or alias of the term table in the query.
+	 *  @return The condition starting with " AND " or an empty string if the
+	 *  		filter accepts all terms. */
+	public String toSqlCondition(final String alias) {
+		String prefix = (alias == null || alias.isEmpty() ? "" : alias + ".");
+		StringBuilder result = new StringBuilder();
+		if (termLevels != null && !(termLevelsExcluded && termLevels.isEmpty())) {
+			// Terms without a level are stored as NULL.
+			Set<Integer> levels = new TreeSet<Integer>(termLevels);
+			levels.remove(0);
+			boolean nullMatches = termLevels.contains(0) != termLevelsExcluded;
+			result.append(" AND (");
+			if (levels.isEmpty())
+				result.append(termLevelsExcluded ? "1=1" : "1=0");
+			else
+				result.append(prefix).append("level_id")
+						.append(termLevelsExcluded ? " NOT IN " : " IN ")
+						.append(toSqlList(levels));
+			result.append(nullMatches ? " OR " : " AND ")
+					.append(prefix).append("level_id")
+					.append(nullMatches ? " IS NULL)" : " IS NOT NULL)");
+		}
+		if (grammarIds != null) {
+			result.append(" AND ");
+			if (grammarIds.contains(0))
+				result.append("(").append(prefix).append("word_grammar_id IS NULL OR ");
+			result.append(prefix).append("word_grammar_id IN ")
+					.append(toSqlList(grammarIds));
+			if (grammarIds.contains(0))
+				result.append(")");
+		}
+		if (languageIds != null)
+			result.append(" AND ").append(prefix).append("language_id IN ")
+					.append(toSqlList(languageIds));
+		if (isAcronym != null)
+			result.append(" AND ").append(prefix).append("is_acronym")
+					.append(isAcronym ? "<>0" : "=0");
+		if (isShortForm != null)
+			result.append(" AND ").append(prefix).append("is_short_form")
+					.append(isShortForm ? "<>0" : "=0");
+		return result.toString();
+	}
+
+	protected static Set<Integer> toSet(final int[] values) {
+		Set<Integer> result = new TreeSet<Integer>();
+		for (int value : values)
+			result.add(value);
+		return result;
+	}
+
+	protected static String toSqlList(final Set<Integer> values) {
+		if (values.isEmpty())
+			return "(NULL)";
+
+		StringBuilder result = new StringBuilder("(");
+		for (Integer value : values) {
+			if (result.length() > 1)
+				result.append(",");
+			result.append(value);
+		}
+		return result.append(")").toString();
+	}
+
+	@Override
+	public String toString() {
+		return toSqlCondition("");
+	}
+
+	@Override
+	public int hashCode() {
+		return toSqlCondition("").hashCode();
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj)
+			return true;
+		if (obj == null)
+			return false;
+		if (getClass() != obj.getClass())
+			return false;
+		return toSqlCondition("").equals(((OTTermFilter) obj).toSqlCondition(""));
+	}
+
+}
@@ -0,0 +1,37 @@
+/*******************************************************************************
+ * Copyright 2015
+ * Ubiquitous Knowledge Processing (UKP) Lab
+ * Technische Universität Darmstadt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package org.dkpro.jotl;
+
+/**
+ * Set of constants for the direction in which synset links are followed
+ * by {@link OpenThesaurus#traverse(int[], int[], int, int, OTSynsetVisitor)}.
+ */
+public final class OTTraversalDirection {
+
+	/** Follow the links from their source to their target (e.g., from a
+	 *  synset to its hypernyms). */
+	public static final int FORWARD = 1;
+
+	/** Follow the links from their target to their source (e.g., from a
+	 *  synset to its hyponyms). */
+	public static final int BACKWARD = 2;
+
+	/** Follow the links in both directions. */
+	public static final int BOTH = 3;
+
+}
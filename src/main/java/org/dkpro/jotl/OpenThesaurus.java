@@ -17,11 +17,34 @@
  ******************************************************************************/
 package org.dkpro.jotl;
 
+import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 /**
  * Main access point to OpenThesaurus data. Use this class to establish a
@@ -29,8 +52,25 @@ import java.util.Set;
  */
 public class OpenThesaurus {
 
+	/** Default number of query expansions kept in the expansion cache. */
+	public static final int DEFAULT_EXPANSION_CACHE_SIZE = 10000;
+
+	protected static final Logger LOGGER = Logger.getLogger(OpenThesaurus.class.getName());
+
 	protected DatabaseConfiguration dbConfig;
 	protected DatabaseStatements dbStatements;
+	protected LRUCache<List<Object>, List<OTExpansionTerm>> expansionCache;
+	protected LRUCache<List<Object>, Set<OTTerm>> termCache
+			= new LRUCache<List<Object>, Set<OTTerm>>(0);
+	protected LRUCache<Integer, OTSynset> synsetCache
+			= new LRUCache<Integer, OTSynset>(0);
+	protected volatile SenseRanker senseRanker;
+	protected ScheduledExecutorService refreshExecutor;
+	protected boolean compactSnapshots;
+	protected int snapshotConnections = 1;
+	protected boolean useWordFilter;
+	protected Map<Integer, BloomFilter> wordFilters
+			= new ConcurrentHashMap<Integer, BloomFilter>();
 
 	/** Initializes the OpenThesaurus API using the given database
 	 *  configuration. Queries will be performed in a case insensitive
@@ -56,7 +96,9 @@ public class OpenThesaurus {
 	 *  		database or invalid user credentials. */
 	public OpenThesaurus(final DatabaseConfiguration dbConfig,
 			final boolean caseSensitive) throws JOTLException {
-		this.dbConfig = dbConfig;
+		this.dbConfig = new DatabaseConfiguration(dbConfig);
+		expansionCache = new LRUCache<List<Object>, List<OTExpansionTerm>>(
+				DEFAULT_EXPANSION_CACHE_SIZE);
 		try {
 			dbStatements = new DatabaseStatements(dbConfig, caseSensitive);
 		} catch (SQLException e) {
@@ -64,6 +106,58 @@ public class OpenThesaurus {
 		}
 	}
 
+	/** Initializes the OpenThesaurus API using several replicas of the
+	 *  OpenThesaurus database. The queries are distributed among the
+	 *  replicas based on their load and latency; slow queries are hedged
+	 *  and failing replicas are ejected temporarily. Use
+	 *  {@link #getReplicaRouter()} for adjusting these strategies. The
+	 *  first replica is used for loading snapshots.
+	 *  @param dbConfigs Database configurations of the replicas; the
+	 *  		language of the first one is used for queries.
+	 *  @param caseSensitive Perform database queries in a case sensitive or
+	 *  		case insensitive manner.
+	 *  @throws JOTLException in case of any errors, e.g., unreachable
+	 *  		database or invalid user credentials. */
+	public OpenThesaurus(final List<DatabaseConfiguration> dbConfigs,
+			final boolean caseSensitive) throws JOTLException {
+		if (dbConfigs.isEmpty())
+			throw new IllegalArgumentException("No database configuration given");
+
+		this.dbConfig = new DatabaseConfiguration(dbConfigs.get(0));
+		expansionCache = new LRUCache<List<Object>, List<OTExpansionTerm>>(
+				DEFAULT_EXPANSION_CACHE_SIZE);
+		try {
+			dbStatements = new DatabaseStatements(dbConfigs, caseSensitive);
+		} catch (SQLException e) {
+			throw new JOTLException("Error connecting to the OpenThesaurus databases", e);
+		}
+	}
+
+	/** Initializes the OpenThesaurus API without a database. All queries
+	 *  are answered by the given in-memory snapshot, which can, e.g., be
+	 *  read from a file or class path resource by a {@link SnapshotReader}.
+	 *  Queries will be performed in a case insensitive manner.
+	 *  @param snapshot The OpenThesaurus data.
+	 *  @param language The default language of queries; use one of the
+	 *  		constants in {@link OTLanguage}. */
+	public OpenThesaurus(final OTSnapshot snapshot, final int language) {
+		this(snapshot, language, false);
+	}
+
+	/** Initializes the OpenThesaurus API without a database. All queries
+	 *  are answered by the given in-memory snapshot.
+	 *  @param snapshot The OpenThesaurus data.
+	 *  @param language The default language of queries; use one of the
+	 *  		constants in {@link OTLanguage}.
+	 *  @param caseSensitive Perform queries in a case sensitive or
+	 *  		case insensitive manner. */
+	public OpenThesaurus(final OTSnapshot snapshot, final int language,
+			final boolean caseSensitive) {
+		expansionCache = new LRUCache<List<Object>, List<OTExpansionTerm>>(
+				DEFAULT_EXPANSION_CACHE_SIZE);
+		dbStatements = new DatabaseStatements(snapshot, language, caseSensitive);
+	}
+
 	/** Returns the {@link OTTerm} with the given id.
 	 *  @param termId The numerical id used internally to uniquely
 	 *  		identify terms in OpenThesaurus.
@@ -71,6 +165,23 @@ public class OpenThesaurus {
 	 *  		be found.
 	 *  @throws JOTLException in case of any errors. */
 	public OTTerm getTermById(final int termId) throws JOTLException {
+		QueryLog log = QueryLog.of(dbStatements);
+		long start = (log != null ? System.nanoTime() : 0L);
+		try {
+			return loadTermById(termId);
+		} finally {
+			if (log != null)
+				log.record(QueryLog.GET_TERM_BY_ID, start, termId, null, 0);
+		}
+	}
+
+	protected OTTerm loadTermById(final int termId) throws JOTLException {
+		OTSnapshot snapshot = dbStatements.getSnapshot();
+		if (snapshot != null) {
+			int termIndex = snapshot.getTermIndex(termId);
+			return (termIndex < 0 ? null : snapshot.createTerm(termIndex, null, dbStatements));
+		}
+
 		OTTerm result = null;
 		try {
 			PreparedStatement pstmt = dbStatements.getPreparedStatement("SelectTermById");
@@ -107,23 +218,100 @@ public class OpenThesaurus {
 	 *  		but is never null.
 	 *  @throws JOTLException in case of any errors. */
 	public Set<OTTerm> getTermsByWord(final String word) throws JOTLException {
+		return getTermsByWord(word, dbStatements.getLanguage(), null);
+	}
+
+	/** Returns a set of terms with the given word in the given language.
+	 *  Besides the language, the method behaves like
+	 *  {@link #getTermsByWord(String)}. Use this method to query several
+	 *  languages with the same database connection.
+	 *  @param word The word that is searched for.
+	 *  @param language The language of the terms; use the constants defined
+	 *  		in {@link OTLanguage}.
+	 *  @return The resulting set of terms. The list might be empty,
+	 *  		but is never null.
+	 *  @throws JOTLException in case of any errors. */
+	public Set<OTTerm> getTermsByWord(final String word, final int language)
+			throws JOTLException {
+		return getTermsByWord(word, language, null);
+	}
+
+	/** Returns a set of terms with the given word that satisfy the given
+	 *  filter. The predicates of the filter are evaluated by the database
+	 *  such that no terms are loaded that would be discarded afterwards.
+	 *  Besides the filter, the method behaves like
+	 *  {@link #getTermsByWord(String)}.
+	 *  @param word The word that is searched for.
+	 *  @param filter The facet predicates the terms need to satisfy; null
+	 *  		accepts all terms.
+	 *  @return The resulting set of terms. The list might be empty,
+	 *  		but is never null.
+	 *  @throws JOTLException in case of any errors. */
+	public Set<OTTerm> getTermsByWord(final String word,
+			final OTTermFilter filter) throws JOTLException {
+		return getTermsByWord(word, dbStatements.getLanguage(), filter);
+	}
+
+	/** Returns a set of terms with the given word in the given language
+	 *  that satisfy the given filter. See {@link #getTermsByWord(String, int)}
+	 *  and {@link #getTermsByWord(String, OTTermFilter)}.
+	 *  @param word The word that is searched for.
+	 *  @param language The language of the terms; use the constants defined
+	 *  		in {@link OTLanguage}.
+	 *  @param filter The facet predicates the terms need to satisfy; null
+	 *  		accepts all terms.
+	 *  @return The resulting set of terms. The list might be empty,
+	 *  		but is never null.
+	 *  @throws JOTLException in case of any errors. */
+	public Set<OTTerm> getTermsByWord(final String word, final int language,
+			final OTTermFilter filter) throws JOTLException {
+		HotKeySet hotKeys = dbStatements.getHotKeySet();
+		if (hotKeys != null)
+			hotKeys.recordWord(word, language);
+		QueryLog log = QueryLog.of(dbStatements);
+		long start = (log != null ? System.nanoTime() : 0L);
+		try {
+			return loadTermsByWord(word, language, filter);
+		} finally {
+			if (log != null)
+				log.record(QueryLog.GET_TERMS_BY_WORD, start, 0, word, language,
+						filter, null);
+		}
+	}
+
+	protected Set<OTTerm> loadTermsByWord(final String word, final int language,
+			final OTTermFilter filter) throws JOTLException {
 		Set<OTTerm> result = new HashSet<OTTerm>();
+		OTSnapshot snapshot = dbStatements.getSnapshot();
+		if (snapshot != null) {
+			BitSet accepted = snapshot.getTermIndexes(filter);
+			for (int termIndex : snapshot.getTermIndexesByWord(word, language, getIsCaseSensitive()))
+				if (accepted == null || accepted.get(termIndex))
+					result.add(snapshot.createTerm(termIndex, null, dbStatements));
+			return result;
+		}
+
+		if (!mightContainWord(word, language))
+			return result;
+
+		List<Object> key = getTermCacheKey(word, language, filter);
+		synchronized (termCache) {
+			Set<OTTerm> cached = termCache.get(key);
+			if (cached != null)
+				return new HashSet<OTTerm>(cached);
+		}
+
 		try {
-			PreparedStatement pstmt = dbStatements.getPreparedStatement("SelectTermByWord");
-			pstmt.setString(1, word);
-			pstmt.setString(2, word);
+			PreparedStatement pstmt = dbStatements.getPreparedStatement("SelectTermByWord", filter);
+			String normalizedWord = WordNormalizer.forLanguage(language).normalize(word);
+			pstmt.setString(1, normalizedWord);
+			pstmt.setString(2, normalizedWord);
+			pstmt.setInt(3, language);
 
 			ResultSet rs = pstmt.executeQuery();
 			try {
-				while (rs.next()) {
-					result.add(new OTTerm(rs.getInt("id"),
-							new OTSynset(rs.getInt("synset_id"), dbStatements),
-							rs.getString("word"), rs.getString("normalized_word"),
-							rs.getInt("level_id"),
-							rs.getInt("is_acronym") > 0, rs.getInt("is_short_form") > 0,
-							rs.getInt("language_id"), rs.getInt("word_grammar_id"),
-							dbStatements));
-				}
+				while (rs.next())
+					result.add(OTTerm.createFromResultSet(rs, null, dbStatements));
 				pstmt.clearParameters();
 			} finally {
 				rs.close();
@@ -131,6 +319,10 @@ public class OpenThesaurus {
 		} catch(SQLException e) {
 			throw new JOTLException("Error while querying for a term with word '" + word + "'", e);
 		}
+		synchronized (termCache) {
+			if (termCache.getCapacity() > 0)
+				termCache.put(key, new HashSet<OTTerm>(result));
+		}
 		return result;
 	}
 
@@ -141,7 +333,33 @@ public class OpenThesaurus {
 	 *  		be found.
 	 *  @throws JOTLException in case of any errors. */
 	public OTSynset getSynsetById(final int synsetId) throws JOTLException {
-		OTSynset result = null;
+		HotKeySet hotKeys = dbStatements.getHotKeySet();
+		if (hotKeys != null)
+			hotKeys.recordSynset(synsetId);
+		QueryLog log = QueryLog.of(dbStatements);
+		long start = (log != null ? System.nanoTime() : 0L);
+		try {
+			return loadSynsetById(synsetId);
+		} finally {
+			if (log != null)
+				log.record(QueryLog.GET_SYNSET_BY_ID, start, synsetId, null, 0);
+		}
+	}
+
+	protected OTSynset loadSynsetById(final int synsetId) throws JOTLException {
+		OTSnapshot snapshot = dbStatements.getSnapshot();
+		if (snapshot != null) {
+			int synsetIndex = snapshot.getSynsetIndex(synsetId);
+			return (synsetIndex < 0 ? null : snapshot.createSynset(synsetIndex, dbStatements));
+		}
+
+		OTSynset result;
+		synchronized (synsetCache) {
+			result = synsetCache.get(synsetId);
+		}
+		if (result != null)
+			return result;
+
 		try {
 			PreparedStatement pstmt = dbStatements.getPreparedStatement("SelectSynset");
 			pstmt.setInt(1, synsetId);
@@ -159,6 +377,11 @@ public class OpenThesaurus {
 			throw new JOTLException("Error while querying for a synset with id " + synsetId, e);
 		}
 
+		if (result != null)
+			synchronized (synsetCache) {
+				if (synsetCache.getCapacity() > 0)
+					synsetCache.put(synsetId, result);
+			}
 		return result;
 	}
 
@@ -174,16 +397,89 @@ public class OpenThesaurus {
 	 *  @throws JOTLException in case of any errors. */
 	public Set<OTSynset> getSynsetsByWord(final String word)
 			throws JOTLException{
+		return getSynsetsByWord(word, dbStatements.getLanguage(), null);
+	}
+
+	/** Returns a set of synsets that each contain the given word in the
+	 *  given language as one of their synonyms. Besides the language, the
+	 *  method behaves like {@link #getSynsetsByWord(String)}.
+	 *  @param word The word that is to be contained in the synsets.
+	 *  @param language The language of the word; use the constants defined
+	 *  		in {@link OTLanguage}.
+	 *  @return The resulting set of synsets. The list might be empty,
+	 *  		but is never null.
+	 *  @throws JOTLException in case of any errors. */
+	public Set<OTSynset> getSynsetsByWord(final String word, final int language)
+			throws JOTLException {
+		return getSynsetsByWord(word, language, null);
+	}
+
+	/** Returns a set of synsets that each contain the given word as one of
+	 *  their synonyms and whose corresponding term satisfies the given
+	 *  filter. Besides the filter, the method behaves like
+	 *  {@link #getSynsetsByWord(String)}.
+	 *  @param word The word that is to be contained in the synsets.
+	 *  @param filter The facet predicates the term representing the word
+	 *  		needs to satisfy; null accepts all terms.
+	 *  @return The resulting set of synsets. The list might be empty,
+	 *  		but is never null.
+	 *  @throws JOTLException in case of any errors. */
+	public Set<OTSynset> getSynsetsByWord(final String word,
+			final OTTermFilter filter) throws JOTLException {
+		return getSynsetsByWord(word, dbStatements.getLanguage(), filter);
+	}
+
+	/** Returns a set of synsets that each contain the given word in the
+	 *  given language as one of their synonyms and whose corresponding term
+	 *  satisfies the given filter. See {@link #getSynsetsByWord(String, int)}
+	 *  and {@link #getSynsetsByWord(String, OTTermFilter)}.
+	 *  @param word The word that is to be contained in the synsets.
+	 *  @param language The language of the word; use the constants defined
+	 *  		in {@link OTLanguage}.
+	 *  @param filter The facet predicates the term representing the word
+	 *  		needs to satisfy; null accepts all terms.
+	 *  @return The resulting set of synsets. The list might be empty,
+	 *  		but is never null.
+	 *  @throws JOTLException in case of any errors. */
+	public Set<OTSynset> getSynsetsByWord(final String word, final int language,
+			final OTTermFilter filter) throws JOTLException {
+		QueryLog log = QueryLog.of(dbStatements);
+		long start = (log != null ? System.nanoTime() : 0L);
+		try {
+			return loadSynsetsByWord(word, language, filter);
+		} finally {
+			if (log != null)
+				log.record(QueryLog.GET_SYNSETS_BY_WORD, start, 0, word, language,
+						filter, null);
+		}
+	}
+
+	protected Set<OTSynset> loadSynsetsByWord(final String word, final int language,
+			final OTTermFilter filter) throws JOTLException {
 		Set<OTSynset> result = new HashSet<OTSynset>();
+		OTSnapshot snapshot = dbStatements.getSnapshot();
+		if (snapshot != null) {
+			BitSet accepted = snapshot.getTermIndexes(filter);
+			for (int termIndex : snapshot.getTermIndexesByWord(word, language, getIsCaseSensitive()))
+				if (accepted == null || accepted.get(termIndex))
+					result.add(new OTSynset(snapshot.getTermSynsetId(termIndex), dbStatements));
+			return result;
+		}
+
+		if (!mightContainWord(word, language))
+			return result;
+
 		try {
-			PreparedStatement pstmt = dbStatements.getPreparedStatement("SelectTermByWord");
-			pstmt.setString(1, word);
-			pstmt.setString(2, word);
+			PreparedStatement pstmt = dbStatements.getPreparedStatement("SelectSynsetIdByWord", filter);
+			String normalizedWord = WordNormalizer.forLanguage(language).normalize(word);
+			pstmt.setString(1, normalizedWord);
+			pstmt.setString(2, normalizedWord);
+			pstmt.setInt(3, language);
 
 			ResultSet rs = pstmt.executeQuery();
 			try {
 				while (rs.next()) {
-					result.add(new OTSynset(rs.getInt("synset_id"), dbStatements));
+					result.add(new OTSynset(rs.getInt(1), dbStatements));
 				}
 				pstmt.clearParameters();
 			} finally {
@@ -195,6 +491,38 @@ public class OpenThesaurus {
 		return result;
 	}
 
+	/** Returns the synsets that each contain the given word ranked by
+	 *  their fit to the given context. The senses are scored by the
+	 *  number of context tokens contained in their signature, which
+	 *  comprises their terms, the terms of their neighbours, and their
+	 *  categories. The signatures are computed once per snapshot by a
+	 *  {@link SenseRanker}, which can also be used directly for reusing
+	 *  a context for several words.
+	 *  @param word The ambiguous word.
+	 *  @param contextTokens The tokens surrounding the word, e.g., the
+	 *  		words of its sentence.
+	 *  @return The synsets in descending order of their score; never null.
+	 *  @throws JOTLException if there is no in-memory snapshot. */
+	public List<OTSynset> rankSenses(final String word,
+			final Collection<String> contextTokens) throws JOTLException {
+		return getSenseRanker().rankSenses(word, contextTokens);
+	}
+
+	/** Returns the sense ranker of the current snapshot and creates it on
+	 *  first use. */
+	protected SenseRanker getSenseRanker() throws JOTLException {
+		OTSnapshot snapshot = getSnapshot();
+		SenseRanker result = senseRanker;
+		if (result != null && result.snapshot == snapshot)
+			return result;
+
+		synchronized (this) {
+			if (senseRanker == null || senseRanker.snapshot != snapshot)
+				senseRanker = new SenseRanker(this);
+			return senseRanker;
+		}
+	}
+
 
 	/** Returns the {@link OTSynset} containing the given term id.
 	 *  @param termId The numerical id used internally to uniquely
@@ -203,15 +531,33 @@ public class OpenThesaurus {
 	 *  		synset could be found.
 	 *  @throws JOTLException in case of any errors. */
 	public OTSynset getSynsetByTermId(final int termId) throws JOTLException {
+		QueryLog log = QueryLog.of(dbStatements);
+		long start = (log != null ? System.nanoTime() : 0L);
+		try {
+			return loadSynsetByTermId(termId);
+		} finally {
+			if (log != null)
+				log.record(QueryLog.GET_SYNSET_BY_TERM_ID, start, termId, null, 0);
+		}
+	}
+
+	protected OTSynset loadSynsetByTermId(final int termId) throws JOTLException {
+		OTSnapshot snapshot = dbStatements.getSnapshot();
+		if (snapshot != null) {
+			int termIndex = snapshot.getTermIndex(termId);
+			return (termIndex < 0 ? null
+					: new OTSynset(snapshot.getTermSynsetId(termIndex), dbStatements));
+		}
+
 		OTSynset result = null;
 		try {
-			PreparedStatement pstmt = dbStatements.getPreparedStatement("SelectTermById");
+			PreparedStatement pstmt = dbStatements.getPreparedStatement("SelectSynsetIdByTermId");
 			pstmt.setInt(1, termId);
 
 			ResultSet rs = pstmt.executeQuery();
 			try {
 				while (rs.next()) {
-					result = new OTSynset(rs.getInt("synset_id"), dbStatements);
+					result = new OTSynset(rs.getInt(1), dbStatements);
 				}
 			} finally {
 				rs.close();
@@ -228,6 +574,13 @@ public class OpenThesaurus {
 	 *  @throws JOTLException in case of any errors. */
 	public Set<OTSynset> getAllSynsets() throws JOTLException {
 		Set<OTSynset> result = new HashSet<OTSynset>();
+		OTSnapshot snapshot = dbStatements.getSnapshot();
+		if (snapshot != null) {
+			for (int i = 0; i < snapshot.getNumberOfSynsets(); i++)
+				result.add(snapshot.createSynset(i, dbStatements));
+			return result;
+		}
+
 		try {
 			PreparedStatement pstmt = dbStatements.getPreparedStatement("AllSynsets");
 			ResultSet rs = pstmt.executeQuery();
@@ -248,6 +601,10 @@ public class OpenThesaurus {
 	 *  @return Total number of synsets.
 	 *  @throws JOTLException in case of any errors. */
 	public int getNumberOfSynsets() throws JOTLException {
+		OTSnapshot snapshot = dbStatements.getSnapshot();
+		if (snapshot != null)
+			return snapshot.getNumberOfSynsets();
+
 		int result = 0;
 		try {
 			PreparedStatement pstmt = dbStatements.getPreparedStatement("CountSynsets");
@@ -264,6 +621,1313 @@ public class OpenThesaurus {
 		return result;
 	}
 
+	/** Returns the ids of the terms with the given word. The method behaves
+	 *  like {@link #getTermsByWord(String)}, but only the ids are queried and
+	 *  no term objects are created.
+	 *  @param word The word that is searched for.
+	 *  @return The sorted term ids without duplicates; never null.
+	 *  @throws JOTLException in case of any errors. */
+	public int[] getTermIdsByWord(final String word) throws JOTLException {
+		return getTermIdsByWord(word, dbStatements.getLanguage(), null);
+	}
+
+	/** Returns the ids of the terms with the given word in the given
+	 *  language that satisfy the given filter. See
+	 *  {@link #getTermsByWord(String, int, OTTermFilter)}.
+	 *  @param word The word that is searched for.
+	 *  @param language The language of the terms; use the constants defined
+	 *  		in {@link OTLanguage}.
+	 *  @param filter The facet predicates the terms need to satisfy; null
+	 *  		accepts all terms.
+	 *  @return The sorted term ids without duplicates; never null.
+	 *  @throws JOTLException in case of any errors. */
+	public int[] getTermIdsByWord(final String word, final int language,
+			final OTTermFilter filter) throws JOTLException {
+		OTSnapshot snapshot = dbStatements.getSnapshot();
+		if (snapshot != null) {
+			IntList result = new IntList();
+			BitSet accepted = snapshot.getTermIndexes(filter);
+			for (int termIndex : snapshot.getTermIndexesByWord(word, language, getIsCaseSensitive()))
+				if (accepted == null || accepted.get(termIndex))
+					result.add(snapshot.getTermId(termIndex));
+			return result.toSortedUniqueArray();
+		}
+
+		if (!mightContainWord(word, language))
+			return new int[0];
+
+		try {
+			return queryIdsByWord("SelectTermIdByWord", word, language, filter);
+		} catch(SQLException e) {
+			throw new JOTLException("Error while querying for term ids with word '" + word + "'", e);
+		}
+	}
+
+	/** Returns the ids of the synsets that contain the given word as one of
+	 *  their synonyms. The method behaves like
+	 *  {@link #getSynsetsByWord(String)}, but no synset objects are created.
+	 *  @param word The word that is to be contained in the synsets.
+	 *  @return The sorted synset ids without duplicates; never null.
+	 *  @throws JOTLException in case of any errors. */
+	public int[] getSynsetIdsByWord(final String word) throws JOTLException {
+		return getSynsetIdsByWord(word, dbStatements.getLanguage(), null);
+	}
+
+	/** Returns the ids of the synsets that contain the given word in the
+	 *  given language as one of their synonyms and whose corresponding term
+	 *  satisfies the given filter. See
+	 *  {@link #getSynsetsByWord(String, int, OTTermFilter)}.
+	 *  @param word The word that is to be contained in the synsets.
+	 *  @param language The language of the word; use the constants defined
+	 *  		in {@link OTLanguage}.
+	 *  @param filter The facet predicates the term representing the word
+	 *  		needs to satisfy; null accepts all terms.
+	 *  @return The sorted synset ids without duplicates; never null.
+	 *  @throws JOTLException in case of any errors. */
+	public int[] getSynsetIdsByWord(final String word, final int language,
+			final OTTermFilter filter) throws JOTLException {
+		OTSnapshot snapshot = dbStatements.getSnapshot();
+		if (snapshot != null) {
+			IntList result = new IntList();
+			BitSet accepted = snapshot.getTermIndexes(filter);
+			for (int termIndex : snapshot.getTermIndexesByWord(word, language, getIsCaseSensitive()))
+				if (accepted == null || accepted.get(termIndex))
+					result.add(snapshot.getTermSynsetId(termIndex));
+			return result.toSortedUniqueArray();
+		}
+
+		if (!mightContainWord(word, language))
+			return new int[0];
+
+		try {
+			return queryIdsByWord("SelectSynsetIdByWord", word, language, filter);
+		} catch(SQLException e) {
+			throw new JOTLException("Error while querying for synset ids containing word '" + word + "'", e);
+		}
+	}
+
+	/** Returns the ids of the terms contained in the synset with the given
+	 *  id without creating term objects.
+	 *  @param synsetId The numerical id of the synset.
+	 *  @return The sorted term ids; empty if there is no such synset.
+	 *  @throws JOTLException in case of any errors. */
+	public int[] getTermIdsBySynsetId(final int synsetId) throws JOTLException {
+		OTSnapshot snapshot = dbStatements.getSnapshot();
+		if (snapshot != null) {
+			int synsetIndex = snapshot.getSynsetIndex(synsetId);
+			if (synsetIndex < 0)
+				return new int[0];
+
+			// Term indexes are ordered by id.
+			int[] result = snapshot.getSynsetTermIndexes(synsetIndex);
+			for (int i = 0; i < result.length; i++)
+				result[i] = snapshot.getTermId(result[i]);
+			return result;
+		}
+
+		try {
+			PreparedStatement pstmt = dbStatements.getPreparedStatement("SelectTermIdBySynset");
+			pstmt.setInt(1, synsetId);
+			return queryIds(pstmt);
+		} catch(SQLException e) {
+			throw new JOTLException("Error while querying for term ids of synset " + synsetId, e);
+		}
+	}
+
+	/** Returns the ids of the synsets the given synset links to by means of
+	 *  any of the given link types. The method behaves like
+	 *  {@link OTSynset#getSynsetLinks(int...)}, but no synset objects are
+	 *  created. In memory mode, the link index of {@link #getSnapshot()}
+	 *  can be traversed directly for iterating the links without any
+	 *  allocation.
+	 *  @param synsetId The numerical id of the source synset.
+	 *  @param synsetLinkTypes The types of link; use the constants defined
+	 *    in {@link OTSynsetLinkType}. If no type is given, the links of all
+	 *    types are considered.
+	 *  @return The sorted ids of the target synsets; never null.
+	 *  @throws JOTLException in case of any errors. */
+	public int[] getSynsetLinkIds(final int synsetId, final int... synsetLinkTypes)
+			throws JOTLException {
+		OTSnapshot snapshot = dbStatements.getSnapshot();
+		if (snapshot != null)
+			return toSynsetIds(snapshot, snapshot.getSynsetLinks(), synsetId, synsetLinkTypes);
+
+		try {
+			PreparedStatement pstmt = dbStatements.getSynsetLinkStatement(false, synsetLinkTypes);
+			pstmt.setInt(1, synsetId);
+			return queryIds(pstmt);
+		} catch(SQLException e) {
+			throw new JOTLException("Unable to load synset link ids for synset "
+					+ synsetId + " (types: " + Arrays.toString(synsetLinkTypes) + ")", e);
+		}
+	}
+
+	/** Returns the ids of the synsets linking to the given synset by means
+	 *  of any of the given link types. The method behaves like
+	 *  {@link OTSynset#getSynsetLinksBackwards(int...)}, but no synset
+	 *  objects are created.
+	 *  @param synsetId The numerical id of the target synset.
+	 *  @param synsetLinkTypes The types of link; use the constants defined
+	 *    in {@link OTSynsetLinkType}. If no type is given, the links of all
+	 *    types are considered.
+	 *  @return The sorted ids of the source synsets; never null.
+	 *  @throws JOTLException in case of any errors. */
+	public int[] getSynsetLinkIdsBackwards(final int synsetId,
+			final int... synsetLinkTypes) throws JOTLException {
+		OTSnapshot snapshot = dbStatements.getSnapshot();
+		if (snapshot != null)
+			return toSynsetIds(snapshot, snapshot.getSynsetLinksBackwards(), synsetId, synsetLinkTypes);
+
+		try {
+			PreparedStatement pstmt = dbStatements.getSynsetLinkStatement(true, synsetLinkTypes);
+			pstmt.setInt(1, synsetId);
+			return queryIds(pstmt);
+		} catch(SQLException e) {
+			throw new JOTLException("Unable to load backward synset link ids for synset "
+					+ synsetId + " (types: " + Arrays.toString(synsetLinkTypes) + ")", e);
+		}
+	}
+
+	/** Returns the ids of the terms the given term links to by means of the
+	 *  given link type. The method behaves like
+	 *  {@link OTTerm#getTermLinks(int)}, but no term objects are created.
+	 *  @param termId The numerical id of the source term.
+	 *  @param termLinkType The type of link; use the constants defined in
+	 *    {@link OTTermLinkType} for choosing this parameter or 0 for
+	 *    links of any type.
+	 *  @return The sorted ids of the target terms; never null.
+	 *  @throws JOTLException in case of any errors. */
+	public int[] getTermLinkIds(final int termId, final int termLinkType)
+			throws JOTLException {
+		OTSnapshot snapshot = dbStatements.getSnapshot();
+		if (snapshot != null) {
+			int termIndex = snapshot.getTermIndex(termId);
+			if (termIndex < 0)
+				return new int[0];
+
+			int[] result = snapshot.getTermLinks().getTargets(termIndex, termLinkType);
+			for (int i = 0; i < result.length; i++)
+				result[i] = snapshot.getTermId(result[i]);
+			Arrays.sort(result);
+			return result;
+		}
+
+		try {
+			PreparedStatement pstmt;
+			if (termLinkType == 0) {
+				pstmt = dbStatements.getPreparedStatement("TermLinkIdsAnyType");
+				pstmt.setInt(1, termId);
+			} else {
+				pstmt = dbStatements.getPreparedStatement("TermLinkIds");
+				pstmt.setInt(1, termId);
+				pstmt.setInt(2, termLinkType);
+			}
+			return queryIds(pstmt);
+		} catch(SQLException e) {
+			throw new JOTLException("Unable to load term link ids for term "
+					+ termId + " (type: " + termLinkType + ")", e);
+		}
+	}
+
+	protected static int[] toSynsetIds(final OTSnapshot snapshot,
+			final LinkIndex links, final int synsetId, final int[] synsetLinkTypes) {
+		int synsetIndex = snapshot.getSynsetIndex(synsetId);
+		if (synsetIndex < 0)
+			return new int[0];
+
+		IntList result = new IntList();
+		links.addTargets(synsetIndex, synsetLinkTypes, result);
+		for (int i = 0; i < result.size(); i++)
+			result.set(i, snapshot.getSynsetId(result.get(i)));
+		return result.toSortedUniqueArray();
+	}
+
+	protected int[] queryIdsByWord(final String statementName,
+			final String word, final int language, final OTTermFilter filter)
+			throws SQLException {
+		PreparedStatement pstmt = dbStatements.getPreparedStatement(statementName, filter);
+		String normalizedWord = WordNormalizer.forLanguage(language).normalize(word);
+		pstmt.setString(1, normalizedWord);
+		pstmt.setString(2, normalizedWord);
+		pstmt.setInt(3, language);
+		return queryIds(pstmt);
+	}
+
+	/** Executes the given statement and collects the integer values of the
+	 *  first result column.
+	 *  @return The sorted values without duplicates. */
+	protected static int[] queryIds(final PreparedStatement pstmt)
+			throws SQLException {
+		IntList result = new IntList();
+		ResultSet rs = pstmt.executeQuery();
+		try {
+			while (rs.next())
+				result.add(rs.getInt(1));
+		} finally {
+			rs.close();
+			pstmt.clearParameters();
+		}
+		return result.toSortedUniqueArray();
+	}
+
+	/** Traverses the synset links breadth-first starting from the given
+	 *  synsets. The traversal proceeds level by level: the links of all
+	 *  synsets of the current level are retrieved at once, i.e., by a few
+	 *  batched database queries or by reading the link index of the
+	 *  snapshot. Thus, the number of queries is proportional to the depth
+	 *  rather than to the number of synsets. Each synset is visited only
+	 *  once at its minimum distance from the start synsets, which also
+	 *  handles cycles.
+	 *  Example: <code>traverse(ids, new int[]{OTSynsetLinkType.HYPERNYMY},
+	 *  Integer.MAX_VALUE, OTTraversalDirection.FORWARD, visitor)</code>
+	 *  visits all hypernyms of the given synsets.
+	 *  @param startSynsetIds The ids of the synsets the traversal starts
+	 *  		with; they are visited at depth 0.
+	 *  @param synsetLinkTypes The types of links to be followed; use the
+	 *  		constants defined in {@link OTSynsetLinkType}. An empty array
+	 *  		follows links of any type.
+	 *  @param maxDepth The maximum number of links between a start synset
+	 *  		and a visited synset.
+	 *  @param direction The direction in which the links are followed; use
+	 *  		the constants defined in {@link OTTraversalDirection}.
+	 *  @param visitor The callback for the visited synsets.
+	 *  @return The number of visited synsets.
+	 *  @throws JOTLException in case of any errors. */
+	public int traverse(final int[] startSynsetIds, final int[] synsetLinkTypes,
+			final int maxDepth, final int direction, final OTSynsetVisitor visitor)
+			throws JOTLException {
+		boolean forward = (direction & OTTraversalDirection.FORWARD) != 0;
+		boolean backward = (direction & OTTraversalDirection.BACKWARD) != 0;
+		OTSnapshot snapshot = dbStatements.getSnapshot();
+		if (snapshot != null)
+			return traverse(snapshot, startSynsetIds, synsetLinkTypes, maxDepth,
+					forward, backward, visitor);
+
+		int count = 0;
+		BitSet visited = new BitSet();
+		IntList frontier = new IntList();
+		for (int synsetId : startSynsetIds)
+			if (synsetId >= 0 && !visited.get(synsetId)) {
+				visited.set(synsetId);
+				count++;
+				if (visitor.visit(synsetId, 0))
+					frontier.add(synsetId);
+			}
+
+		IntList next = new IntList();
+		for (int depth = 1; depth <= maxDepth && !frontier.isEmpty(); depth++) {
+			next.clear();
+			try {
+				for (int from = 0; from < frontier.size(); from += DatabaseStatements.BATCH_SIZE) {
+					int to = Math.min(from + DatabaseStatements.BATCH_SIZE, frontier.size());
+					if (forward)
+						count += visitLinks(dbStatements.getSynsetLinkBatchStatement(
+								false, to - from, synsetLinkTypes), frontier, from, to,
+								visited, depth, visitor, next);
+					if (backward)
+						count += visitLinks(dbStatements.getSynsetLinkBatchStatement(
+								true, to - from, synsetLinkTypes), frontier, from, to,
+								visited, depth, visitor, next);
+				}
+			} catch (SQLException e) {
+				throw new JOTLException("Unable to traverse the synset links at depth " + depth, e);
+			}
+			IntList swap = frontier;
+			frontier = next;
+			next = swap;
+		}
+		return count;
+	}
+
+	/** Visits the synsets returned by the given batch statement for the
+	 *  given range of synset ids. */
+	protected int visitLinks(final PreparedStatement pstmt, final IntList synsetIds,
+			final int from, final int to, final BitSet visited, final int depth,
+			final OTSynsetVisitor visitor, final IntList next)
+			throws SQLException, JOTLException {
+		// Read the result completely before calling the visitor, which may
+		// query the database using the same statement.
+		IntList found = new IntList();
+		DatabaseStatements.setBatchParameters(pstmt, 0, synsetIds, from, to);
+		ResultSet rs = pstmt.executeQuery();
+		try {
+			while (rs.next()) {
+				int synsetId = rs.getInt(1);
+				if (!visited.get(synsetId)) {
+					visited.set(synsetId);
+					found.add(synsetId);
+				}
+			}
+		} finally {
+			rs.close();
+			pstmt.clearParameters();
+		}
+
+		for (int i = 0; i < found.size(); i++)
+			if (visitor.visit(found.get(i), depth))
+				next.add(found.get(i));
+		return found.size();
+	}
+
+	/** Traverses the link indexes of the given snapshot; see
+	 *  {@link #traverse(int[], int[], int, int, OTSynsetVisitor)}. */
+	protected static int traverse(final OTSnapshot snapshot,
+			final int[] startSynsetIds, final int[] synsetLinkTypes,
+			final int maxDepth, final boolean forward, final boolean backward,
+			final OTSynsetVisitor visitor) throws JOTLException {
+		boolean[] acceptedTypes = null;
+		if (synsetLinkTypes.length > 0) {
+			acceptedTypes = new boolean[LinkIndex.MAX_TYPE + 1];
+			for (int type : synsetLinkTypes)
+				if (type >= 0 && type <= LinkIndex.MAX_TYPE)
+					acceptedTypes[type] = true;
+		}
+
+		int count = 0;
+		BitSet visited = new BitSet(snapshot.getNumberOfSynsets());
+		IntList frontier = new IntList();
+		for (int synsetId : startSynsetIds) {
+			int synsetIndex = snapshot.getSynsetIndex(synsetId);
+			if (synsetIndex >= 0 && !visited.get(synsetIndex)) {
+				visited.set(synsetIndex);
+				count++;
+				if (visitor.visit(synsetId, 0))
+					frontier.add(synsetIndex);
+			}
+		}
+
+		IntList next = new IntList();
+		for (int depth = 1; depth <= maxDepth && !frontier.isEmpty(); depth++) {
+			next.clear();
+			for (int i = 0; i < frontier.size(); i++) {
+				if (forward)
+					count += visitLinks(snapshot, snapshot.getSynsetLinks(), frontier.get(i),
+							acceptedTypes, visited, depth, visitor, next);
+				if (backward)
+					count += visitLinks(snapshot, snapshot.getSynsetLinksBackwards(), frontier.get(i),
+							acceptedTypes, visited, depth, visitor, next);
+			}
+			IntList swap = frontier;
+			frontier = next;
+			next = swap;
+		}
+		return count;
+	}
+
+	protected static int visitLinks(final OTSnapshot snapshot,
+			final LinkIndex links, final int synsetIndex,
+			final boolean[] acceptedTypes, final BitSet visited, final int depth,
+			final OTSynsetVisitor visitor, final IntList next) throws JOTLException {
+		int result = 0;
+		int[] offsets = links.getOffsets();
+		int[] targets = links.getTargets();
+		int[] types = links.getTypes();
+		for (int i = offsets[synsetIndex]; i < offsets[synsetIndex + 1]; i++) {
+			int target = targets[i];
+			if ((acceptedTypes != null && !acceptedTypes[types[i]]) || visited.get(target))
+				continue;
+
+			visited.set(target);
+			result++;
+			if (visitor.visit(snapshot.getSynsetId(target), depth))
+				next.add(target);
+		}
+		return result;
+	}
+
+	/** Returns the related terms of each of the given terms by means of a
+	 *  term link of the given type; see {@link OTTerm#getTermLinks(int)}.
+	 *  The links of all terms are loaded by a few batched database queries,
+	 *  and cached by the term objects, such that subsequent calls of
+	 *  {@link OTTerm#getTermLinks(int)} on the given terms do not query the
+	 *  database.
+	 *  @param terms The terms whose links are to be loaded.
+	 *  @param termLinkType The type of link; use the constants defined in
+	 *  		{@link OTTermLinkType} for choosing this parameter or 0 for
+	 *  		links of any type.
+	 *  @return The related terms of each given term; never null.
+	 *  @throws JOTLException in case of any errors. */
+	public Map<OTTerm, Set<OTTerm>> getTermLinks(final Collection<OTTerm> terms,
+			final int termLinkType) throws JOTLException {
+		Map<OTTerm, Set<OTTerm>> result = new HashMap<OTTerm, Set<OTTerm>>();
+		int generation = dbStatements.getSnapshotGeneration();
+		if (dbStatements.getSnapshot() != null) {
+			for (OTTerm term : terms)
+				result.put(term, term.getTermLinks(termLinkType));
+			return result;
+		}
+
+		Map<Integer, Set<OTTerm>> linkedTerms = new HashMap<Integer, Set<OTTerm>>();
+		IntList termIds = toTermIds(terms, linkedTerms);
+		try {
+			for (int from = 0; from < termIds.size(); from += DatabaseStatements.BATCH_SIZE) {
+				int to = Math.min(from + DatabaseStatements.BATCH_SIZE, termIds.size());
+				PreparedStatement pstmt;
+				if (termLinkType == 0) {
+					pstmt = dbStatements.getBatchStatement("BatchTermLinksAnyType", to - from);
+					DatabaseStatements.setBatchParameters(pstmt, 0, termIds, from, to);
+				} else {
+					pstmt = dbStatements.getBatchStatement("BatchTermLinks", to - from);
+					pstmt.setInt(1, termLinkType);
+					DatabaseStatements.setBatchParameters(pstmt, 1, termIds, from, to);
+				}
+				ResultSet rs = pstmt.executeQuery();
+				try {
+					while (rs.next())
+						linkedTerms.get(rs.getInt("source_term_id")).add(
+								OTTerm.createFromResultSet(rs, null, dbStatements));
+				} finally {
+					rs.close();
+					pstmt.clearParameters();
+				}
+			}
+		} catch (SQLException e) {
+			throw new JOTLException("Unable to load the term links of "
+					+ termIds.size() + " terms (type: " + termLinkType + ")", e);
+		}
+
+		for (OTTerm term : terms)
+			result.put(term, term.setTermLinks(termLinkType,
+					linkedTerms.get(term.getTermId()), generation));
+		return result;
+	}
+
+	/** Returns the tags of each of the given terms; see
+	 *  {@link OTTerm#getTags()}. The tags of all terms are loaded by a few
+	 *  batched database queries, and cached by the term objects, such that
+	 *  subsequent calls of {@link OTTerm#getTags()} on the given terms do
+	 *  not query the database.
+	 *  @param terms The terms whose tags are to be loaded.
+	 *  @return The tags of each given term; never null.
+	 *  @throws JOTLException in case of any errors. */
+	public Map<OTTerm, Set<String>> getTags(final Collection<OTTerm> terms)
+			throws JOTLException {
+		Map<OTTerm, Set<String>> result = new HashMap<OTTerm, Set<String>>();
+		int generation = dbStatements.getSnapshotGeneration();
+		if (dbStatements.getSnapshot() != null) {
+			for (OTTerm term : terms)
+				result.put(term, term.getTags());
+			return result;
+		}
+
+		Map<Integer, Set<String>> tags = new HashMap<Integer, Set<String>>();
+		IntList termIds = toTermIds(terms, tags);
+		try {
+			for (int from = 0; from < termIds.size(); from += DatabaseStatements.BATCH_SIZE) {
+				int to = Math.min(from + DatabaseStatements.BATCH_SIZE, termIds.size());
+				PreparedStatement pstmt = dbStatements.getBatchStatement(
+						"BatchTermTags", to - from);
+				DatabaseStatements.setBatchParameters(pstmt, 0, termIds, from, to);
+				ResultSet rs = pstmt.executeQuery();
+				try {
+					while (rs.next())
+						tags.get(rs.getInt(1)).add(rs.getString(2));
+				} finally {
+					rs.close();
+					pstmt.clearParameters();
+				}
+			}
+		} catch (SQLException e) {
+			throw new JOTLException("Unable to load the tags of "
+					+ termIds.size() + " terms", e);
+		}
+
+		for (OTTerm term : terms)
+			result.put(term, term.setTags(tags.get(term.getTermId()), generation));
+		return result;
+	}
+
+	/** Collects the distinct ids of the given terms and creates an empty
+	 *  set for each of them in the given map. */
+	protected static <T> IntList toTermIds(final Collection<OTTerm> terms,
+			final Map<Integer, Set<T>> sets) {
+		IntList result = new IntList(terms.size());
+		for (OTTerm term : terms)
+			if (!sets.containsKey(term.getTermId())) {
+				sets.put(term.getTermId(), new LinkedHashSet<T>());
+				result.add(term.getTermId());
+			}
+		return result;
+	}
+
+	/** Defines whether word lookups in the database are preceded by a
+	 *  check of an in-memory {@link BloomFilter} containing all words of the
+	 *  query language. Words that are definitely not contained in
+	 *  OpenThesaurus, such as function words, names, and numbers, are
+	 *  then answered without a database query. The filter of a language is
+	 *  built on its first use and rebuilt if the case sensitivity or the
+	 *  database configuration is changed. Call {@link #clearWordFilters()}
+	 *  if the database content has changed otherwise. The filter is not
+	 *  used for snapshots, which answer lookups in memory anyway.
+	 *  @param useWordFilter Use the filter (default: false). */
+	public void setUseWordFilter(final boolean useWordFilter) {
+		this.useWordFilter = useWordFilter;
+	}
+
+	/** @return true if word lookups are checked by a {@link BloomFilter}. */
+	public boolean getUseWordFilter() {
+		return useWordFilter;
+	}
+
+	/** Discards the word filters, which are rebuilt on their next use. */
+	public void clearWordFilters() {
+		wordFilters.clear();
+	}
+
+	/** Checks the word filter of the given language, if enabled.
+	 *  @return false if the database definitely does not contain a term
+	 *  		with the given word. */
+	protected boolean mightContainWord(final String word, final int language)
+			throws JOTLException {
+		if (!useWordFilter || word == null)
+			return true;
+
+		BloomFilter filter = wordFilters.get(language);
+		if (filter == null)
+			filter = loadWordFilter(language);
+		if (getIsCaseSensitive())
+			return filter.mightContain(WordNormalizer.forLanguage(language).normalize(word));
+		else
+			return filter.mightContain(WordNormalizer.getCollationKey(word));
+	}
+
+	/** Builds the word filter of the given language. The words are read
+	 *  by a streaming query on a separate connection, which would otherwise
+	 *  block all concurrent queries until the filter is complete. */
+	protected synchronized BloomFilter loadWordFilter(final int language)
+			throws JOTLException {
+		BloomFilter result = wordFilters.get(language);
+		if (result != null)
+			return result;
+
+		boolean caseSensitive = getIsCaseSensitive();
+		try {
+			Connection connection = DatabaseStatements.openConnection(
+					dbStatements.getDatabaseConfiguration());
+			try {
+				result = loadWordFilter(connection, language, caseSensitive);
+			} finally {
+				connection.close();
+			}
+		} catch (SQLException e) {
+			throw new JOTLException("Unable to load the word filter for language " + language, e);
+		}
+		if (caseSensitive == getIsCaseSensitive())
+			wordFilters.put(language, result);
+		return result;
+	}
+
+	protected static BloomFilter loadWordFilter(final Connection connection,
+			final int language, final boolean caseSensitive) throws SQLException {
+		int count = 0;
+		PreparedStatement pstmt = connection.prepareStatement(
+				"SELECT COUNT(*) FROM term WHERE language_id=?");
+		try {
+			pstmt.setInt(1, language);
+			ResultSet rs = pstmt.executeQuery();
+			if (rs.next())
+				count = rs.getInt(1);
+			rs.close();
+		} finally {
+			pstmt.close();
+		}
+
+		BloomFilter result = new BloomFilter(2 * count, 10);
+		pstmt = connection.prepareStatement(
+				"SELECT word, normalized_word FROM term WHERE language_id=?",
+				ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+		try {
+			pstmt.setFetchSize(Integer.MIN_VALUE); // MySQL streaming mode.
+			pstmt.setInt(1, language);
+			ResultSet rs = pstmt.executeQuery();
+			while (rs.next())
+				for (int column = 1; column <= 2; column++) {
+					String value = rs.getString(column);
+					if (value != null && !value.isEmpty())
+						result.add(caseSensitive ? value
+								: WordNormalizer.getCollationKey(value));
+				}
+			rs.close();
+		} finally {
+			pstmt.close();
+		}
+		return result;
+	}
+
+	/** Expands the given word into a ranked list of related words for use
+	 *  in search engine queries. The expansion comprises the synonyms of
+	 *  all senses of the word, the terms of their hypernyms and hyponyms up
+	 *  to the configured depths, and optionally the terms of associated
+	 *  synsets. Each word occurs only once in the result using its highest
+	 *  weight; the expanded word itself is not part of the result.
+	 *  Expansions are cached, such that repeated calls with the same word
+	 *  and an equal configuration do not query the database again.
+	 *  @param word The word to be expanded.
+	 *  @param config The expansion settings, e.g., the weight of the
+	 *  		relations and the penalty of term levels.
+	 *  @return An unmodifiable list of expansion terms ordered by
+	 *  		descending weight; never null.
+	 *  @throws JOTLException in case of any errors. */
+	public List<OTExpansionTerm> expand(final String word,
+			final ExpansionConfiguration config) throws JOTLException {
+		return expand(word, dbStatements.getLanguage(), config);
+	}
+
+	/** Expands the given word of the given language into a ranked list of
+	 *  related words. Besides the language, the method behaves like
+	 *  {@link #expand(String, ExpansionConfiguration)}. The expansion cache
+	 *  distinguishes between languages.
+	 *  @param word The word to be expanded.
+	 *  @param language The language of the word; use the constants defined
+	 *  		in {@link OTLanguage}.
+	 *  @param config The expansion settings.
+	 *  @return An unmodifiable list of expansion terms ordered by
+	 *  		descending weight; never null.
+	 *  @throws JOTLException in case of any errors. */
+	public List<OTExpansionTerm> expand(final String word, final int language,
+			final ExpansionConfiguration config) throws JOTLException {
+		List<Object> key = Arrays.<Object>asList(word, language,
+				getIsCaseSensitive(), new ExpansionConfiguration(config));
+		List<OTExpansionTerm> result;
+		synchronized (expansionCache) {
+			result = expansionCache.get(key);
+		}
+		if (result != null)
+			return result;
+
+		Map<String, OTExpansionTerm> expansion = new HashMap<String, OTExpansionTerm>();
+		Set<OTSynset> senses = new HashSet<OTSynset>();
+		for (OTTerm term : getTermsByWord(word, language))
+			senses.add(term.getSynset());
+		expandTerms(expansion, senses, OTExpansionTerm.SYNONYM, 0,
+				config.getSynonymWeight(), config);
+		expandLinks(expansion, senses, OTSynsetLinkType.HYPERNYMY, false,
+				OTExpansionTerm.HYPERNYM, config.getHypernymDepth(),
+				config.getHypernymWeight(), config);
+		expandLinks(expansion, senses, OTSynsetLinkType.HYPERNYMY, true,
+				OTExpansionTerm.HYPONYM, config.getHyponymDepth(),
+				config.getHyponymWeight(), config);
+		expandLinks(expansion, senses, OTSynsetLinkType.ASSOCIATION, false,
+				OTExpansionTerm.ASSOCIATION, 1,
+				config.getAssociationWeight(), config);
+
+		// Remove the expanded word and sort by weight.
+		WordNormalizer normalizer = WordNormalizer.forLanguage(language);
+		String wordKey = (getIsCaseSensitive() ? normalizer.normalize(word)
+				: normalizer.getFoldedKey(word));
+		for (String expandedWord : new ArrayList<String>(expansion.keySet()))
+			if (wordKey.equals(getIsCaseSensitive() ? normalizer.normalize(expandedWord)
+					: normalizer.fold(expandedWord)))
+				expansion.remove(expandedWord);
+		result = new ArrayList<OTExpansionTerm>(expansion.values());
+		Collections.sort(result);
+		if (config.getMaxResults() > 0 && result.size() > config.getMaxResults())
+			result = new ArrayList<OTExpansionTerm>(result.subList(0, config.getMaxResults()));
+		result = Collections.unmodifiableList(result);
+
+		synchronized (expansionCache) {
+			expansionCache.put(key, result);
+		}
+		return result;
+	}
+
+	/** Adds the terms of the given synsets to the expansion, unless the
+	 *  expansion already contains the word with a higher weight. */
+	protected void expandTerms(final Map<String, OTExpansionTerm> expansion,
+			final Set<OTSynset> synsets, final int relation, final int depth,
+			final double weight, final ExpansionConfiguration config)
+			throws JOTLException {
+		if (weight <= 0.0)
+			return;
+
+		for (OTSynset synset : synsets)
+			for (OTTerm term : synset.getTerms()) {
+				double termWeight = weight * config.getTermLevelPenalty(term.getTermLevel());
+				if (termWeight <= 0.0 || term.getWord() == null)
+					continue;
+
+				OTExpansionTerm previous = expansion.get(term.getWord());
+				if (previous == null || previous.getWeight() < termWeight)
+					expansion.put(term.getWord(), new OTExpansionTerm(term.getWord(),
+							termWeight, relation, depth, term.getTermId()));
+			}
+	}
+
+	/** Follows the synset links of the given type level by level up to the
+	 *  given depth and adds the terms of the reached synsets to the
+	 *  expansion. Each synset is visited only once. */
+	protected void expandLinks(final Map<String, OTExpansionTerm> expansion,
+			final Set<OTSynset> senses, final int synsetLinkType,
+			final boolean backwards, final int relation, final int maxDepth,
+			double weight, final ExpansionConfiguration config)
+			throws JOTLException {
+		if (weight <= 0.0)
+			return;
+
+		// Collect the synsets of each level.
+		final List<Set<OTSynset>> levels = new ArrayList<Set<OTSynset>>();
+		int[] senseIds = new int[senses.size()];
+		int i = 0;
+		for (OTSynset sense : senses)
+			senseIds[i++] = sense.getSynsetId();
+		traverse(senseIds, new int[]{synsetLinkType}, maxDepth,
+				backwards ? OTTraversalDirection.BACKWARD : OTTraversalDirection.FORWARD,
+				new OTSynsetVisitor() {
+					public boolean visit(final int synsetId, final int depth) {
+						while (levels.size() <= depth)
+							levels.add(new HashSet<OTSynset>());
+						levels.get(depth).add(new OTSynset(synsetId, dbStatements));
+						return true;
+					}
+				});
+		for (int depth = 1; depth < levels.size(); depth++) {
+			expandTerms(expansion, levels.get(depth), relation, depth, weight, config);
+			weight *= config.getDepthDecay();
+		}
+	}
+
+	/** Changes the maximum number of query expansions kept in the expansion
+	 *  cache. The default size is {@link #DEFAULT_EXPANSION_CACHE_SIZE}.
+	 *  @param size The maximum number of cached expansions; 0 disables
+	 *  		the cache. */
+	public void setExpansionCacheSize(final int size) {
+		synchronized (expansionCache) {
+			expansionCache.setCapacity(size);
+			if (size == 0)
+				expansionCache.clear();
+		}
+	}
+
+	/** Removes all query expansions from the expansion cache. */
+	public void clearExpansionCache() {
+		synchronized (expansionCache) {
+			expansionCache.clear();
+		}
+	}
+
+	/** Changes the maximum number of word lookups and synsets kept in the
+	 *  term cache, which answers repeated calls of
+	 *  {@link #getTermsByWord(String, int, OTTermFilter)} and
+	 *  {@link #getSynsetById(int)} without querying the database. Cached
+	 *  synsets keep their terms once loaded by {@link OTSynset#getTerms()}.
+	 *  The cache is only used without a snapshot, and it is disabled by
+	 *  default, since cached terms do not reflect subsequent changes of
+	 *  the database. Use {@link #prewarm(HotKeySet, int)} for filling the
+	 *  cache at startup.
+	 *  @param size The maximum number of cached word lookups and of cached
+	 *  		synsets; 0 disables the cache. */
+	public void setTermCacheSize(final int size) {
+		synchronized (termCache) {
+			termCache.setCapacity(size);
+			if (size == 0)
+				termCache.clear();
+		}
+		synchronized (synsetCache) {
+			synsetCache.setCapacity(size);
+			if (size == 0)
+				synsetCache.clear();
+		}
+	}
+
+	/** @return The maximum number of word lookups and synsets kept in
+	 *  		the term cache. */
+	public int getTermCacheSize() {
+		synchronized (termCache) {
+			return termCache.getCapacity();
+		}
+	}
+
+	/** Removes all word lookups and synsets from the term cache. */
+	public void clearTermCache() {
+		synchronized (termCache) {
+			termCache.clear();
+		}
+		synchronized (synsetCache) {
+			synsetCache.clear();
+		}
+	}
+
+	/** Fills the term cache with the hot words and synsets of the given
+	 *  set, e.g., reloaded from the file written by the previous instance,
+	 *  such that the first queries after a restart are answered without
+	 *  database round trips. The words and the terms of the synsets are
+	 *  loaded by batched queries, which are distributed among the given
+	 *  number of database connections. The method returns once the cache
+	 *  has been filled; call it before the instance starts serving
+	 *  queries, e.g., before {@link org.dkpro.jotl.server.ThesaurusServer#start()}.
+	 *  Nothing is loaded if a snapshot is used or the term cache is
+	 *  disabled (see {@link #setTermCacheSize(int)}). Case insensitive
+	 *  lookups that cannot be attributed to the queried word safely are
+	 *  left to be loaded on demand.
+	 *  @param hotKeys The words and synsets to be loaded; at most as many
+	 *  		as fit into the term cache are used.
+	 *  @param connections The number of concurrently used database
+	 *  		connections.
+	 *  @throws JOTLException in case of any errors. */
+	public void prewarm(final HotKeySet hotKeys, final int connections)
+			throws JOTLException {
+		if (connections < 1)
+			throw new IllegalArgumentException("Invalid number of connections: "
+					+ connections);
+		int size = getTermCacheSize();
+		if (size == 0 || dbStatements.getSnapshot() != null)
+			return;
+
+		final ConcurrentLinkedQueue<PrewarmBatch> queue = new ConcurrentLinkedQueue<PrewarmBatch>();
+		for (int language : hotKeys.getWordLanguages()) {
+			List<String> words = new ArrayList<String>();
+			for (String word : hotKeys.getHotWords(language, size))
+				if (mightContainWord(word, language))
+					words.add(word);
+				else
+					cacheTerms(word, language, new HashSet<OTTerm>());
+			for (int from = 0; from < words.size(); from += DatabaseStatements.BATCH_SIZE)
+				queue.add(new PrewarmBatch(language, words.subList(from,
+						Math.min(from + DatabaseStatements.BATCH_SIZE, words.size()))));
+		}
+		IntList synsetIds = new IntList();
+		for (int synsetId : hotKeys.getHotSynsetIds(size))
+			synsetIds.add(synsetId);
+		for (int from = 0; from < synsetIds.size(); from += DatabaseStatements.BATCH_SIZE)
+			queue.add(new PrewarmBatch(synsetIds, from,
+					Math.min(from + DatabaseStatements.BATCH_SIZE, synsetIds.size())));
+		if (queue.isEmpty())
+			return;
+
+		int workers = Math.min(connections, queue.size());
+		ExecutorService executor = Executors.newFixedThreadPool(workers,
+				new ThreadFactory() {
+					protected AtomicInteger count = new AtomicInteger();
+
+					public Thread newThread(final Runnable runnable) {
+						Thread result = new Thread(runnable,
+								"jotl-prewarm-" + count.incrementAndGet());
+						result.setDaemon(true);
+						return result;
+					}
+				});
+		try {
+			List<Future<Void>> futures = new ArrayList<Future<Void>>();
+			for (int w = 0; w < workers; w++)
+				futures.add(executor.submit(new Callable<Void>() {
+					public Void call() throws SQLException {
+						DatabaseStatements statements = null;
+						try {
+							statements = new DatabaseStatements(dbConfig,
+									getIsCaseSensitive(), false);
+							PrewarmBatch batch;
+							while ((batch = queue.poll()) != null)
+								if (batch.words != null)
+									prewarmWords(statements, batch.language, batch.words);
+								else
+									prewarmSynsets(statements, batch.synsetIds,
+											batch.from, batch.to);
+						} catch (SQLException e) {
+							queue.clear(); // Stop the other workers.
+							throw e;
+						} finally {
+							if (statements != null)
+								statements.close();
+						}
+						return null;
+					}
+				}));
+			for (Future<Void> future : futures)
+				future.get();
+		} catch (InterruptedException e) {
+			queue.clear();
+			Thread.currentThread().interrupt();
+			throw new JOTLException("Interrupted while pre-warming the term cache", e);
+		} catch (ExecutionException e) {
+			queue.clear();
+			throw new JOTLException("Unable to pre-warm the term cache", e.getCause());
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	/** A batch of hot keys loaded by a single query when pre-warming the
+	 *  term cache: either words of a language or a range of synset ids. */
+	protected static class PrewarmBatch {
+
+		protected final int language;
+		protected final List<String> words;
+		protected final IntList synsetIds;
+		protected final int from;
+		protected final int to;
+
+		public PrewarmBatch(final int language, final List<String> words) {
+			this.language = language;
+			this.words = words;
+			this.synsetIds = null;
+			this.from = 0;
+			this.to = 0;
+		}
+
+		public PrewarmBatch(final IntList synsetIds, final int from, final int to) {
+			this.language = 0;
+			this.words = null;
+			this.synsetIds = synsetIds;
+			this.from = from;
+			this.to = to;
+		}
+
+	}
+
+	/** Loads the terms of the given words by a single batch statement of
+	 *  the given worker and caches the terms of each word. */
+	protected void prewarmWords(final DatabaseStatements statements,
+			final int language, final List<String> words) throws SQLException {
+		boolean caseSensitive = statements.getIsCaseSensitive();
+		WordNormalizer normalizer = WordNormalizer.forLanguage(language);
+		List<String> normalizedWords = new ArrayList<String>(words.size());
+		for (String word : words)
+			normalizedWords.add(normalizer.normalize(word));
+		int size = DatabaseStatements.getBatchSize(words.size());
+		PreparedStatement pstmt = statements.getBatchStatement("BatchTermsByWord", words.size());
+		DatabaseStatements.setBatchParameters(pstmt, 0, normalizedWords);
+		DatabaseStatements.setBatchParameters(pstmt, size, normalizedWords);
+		pstmt.setInt(2 * size + 1, language);
+		List<OTTerm> terms = new ArrayList<OTTerm>();
+		ResultSet rs = pstmt.executeQuery();
+		try {
+			while (rs.next())
+				terms.add(OTTerm.createFromResultSet(rs, null, dbStatements));
+			pstmt.clearParameters();
+		} finally {
+			rs.close();
+		}
+
+		// Attribute the terms to the queried words. The collation keys
+		// match at least all words the database considers equal; words
+		// with candidates that only match by their collation key (e.g.,
+		// differing in diacritics) are not cached.
+		Map<String, List<OTTerm>> candidates = new HashMap<String, List<OTTerm>>();
+		for (OTTerm term : terms) {
+			addCandidate(candidates, term.getWord(), term, caseSensitive);
+			if (term.getNormalizedWord() != null && !term.getNormalizedWord().isEmpty()
+					&& !getKey(term.getNormalizedWord(), caseSensitive).equals(
+							getKey(term.getWord(), caseSensitive)))
+				addCandidate(candidates, term.getNormalizedWord(), term, caseSensitive);
+		}
+		for (int i = 0; i < words.size(); i++) {
+			String normalizedWord = normalizedWords.get(i);
+			Set<OTTerm> result = new HashSet<OTTerm>();
+			List<OTTerm> matches = candidates.get(getKey(normalizedWord, caseSensitive));
+			boolean safe = true;
+			if (matches != null)
+				for (OTTerm term : matches) {
+					if (matchesWord(term, normalizedWord, caseSensitive))
+						result.add(term);
+					else if (!caseSensitive)
+						safe = false;
+				}
+			if (safe)
+				cacheTerms(words.get(i), language, result);
+		}
+	}
+
+	protected static String getKey(final String word, final boolean caseSensitive) {
+		return (caseSensitive ? word : WordNormalizer.getCollationKey(word));
+	}
+
+	protected static void addCandidate(final Map<String, List<OTTerm>> candidates,
+			final String word, final OTTerm term, final boolean caseSensitive) {
+		if (word == null)
+			return;
+
+		String key = getKey(word, caseSensitive);
+		List<OTTerm> terms = candidates.get(key);
+		if (terms == null) {
+			terms = new ArrayList<OTTerm>();
+			candidates.put(key, terms);
+		}
+		terms.add(term);
+	}
+
+	/** Checks whether the given term certainly matches the given word. */
+	protected static boolean matchesWord(final OTTerm term, final String word,
+			final boolean caseSensitive) {
+		String normalizedWord = term.getNormalizedWord();
+		if (caseSensitive)
+			return word.equals(term.getWord())
+					|| (normalizedWord != null && !normalizedWord.isEmpty()
+							&& word.equals(normalizedWord));
+		return word.equalsIgnoreCase(term.getWord())
+				|| (normalizedWord != null && !normalizedWord.isEmpty()
+						&& word.equalsIgnoreCase(normalizedWord));
+	}
+
+	protected void cacheTerms(final String word, final int language,
+			final Set<OTTerm> terms) {
+		List<Object> key = getTermCacheKey(word, language, null);
+		synchronized (termCache) {
+			termCache.put(key, terms);
+		}
+	}
+
+	/** Returns the key of a word lookup in the term cache. The key contains
+	 *  the condition of the filter rather than the filter, since filters
+	 *  may be changed after the lookup. */
+	protected List<Object> getTermCacheKey(final String word, final int language,
+			final OTTermFilter filter) {
+		return Arrays.<Object>asList(word, language, getIsCaseSensitive(),
+				filter == null ? "" : filter.toSqlCondition(""));
+	}
+
+	/** Loads the terms of the given range of synsets by a single batch
+	 *  statement of the given worker and caches the synsets with their
+	 *  terms. */
+	protected void prewarmSynsets(final DatabaseStatements statements,
+			final IntList synsetIds, final int from, final int to)
+			throws SQLException {
+		int generation = dbStatements.getSnapshotGeneration();
+		Map<Integer, OTSynset> synsets = new HashMap<Integer, OTSynset>();
+		Map<OTSynset, Set<OTTerm>> terms = new HashMap<OTSynset, Set<OTTerm>>();
+		PreparedStatement pstmt = statements.getBatchStatement("BatchTermsBySynset", to - from);
+		DatabaseStatements.setBatchParameters(pstmt, 0, synsetIds, from, to);
+		ResultSet rs = pstmt.executeQuery();
+		try {
+			while (rs.next()) {
+				OTSynset synset = synsets.get(rs.getInt("synset_id"));
+				if (synset == null) {
+					synset = new OTSynset(rs.getInt("synset_id"), dbStatements);
+					synsets.put(synset.getSynsetId(), synset);
+					terms.put(synset, new HashSet<OTTerm>());
+				}
+				terms.get(synset).add(OTTerm.createFromResultSet(rs, synset, dbStatements));
+			}
+			pstmt.clearParameters();
+		} finally {
+			rs.close();
+		}
+		for (Map.Entry<OTSynset, Set<OTTerm>> entry : terms.entrySet())
+			entry.getKey().setTerms(entry.getValue(), generation);
+
+		synchronized (synsetCache) {
+			for (OTSynset synset : synsets.values())
+				synsetCache.put(synset.getSynsetId(), synset);
+		}
+	}
+
+	/** Loads the entire OpenThesaurus data into an in-memory snapshot and
+	 *  answers all subsequent queries from this snapshot. Loading takes
+	 *  place synchronously using separate connections to the current
+	 *  database, such that concurrent queries are not blocked. Use
+	 *  {@link #refreshSnapshot(DatabaseConfiguration)} for updating the
+	 *  snapshot in the background.
+	 *  @throws JOTLException in case of any errors. */
+	public void loadSnapshot() throws JOTLException {
+		if (!dbStatements.hasDatabaseConnection())
+			throw new JOTLException("No database connection available");
+
+		try {
+			loadSnapshot(dbStatements.getDatabaseConfiguration());
+		} catch (SQLException e) {
+			throw new JOTLException("Unable to load the OpenThesaurus snapshot", e);
+		}
+	}
+
+	/** Loads a new in-memory snapshot from the given database in a
+	 *  background thread and activates it once it has been completely
+	 *  built. Queries continue to be answered by the previous snapshot (or
+	 *  the database) in the meantime and are never blocked. The data of
+	 *  unchanged terms is shared with the previous snapshot. Note that the
+	 *  database connection used for queries without a snapshot is not
+	 *  changed.
+	 *  @param source The database containing the new data; e.g., a new
+	 *  		OpenThesaurus dump. Use {@link #getDatabaseConfiguration()}
+	 *  		for reloading the current database.
+	 *  @return A future yielding the activated snapshot. */
+	public Future<OTSnapshot> refreshSnapshot(final DatabaseConfiguration source) {
+		return getRefreshExecutor().submit(new Callable<OTSnapshot>() {
+			public OTSnapshot call() throws JOTLException {
+				return reloadSnapshot(source);
+			}
+		});
+	}
+
+	/** Periodically reloads the in-memory snapshot from the given database
+	 *  in a background thread. See {@link #refreshSnapshot(DatabaseConfiguration)}.
+	 *  Failed reloads keep the previous snapshot and are retried at the
+	 *  next period.
+	 *  @param source The database containing the new data.
+	 *  @param period The time between two reloads.
+	 *  @param unit The time unit of the period. */
+	public void scheduleSnapshotRefresh(final DatabaseConfiguration source,
+			final long period, final TimeUnit unit) {
+		getRefreshExecutor().scheduleWithFixedDelay(new Runnable() {
+			public void run() {
+				try {
+					reloadSnapshot(source);
+				} catch (JOTLException e) {
+					// Keep the previous snapshot and retry next time.
+					LOGGER.log(Level.WARNING, "Unable to refresh the snapshot", e);
+				}
+			}
+		}, period, period, unit);
+	}
+
+	protected OTSnapshot reloadSnapshot(final DatabaseConfiguration source)
+			throws JOTLException {
+		try {
+			return loadSnapshot(source);
+		} catch (SQLException e) {
+			throw new JOTLException("Unable to reload the OpenThesaurus snapshot", e);
+		}
+	}
+
+	/** Loads a snapshot from the given database using connections of its
+	 *  own and activates it. */
+	protected OTSnapshot loadSnapshot(final DatabaseConfiguration source)
+			throws SQLException {
+		OTSnapshot result;
+		if (snapshotConnections > 1) {
+			ParallelSnapshotLoader loader = new ParallelSnapshotLoader(source, snapshotConnections);
+			loader.setCompactStrings(compactSnapshots);
+			result = loader.load(getSnapshot());
+		} else {
+			Connection connection = DatabaseStatements.openConnection(source);
+			try {
+				SnapshotLoader loader = new SnapshotLoader(connection);
+				loader.setCompactStrings(compactSnapshots);
+				result = loader.load(getSnapshot());
+			} finally {
+				connection.close();
+			}
+		}
+		setSnapshot(result);
+		return result;
+	}
+
+	/** @return The number of database connections used for loading a
+	 *  		snapshot. */
+	public int getSnapshotConnections() {
+		return snapshotConnections;
+	}
+
+	/** Defines the number of database connections used concurrently by
+	 *  {@link #loadSnapshot()} and {@link #refreshSnapshot(DatabaseConfiguration)}.
+	 *  If more than one connection is used, the tables are partitioned by
+	 *  id ranges that are read in parallel by a {@link ParallelSnapshotLoader},
+	 *  which considerably reduces the loading time for remote databases.
+	 *  A reasonable choice is the number of available processors.
+	 *  @param snapshotConnections The number of connections (default: 1). */
+	public void setSnapshotConnections(final int snapshotConnections) {
+		if (snapshotConnections < 1)
+			throw new IllegalArgumentException("Invalid number of connections: "
+					+ snapshotConnections);
+		this.snapshotConnections = snapshotConnections;
+	}
+
+	/** @return true if snapshots store their words in a compact
+	 *  		{@link StringArena}. */
+	public boolean getCompactSnapshots() {
+		return compactSnapshots;
+	}
+
+	/** Defines whether snapshots loaded by {@link #loadSnapshot()} and
+	 *  {@link #refreshSnapshot(DatabaseConfiguration)} store the words of
+	 *  all terms in a deduplicated UTF-8 {@link StringArena} instead of
+	 *  separate string objects. This considerably reduces the heap
+	 *  footprint of a snapshot; words are decoded on request.
+	 *  @param compactSnapshots Use compact string storage (default: false). */
+	public void setCompactSnapshots(final boolean compactSnapshots) {
+		this.compactSnapshots = compactSnapshots;
+	}
+
+	protected synchronized ScheduledExecutorService getRefreshExecutor() {
+		if (refreshExecutor == null)
+			refreshExecutor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+				public Thread newThread(final Runnable runnable) {
+					Thread result = new Thread(runnable, "jotl-snapshot-refresh");
+					result.setDaemon(true);
+					return result;
+				}
+			});
+		return refreshExecutor;
+	}
+
+	/** @return The router distributing the queries among the database
+	 *  		replicas or null if a single database is used. */
+	public ReplicaRouter getReplicaRouter() {
+		return dbStatements.getReplicaRouter();
+	}
+
+	/** Returns the problems of the database schema that have been found
+	 *  when connecting to the database, e.g., missing indexes, which cause
+	 *  full table scans. See {@link SchemaVerifier} and
+	 *  {@link DatabaseConfiguration#setCreateIndexes(boolean)}.
+	 *  @return The descriptions of the problems; empty if there are none. */
+	public List<String> getSchemaWarnings() {
+		return dbStatements.getSchemaWarnings();
+	}
+
+	/** @return The in-memory snapshot used for answering queries or null,
+	 *  		if queries are answered by the database. */
+	public OTSnapshot getSnapshot() {
+		return dbStatements.getSnapshot();
+	}
+
+	/** Activates the given in-memory snapshot for answering queries. The
+	 *  snapshot is swapped atomically; all API objects, including those
+	 *  created before, use the new snapshot for their subsequent queries.
+	 *  @param snapshot The new snapshot or null for querying the database.
+	 *  @throws IllegalStateException if the snapshot is null, but no
+	 *  		database connection is available. */
+	public void setSnapshot(final OTSnapshot snapshot) {
+		if (snapshot == dbStatements.getSnapshot())
+			return;
+
+		dbStatements.setSnapshot(snapshot);
+		senseRanker = null;
+		clearExpansionCache();
+		clearTermCache();
+	}
+
+	/** Captures the subsequent calls of the query methods of this API,
+	 *  including those of the synsets and terms, in the given log. Use a
+	 *  {@link QueryReplay} for re-driving the captured calls. The log is
+	 *  not closed when replaced.
+	 *  @param queryLog The log or null for disabling the capture. */
+	public void setQueryLog(final QueryLog queryLog) {
+		dbStatements.setQueryLog(queryLog);
+	}
+
+	/** @return The log capturing the calls of the query methods or null. */
+	public QueryLog getQueryLog() {
+		return dbStatements.getQueryLog();
+	}
+
+	/** Observes the subsequent executions of the prepared statements used
+	 *  for database queries, e.g., for emitting Flight Recorder events or
+	 *  logging slow queries. Queries answered by a snapshot are not
+	 *  observed.
+	 *  @param monitor The monitor or null for disabling the monitoring. */
+	public void setStatementMonitor(final StatementMonitor monitor) {
+		dbStatements.setStatementMonitor(monitor);
+	}
+
+	/** @return The monitor observing the statement executions or null. */
+	public StatementMonitor getStatementMonitor() {
+		return dbStatements.getStatementMonitor();
+	}
+
+	/** Tracks the words of the subsequent calls of
+	 *  {@link #getTermsByWord(String, int, OTTermFilter)} and the synsets
+	 *  accessed by {@link #getSynsetById(int)} and {@link OTSynset#getTerms()}
+	 *  in the given set, which can be persisted for pre-warming the term
+	 *  cache of the next instance by {@link #prewarm(HotKeySet, int)}.
+	 *  @param hotKeys The set or null for disabling the tracking. */
+	public void setHotKeySet(final HotKeySet hotKeys) {
+		dbStatements.setHotKeySet(hotKeys);
+	}
+
+	/** @return The set tracking the frequently queried keys or null. */
+	public HotKeySet getHotKeySet() {
+		return dbStatements.getHotKeySet();
+	}
+
 	/** Queries involving words can be carried out in a case sensitive or case
 	 *  insensitive manner. The API will produce appropriate prepared
 	 *  statements based on this setting.
@@ -274,6 +1938,7 @@ public class OpenThesaurus {
 			throws JOTLException {
 		try {
 			dbStatements.setIsCaseSensitive(caseSensitive);
+			clearWordFilters();
 		} catch (SQLException e) {
 			throw new JOTLException("Unable to prepare statements", e);
 		}
@@ -285,23 +1950,51 @@ public class OpenThesaurus {
 		return dbStatements.getIsCaseSensitive();
 	}
 
-	/** Switch the database configuration.
+	/** Switch the database configuration. The database connection is only
+	 *  reestablished if the new configuration refers to a different
+	 *  database or user. Changing only the language is cheap, but
+	 *  consider passing the language explicitly to the query methods
+	 *  instead, e.g., {@link #getTermsByWord(String, int)}.
 	 *  @param dbConfig New database configuration settings.
 	 *  @throws JOTLException in case of any errors. */
 	public void setDatabaseConfiguration(final DatabaseConfiguration dbConfig)
 			throws JOTLException {
 		try {
 			dbStatements.setDatabaseConfiguration(dbConfig);
-			this.dbConfig = dbConfig;
+			this.dbConfig = dbStatements.getDatabaseConfiguration();
+			clearExpansionCache();
+			clearTermCache();
+			clearWordFilters();
 		} catch (SQLException e) {
 			throw new JOTLException("Unable to change database configuration", e);
 		}
 	}
 
+	/** Closes the database connection. The instance cannot be used for
+	 *  further queries afterwards.
+	 *  @throws JOTLException in case of any errors. */
+	public void close() throws JOTLException {
+		synchronized (this) {
+			if (refreshExecutor != null)
+				refreshExecutor.shutdownNow();
+		}
+		try {
+			dbStatements.close();
+		} catch (SQLException e) {
+			throw new JOTLException("Unable to close the database connection", e);
+		}
+	}
+
+	/** @return The default language of queries that do not specify a
+	 *  		language explicitly. */
+	public int getLanguage() {
+		return dbStatements.getLanguage();
+	}
+
 	/** Get the current database configuration settings.
-	 *  @return current settings. */
+	 *  @return a copy of the current settings. */
 	public DatabaseConfiguration getDatabaseConfiguration() {
-		return dbConfig;
+		return (dbConfig == null ? null : new DatabaseConfiguration(dbConfig));
 	}
 
 }
@@ -0,0 +1,233 @@
+/*******************************************************************************
+ * Copyright 2015
+ * Ubiquitous Knowledge Processing (UKP) Lab
+ * Technische Universität Darmstadt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package org.dkpro.jotl;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Loads the entire OpenThesaurus data into an {@link OTSnapshot} using
+ * multiple database connections concurrently. Each table is partitioned
+ * into ranges of its (source) id column, and the partitions are read by
+ * streaming queries of a pool of worker threads, each of which uses its
+ * own connection. The loader opens all of its connections itself and
+ * closes them afterwards, since a streaming query blocks its connection
+ * for any other query. The rows of each partition are collected by a separate
+ * {@link SnapshotBuilder} and merged once all partitions have been read.
+ */
+public class ParallelSnapshotLoader extends SnapshotLoader {
+
+	/** Number of partitions per connection, which balances the load if the
+	 *  ids are not evenly distributed. */
+	public static final int PARTITIONS_PER_CONNECTION = 4;
+
+	protected static final int SYNSETS = 0;
+	protected static final int TERMS = 1;
+	protected static final int SYNSET_LINKS = 2;
+	protected static final int TERM_LINKS = 3;
+	protected static final int CATEGORIES = 4;
+	protected static final int TAGS = 5;
+
+	/** Table and partitioning column, as well as the column expression used
+	 *  by the load query of each table. */
+	protected static final String[][] PARTITION_COLUMNS = {
+		{"synset", "id", "id"},
+		{"term", "id", "id"},
+		{"synset_link", "synset_id", "synset_id"},
+		{"term_link", "term_id", "term_id"},
+		{"category_link", "synset_id", "l.synset_id"},
+		{"term_tag", "term_tags_id", "tt.term_tags_id"}
+	};
+
+	protected DatabaseConfiguration dbConfig;
+	protected int connections;
+
+	/** Instanciates a new loader.
+	 *  @param dbConfig The configuration used for opening the connections
+	 *  		of the loader.
+	 *  @param connections The maximum number of concurrently used database
+	 *  		connections. */
+	public ParallelSnapshotLoader(final DatabaseConfiguration dbConfig,
+			final int connections) {
+		super(null);
+		if (connections < 1)
+			throw new IllegalArgumentException("Invalid number of connections: " + connections);
+		this.dbConfig = dbConfig;
+		this.connections = connections;
+	}
+
+	/** @return The maximum number of concurrently used connections. */
+	public int getConnections() {
+		return connections;
+	}
+
+	@Override
+	public OTSnapshot load(final OTSnapshot previous) throws SQLException {
+		final List<long[]> partitions = createPartitions();
+		final ConcurrentLinkedQueue<Integer> queue = new ConcurrentLinkedQueue<Integer>();
+		for (int i = 0; i < partitions.size(); i++)
+			queue.add(i);
+		final SnapshotBuilder[] results = new SnapshotBuilder[partitions.size()];
+
+		int workers = Math.min(connections, Math.max(partitions.size(), 1));
+		ExecutorService executor = Executors.newFixedThreadPool(workers,
+				new ThreadFactory() {
+					protected AtomicInteger count = new AtomicInteger();
+
+					public Thread newThread(final Runnable runnable) {
+						Thread result = new Thread(runnable,
+								"jotl-snapshot-loader-" + count.incrementAndGet());
+						result.setDaemon(true);
+						return result;
+					}
+				});
+		try {
+			List<Future<Void>> futures = new ArrayList<Future<Void>>();
+			for (int w = 0; w < workers; w++) {
+				futures.add(executor.submit(new Callable<Void>() {
+					public Void call() throws SQLException {
+						Connection workerConnection = DatabaseStatements.openConnection(dbConfig);
+						try {
+							SnapshotLoader loader = new SnapshotLoader(workerConnection);
+							Integer partition;
+							while ((partition = queue.poll()) != null) {
+								SnapshotBuilder builder = new SnapshotBuilder();
+								loadPartition(loader, builder, partitions.get(partition));
+								results[partition] = builder;
+							}
+						} catch (SQLException e) {
+							queue.clear(); // Stop the other workers.
+							throw e;
+						} finally {
+							workerConnection.close();
+						}
+						return null;
+					}
+				}));
+			}
+			for (Future<Void> future : futures)
+				waitFor(future, queue);
+		} finally {
+			executor.shutdownNow();
+		}
+
+		SnapshotBuilder result = new SnapshotBuilder(previous);
+		result.setCompactStrings(compactStrings);
+		for (int i = 0; i < results.length; i++) {
+			result.addAll(results[i]);
+			results[i] = null;
+		}
+		return result.build();
+	}
+
+	/** Waits for a worker to finish. If it has failed, the remaining
+	 *  partitions are discarded and the error is rethrown. */
+	protected static void waitFor(final Future<Void> future,
+			final ConcurrentLinkedQueue<Integer> queue) throws SQLException {
+		try {
+			future.get();
+		} catch (InterruptedException e) {
+			queue.clear();
+			Thread.currentThread().interrupt();
+			throw new SQLException("Interrupted while loading the snapshot", e);
+		} catch (ExecutionException e) {
+			queue.clear();
+			if (e.getCause() instanceof SQLException)
+				throw (SQLException) e.getCause();
+			throw new SQLException("Unable to load a snapshot partition", e.getCause());
+		}
+	}
+
+	/** Determines the partitions of all tables.
+	 *  @return Triples of table, first id (inclusive), and last id
+	 *  		(exclusive). */
+	protected List<long[]> createPartitions() throws SQLException {
+		List<long[]> result = new ArrayList<long[]>();
+		Connection connection = DatabaseStatements.openConnection(dbConfig);
+		try {
+			createPartitions(connection, result);
+		} finally {
+			connection.close();
+		}
+		return result;
+	}
+
+	protected void createPartitions(final Connection connection,
+			final List<long[]> result) throws SQLException {
+		for (int table = 0; table < PARTITION_COLUMNS.length; table++) {
+			Statement stmt = connection.createStatement();
+			try {
+				String column = PARTITION_COLUMNS[table][1];
+				ResultSet rs = stmt.executeQuery("SELECT MIN(" + column + "), MAX("
+						+ column + ") FROM " + PARTITION_COLUMNS[table][0]);
+				if (rs.next()) {
+					long min = rs.getLong(1);
+					if (!rs.wasNull())
+						for (long[] range : splitRange(min, rs.getLong(2),
+								connections * PARTITIONS_PER_CONNECTION))
+							result.add(new long[]{table, range[0], range[1]});
+				}
+			} finally {
+				stmt.close();
+			}
+		}
+	}
+
+	/** Splits the id range from min to max (both inclusive) into at most
+	 *  the given number of ranges of equal size.
+	 *  @return Pairs of first id (inclusive) and last id (exclusive). */
+	protected static List<long[]> splitRange(final long min, final long max,
+			final int count) {
+		List<long[]> result = new ArrayList<long[]>();
+		long size = Math.max((max - min + count) / count, 1);
+		for (long from = min; from <= max; from += size)
+			result.add(new long[]{from, Math.min(from + size, max + 1)});
+		return result;
+	}
+
+	/** Loads the rows of the given partition using the given loader. */
+	protected static void loadPartition(final SnapshotLoader loader,
+			final SnapshotBuilder builder, final long[] partition)
+			throws SQLException {
+		int table = (int) partition[0];
+		String column = PARTITION_COLUMNS[table][2];
+		String condition = " WHERE " + column + ">=" + partition[1]
+				+ " AND " + column + "<" + partition[2];
+		switch (table) {
+			case SYNSETS: loader.loadSynsets(builder, condition); break;
+			case TERMS: loader.loadTerms(builder, condition); break;
+			case SYNSET_LINKS: loader.loadSynsetLinks(builder, condition); break;
+			case TERM_LINKS: loader.loadTermLinks(builder, condition); break;
+			case CATEGORIES: loader.loadCategories(builder, condition); break;
+			case TAGS: loader.loadTags(builder, condition); break;
+		}
+	}
+
+}
@@ -0,0 +1,370 @@
+/*******************************************************************************
+ * Copyright 2015
+ * Ubiquitous Knowledge Processing (UKP) Lab
+ * Technische Universität Darmstadt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package org.dkpro.jotl;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Random-walk relatedness of words based on personalized PageRank over the
+ * synset graph of an in-memory {@link OTSnapshot}. The graph is undirected
+ * and consists of the hypernymy and association links between synsets and,
+ * optionally, the antonymy links between their terms. It is stored as
+ * compressed sparse rows (CSR) of synset indexes.
+ * <p>
+ * The PageRank vector of a word is computed by power iteration, where the
+ * random walk restarts at the synsets of the word with the probability
+ * <code>1 - damping</code>. Each iteration is parallelized over ranges of
+ * synsets using a fork-join pool, by default the common pool; the
+ * iteration terminates once the L1 difference of two subsequent vectors
+ * falls below the tolerance. The relatedness of two words is the cosine
+ * similarity of their vectors.
+ * <p>
+ * The graph is built from the snapshot active when the engine is
+ * instanciated; create a new engine after refreshing the snapshot.
+ */
+public class PersonalizedPageRank {
+
+	/** Default probability of following a link instead of restarting. */
+	public static final double DEFAULT_DAMPING = 0.85;
+
+	/** Default L1 difference of two iterations at which to terminate. */
+	public static final double DEFAULT_TOLERANCE = 1e-6;
+
+	/** Default maximum number of iterations. */
+	public static final int DEFAULT_MAX_ITERATIONS = 30;
+
+	/** Number of synsets below which an iteration is not split further. */
+	protected static final int CHUNK_SIZE = 4096;
+
+	protected OTSnapshot snapshot;
+	protected DatabaseStatements dbStatements;
+	protected int[] offsets;
+	protected int[] neighbors;
+	protected double[] inverseDegrees;
+	protected ForkJoinPool pool;
+
+	protected double damping = DEFAULT_DAMPING;
+	protected double tolerance = DEFAULT_TOLERANCE;
+	protected int maxIterations = DEFAULT_MAX_ITERATIONS;
+
+	/** Instanciates a new engine for the snapshot of the given thesaurus.
+	 *  @param openThesaurus The thesaurus; needs an in-memory snapshot.
+	 *  @param includeAntonymy Also connect synsets whose terms are linked
+	 *  		by {@link OTTermLinkType#ANTONYMY}.
+	 *  @throws JOTLException if the thesaurus has no snapshot. */
+	public PersonalizedPageRank(final OpenThesaurus openThesaurus,
+			final boolean includeAntonymy) throws JOTLException {
+		this(openThesaurus, includeAntonymy, ForkJoinPool.commonPool());
+	}
+
+	/** Instanciates a new engine for the snapshot of the given thesaurus.
+	 *  @param openThesaurus The thesaurus; needs an in-memory snapshot.
+	 *  @param includeAntonymy Also connect synsets whose terms are linked
+	 *  		by {@link OTTermLinkType#ANTONYMY}.
+	 *  @param pool The pool running the iterations; owned by the caller,
+	 *  		who is responsible for shutting it down.
+	 *  @throws JOTLException if the thesaurus has no snapshot. */
+	public PersonalizedPageRank(final OpenThesaurus openThesaurus,
+			final boolean includeAntonymy, final ForkJoinPool pool)
+			throws JOTLException {
+		snapshot = openThesaurus.getSnapshot();
+		if (snapshot == null)
+			throw new JOTLException("Personalized PageRank requires an in-memory"
+					+ " snapshot; see OpenThesaurus.loadSnapshot()");
+
+		dbStatements = openThesaurus.dbStatements;
+		this.pool = pool;
+		buildGraph(includeAntonymy);
+	}
+
+	/** Builds the undirected CSR graph. */
+	protected void buildGraph(final boolean includeAntonymy) {
+		int nodeCount = snapshot.getNumberOfSynsets();
+		IntList sources = new IntList();
+		IntList targets = new IntList();
+		LinkIndex synsetLinks = snapshot.getSynsetLinks();
+		int[] types = {OTSynsetLinkType.HYPERNYMY, OTSynsetLinkType.ASSOCIATION};
+		IntList buffer = new IntList();
+		for (int i = 0; i < nodeCount; i++) {
+			buffer.clear();
+			synsetLinks.addTargets(i, types, buffer);
+			for (int j = 0; j < buffer.size(); j++)
+				addEdge(sources, targets, i, buffer.get(j));
+		}
+		if (includeAntonymy) {
+			LinkIndex termLinks = snapshot.getTermLinks();
+			for (int t = 0; t < snapshot.getNumberOfTerms(); t++) {
+				int end = termLinks.getEnd(t, OTTermLinkType.ANTONYMY);
+				for (int i = termLinks.getStart(t, OTTermLinkType.ANTONYMY); i < end; i++)
+					addEdge(sources, targets, snapshot.getTermSynsetIndex(t),
+							snapshot.getTermSynsetIndex(termLinks.getTargets()[i]));
+			}
+		}
+
+		// Building the link index removes duplicate edges.
+		LinkIndex graph = LinkIndex.build(nodeCount, sources.toArray(),
+				targets.toArray(), new int[sources.size()]);
+		offsets = graph.getOffsets();
+		neighbors = graph.getTargets();
+		inverseDegrees = new double[nodeCount];
+		for (int i = 0; i < nodeCount; i++) {
+			int degree = offsets[i + 1] - offsets[i];
+			inverseDegrees[i] = (degree == 0 ? 0.0 : 1.0 / degree);
+		}
+	}
+
+	protected static void addEdge(final IntList sources, final IntList targets,
+			final int source, final int target) {
+		if (source < 0 || target < 0 || source == target)
+			return;
+
+		sources.add(source);
+		targets.add(target);
+		sources.add(target);
+		targets.add(source);
+	}
+
+	/** Computes the personalized PageRank vector restarting at the synsets
+	 *  of the given words in the default language.
+	 *  @param words The words; e.g., a single word or a short context.
+	 *  @return The PageRank of each synset by synset index; see
+	 *  		{@link OTSnapshot#getSynsetId(int)}. All values are zero if
+	 *  		none of the words is known. */
+	public double[] rank(final String... words) {
+		return rank(getSynsetIndexes(words));
+	}
+
+	/** Computes the personalized PageRank vector restarting at the given
+	 *  synsets with equal probability.
+	 *  @param seeds The synset indexes of the snapshot.
+	 *  @return The PageRank of each synset by synset index. */
+	public double[] rank(final int[] seeds) {
+		int nodeCount = inverseDegrees.length;
+		double[] rank = new double[nodeCount];
+		if (seeds.length == 0)
+			return rank;
+
+		double[] restart = new double[nodeCount];
+		for (int seed : seeds)
+			restart[seed] += 1.0 / seeds.length;
+		double[] contributions = new double[nodeCount];
+		double dangling = 0.0;
+		for (int i = 0; i < nodeCount; i++) {
+			rank[i] = restart[i];
+			contributions[i] = rank[i] * inverseDegrees[i];
+			if (offsets[i] == offsets[i + 1])
+				dangling += rank[i];
+		}
+
+		double[] nextRank = new double[nodeCount];
+		double[] nextContributions = new double[nodeCount];
+		for (int iteration = 0; iteration < maxIterations; iteration++) {
+			double[] sums = pool.invoke(new IterationTask(0, nodeCount, rank,
+					contributions, restart, dangling, nextRank, nextContributions));
+			double[] swap = rank;
+			rank = nextRank;
+			nextRank = swap;
+			swap = contributions;
+			contributions = nextContributions;
+			nextContributions = swap;
+			dangling = sums[1];
+			if (sums[0] < tolerance)
+				break;
+		}
+		return rank;
+	}
+
+	/** Computes the relatedness of the given words as the cosine similarity
+	 *  of their personalized PageRank vectors.
+	 *  @return The relatedness between 0 and 1; 0 if any of the words is
+	 *  		unknown. */
+	public double relatedness(final String word1, final String word2) {
+		double[] rank1 = rank(word1);
+		double[] rank2 = rank(word2);
+		double dot = 0.0;
+		double norm1 = 0.0;
+		double norm2 = 0.0;
+		for (int i = 0; i < rank1.length; i++) {
+			dot += rank1[i] * rank2[i];
+			norm1 += rank1[i] * rank1[i];
+			norm2 += rank2[i] * rank2[i];
+		}
+		return (norm1 == 0.0 || norm2 == 0.0 ? 0.0
+				: dot / Math.sqrt(norm1 * norm2));
+	}
+
+	/** Returns the synsets with the highest personalized PageRank for the
+	 *  given word, except for the synsets of the word itself.
+	 *  @param word The word.
+	 *  @param k The maximum number of synsets to be returned.
+	 *  @return The synsets in descending order of their PageRank; never
+	 *  		null. */
+	public List<OTSynset> topRelated(final String word, final int k) {
+		int[] seeds = getSynsetIndexes(word);
+		final double[] rank = rank(seeds);
+		for (int seed : seeds)
+			rank[seed] = 0.0;
+
+		Comparator<Integer> byRank = new Comparator<Integer>() {
+			public int compare(final Integer i1, final Integer i2) {
+				int result = Double.compare(rank[i1], rank[i2]);
+				return (result != 0 ? result : i2.compareTo(i1));
+			}
+		};
+		PriorityQueue<Integer> top = new PriorityQueue<Integer>(Math.max(k, 1), byRank);
+		for (int i = 0; i < rank.length && k > 0; i++) {
+			if (rank[i] <= 0.0)
+				continue;
+			if (top.size() < k)
+				top.add(i);
+			else if (byRank.compare(i, top.peek()) > 0) {
+				top.poll();
+				top.add(i);
+			}
+		}
+
+		List<Integer> indexes = new ArrayList<Integer>(top);
+		Collections.sort(indexes, Collections.reverseOrder(byRank));
+		List<OTSynset> result = new ArrayList<OTSynset>(indexes.size());
+		for (int index : indexes)
+			result.add(snapshot.createSynset(index, dbStatements));
+		return result;
+	}
+
+	/** Returns the sorted, distinct indexes of the synsets of the given
+	 *  words in the default language. */
+	protected int[] getSynsetIndexes(final String... words) {
+		IntList result = new IntList();
+		for (String word : words)
+			for (int termIndex : snapshot.getTermIndexesByWord(word,
+					dbStatements.getLanguage(), dbStatements.getIsCaseSensitive())) {
+				int synsetIndex = snapshot.getTermSynsetIndex(termIndex);
+				if (synsetIndex >= 0)
+					result.add(synsetIndex);
+			}
+		return result.toSortedUniqueArray();
+	}
+
+	/** @param damping The probability of following a link instead of
+	 *  		restarting the random walk; defaults to
+	 *  		{@value #DEFAULT_DAMPING}. */
+	public void setDamping(final double damping) {
+		this.damping = damping;
+	}
+
+	/** @return The probability of following a link. */
+	public double getDamping() {
+		return damping;
+	}
+
+	/** @param tolerance The L1 difference of two subsequent iterations at
+	 *  		which the iteration terminates; defaults to
+	 *  		{@value #DEFAULT_TOLERANCE}. */
+	public void setTolerance(final double tolerance) {
+		this.tolerance = tolerance;
+	}
+
+	/** @return The L1 difference at which the iteration terminates. */
+	public double getTolerance() {
+		return tolerance;
+	}
+
+	/** @param maxIterations The maximum number of iterations; defaults to
+	 *  		{@value #DEFAULT_MAX_ITERATIONS}. */
+	public void setMaxIterations(final int maxIterations) {
+		this.maxIterations = maxIterations;
+	}
+
+	/** @return The maximum number of iterations. */
+	public int getMaxIterations() {
+		return maxIterations;
+	}
+
+	/** Carries out one iteration for a range of synsets by pulling the
+	 *  contributions of their neighbors. Yields the L1 difference to the
+	 *  previous vector and the PageRank of synsets without links within
+	 *  the range, which is redistributed to the restart synsets. */
+	protected class IterationTask extends RecursiveTask<double[]> {
+
+		private static final long serialVersionUID = 1L;
+
+		protected final int from;
+		protected final int to;
+		protected final double[] rank;
+		protected final double[] contributions;
+		protected final double[] restart;
+		protected final double dangling;
+		protected final double[] nextRank;
+		protected final double[] nextContributions;
+
+		protected IterationTask(final int from, final int to,
+				final double[] rank, final double[] contributions,
+				final double[] restart, final double dangling,
+				final double[] nextRank, final double[] nextContributions) {
+			this.from = from;
+			this.to = to;
+			this.rank = rank;
+			this.contributions = contributions;
+			this.restart = restart;
+			this.dangling = dangling;
+			this.nextRank = nextRank;
+			this.nextContributions = nextContributions;
+		}
+
+		@Override
+		protected double[] compute() {
+			if (to - from > CHUNK_SIZE) {
+				int middle = (from + to) >>> 1;
+				IterationTask left = new IterationTask(from, middle, rank,
+						contributions, restart, dangling, nextRank, nextContributions);
+				IterationTask right = new IterationTask(middle, to, rank,
+						contributions, restart, dangling, nextRank, nextContributions);
+				left.fork();
+				double[] result = right.compute();
+				double[] leftResult = left.join();
+				result[0] += leftResult[0];
+				result[1] += leftResult[1];
+				return result;
+			}
+
+			double difference = 0.0;
+			double nextDangling = 0.0;
+			for (int i = from; i < to; i++) {
+				double sum = dangling * restart[i];
+				for (int j = offsets[i]; j < offsets[i + 1]; j++)
+					sum += contributions[neighbors[j]];
+				double value = (1.0 - damping) * restart[i] + damping * sum;
+				nextRank[i] = value;
+				nextContributions[i] = value * inverseDegrees[i];
+				if (offsets[i] == offsets[i + 1])
+					nextDangling += value;
+				difference += Math.abs(value - rank[i]);
+			}
+			return new double[]{difference, nextDangling};
+		}
+
+	}
+
+}
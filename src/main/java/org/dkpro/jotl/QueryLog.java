@@ -0,0 +1,456 @@
+/*******************************************************************************
+ * Copyright 2015
+ * Ubiquitous Knowledge Processing (UKP) Lab
+ * Technische Universität Darmstadt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package org.dkpro.jotl;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Captures the calls of the public query methods of {@link OpenThesaurus},
+ * {@link OTSynset}, and {@link OTTerm} in a compact binary log, which can
+ * be re-driven against any configuration by a {@link QueryReplay}. Activate
+ * the log using {@link OpenThesaurus#setQueryLog(QueryLog)}. Calls made
+ * internally by other API methods are captured as well; term filters are
+ * captured for word lookups only.
+ * <p>
+ * The log starts with the magic bytes "JQLG" and the format version,
+ * followed by one record per call: the operation (one byte), the start
+ * time in microseconds since the log has been created, the latency in
+ * microseconds, the synset or term id, the word (length plus one and
+ * UTF-8 bytes, or 0 for null), the language, the link types (count and
+ * types), and the term filter (flags, or 0 for null, followed by count and
+ * values of each restricted set; see {@link #writeFilter}). All numbers are stored as variable-length integers with 7 bits
+ * per byte. The records are written roughly in the order in which the
+ * calls complete; recording a call does not block other calls, since the
+ * records are encoded by the calling threads, queued, and written by
+ * whichever thread finds the log idle.
+ */
+public class QueryLog {
+
+	/** Magic bytes at the beginning of each log. */
+	public static final int MAGIC = 0x4A514C47; // "JQLG"
+
+	/** Current version of the format. Version 1 did not distinguish null
+	 *  from empty words; versions 1 and 2 did not capture term filters. */
+	public static final int VERSION = 3;
+
+	public static final int GET_TERM_BY_ID = 1;
+	public static final int GET_TERMS_BY_WORD = 2;
+	public static final int GET_SYNSET_BY_ID = 3;
+	public static final int GET_SYNSETS_BY_WORD = 4;
+	public static final int GET_SYNSET_BY_TERM_ID = 5;
+	public static final int GET_TERMS = 6;
+	public static final int GET_SYNSET_LINKS = 7;
+	public static final int GET_SYNSET_LINKS_BACKWARDS = 8;
+	public static final int GET_CATEGORIES = 9;
+	public static final int GET_TERM_LINKS = 10;
+	public static final int GET_TAGS = 11;
+
+	/** The names of the operations indexed by their constant. */
+	public static final String[] OPERATION_NAMES = {null,
+		"getTermById", "getTermsByWord", "getSynsetById", "getSynsetsByWord",
+		"getSynsetByTermId", "OTSynset.getTerms", "OTSynset.getSynsetLinks",
+		"OTSynset.getSynsetLinksBackwards", "OTSynset.getCategories",
+		"OTTerm.getTermLinks", "OTTerm.getTags"
+	};
+
+	protected static final Charset UTF8 = Charset.forName("UTF-8");
+
+	protected volatile OutputStream out;
+	protected long startTime;
+	protected LongAdder recordCount;
+	protected ConcurrentLinkedQueue<byte[]> pending;
+	protected ReentrantLock writeLock;
+	protected IOException error;
+
+	/** Instanciates a new log writing to the given stream.
+	 *  @param out The target stream; buffered by the log.
+	 *  @throws IOException in case of write errors. */
+	public QueryLog(final OutputStream out) throws IOException {
+		this.out = new BufferedOutputStream(out, 1 << 16);
+		startTime = System.nanoTime();
+		recordCount = new LongAdder();
+		pending = new ConcurrentLinkedQueue<byte[]>();
+		writeLock = new ReentrantLock();
+		writeInt(this.out, MAGIC);
+		writeInt(this.out, VERSION);
+	}
+
+	/** Returns the active log of the given statements or null. */
+	protected static QueryLog of(final DatabaseStatements dbStatements) {
+		return (dbStatements != null ? dbStatements.getQueryLog() : null);
+	}
+
+	/** Records a call that started at the given time. Write errors do not
+	 *  affect the call; they stop the log and are reported by
+	 *  {@link #close()}.
+	 *  @param operation One of the operation constants.
+	 *  @param start The start time of the call from {@link System#nanoTime()}.
+	 *  @param id The synset or term id or 0.
+	 *  @param word The word or null.
+	 *  @param language The language or 0.
+	 *  @param types The link types or null. */
+	public void record(final int operation, final long start, final int id,
+			final String word, final int language, final int... types) {
+		record(operation, start, id, word, language, null, types);
+	}
+
+	/** Records a call with a term filter that started at the given time;
+	 *  see {@link #record(int, long, int, String, int, int...)}.
+	 *  @param operation One of the operation constants.
+	 *  @param start The start time of the call from {@link System#nanoTime()}.
+	 *  @param id The synset or term id or 0.
+	 *  @param word The word or null.
+	 *  @param language The language or 0.
+	 *  @param filter The term filter or null.
+	 *  @param types The link types or null. */
+	public void record(final int operation, final long start, final int id,
+			final String word, final int language, final OTTermFilter filter,
+			final int[] types) {
+		long end = System.nanoTime();
+		if (out == null)
+			return;
+
+		ByteArrayOutputStream record = new ByteArrayOutputStream(32);
+		record.write(operation);
+		writeVarLong(record, Math.max(start - startTime, 0) / 1000);
+		writeVarLong(record, (end - start) / 1000);
+		writeVarLong(record, id & 0xFFFFFFFFL);
+		if (word == null)
+			writeVarLong(record, 0);
+		else {
+			byte[] bytes = word.getBytes(UTF8);
+			writeVarLong(record, bytes.length + 1L);
+			record.write(bytes, 0, bytes.length);
+		}
+		writeVarLong(record, language & 0xFFFFFFFFL);
+		writeVarLong(record, types == null ? 0 : types.length);
+		if (types != null)
+			for (int type : types)
+				writeVarLong(record, type & 0xFFFFFFFFL);
+		writeFilter(record, filter);
+		pending.add(record.toByteArray());
+		recordCount.increment();
+
+		// Write the queued records unless another thread is doing so. A
+		// record queued while the lock is being released is written by
+		// its own thread.
+		while (!pending.isEmpty() && writeLock.tryLock())
+			try {
+				writePending();
+			} finally {
+				writeLock.unlock();
+			}
+	}
+
+	/** Writes the queued records; requires the write lock. */
+	protected void writePending() {
+		byte[] record;
+		while ((record = pending.poll()) != null) {
+			OutputStream out = this.out;
+			if (out == null)
+				continue;
+
+			try {
+				out.write(record);
+			} catch (IOException e) {
+				error = e;
+				this.out = null;
+			}
+		}
+	}
+
+	/** @return The number of calls recorded so far. */
+	public long getRecordCount() {
+		return recordCount.sum();
+	}
+
+	/** Flushes the buffered records to the underlying stream. */
+	public void flush() throws IOException {
+		writeLock.lock();
+		try {
+			writePending();
+			if (out != null)
+				out.flush();
+		} finally {
+			writeLock.unlock();
+		}
+	}
+
+	/** Closes the log and the underlying stream. Subsequent calls are not
+	 *  recorded.
+	 *  @throws IOException in case of write errors, including those of
+	 *  		previous records. */
+	public void close() throws IOException {
+		writeLock.lock();
+		try {
+			writePending();
+			if (out != null) {
+				out.close();
+				out = null;
+			}
+			if (error != null)
+				throw error;
+		} finally {
+			writeLock.unlock();
+		}
+	}
+
+	protected static void writeInt(final OutputStream out, final int value)
+			throws IOException {
+		out.write(value >>> 24);
+		out.write(value >>> 16);
+		out.write(value >>> 8);
+		out.write(value);
+	}
+
+	/** Writes the given filter as flags followed by the restricted sets.
+	 *  The flags are 0 for null; otherwise bit 0 is set, and the following
+	 *  bits mark the term levels, their exclusion, the grammar ids, the
+	 *  languages, the acronym flag and its value, and the short form flag
+	 *  and its value. */
+	protected static void writeFilter(final ByteArrayOutputStream out,
+			final OTTermFilter filter) {
+		if (filter == null) {
+			writeVarLong(out, 0);
+			return;
+		}
+
+		int flags = 1;
+		if (filter.getTermLevels() != null)
+			flags |= (filter.getTermLevelsExcluded() ? 2 | 4 : 2);
+		if (filter.getGrammarIds() != null)
+			flags |= 8;
+		if (filter.getLanguageIds() != null)
+			flags |= 16;
+		if (filter.getIsAcronym() != null)
+			flags |= (filter.getIsAcronym() ? 32 | 64 : 32);
+		if (filter.getIsShortForm() != null)
+			flags |= (filter.getIsShortForm() ? 128 | 256 : 128);
+		writeVarLong(out, flags);
+		writeSet(out, filter.getTermLevels());
+		writeSet(out, filter.getGrammarIds());
+		writeSet(out, filter.getLanguageIds());
+	}
+
+	protected static void writeSet(final ByteArrayOutputStream out,
+			final Set<Integer> values) {
+		if (values == null)
+			return;
+
+		writeVarLong(out, values.size());
+		for (int value : values)
+			writeVarLong(out, value & 0xFFFFFFFFL);
+	}
+
+	protected static void writeVarLong(final ByteArrayOutputStream out, long value) {
+		while ((value & ~0x7FL) != 0) {
+			out.write((int) (value & 0x7F) | 0x80);
+			value >>>= 7;
+		}
+		out.write((int) value);
+	}
+
+	/** Reads all records of a log.
+	 *  @param in The stream containing the log; not closed.
+	 *  @return The records in the order in which they have been written.
+	 *  @throws IOException if the log is invalid or cannot be read. */
+	public static List<Entry> read(final InputStream in) throws IOException {
+		InputStream input = new BufferedInputStream(in, 1 << 16);
+		if (readInt(input) != MAGIC)
+			throw new IOException("Not a JOTL query log");
+		int version = readInt(input);
+		if (version < 1 || version > VERSION)
+			throw new IOException("Unsupported query log version " + version);
+
+		List<Entry> result = new ArrayList<Entry>();
+		int operation;
+		while ((operation = input.read()) >= 0) {
+			if (operation < 1 || operation >= OPERATION_NAMES.length)
+				throw new IOException("Invalid operation " + operation);
+
+			long timestamp = readVarLong(input);
+			long latency = readVarLong(input);
+			int id = (int) readVarLong(input);
+			int length = (int) readVarLong(input);
+			String word = null;
+			if (version == 1 && length > 0)
+				length++;
+			byte[] bytes = new byte[Math.max(length - 1, 0)];
+			int offset = 0;
+			while (offset < bytes.length) {
+				int count = input.read(bytes, offset, bytes.length - offset);
+				if (count < 0)
+					throw new EOFException("Truncated query log");
+				offset += count;
+			}
+			if (length > 0)
+				word = new String(bytes, UTF8);
+			int language = (int) readVarLong(input);
+			int[] types = new int[(int) readVarLong(input)];
+			for (int i = 0; i < types.length; i++)
+				types[i] = (int) readVarLong(input);
+			OTTermFilter filter = (version >= 3 ? readFilter(input) : null);
+			result.add(new Entry(operation, timestamp, latency, id, word,
+					language, types, filter));
+		}
+		return result;
+	}
+
+	/** Reads a filter written by {@link #writeFilter}. */
+	protected static OTTermFilter readFilter(final InputStream in)
+			throws IOException {
+		int flags = (int) readVarLong(in);
+		if (flags == 0)
+			return null;
+
+		OTTermFilter result = new OTTermFilter();
+		if ((flags & 2) != 0) {
+			if ((flags & 4) != 0)
+				result.excludeTermLevels(readSet(in));
+			else
+				result.setTermLevels(readSet(in));
+		}
+		if ((flags & 8) != 0)
+			result.setGrammarIds(readSet(in));
+		if ((flags & 16) != 0)
+			result.setLanguageIds(readSet(in));
+		if ((flags & 32) != 0)
+			result.setIsAcronym((flags & 64) != 0);
+		if ((flags & 128) != 0)
+			result.setIsShortForm((flags & 256) != 0);
+		return result;
+	}
+
+	protected static int[] readSet(final InputStream in) throws IOException {
+		int[] result = new int[(int) readVarLong(in)];
+		for (int i = 0; i < result.length; i++)
+			result[i] = (int) readVarLong(in);
+		return result;
+	}
+
+	protected static int readInt(final InputStream in) throws IOException {
+		int result = 0;
+		for (int i = 0; i < 4; i++) {
+			int b = in.read();
+			if (b < 0)
+				throw new EOFException("Truncated query log");
+			result = (result << 8) | b;
+		}
+		return result;
+	}
+
+	protected static long readVarLong(final InputStream in) throws IOException {
+		long result = 0;
+		for (int shift = 0; ; shift += 7) {
+			int b = in.read();
+			if (b < 0)
+				throw new EOFException("Truncated query log");
+			result |= (long) (b & 0x7F) << shift;
+			if ((b & 0x80) == 0)
+				return result;
+		}
+	}
+
+
+	/** A recorded call. */
+	public static class Entry {
+
+		protected int operation;
+		protected long timestamp;
+		protected long latency;
+		protected int id;
+		protected String word;
+		protected int language;
+		protected int[] types;
+		protected OTTermFilter filter;
+
+		protected Entry(final int operation, final long timestamp,
+				final long latency, final int id, final String word,
+				final int language, final int[] types, final OTTermFilter filter) {
+			this.operation = operation;
+			this.timestamp = timestamp;
+			this.latency = latency;
+			this.id = id;
+			this.word = word;
+			this.language = language;
+			this.types = types;
+			this.filter = filter;
+		}
+
+		/** @return The operation; one of the constants of {@link QueryLog}. */
+		public int getOperation() {
+			return operation;
+		}
+
+		/** @return The start time in microseconds since the log has been
+		 *  		created. */
+		public long getTimestamp() {
+			return timestamp;
+		}
+
+		/** @return The recorded latency in microseconds. */
+		public long getLatency() {
+			return latency;
+		}
+
+		/** @return The synset or term id. */
+		public int getId() {
+			return id;
+		}
+
+		/** @return The word or null. */
+		public String getWord() {
+			return word;
+		}
+
+		/** @return The language. */
+		public int getLanguage() {
+			return language;
+		}
+
+		/** @return The link types; never null. */
+		public int[] getTypes() {
+			return types;
+		}
+
+		/** @return The term filter or null. */
+		public OTTermFilter getFilter() {
+			return filter;
+		}
+
+		@Override
+		public String toString() {
+			return OPERATION_NAMES[operation] + "(" + (word != null ? word : id) + ")";
+		}
+
+	}
+
+}
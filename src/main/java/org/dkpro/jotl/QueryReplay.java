@@ -0,0 +1,275 @@
+/*******************************************************************************
+ * Copyright 2015
+ * Ubiquitous Knowledge Processing (UKP) Lab
+ * Technische Universität Darmstadt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package org.dkpro.jotl;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Re-drives the calls captured by a {@link QueryLog} against an
+ * {@link OpenThesaurus} instance, e.g., with a different configuration or
+ * backend. The calls are issued open-loop: each call has an intended start
+ * time, either according to a fixed target rate or to the original timing
+ * of the log, and is picked up by the next free one of the worker threads.
+ * Latencies are measured from the intended start time rather than from the
+ * actual one, such that calls delayed by a saturated system are accounted
+ * for (i.e., without coordinated omission).
+ * <p>
+ * Synsets and terms are replayed on new API objects, such that no cached
+ * data of the original objects is reused. Usage from the command line:
+ * <code>QueryReplay &lt;query log&gt; &lt;snapshot file&gt; &lt;language&gt;
+ * [threads] [rate]</code>.
+ */
+public class QueryReplay {
+
+	protected static final Comparator<QueryLog.Entry> BY_TIMESTAMP =
+			new Comparator<QueryLog.Entry>() {
+				public int compare(final QueryLog.Entry entry1, final QueryLog.Entry entry2) {
+					return Long.compare(entry1.getTimestamp(), entry2.getTimestamp());
+				}
+			};
+
+	protected OpenThesaurus openThesaurus;
+
+	/** Instanciates a new replay against the given thesaurus.
+	 *  @param openThesaurus The thesaurus answering the calls. */
+	public QueryReplay(final OpenThesaurus openThesaurus) {
+		this.openThesaurus = openThesaurus;
+	}
+
+	/** Replays the given calls in the order of their start times.
+	 *  @param calls The calls read by {@link QueryLog#read(InputStream)}.
+	 *  @param threads The number of worker threads issuing the calls.
+	 *  @param rate The target rate in calls per second or 0 for using the
+	 *  		original timing of the log.
+	 *  @return The latencies and throughput per operation. */
+	public Report replay(final List<QueryLog.Entry> calls, final int threads,
+			final double rate) {
+		final Report result = new Report();
+		if (calls.isEmpty())
+			return result;
+
+		// The log is written in the order in which the calls complete.
+		final List<QueryLog.Entry> entries = new ArrayList<QueryLog.Entry>(calls);
+		Collections.sort(entries, BY_TIMESTAMP);
+		final long firstTimestamp = entries.get(0).getTimestamp();
+		final AtomicInteger next = new AtomicInteger();
+		final long start = System.nanoTime();
+		Thread[] workers = new Thread[threads];
+		for (int t = 0; t < threads; t++) {
+			workers[t] = new Thread("jotl-replay-" + t) {
+				@Override
+				public void run() {
+					int i;
+					while ((i = next.getAndIncrement()) < entries.size()) {
+						QueryLog.Entry entry = entries.get(i);
+						long intended = start + (rate > 0 ? (long) (i * 1e9 / rate)
+								: (entry.getTimestamp() - firstTimestamp) * 1000);
+						long now;
+						while ((now = System.nanoTime()) < intended)
+							LockSupport.parkNanos(intended - now);
+						boolean failed = false;
+						try {
+							execute(entry);
+						} catch (JOTLException e) {
+							failed = true;
+						} catch (RuntimeException e) {
+							failed = true;
+						}
+						result.record(entry.getOperation(),
+								(System.nanoTime() - intended) / 1000, failed);
+					}
+				}
+			};
+			workers[t].start();
+		}
+		for (Thread worker : workers)
+			try {
+				worker.join();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				break;
+			}
+		result.elapsed = System.nanoTime() - start;
+		return result;
+	}
+
+	/** Issues the given call. */
+	protected void execute(final QueryLog.Entry entry) throws JOTLException {
+		DatabaseStatements dbStatements = openThesaurus.dbStatements;
+		switch (entry.getOperation()) {
+			case QueryLog.GET_TERM_BY_ID:
+				openThesaurus.getTermById(entry.getId());
+				break;
+			case QueryLog.GET_TERMS_BY_WORD:
+				openThesaurus.getTermsByWord(entry.getWord(), entry.getLanguage(),
+						entry.getFilter());
+				break;
+			case QueryLog.GET_SYNSET_BY_ID:
+				openThesaurus.getSynsetById(entry.getId());
+				break;
+			case QueryLog.GET_SYNSETS_BY_WORD:
+				openThesaurus.getSynsetsByWord(entry.getWord(), entry.getLanguage(),
+						entry.getFilter());
+				break;
+			case QueryLog.GET_SYNSET_BY_TERM_ID:
+				openThesaurus.getSynsetByTermId(entry.getId());
+				break;
+			case QueryLog.GET_TERMS:
+				new OTSynset(entry.getId(), dbStatements).getTerms();
+				break;
+			case QueryLog.GET_SYNSET_LINKS:
+				new OTSynset(entry.getId(), dbStatements).getSynsetLinks(entry.getTypes());
+				break;
+			case QueryLog.GET_SYNSET_LINKS_BACKWARDS:
+				new OTSynset(entry.getId(), dbStatements).getSynsetLinksBackwards(entry.getTypes());
+				break;
+			case QueryLog.GET_CATEGORIES:
+				new OTSynset(entry.getId(), dbStatements).getCategories();
+				break;
+			case QueryLog.GET_TERM_LINKS:
+				createTerm(entry.getId(), dbStatements).getTermLinks(entry.getTypes()[0]);
+				break;
+			case QueryLog.GET_TAGS:
+				createTerm(entry.getId(), dbStatements).getTags();
+				break;
+		}
+	}
+
+	/** Creates a term object for replaying calls that only rely on the
+	 *  term id. */
+	protected static OTTerm createTerm(final int termId,
+			final DatabaseStatements dbStatements) {
+		return new OTTerm(termId, null, null, null, 0, false, false, 0, 0,
+				dbStatements);
+	}
+
+	public static void main(final String[] args) throws Exception {
+		if (args.length < 3) {
+			System.err.println("Usage: QueryReplay <query log> <snapshot file>"
+					+ " <language> [threads] [rate]");
+			System.exit(1);
+		}
+
+		List<QueryLog.Entry> entries;
+		InputStream in = new FileInputStream(args[0]);
+		try {
+			entries = QueryLog.read(in);
+		} finally {
+			in.close();
+		}
+		OTSnapshot snapshot = SnapshotReader.open(new File(args[1])).readSnapshot(false);
+		OpenThesaurus ot = new OpenThesaurus(snapshot, Integer.parseInt(args[2]));
+		int threads = (args.length > 3 ? Integer.parseInt(args[3]) : 1);
+		double rate = (args.length > 4 ? Double.parseDouble(args[4]) : 0.0);
+		System.out.print(new QueryReplay(ot).replay(entries, threads, rate));
+	}
+
+
+	/** The results of a replay. All latencies are given in microseconds. */
+	public static class Report {
+
+		protected LatencyHistogram[] latencies;
+		protected AtomicLong[] errors;
+		protected long elapsed;
+
+		protected Report() {
+			latencies = new LatencyHistogram[QueryLog.OPERATION_NAMES.length];
+			errors = new AtomicLong[latencies.length];
+			for (int i = 0; i < latencies.length; i++) {
+				latencies[i] = new LatencyHistogram();
+				errors[i] = new AtomicLong();
+			}
+		}
+
+		protected void record(final int operation, final long latency,
+				final boolean failed) {
+			latencies[operation].record(latency);
+			if (failed)
+				errors[operation].incrementAndGet();
+		}
+
+		/** @return The latencies of the given operation or of all
+		 *  		operations if 0 is given. */
+		public LatencyHistogram getLatencies(final int operation) {
+			if (operation != 0)
+				return latencies[operation];
+
+			LatencyHistogram result = new LatencyHistogram();
+			for (int i = 1; i < latencies.length; i++)
+				for (int b = 0; b < result.counts.length(); b++)
+					result.counts.addAndGet(b, latencies[i].counts.get(b));
+			return result;
+		}
+
+		/** @return The number of failed calls of the given operation or of
+		 *  		all operations if 0 is given. */
+		public long getErrors(final int operation) {
+			long result = errors[operation].get();
+			if (operation == 0)
+				for (int i = 1; i < errors.length; i++)
+					result += errors[i].get();
+			return result;
+		}
+
+		/** @return The duration of the replay in nanoseconds. */
+		public long getElapsedTime() {
+			return elapsed;
+		}
+
+		/** @return The number of calls of the given operation (or of all
+		 *  		operations if 0 is given) per second. */
+		public double getThroughput(final int operation) {
+			return (elapsed == 0 ? 0.0
+					: getLatencies(operation).getCount() * 1e9 / elapsed);
+		}
+
+		@Override
+		public String toString() {
+			StringBuilder result = new StringBuilder(String.format(Locale.US,
+					"%-34s %9s %9s %9s %9s %9s %9s %7s%n", "operation", "count",
+					"ops/s", "p50", "p99", "p999", "max", "errors"));
+			for (int i = 0; i < latencies.length; i++) {
+				LatencyHistogram histogram = getLatencies(i);
+				if (histogram.getCount() == 0)
+					continue;
+
+				result.append(String.format(Locale.US,
+						"%-34s %9d %9.1f %9d %9d %9d %9d %7d%n",
+						(i == 0 ? "total" : QueryLog.OPERATION_NAMES[i]),
+						histogram.getCount(), getThroughput(i),
+						histogram.getPercentile(0.5), histogram.getPercentile(0.99),
+						histogram.getPercentile(0.999), histogram.getMax(),
+						getErrors(i)));
+			}
+			return result.toString();
+		}
+
+	}
+
+}
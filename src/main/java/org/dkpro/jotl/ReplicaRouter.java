@@ -0,0 +1,547 @@
+/*******************************************************************************
+ * Copyright 2015
+ * Ubiquitous Knowledge Processing (UKP) Lab
+ * Technische Universität Darmstadt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package org.dkpro.jotl;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Distributes the queries among several replicas of the OpenThesaurus
+ * database. The router provides prepared statements that record their
+ * parameters and choose a replica when being executed:
+ * <ul>
+ * <li>Replicas are chosen by the power of two choices: of two randomly
+ *   sampled replicas, the one with the lower product of outstanding
+ *   queries and average latency is used.</li>
+ * <li>If a query takes longer than the configured percentile of the
+ *   recent query latencies, it is hedged by issuing it to a second replica;
+ *   the first result is used and the other query is cancelled. A failed
+ *   query is retried once on another replica.</li>
+ * <li>A replica failing repeatedly is ejected for a while, i.e., it only
+ *   receives queries if all replicas are ejected.</li>
+ * </ul>
+ */
+public class ReplicaRouter {
+
+	/** The number of consecutive failures causing the ejection of a replica. */
+	public static final int DEFAULT_MAX_FAILURES = 3;
+
+	/** The time a failing replica is ejected. */
+	public static final long DEFAULT_EJECTION_MILLIS = 30000;
+
+	/** The percentile of the query latency after which queries are hedged. */
+	public static final double DEFAULT_HEDGE_PERCENTILE = 0.95;
+
+	/** The number of recent query latencies used for the hedging delay. */
+	public static final int LATENCY_SAMPLES = 1024;
+
+	/** The minimum number of queries before queries are hedged. */
+	public static final int MIN_LATENCY_SAMPLES = 32;
+
+	/** The maximum number of threads executing hedged queries; further
+	 *  queries are executed by the calling thread without hedging. */
+	public static final int MAX_THREADS = 64;
+
+	/** Prepares the statement to be executed on a replica. */
+	public interface StatementSource {
+
+		/** Prepares a new statement on the given replica. Each execution
+		 *  uses its own statement, such that an abandoned execution cannot
+		 *  interfere with subsequent ones; the router closes the statement
+		 *  together with its result set.
+		 *  @param replica The index of the replica.
+		 *  @return A new prepared statement of the given replica.
+		 *  @throws SQLException in case of database errors. */
+		PreparedStatement prepare(int replica) throws SQLException;
+
+	}
+
+	protected int replicaCount;
+	protected AtomicIntegerArray outstanding;
+	protected AtomicLongArray averageLatency;
+	protected AtomicIntegerArray failures;
+	protected AtomicLongArray ejectedUntil;
+	protected AtomicLongArray latencySamples;
+	protected AtomicLong sampleCount;
+	protected volatile long hedgeDelay;
+	protected volatile long hedgeDelayCount;
+	protected ReentrantLock hedgeDelayLock;
+	protected AtomicLong hedgeCount;
+
+	protected int maxFailures;
+	protected long ejectionNanos;
+	protected double hedgePercentile;
+	protected ExecutorService executor;
+
+	/** Instanciates a new router for the given number of replicas.
+	 *  @param replicaCount The number of replicas. */
+	public ReplicaRouter(final int replicaCount) {
+		if (replicaCount < 1)
+			throw new IllegalArgumentException("Invalid number of replicas: " + replicaCount);
+		this.replicaCount = replicaCount;
+		outstanding = new AtomicIntegerArray(replicaCount);
+		averageLatency = new AtomicLongArray(replicaCount);
+		failures = new AtomicIntegerArray(replicaCount);
+		ejectedUntil = new AtomicLongArray(replicaCount);
+		latencySamples = new AtomicLongArray(LATENCY_SAMPLES);
+		sampleCount = new AtomicLong();
+		hedgeDelayLock = new ReentrantLock();
+		hedgeCount = new AtomicLong();
+		maxFailures = DEFAULT_MAX_FAILURES;
+		ejectionNanos = TimeUnit.MILLISECONDS.toNanos(DEFAULT_EJECTION_MILLIS);
+		hedgePercentile = DEFAULT_HEDGE_PERCENTILE;
+	}
+
+	/** Creates a prepared statement that is executed on one of the
+	 *  replicas. Parameters set on the returned statement are applied to
+	 *  a new statement of the chosen replica, which is closed when the
+	 *  result set is closed. Closing the returned statement has no effect.
+	 *  @param source The statements of the replicas.
+	 *  @return The routing prepared statement. */
+	public PreparedStatement createStatement(final StatementSource source) {
+		return (PreparedStatement) Proxy.newProxyInstance(
+				PreparedStatement.class.getClassLoader(),
+				new Class<?>[]{PreparedStatement.class},
+				new RoutingHandler(source));
+	}
+
+	/** Chooses a replica for the next query using the power of two choices
+	 *  among the replicas that are not ejected.
+	 *  @param excluded A replica not to be chosen or -1.
+	 *  @return The index of the replica. */
+	public int selectReplica(final int excluded) {
+		if (replicaCount == 1)
+			return 0;
+
+		long now = System.nanoTime();
+		IntList candidates = new IntList(replicaCount);
+		for (int i = 0; i < replicaCount; i++)
+			if (i != excluded && !isEjected(i, now))
+				candidates.add(i);
+		if (candidates.isEmpty())
+			for (int i = 0; i < replicaCount; i++)
+				if (i != excluded)
+					candidates.add(i);
+		if (candidates.size() == 1)
+			return candidates.get(0);
+
+		ThreadLocalRandom random = ThreadLocalRandom.current();
+		int first = random.nextInt(candidates.size());
+		int second = random.nextInt(candidates.size() - 1);
+		if (second >= first)
+			second++;
+		int replica1 = candidates.get(first);
+		int replica2 = candidates.get(second);
+		return (getLoad(replica1) <= getLoad(replica2) ? replica1 : replica2);
+	}
+
+	/** The expected time until a new query on the given replica is
+	 *  answered. */
+	protected double getLoad(final int replica) {
+		return (outstanding.get(replica) + 1.0) * Math.max(averageLatency.get(replica), 1);
+	}
+
+	protected boolean isEjected(final int replica, final long now) {
+		return ejectedUntil.get(replica) - now > 0;
+	}
+
+	/** Executes the query on a replica, hedges it if it is slow, and retries
+	 *  it on another replica if it fails. If all threads for hedged
+	 *  queries are busy, the query is executed by the calling thread. */
+	protected ResultSet execute(final StatementSource source,
+			final List<Object[]> parameters) throws SQLException {
+		int first = selectReplica(-1);
+		long delay = getHedgeDelay();
+		if (replicaCount == 1 || delay < 0)
+			return executeInline(source, parameters, first);
+
+		CompletionService<ResultSet> completion
+				= new ExecutorCompletionService<ResultSet>(getExecutor());
+		List<Attempt> attempts = new ArrayList<Attempt>(2);
+		List<Future<ResultSet>> futures = new ArrayList<Future<ResultSet>>(2);
+		attempts.add(new Attempt(source, parameters, first));
+		try {
+			futures.add(completion.submit(attempts.get(0)));
+		} catch (RejectedExecutionException e) {
+			return executeInline(source, parameters, first);
+		}
+		Future<ResultSet> winner = null;
+		try {
+			Future<ResultSet> done = completion.poll(delay, TimeUnit.NANOSECONDS);
+			if (done == null) {
+				Attempt hedge = new Attempt(source, parameters, selectReplica(first));
+				try {
+					futures.add(completion.submit(hedge));
+					attempts.add(hedge);
+					hedgeCount.incrementAndGet();
+				} catch (RejectedExecutionException e) {
+					// Wait for the first attempt without hedging.
+				}
+			}
+
+			SQLException error = null;
+			for (int pending = futures.size(); pending > 0; pending--) {
+				if (done == null)
+					done = completion.take();
+				try {
+					ResultSet result = done.get();
+					winner = done;
+					return result;
+				} catch (ExecutionException e) {
+					error = (e.getCause() instanceof SQLException
+							? (SQLException) e.getCause()
+							: new SQLException(e.getCause()));
+				}
+				done = null;
+				if (pending == 1 && attempts.size() == 1) {
+					// Retry a failed query on another replica.
+					Attempt retry = new Attempt(source, parameters, selectReplica(first));
+					try {
+						futures.add(completion.submit(retry));
+					} catch (RejectedExecutionException e) {
+						return retry.call();
+					}
+					attempts.add(retry);
+					pending++;
+				}
+			}
+			throw error;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new SQLException("Interrupted while waiting for the query", e);
+		} finally {
+			// Release the results of the other attempts, once available.
+			for (int i = 0; i < futures.size(); i++)
+				if (futures.get(i) != winner)
+					attempts.get(i).abandon();
+		}
+	}
+
+	/** Executes the query on the given replica by the calling thread and
+	 *  retries it once on another replica if it fails. */
+	protected ResultSet executeInline(final StatementSource source,
+			final List<Object[]> parameters, final int replica) throws SQLException {
+		try {
+			return new Attempt(source, parameters, replica).call();
+		} catch (SQLException e) {
+			if (replicaCount == 1)
+				throw e;
+			return new Attempt(source, parameters, selectReplica(replica)).call();
+		}
+	}
+
+	/** Records a successful query. */
+	protected void recordSuccess(final int replica, final long latency) {
+		failures.set(replica, 0);
+		long average = averageLatency.get(replica);
+		averageLatency.set(replica, average == 0 ? latency : average + (latency - average) / 8);
+		long count = sampleCount.getAndIncrement();
+		latencySamples.set((int) (count % LATENCY_SAMPLES), latency);
+	}
+
+	/** Records a failed query and ejects the replica if it has failed
+	 *  repeatedly. */
+	protected void recordFailure(final int replica) {
+		if (failures.incrementAndGet(replica) >= maxFailures)
+			ejectedUntil.set(replica, System.nanoTime() + ejectionNanos);
+	}
+
+	/** Returns the time after which a query is hedged, which is the
+	 *  configured percentile of the recent query latencies.
+	 *  @return The delay in nanoseconds or -1 if queries are not hedged. */
+	public long getHedgeDelay() {
+		long count = sampleCount.get();
+		if (hedgePercentile <= 0 || replicaCount == 1 || count < MIN_LATENCY_SAMPLES)
+			return -1;
+
+		// Recompute the percentile after every 64 queries. Only one thread
+		// recomputes it; the others use the previous delay meanwhile.
+		if ((count - hedgeDelayCount >= 64 || hedgeDelay <= 0)
+				&& hedgeDelayLock.tryLock())
+			try {
+				if (count - hedgeDelayCount >= 64 || hedgeDelay <= 0) {
+					long[] samples = new long[(int) Math.min(count, LATENCY_SAMPLES)];
+					for (int i = 0; i < samples.length; i++)
+						samples[i] = latencySamples.get(i);
+					Arrays.sort(samples);
+					hedgeDelay = Math.max(samples[(int) ((samples.length - 1) * hedgePercentile)], 1);
+					hedgeDelayCount = count;
+				}
+			} finally {
+				hedgeDelayLock.unlock();
+			}
+		long delay = hedgeDelay;
+		return (delay > 0 ? delay : -1);
+	}
+
+	/** @return The number of replicas. */
+	public int getReplicaCount() {
+		return replicaCount;
+	}
+
+	/** @return The number of queries currently executed by the given
+	 *  		replica. */
+	public int getOutstanding(final int replica) {
+		return outstanding.get(replica);
+	}
+
+	/** @return The moving average of the query latency of the given
+	 *  		replica in nanoseconds. */
+	public long getAverageLatency(final int replica) {
+		return averageLatency.get(replica);
+	}
+
+	/** @return true if the given replica is currently ejected due to
+	 *  		repeated failures. */
+	public boolean isEjected(final int replica) {
+		return isEjected(replica, System.nanoTime());
+	}
+
+	/** @return The number of hedged queries. */
+	public long getHedgeCount() {
+		return hedgeCount.get();
+	}
+
+	/** @param hedgePercentile The percentile of the recent query latencies
+	 *  		after which a query is hedged, e.g., 0.95; 0 disables
+	 *  		hedging. */
+	public void setHedgePercentile(final double hedgePercentile) {
+		this.hedgePercentile = hedgePercentile;
+		hedgeDelay = 0;
+	}
+
+	/** @return The percentile of the recent query latencies after which
+	 *  		a query is hedged. */
+	public double getHedgePercentile() {
+		return hedgePercentile;
+	}
+
+	/** @param maxFailures The number of consecutive failures after which
+	 *  		a replica is ejected.
+	 *  @param ejectionMillis The time a failing replica is ejected. */
+	public void setEjection(final int maxFailures, final long ejectionMillis) {
+		this.maxFailures = maxFailures;
+		this.ejectionNanos = TimeUnit.MILLISECONDS.toNanos(ejectionMillis);
+	}
+
+	protected synchronized ExecutorService getExecutor() {
+		if (executor == null)
+			executor = new ThreadPoolExecutor(0, MAX_THREADS, 60L, TimeUnit.SECONDS,
+					new SynchronousQueue<Runnable>(), new ThreadFactory() {
+						public Thread newThread(final Runnable runnable) {
+							Thread result = new Thread(runnable, "jotl-replica-query");
+							result.setDaemon(true);
+							return result;
+						}
+					});
+		return executor;
+	}
+
+	/** Stops the threads used for hedged queries. */
+	public synchronized void close() {
+		if (executor != null)
+			executor.shutdownNow();
+		executor = null;
+	}
+
+
+	/** The execution of a query on a single replica. */
+	protected class Attempt implements Callable<ResultSet> {
+
+		protected StatementSource source;
+		protected List<Object[]> parameters;
+		protected int replica;
+		protected PreparedStatement statement;
+		protected ResultSet result;
+		protected boolean abandoned;
+
+		public Attempt(final StatementSource source,
+				final List<Object[]> parameters, final int replica) {
+			this.source = source;
+			this.parameters = parameters;
+			this.replica = replica;
+		}
+
+		public ResultSet call() throws SQLException {
+			outstanding.incrementAndGet(replica);
+			long start = System.nanoTime();
+			PreparedStatement pstmt = null;
+			try {
+				pstmt = source.prepare(replica);
+				synchronized (this) {
+					if (abandoned) {
+						pstmt.close();
+						return null;
+					}
+					statement = pstmt;
+				}
+				for (Object[] parameter : parameters)
+					invoke(pstmt, (Method) parameter[0], (Object[]) parameter[1]);
+				ResultSet rs = closingStatement(pstmt.executeQuery(), pstmt);
+				recordSuccess(replica, System.nanoTime() - start);
+				synchronized (this) {
+					if (!abandoned) {
+						result = rs;
+						return rs;
+					}
+				}
+				rs.close();
+				return null;
+			} catch (SQLException e) {
+				recordFailure(replica);
+				if (pstmt != null)
+					try {
+						pstmt.close();
+					} catch (SQLException e2) {
+						// Report the original error.
+					}
+				throw e;
+			} finally {
+				outstanding.decrementAndGet(replica);
+			}
+		}
+
+		/** Cancels the query if it is still running, or closes its result
+		 *  otherwise. A query finishing later closes its result itself. */
+		public void abandon() {
+			PreparedStatement pstmt;
+			ResultSet rs;
+			synchronized (this) {
+				abandoned = true;
+				pstmt = statement;
+				rs = result;
+			}
+			try {
+				if (rs != null)
+					rs.close();
+				else if (pstmt != null)
+					pstmt.cancel();
+			} catch (SQLException e) {
+				// The query is abandoned anyway.
+			}
+		}
+
+	}
+
+
+	/** Wraps the given result set, such that closing it also closes the
+	 *  given statement. */
+	protected static ResultSet closingStatement(final ResultSet result,
+			final PreparedStatement statement) {
+		return (ResultSet) Proxy.newProxyInstance(
+				ResultSet.class.getClassLoader(), new Class<?>[]{ResultSet.class},
+				new InvocationHandler() {
+					public Object invoke(final Object proxy, final Method method,
+							final Object[] args) throws Throwable {
+						if (method.getName().equals("close") && args == null) {
+							try {
+								result.close();
+							} finally {
+								statement.close();
+							}
+							return null;
+						}
+						if (method.getName().equals("equals"))
+							return proxy == args[0];
+						if (method.getName().equals("hashCode"))
+							return System.identityHashCode(proxy);
+						return ReplicaRouter.invoke(result, method, args);
+					}
+				});
+	}
+
+
+	/** Records the parameters of a routed statement and executes it using
+	 *  the router. */
+	protected class RoutingHandler implements InvocationHandler {
+
+		protected StatementSource source;
+		protected List<Object[]> parameters;
+
+		public RoutingHandler(final StatementSource source) {
+			this.source = source;
+			this.parameters = new ArrayList<Object[]>();
+		}
+
+		public Object invoke(final Object proxy, final Method method,
+				final Object[] args) throws Throwable {
+			String name = method.getName();
+			if (name.equals("executeQuery") && args == null)
+				return execute(source, new ArrayList<Object[]>(parameters));
+			if (name.startsWith("set") && args != null && args.length >= 2
+					&& args[0] instanceof Integer) {
+				parameters.add(new Object[]{method, args});
+				return null;
+			}
+			if (name.equals("clearParameters")) {
+				parameters.clear();
+				return null;
+			}
+			if (name.equals("close"))
+				return null;
+			if (name.equals("hashCode"))
+				return System.identityHashCode(proxy);
+			if (name.equals("equals"))
+				return proxy == args[0];
+			if (name.equals("toString"))
+				return "RoutedStatement" + parameters;
+			throw new SQLFeatureNotSupportedException(
+					"Not supported by routed statements: " + name);
+		}
+
+	}
+
+	protected static Object invoke(final Object target, final Method method,
+			final Object[] args) throws SQLException {
+		try {
+			return method.invoke(target, args);
+		} catch (InvocationTargetException e) {
+			if (e.getCause() instanceof SQLException)
+				throw (SQLException) e.getCause();
+			throw new SQLException(e.getCause());
+		} catch (IllegalAccessException e) {
+			throw new SQLException(e);
+		}
+	}
+
+}
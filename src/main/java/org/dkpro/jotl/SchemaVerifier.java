@@ -0,0 +1,201 @@
+/*******************************************************************************
+ * Copyright 2015
+ * Ubiquitous Knowledge Processing (UKP) Lab
+ * Technische Universität Darmstadt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package org.dkpro.jotl;
+
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Verifies that the OpenThesaurus database provides the indexes required
+ * for efficiently answering the queries of the API. The existing indexes
+ * are determined using the {@link DatabaseMetaData} of the connection, and
+ * the execution plans of the prepared statements are checked for full
+ * table scans using <code>EXPLAIN</code>. Missing indexes can optionally
+ * be created.
+ */
+public class SchemaVerifier {
+
+	/** The recommended indexes as pairs of table and comma-separated list
+	 *  of columns. An existing index satisfies a recommendation if the
+	 *  recommended columns are a prefix of its columns. */
+	public static final String[][] RECOMMENDED_INDEXES = {
+		{"term", "word"},
+		{"term", "normalized_word"},
+		{"term", "synset_id"},
+		{"synset_link", "synset_id,link_type_id"},
+		{"synset_link", "target_synset_id,link_type_id"},
+		{"term_link", "term_id,link_type_id"},
+		{"category_link", "synset_id"},
+		{"term_tag", "term_tags_id"}
+	};
+
+	protected Connection connection;
+
+	/** Instanciates a new verifier for the given database connection. The
+	 *  connection is not closed by the verifier.
+	 *  @param connection The JDBC database connection. */
+	public SchemaVerifier(final Connection connection) {
+		this.connection = connection;
+	}
+
+	/** Checks the database for the recommended indexes and the given
+	 *  statements for full table scans.
+	 *  @param statementSql The SQL queries to be explained by their names.
+	 *  @param createIndexes Create the missing recommended indexes.
+	 *  @return A description of each problem found; empty if the schema
+	 *  		is fine.
+	 *  @throws SQLException in case of database errors. */
+	public List<String> verify(final Map<String, String> statementSql,
+			final boolean createIndexes) throws SQLException {
+		List<String[]> missing = getMissingIndexes();
+		if (createIndexes && !missing.isEmpty()) {
+			for (String[] index : missing)
+				createIndex(index[0], index[1]);
+			missing = getMissingIndexes();
+		}
+
+		List<String> result = new ArrayList<String>();
+		for (String[] index : missing)
+			result.add("Missing index on " + index[0] + "(" + index[1] + ")");
+		for (Map.Entry<String, String> entry : new TreeMap<String, String>(statementSql).entrySet())
+			for (String table : getScannedTables(entry.getValue()))
+				result.add("Statement " + entry.getKey() + " scans the entire table " + table);
+		return result;
+	}
+
+	/** Returns the recommended indexes that are not provided by the
+	 *  database.
+	 *  @return Pairs of table and comma-separated list of columns.
+	 *  @throws SQLException in case of database errors. */
+	public List<String[]> getMissingIndexes() throws SQLException {
+		List<String[]> result = new ArrayList<String[]>();
+		Map<String, List<String>> indexes = null;
+		String table = null;
+		for (String[] index : RECOMMENDED_INDEXES) {
+			if (!index[0].equals(table)) {
+				table = index[0];
+				indexes = getIndexes(table);
+			}
+			if (!isCovered(index[1], indexes))
+				result.add(index);
+		}
+		return result;
+	}
+
+	/** Returns the columns of the existing indexes of the given table.
+	 *  @return The ordered index columns by index name.
+	 *  @throws SQLException in case of database errors. */
+	protected Map<String, List<String>> getIndexes(final String table)
+			throws SQLException {
+		Map<String, List<String>> result = new TreeMap<String, List<String>>();
+		DatabaseMetaData metaData = connection.getMetaData();
+		ResultSet rs = metaData.getIndexInfo(connection.getCatalog(), null,
+				table, false, true);
+		try {
+			while (rs.next()) {
+				String name = rs.getString("INDEX_NAME");
+				String column = rs.getString("COLUMN_NAME");
+				int position = rs.getInt("ORDINAL_POSITION");
+				if (name == null || column == null)
+					continue; // Table statistics.
+
+				List<String> columns = result.get(name);
+				if (columns == null) {
+					columns = new ArrayList<String>();
+					result.put(name, columns);
+				}
+				while (columns.size() < position)
+					columns.add(null);
+				columns.set(position - 1, column.toLowerCase());
+			}
+		} finally {
+			rs.close();
+		}
+		return result;
+	}
+
+	protected static boolean isCovered(final String columns,
+			final Map<String, List<String>> indexes) {
+		String[] required = columns.split(",");
+		for (List<String> index : indexes.values()) {
+			boolean covered = (index.size() >= required.length);
+			for (int i = 0; covered && i < required.length; i++)
+				covered = required[i].equals(index.get(i));
+			if (covered)
+				return true;
+		}
+		return false;
+	}
+
+	/** Creates an index on the given columns of the given table. This
+	 *  requires the INDEX privilege and may take a while for large tables.
+	 *  @throws SQLException in case of database errors. */
+	public void createIndex(final String table, final String columns)
+			throws SQLException {
+		String name = "jotl_" + table + "_" + columns.replace(',', '_');
+		Statement stmt = connection.createStatement();
+		try {
+			stmt.executeUpdate("CREATE INDEX " + name + " ON " + table
+					+ " (" + columns + ")");
+		} finally {
+			stmt.close();
+		}
+	}
+
+	/** Explains the given query and returns the tables that are read
+	 *  entirely. Queries without a where clause are expected to scan and
+	 *  are therefore not explained.
+	 *  @param sql The query, possibly containing parameters.
+	 *  @return The names of the scanned tables; never null.
+	 *  @throws SQLException in case of database errors. */
+	public List<String> getScannedTables(final String sql) throws SQLException {
+		List<String> result = new ArrayList<String>();
+		if (!sql.contains(" WHERE "))
+			return result;
+
+		PreparedStatement pstmt = connection.prepareStatement("EXPLAIN " + sql);
+		try {
+			// The value does not affect the access type of the plan.
+			int parameters = 0;
+			for (int i = 0; i < sql.length(); i++)
+				if (sql.charAt(i) == '?')
+					pstmt.setString(++parameters, "0");
+
+			ResultSet rs = pstmt.executeQuery();
+			try {
+				while (rs.next())
+					if ("ALL".equalsIgnoreCase(rs.getString("type")))
+						result.add(rs.getString("table"));
+			} finally {
+				rs.close();
+			}
+		} finally {
+			pstmt.close();
+		}
+		return result;
+	}
+
+}
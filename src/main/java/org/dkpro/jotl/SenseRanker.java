@@ -0,0 +1,293 @@
+/*******************************************************************************
+ * Copyright 2015
+ * Ubiquitous Knowledge Processing (UKP) Lab
+ * Technische Universität Darmstadt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package org.dkpro.jotl;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * Ranks the senses (synsets) of an ambiguous word by their fit to a
+ * context in the manner of the Lesk algorithm, but without glosses: each
+ * synset is represented by a signature comprising its terms, the terms of
+ * its neighbours (the synsets linked to it by any type of link in either
+ * direction), and the names of its categories. A sense scores the number
+ * of distinct context tokens contained in its signature.
+ * <p>
+ * All words are mapped to dense ids of their folded keys (see
+ * {@link WordNormalizer#fold(String)}), and the signatures are stored as
+ * sorted int arrays, such that a sense is scored by a merge intersection
+ * with the sorted ids of the context. The signatures are precomputed in
+ * parallel from the snapshot active when the ranker is instanciated;
+ * create a new ranker after refreshing the snapshot. The ranker is thread
+ * safe.
+ */
+public class SenseRanker {
+
+	/** Number of synsets per task while computing the signatures. */
+	protected static final int CHUNK_SIZE = 4096;
+
+	protected OTSnapshot snapshot;
+	protected DatabaseStatements dbStatements;
+	protected WordNormalizer normalizer;
+	protected int parallelism = Runtime.getRuntime().availableProcessors();
+
+	protected Map<String, Integer> keyIds;
+	protected int[] wordKeys;
+	protected int[] normalizedWordKeys;
+	protected int[] categoryKeys;
+	protected int[] signatureOffsets;
+	protected int[] signatures;
+
+	/** Instanciates a new ranker for the snapshot of the given thesaurus.
+	 *  @param openThesaurus The thesaurus; needs an in-memory snapshot.
+	 *  @throws JOTLException if the thesaurus has no snapshot. */
+	public SenseRanker(final OpenThesaurus openThesaurus) throws JOTLException {
+		snapshot = openThesaurus.getSnapshot();
+		if (snapshot == null)
+			throw new JOTLException("Ranking senses requires an in-memory"
+					+ " snapshot; see OpenThesaurus.loadSnapshot()");
+
+		dbStatements = openThesaurus.dbStatements;
+		normalizer = WordNormalizer.forLanguage(dbStatements.getLanguage());
+		build();
+	}
+
+	/** Assigns the key ids and computes the signatures. */
+	protected void build() throws JOTLException {
+		keyIds = new HashMap<String, Integer>();
+		int termCount = snapshot.getNumberOfTerms();
+		wordKeys = new int[termCount];
+		normalizedWordKeys = new int[termCount];
+		for (int t = 0; t < termCount; t++) {
+			wordKeys[t] = addKey(snapshot.getWord(t));
+			String normalizedWord = snapshot.getNormalizedWord(t);
+			normalizedWordKeys[t] = (normalizedWord == null || normalizedWord.isEmpty()
+					? -1 : addKey(normalizedWord));
+		}
+		final int synsetCount = snapshot.getNumberOfSynsets();
+		int[] categoryOffsets = new int[synsetCount + 1];
+		IntList categories = new IntList();
+		for (int s = 0; s < synsetCount; s++) {
+			for (OTCategory category : snapshot.getCategories(s))
+				categories.add(addKey(category.getName()));
+			categoryOffsets[s + 1] = categories.size();
+		}
+		categoryKeys = categories.toArray();
+
+		final int[][] synsetSignatures = new int[synsetCount][];
+		List<Callable<Void>> tasks = new ArrayList<Callable<Void>>();
+		for (int start = 0; start < synsetCount; start += CHUNK_SIZE) {
+			final int from = start;
+			final int to = Math.min(start + CHUNK_SIZE, synsetCount);
+			final int[] offsets = categoryOffsets;
+			tasks.add(new Callable<Void>() {
+				public Void call() {
+					for (int i = from; i < to; i++)
+						synsetSignatures[i] = computeSignature(i, offsets);
+					return null;
+				}
+			});
+		}
+		invokeAll(tasks);
+
+		signatureOffsets = new int[synsetCount + 1];
+		for (int i = 0; i < synsetCount; i++)
+			signatureOffsets[i + 1] = signatureOffsets[i] + synsetSignatures[i].length;
+		signatures = new int[signatureOffsets[synsetCount]];
+		for (int i = 0; i < synsetCount; i++) {
+			System.arraycopy(synsetSignatures[i], 0, signatures,
+					signatureOffsets[i], synsetSignatures[i].length);
+			synsetSignatures[i] = null;
+		}
+	}
+
+	protected int addKey(final String word) {
+		String key = normalizer.fold(word);
+		if (key == null)
+			return -1;
+
+		Integer result = keyIds.get(key);
+		if (result == null) {
+			result = keyIds.size();
+			keyIds.put(key, result);
+		}
+		return result;
+	}
+
+	/** Returns the sorted, distinct key ids of the terms of the given
+	 *  synset and its neighbours, and of the synset's categories. */
+	protected int[] computeSignature(final int synsetIndex,
+			final int[] categoryOffsets) {
+		IntList result = new IntList();
+		addTerms(synsetIndex, result);
+		LinkIndex links = snapshot.getSynsetLinks();
+		for (int i = links.getOffsets()[synsetIndex]; i < links.getOffsets()[synsetIndex + 1]; i++)
+			addTerms(links.getTargets()[i], result);
+		links = snapshot.getSynsetLinksBackwards();
+		for (int i = links.getOffsets()[synsetIndex]; i < links.getOffsets()[synsetIndex + 1]; i++)
+			addTerms(links.getTargets()[i], result);
+		for (int i = categoryOffsets[synsetIndex]; i < categoryOffsets[synsetIndex + 1]; i++)
+			if (categoryKeys[i] >= 0)
+				result.add(categoryKeys[i]);
+		return result.toSortedUniqueArray();
+	}
+
+	protected void addTerms(final int synsetIndex, final IntList keys) {
+		for (int termIndex : snapshot.getSynsetTermIndexes(synsetIndex)) {
+			if (wordKeys[termIndex] >= 0)
+				keys.add(wordKeys[termIndex]);
+			if (normalizedWordKeys[termIndex] >= 0)
+				keys.add(normalizedWordKeys[termIndex]);
+		}
+	}
+
+	/** Ranks the senses of the given word by their overlap with the given
+	 *  context. See {@link #rankSenses(String, int[])}.
+	 *  @param word The ambiguous word.
+	 *  @param contextTokens The tokens surrounding the word, e.g., the
+	 *  		words of its sentence.
+	 *  @return The synsets containing the word in descending order of
+	 *  		their score; never null. */
+	public List<OTSynset> rankSenses(final String word,
+			final Collection<String> contextTokens) {
+		return rankSenses(word, getContext(contextTokens));
+	}
+
+	/** Ranks the senses of the given word by their overlap with the given
+	 *  context. The senses are the synsets of the terms returned by
+	 *  {@link OpenThesaurus#getTermsByWord(String)}; senses with equal
+	 *  scores keep the order of their ids. The word itself does not
+	 *  contribute to the scores.
+	 *  @param word The ambiguous word.
+	 *  @param context The context as returned by
+	 *  		{@link #getContext(Collection)}; it may be reused for all
+	 *  		words of the same context.
+	 *  @return The synsets containing the word in descending order of
+	 *  		their score; never null. */
+	public List<OTSynset> rankSenses(final String word, final int[] context) {
+		int[] termIndexes = snapshot.getTermIndexesByWord(word,
+				dbStatements.getLanguage(), dbStatements.getIsCaseSensitive());
+		IntList synsetIndexes = new IntList(termIndexes.length);
+		for (int termIndex : termIndexes)
+			if (snapshot.getTermSynsetIndex(termIndex) >= 0)
+				synsetIndexes.add(snapshot.getTermSynsetIndex(termIndex));
+		int[] senses = synsetIndexes.toSortedUniqueArray();
+
+		// Sort by descending score and ascending synset index.
+		int[] tokens = remove(context, getKeyId(word));
+		long[] ranking = new long[senses.length];
+		for (int i = 0; i < senses.length; i++)
+			ranking[i] = ((long) (Integer.MAX_VALUE - getOverlap(senses[i], tokens)) << 32)
+					| senses[i];
+		Arrays.sort(ranking);
+		List<OTSynset> result = new ArrayList<OTSynset>(ranking.length);
+		for (long entry : ranking)
+			result.add(snapshot.createSynset((int) entry, dbStatements));
+		return result;
+	}
+
+	/** Returns the score of the given synset, i.e., the number of distinct
+	 *  context tokens contained in its signature.
+	 *  @param synset The synset.
+	 *  @param context The context as returned by
+	 *  		{@link #getContext(Collection)}.
+	 *  @return The score or 0 if the synset is not part of the snapshot. */
+	public int getScore(final OTSynset synset, final int[] context) {
+		int synsetIndex = snapshot.getSynsetIndex(synset.getSynsetId());
+		return (synsetIndex < 0 ? 0 : getOverlap(synsetIndex, context));
+	}
+
+	/** Converts the given tokens into the sorted, distinct ids of their
+	 *  folded keys. Tokens not occurring in any signature are omitted.
+	 *  @param contextTokens The tokens of the context.
+	 *  @return The context for scoring senses. */
+	public int[] getContext(final Collection<String> contextTokens) {
+		IntList result = new IntList(contextTokens.size());
+		for (String token : contextTokens) {
+			int keyId = getKeyId(token);
+			if (keyId >= 0)
+				result.add(keyId);
+		}
+		return result.toSortedUniqueArray();
+	}
+
+	protected int getKeyId(final String token) {
+		if (token == null)
+			return -1;
+
+		Integer result = keyIds.get(normalizer.fold(token));
+		return (result == null ? -1 : result);
+	}
+
+	/** Counts the common ids of the given synset's signature and the given
+	 *  context by a merge intersection. The positions are advanced by
+	 *  arithmetic rather than branches, which keeps the loop free of
+	 *  unpredictable jumps. */
+	protected int getOverlap(final int synsetIndex, final int[] context) {
+		int[] signature = signatures;
+		int i = signatureOffsets[synsetIndex];
+		int end = signatureOffsets[synsetIndex + 1];
+		int j = 0;
+		int result = 0;
+		while (i < end && j < context.length) {
+			int a = signature[i];
+			int b = context[j];
+			result += (a == b ? 1 : 0);
+			i += (a <= b ? 1 : 0);
+			j += (a >= b ? 1 : 0);
+		}
+		return result;
+	}
+
+	/** Returns the given sorted ids without the given id. */
+	protected static int[] remove(final int[] ids, final int id) {
+		int i = (id < 0 ? -1 : Arrays.binarySearch(ids, id));
+		if (i < 0)
+			return ids;
+
+		int[] result = new int[ids.length - 1];
+		System.arraycopy(ids, 0, result, 0, i);
+		System.arraycopy(ids, i + 1, result, i, result.length - i);
+		return result;
+	}
+
+	protected void invokeAll(final List<Callable<Void>> tasks)
+			throws JOTLException {
+		ForkJoinPool pool = new ForkJoinPool(parallelism);
+		try {
+			for (Future<Void> future : pool.invokeAll(tasks))
+				future.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new JOTLException("Interrupted while computing sense signatures", e);
+		} catch (ExecutionException e) {
+			throw new JOTLException("Unable to compute sense signatures", e.getCause());
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+}
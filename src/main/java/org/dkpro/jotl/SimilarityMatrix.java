@@ -0,0 +1,435 @@
+/*******************************************************************************
+ * Copyright 2015
+ * Ubiquitous Knowledge Processing (UKP) Lab
+ * Technische Universität Darmstadt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package org.dkpro.jotl;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * Batch job computing the pairwise similarity of the words of a
+ * vocabulary based on the hypernymy hierarchy of an in-memory
+ * {@link OTSnapshot}. The similarity of two synsets is
+ * <code>1 / (1 + d)</code>, where <code>d</code> is the length of the
+ * shortest path between them via a common hypernym (or 0 if there is no
+ * such path); the similarity of two words is the maximum similarity of
+ * their synsets.
+ * <p>
+ * All words are resolved once before the comparisons. For each word, the
+ * union of the hypernyms of its synsets is stored as a profile of sorted
+ * synset indexes with their minimum distances; the hypernyms of each
+ * synset are computed only once. Comparing two words is then a single
+ * merge intersection of their profiles. The comparisons are carried out
+ * in tiles of {@link #getTileSize()} by {@link #getTileSize()} words on a
+ * fork-join pool, such that the profiles of a tile stay in the CPU cache.
+ */
+public class SimilarityMatrix {
+
+	/** Default number of rows and columns of a tile. */
+	public static final int DEFAULT_TILE_SIZE = 256;
+
+	protected OTSnapshot snapshot;
+	protected DatabaseStatements dbStatements;
+	protected Map<Integer, long[]> ancestorCache;
+	protected int tileSize = DEFAULT_TILE_SIZE;
+	protected int parallelism = Runtime.getRuntime().availableProcessors();
+
+	/** Instanciates a new job for the snapshot of the given thesaurus.
+	 *  Words are looked up in the default language.
+	 *  @param openThesaurus The thesaurus; needs an in-memory snapshot.
+	 *  @throws JOTLException if the thesaurus has no snapshot. */
+	public SimilarityMatrix(final OpenThesaurus openThesaurus)
+			throws JOTLException {
+		snapshot = openThesaurus.getSnapshot();
+		if (snapshot == null)
+			throw new JOTLException("The similarity matrix requires an in-memory"
+					+ " snapshot; see OpenThesaurus.loadSnapshot()");
+
+		dbStatements = openThesaurus.dbStatements;
+		ancestorCache = new HashMap<Integer, long[]>();
+	}
+
+	/** Computes the similarity of the given words.
+	 *  @return The similarity between 0 and 1; 0 if any of the words is
+	 *  		unknown. */
+	public float similarity(final String word1, final String word2) {
+		return similarity(getProfile(word1), getProfile(word2));
+	}
+
+	/** Computes the similarity matrix of the given vocabulary and writes it
+	 *  into the given file, which is overwritten. The file contains the
+	 *  <code>n * n</code> similarities as big-endian floats in row-major
+	 *  order, where <code>n</code> is the size of the vocabulary. It is
+	 *  written through memory mappings, i.e., the matrix does not need to
+	 *  fit into the heap.
+	 *  @param vocabulary The words of the rows and columns.
+	 *  @param file The target file.
+	 *  @throws IOException in case of write errors. */
+	public void writeMatrix(final List<String> vocabulary, final File file)
+			throws IOException {
+		final int n = vocabulary.size();
+		final long[][] profiles = getProfiles(vocabulary);
+		int tileCount = (n + tileSize - 1) / tileSize;
+		if ((long) tileSize * n * 4 > Integer.MAX_VALUE)
+			throw new IllegalArgumentException("Vocabulary too large for the tile size");
+
+		RandomAccessFile out = new RandomAccessFile(file, "rw");
+		try {
+			out.setLength((long) n * n * 4);
+			FileChannel channel = out.getChannel();
+			final MappedByteBuffer[] bands = new MappedByteBuffer[tileCount];
+			for (int t = 0; t < tileCount; t++) {
+				int rows = Math.min(tileSize, n - t * tileSize);
+				bands[t] = channel.map(FileChannel.MapMode.READ_WRITE,
+						(long) t * tileSize * n * 4, (long) rows * n * 4);
+			}
+
+			// The matrix is symmetric; each tile above the diagonal is
+			// written into its own band and transposed into the band of its
+			// columns. Tiles write to distinct positions of the bands.
+			List<Callable<Void>> tasks = new ArrayList<Callable<Void>>();
+			for (int i = 0; i < tileCount; i++)
+				for (int j = i; j < tileCount; j++) {
+					final int rowTile = i;
+					final int columnTile = j;
+					tasks.add(new Callable<Void>() {
+						public Void call() {
+							computeTile(profiles, n, rowTile, columnTile, bands);
+							return null;
+						}
+					});
+				}
+			invokeAll(tasks);
+			for (MappedByteBuffer band : bands)
+				band.force();
+		} finally {
+			out.close();
+		}
+	}
+
+	protected void computeTile(final long[][] profiles, final int n,
+			final int rowTile, final int columnTile,
+			final MappedByteBuffer[] bands) {
+		int rowStart = rowTile * tileSize;
+		int rowEnd = Math.min(rowStart + tileSize, n);
+		int columnStart = columnTile * tileSize;
+		int columnEnd = Math.min(columnStart + tileSize, n);
+		for (int i = rowStart; i < rowEnd; i++)
+			for (int j = (rowTile == columnTile ? i : columnStart); j < columnEnd; j++) {
+				float value = similarity(profiles[i], profiles[j]);
+				bands[rowTile].putFloat(((i - rowStart) * n + j) * 4, value);
+				bands[columnTile].putFloat(((j - columnStart) * n + i) * 4, value);
+			}
+	}
+
+	/** Computes the <code>k</code> most similar words of each word of the
+	 *  given vocabulary and writes them into the given file, which is
+	 *  overwritten. The file starts with the size of the vocabulary and
+	 *  <code>k</code>, followed by one row per word consisting of the
+	 *  number of entries and, for each entry, the column index and the
+	 *  similarity in descending order of the similarity (big-endian ints
+	 *  and floats). Words are not listed as similar to themselves, and
+	 *  words with a similarity of 0 are omitted.
+	 *  @param vocabulary The words of the rows and columns.
+	 *  @param k The maximum number of entries per row.
+	 *  @param file The target file.
+	 *  @throws IOException in case of write errors. */
+	public void writeTopK(final List<String> vocabulary, final int k,
+			final File file) throws IOException {
+		final int n = vocabulary.size();
+		final long[][] profiles = getProfiles(vocabulary);
+		final int[][] columns = new int[n][];
+		final float[][] values = new float[n][];
+		List<Callable<Void>> tasks = new ArrayList<Callable<Void>>();
+		for (int start = 0; start < n; start += tileSize) {
+			final int rowStart = start;
+			tasks.add(new Callable<Void>() {
+				public Void call() {
+					computeTopK(profiles, n, k, rowStart, columns, values);
+					return null;
+				}
+			});
+		}
+		invokeAll(tasks);
+
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+				new FileOutputStream(file), 1 << 16));
+		try {
+			out.writeInt(n);
+			out.writeInt(k);
+			for (int i = 0; i < n; i++) {
+				out.writeInt(columns[i].length);
+				for (int e = 0; e < columns[i].length; e++) {
+					out.writeInt(columns[i][e]);
+					out.writeFloat(values[i][e]);
+				}
+			}
+		} finally {
+			out.close();
+		}
+	}
+
+	protected void computeTopK(final long[][] profiles, final int n,
+			final int k, final int rowStart, final int[][] columns,
+			final float[][] values) {
+		int rowEnd = Math.min(rowStart + tileSize, n);
+		int[][] heapColumns = new int[rowEnd - rowStart][k];
+		float[][] heapValues = new float[rowEnd - rowStart][k];
+		int[] heapSizes = new int[rowEnd - rowStart];
+		for (int columnStart = 0; columnStart < n; columnStart += tileSize) {
+			int columnEnd = Math.min(columnStart + tileSize, n);
+			for (int i = rowStart; i < rowEnd; i++)
+				for (int j = columnStart; j < columnEnd; j++) {
+					if (i == j)
+						continue;
+					float value = similarity(profiles[i], profiles[j]);
+					if (value > 0.0f)
+						heapSizes[i - rowStart] = offer(heapColumns[i - rowStart],
+								heapValues[i - rowStart], heapSizes[i - rowStart], j, value);
+				}
+		}
+
+		for (int i = rowStart; i < rowEnd; i++) {
+			int size = heapSizes[i - rowStart];
+			int[] heapColumn = heapColumns[i - rowStart];
+			float[] heapValue = heapValues[i - rowStart];
+			columns[i] = new int[size];
+			values[i] = new float[size];
+			// Remove the minimum repeatedly and fill the result from the end.
+			while (size > 0) {
+				columns[i][size - 1] = heapColumn[0];
+				values[i][size - 1] = heapValue[0];
+				size--;
+				heapColumn[0] = heapColumn[size];
+				heapValue[0] = heapValue[size];
+				siftDown(heapColumn, heapValue, size);
+			}
+		}
+	}
+
+	/** Offers an entry to a bounded min-heap of the given capacity ordered
+	 *  by the value and, for equal values, descending column.
+	 *  @return The new size of the heap. */
+	protected static int offer(final int[] columns, final float[] values,
+			final int size, final int column, final float value) {
+		if (size < columns.length) {
+			int i = size;
+			while (i > 0) {
+				int parent = (i - 1) >>> 1;
+				if (!less(value, column, values[parent], columns[parent]))
+					break;
+				columns[i] = columns[parent];
+				values[i] = values[parent];
+				i = parent;
+			}
+			columns[i] = column;
+			values[i] = value;
+			return size + 1;
+		}
+
+		if (size > 0 && less(values[0], columns[0], value, column)) {
+			columns[0] = column;
+			values[0] = value;
+			siftDown(columns, values, size);
+		}
+		return size;
+	}
+
+	protected static void siftDown(final int[] columns, final float[] values,
+			final int size) {
+		int i = 0;
+		while (true) {
+			int smallest = i;
+			int left = 2 * i + 1;
+			int right = left + 1;
+			if (left < size && less(values[left], columns[left],
+					values[smallest], columns[smallest]))
+				smallest = left;
+			if (right < size && less(values[right], columns[right],
+					values[smallest], columns[smallest]))
+				smallest = right;
+			if (smallest == i)
+				return;
+
+			int column = columns[i];
+			float value = values[i];
+			columns[i] = columns[smallest];
+			values[i] = values[smallest];
+			columns[smallest] = column;
+			values[smallest] = value;
+			i = smallest;
+		}
+	}
+
+	protected static boolean less(final float value1, final int column1,
+			final float value2, final int column2) {
+		return (value1 < value2 || (value1 == value2 && column1 > column2));
+	}
+
+	protected void invokeAll(final List<Callable<Void>> tasks) throws IOException {
+		ForkJoinPool pool = new ForkJoinPool(parallelism);
+		try {
+			for (Future<Void> future : pool.invokeAll(tasks))
+				future.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted while computing the similarities", e);
+		} catch (ExecutionException e) {
+			throw new IOException("Unable to compute the similarities", e.getCause());
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+	/** Computes the similarity of two word profiles by merging them. */
+	protected static float similarity(final long[] profile1, final long[] profile2) {
+		int best = Integer.MAX_VALUE;
+		int i = 0;
+		int j = 0;
+		while (i < profile1.length && j < profile2.length) {
+			int synset1 = (int) (profile1[i] >>> 32);
+			int synset2 = (int) (profile2[j] >>> 32);
+			if (synset1 < synset2)
+				i++;
+			else if (synset1 > synset2)
+				j++;
+			else
+				best = Math.min(best, (int) profile1[i++] + (int) profile2[j++]);
+		}
+		return (best == Integer.MAX_VALUE ? 0.0f : 1.0f / (1 + best));
+	}
+
+	/** Resolves all words of the vocabulary to their profiles. */
+	protected long[][] getProfiles(final List<String> vocabulary) {
+		long[][] result = new long[vocabulary.size()][];
+		for (int i = 0; i < result.length; i++)
+			result[i] = getProfile(vocabulary.get(i));
+		return result;
+	}
+
+	/** Returns the profile of the given word, i.e., the synset indexes of
+	 *  its synsets and their hypernyms (upper 32 bits) with the minimum
+	 *  distance to any of the word's synsets (lower 32 bits) in ascending
+	 *  order. */
+	protected long[] getProfile(final String word) {
+		int[] termIndexes = snapshot.getTermIndexesByWord(word,
+				dbStatements.getLanguage(), dbStatements.getIsCaseSensitive());
+		if (termIndexes.length == 1)
+			return getAncestors(snapshot.getTermSynsetIndex(termIndexes[0]));
+
+		long[][] ancestors = new long[termIndexes.length][];
+		int size = 0;
+		for (int t = 0; t < termIndexes.length; t++) {
+			ancestors[t] = getAncestors(snapshot.getTermSynsetIndex(termIndexes[t]));
+			size += ancestors[t].length;
+		}
+		long[] result = new long[size];
+		size = 0;
+		for (long[] entries : ancestors) {
+			System.arraycopy(entries, 0, result, size, entries.length);
+			size += entries.length;
+		}
+		// The first entry of each synset index has the minimum distance.
+		Arrays.sort(result);
+		int count = 0;
+		for (int i = 0; i < result.length; i++)
+			if (count == 0 || (result[i] >>> 32) != (result[count - 1] >>> 32))
+				result[count++] = result[i];
+		return Arrays.copyOf(result, count);
+	}
+
+	/** Returns the synset with the given index and its hypernyms with their
+	 *  distance in the format of {@link #getProfile(String)}. The result is
+	 *  cached for subsequent calls. */
+	protected long[] getAncestors(final int synsetIndex) {
+		if (synsetIndex < 0)
+			return new long[0];
+
+		synchronized (ancestorCache) {
+			long[] result = ancestorCache.get(synsetIndex);
+			if (result != null)
+				return result;
+		}
+
+		LinkIndex links = snapshot.getSynsetLinks();
+		int[] targets = links.getTargets();
+		Map<Integer, Integer> distances = new HashMap<Integer, Integer>();
+		IntList frontier = new IntList();
+		distances.put(synsetIndex, 0);
+		frontier.add(synsetIndex);
+		for (int depth = 1; frontier.size() > 0; depth++) {
+			IntList next = new IntList();
+			for (int i = 0; i < frontier.size(); i++) {
+				int end = links.getEnd(frontier.get(i), OTSynsetLinkType.HYPERNYMY);
+				for (int j = links.getStart(frontier.get(i), OTSynsetLinkType.HYPERNYMY); j < end; j++)
+					if (!distances.containsKey(targets[j])) {
+						distances.put(targets[j], depth);
+						next.add(targets[j]);
+					}
+			}
+			frontier = next;
+		}
+
+		long[] result = new long[distances.size()];
+		int i = 0;
+		for (Map.Entry<Integer, Integer> entry : distances.entrySet())
+			result[i++] = ((long) entry.getKey() << 32) | entry.getValue();
+		Arrays.sort(result);
+		synchronized (ancestorCache) {
+			ancestorCache.put(synsetIndex, result);
+		}
+		return result;
+	}
+
+	/** @param tileSize The number of rows and columns of a tile; defaults
+	 *  		to {@value #DEFAULT_TILE_SIZE}. */
+	public void setTileSize(final int tileSize) {
+		this.tileSize = tileSize;
+	}
+
+	/** @return The number of rows and columns of a tile. */
+	public int getTileSize() {
+		return tileSize;
+	}
+
+	/** @param parallelism The number of threads computing the tiles;
+	 *  		defaults to the number of available processors. */
+	public void setParallelism(final int parallelism) {
+		this.parallelism = parallelism;
+	}
+
+	/** @return The number of threads computing the tiles. */
+	public int getParallelism() {
+		return parallelism;
+	}
+
+}
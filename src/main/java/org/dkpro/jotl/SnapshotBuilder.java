@@ -0,0 +1,407 @@
+/*******************************************************************************
+ * Copyright 2015
+ * Ubiquitous Knowledge Processing (UKP) Lab
+ * Technische Universität Darmstadt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package org.dkpro.jotl;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Collects the rows of the OpenThesaurus tables and builds an immutable
+ * {@link OTSnapshot} from them. The rows may be added in any order. If a
+ * previous snapshot is given, the data of unchanged terms and categories
+ * is shared with the previous snapshot, and the previous snapshot itself
+ * is returned if nothing has changed at all. The builder is not thread
+ * safe.
+ */
+public class SnapshotBuilder {
+
+	protected OTSnapshot previous;
+
+	protected IntList synsetIds;
+
+	protected IntList termIds;
+	protected IntList termSynsetIds;
+	protected List<String> words;
+	protected List<String> normalizedWords;
+	protected IntList termLevels;
+	protected IntList termLanguageIds;
+	protected IntList termGrammarIds;
+	protected BitSet acronyms;
+	protected BitSet shortForms;
+
+	protected IntList synsetLinkSources;
+	protected IntList synsetLinkTargets;
+	protected IntList synsetLinkTypes;
+	protected IntList termLinkSources;
+	protected IntList termLinkTargets;
+	protected IntList termLinkTypes;
+
+	protected IntList categorySynsetIds;
+	protected List<OTCategory> categories;
+	protected IntList tagTermIds;
+	protected List<String> tags;
+	protected Map<String, String> tagNames;
+	protected boolean compactStrings;
+
+	/** Instanciates a new, empty builder. */
+	public SnapshotBuilder() {
+		this(null);
+	}
+
+	/** Instanciates a new, empty builder for an update of the given
+	 *  snapshot.
+	 *  @param previous The snapshot to be updated or null. */
+	public SnapshotBuilder(final OTSnapshot previous) {
+		this.previous = previous;
+		synsetIds = new IntList();
+		termIds = new IntList();
+		termSynsetIds = new IntList();
+		words = new ArrayList<String>();
+		normalizedWords = new ArrayList<String>();
+		termLevels = new IntList();
+		termLanguageIds = new IntList();
+		termGrammarIds = new IntList();
+		acronyms = new BitSet();
+		shortForms = new BitSet();
+		synsetLinkSources = new IntList();
+		synsetLinkTargets = new IntList();
+		synsetLinkTypes = new IntList();
+		termLinkSources = new IntList();
+		termLinkTargets = new IntList();
+		termLinkTypes = new IntList();
+		categorySynsetIds = new IntList();
+		categories = new ArrayList<OTCategory>();
+		tagTermIds = new IntList();
+		tags = new ArrayList<String>();
+		tagNames = new HashMap<String, String>();
+	}
+
+	/** @return true if the words are stored in a {@link StringArena}. */
+	public boolean getCompactStrings() {
+		return compactStrings;
+	}
+
+	/** @param compactStrings Store the words of the snapshot in a
+	 *  		{@link StringArena} rather than as string objects, which
+	 *  		considerably reduces the memory footprint of the snapshot. */
+	public void setCompactStrings(final boolean compactStrings) {
+		this.compactStrings = compactStrings;
+	}
+
+	/** Adds a row of the synset table. */
+	public void addSynset(final int synsetId) {
+		synsetIds.add(synsetId);
+	}
+
+	/** Adds a row of the term table. */
+	public void addTerm(final int termId, final int synsetId,
+			final String word, final String normalizedWord, final int termLevel,
+			final boolean isAcronym, final boolean isShortForm,
+			final int languageId, final int grammarId) {
+		int row = termIds.size();
+		termIds.add(termId);
+		termSynsetIds.add(synsetId);
+		words.add(word);
+		normalizedWords.add(normalizedWord);
+		termLevels.add(termLevel);
+		termLanguageIds.add(languageId);
+		termGrammarIds.add(grammarId);
+		acronyms.set(row, isAcronym);
+		shortForms.set(row, isShortForm);
+	}
+
+	/** Adds a row of the synset_link table. */
+	public void addSynsetLink(final int synsetId, final int targetSynsetId,
+			final int linkType) {
+		synsetLinkSources.add(synsetId);
+		synsetLinkTargets.add(targetSynsetId);
+		synsetLinkTypes.add(linkType);
+	}
+
+	/** Adds a row of the term_link table. */
+	public void addTermLink(final int termId, final int targetTermId,
+			final int linkType) {
+		termLinkSources.add(termId);
+		termLinkTargets.add(targetTermId);
+		termLinkTypes.add(linkType);
+	}
+
+	/** Adds a row of the category_link table joined with the category. */
+	public void addCategoryLink(final int synsetId, final OTCategory category) {
+		categorySynsetIds.add(synsetId);
+		categories.add(category);
+	}
+
+	/** Adds a row of the term_tag table joined with the tag name. */
+	public void addTag(final int termId, final String tag) {
+		String name = tagNames.get(tag);
+		if (name == null) {
+			name = tag;
+			tagNames.put(name, name);
+		}
+		tagTermIds.add(termId);
+		tags.add(name);
+	}
+
+	/** Adds all rows collected by the given builder. This allows for
+	 *  collecting the rows of different partitions concurrently by
+	 *  separate builders and merging them afterwards.
+	 *  @param other The builder whose rows are added; it is not changed. */
+	public void addAll(final SnapshotBuilder other) {
+		synsetIds.addAll(other.synsetIds);
+		int offset = termIds.size();
+		termIds.addAll(other.termIds);
+		termSynsetIds.addAll(other.termSynsetIds);
+		words.addAll(other.words);
+		normalizedWords.addAll(other.normalizedWords);
+		termLevels.addAll(other.termLevels);
+		termLanguageIds.addAll(other.termLanguageIds);
+		termGrammarIds.addAll(other.termGrammarIds);
+		for (int row = other.acronyms.nextSetBit(0); row >= 0; row = other.acronyms.nextSetBit(row + 1))
+			acronyms.set(offset + row);
+		for (int row = other.shortForms.nextSetBit(0); row >= 0; row = other.shortForms.nextSetBit(row + 1))
+			shortForms.set(offset + row);
+		synsetLinkSources.addAll(other.synsetLinkSources);
+		synsetLinkTargets.addAll(other.synsetLinkTargets);
+		synsetLinkTypes.addAll(other.synsetLinkTypes);
+		termLinkSources.addAll(other.termLinkSources);
+		termLinkTargets.addAll(other.termLinkTargets);
+		termLinkTypes.addAll(other.termLinkTypes);
+		categorySynsetIds.addAll(other.categorySynsetIds);
+		categories.addAll(other.categories);
+		for (int i = 0; i < other.tags.size(); i++)
+			addTag(other.tagTermIds.get(i), other.tags.get(i));
+	}
+
+	/** Creates the snapshot from the rows added so far.
+	 *  @return The new snapshot, or the previous snapshot if its data
+	 *  		equals the added rows. */
+	public OTSnapshot build() {
+		OTSnapshot result = new OTSnapshot();
+		result.synsetIds = synsetIds.toSortedUniqueArray();
+		int synsetCount = result.synsetIds.length;
+
+		// Terms ordered by id.
+		int[] termRows = sortRows(termIds);
+		int termCount = termRows.length;
+		result.termIds = new int[termCount];
+		result.termSynsetIds = new int[termCount];
+		result.termSynsetIndexes = new int[termCount];
+		result.words = new String[termCount];
+		result.normalizedWords = new String[termCount];
+		result.termLevels = new int[termCount];
+		result.termLanguageIds = new int[termCount];
+		result.termGrammarIds = new int[termCount];
+		result.acronyms = new BitSet(termCount);
+		result.shortForms = new BitSet(termCount);
+		for (int t = 0; t < termCount; t++) {
+			int row = termRows[t];
+			result.termIds[t] = termIds.get(row);
+			result.termSynsetIds[t] = termSynsetIds.get(row);
+			result.termSynsetIndexes[t] = result.getSynsetIndex(result.termSynsetIds[t]);
+			result.words[t] = words.get(row);
+			result.normalizedWords[t] = normalizedWords.get(row);
+			result.termLevels[t] = termLevels.get(row);
+			result.termLanguageIds[t] = termLanguageIds.get(row);
+			result.termGrammarIds[t] = termGrammarIds.get(row);
+			result.acronyms.set(t, acronyms.get(row));
+			result.shortForms.set(t, shortForms.get(row));
+		}
+		shareWords(result);
+
+		int[] synsetTermKeys = result.termSynsetIndexes;
+		result.synsetTermOffsets = new int[synsetCount + 1];
+		result.synsetTerms = groupRows(synsetTermKeys, synsetCount,
+				result.synsetTermOffsets);
+
+		// Links.
+		result.synsetLinks = buildLinks(synsetCount, result.synsetIds,
+				synsetLinkSources, synsetLinkTargets, synsetLinkTypes);
+		result.synsetLinksBackwards = result.synsetLinks.reverse();
+		result.termLinks = buildLinks(termCount, result.termIds,
+				termLinkSources, termLinkTargets, termLinkTypes);
+
+		// Categories and tags.
+		int[] keys = new int[categorySynsetIds.size()];
+		for (int i = 0; i < keys.length; i++)
+			keys[i] = result.getSynsetIndex(categorySynsetIds.get(i));
+		result.categoryOffsets = new int[synsetCount + 1];
+		int[] rows = groupRows(keys, synsetCount, result.categoryOffsets);
+		result.categories = new OTCategory[rows.length];
+		for (int i = 0; i < rows.length; i++)
+			result.categories[i] = categories.get(rows[i]);
+		shareCategories(result);
+
+		keys = new int[tagTermIds.size()];
+		for (int i = 0; i < keys.length; i++)
+			keys[i] = result.getTermIndex(tagTermIds.get(i));
+		result.tagOffsets = new int[termCount + 1];
+		rows = groupRows(keys, termCount, result.tagOffsets);
+		result.tags = new String[rows.length];
+		for (int i = 0; i < rows.length; i++)
+			result.tags[i] = tags.get(rows[i]);
+
+		if (previous != null && (previous.arena != null) == compactStrings
+				&& hasSameData(previous, result))
+			return previous;
+
+		result.initIndexes(compactStrings);
+		return result;
+	}
+
+	/** Returns the row numbers ordered by the given ids, omitting rows with
+	 *  duplicate ids. */
+	protected static int[] sortRows(final IntList ids) {
+		long[] keys = new long[ids.size()];
+		for (int row = 0; row < keys.length; row++)
+			keys[row] = ((long) ids.get(row) << 32) | row;
+		Arrays.sort(keys);
+
+		int count = 0;
+		int[] result = new int[keys.length];
+		for (int i = 0; i < keys.length; i++)
+			if (i == 0 || (keys[i] >> 32) != (keys[i - 1] >> 32))
+				result[count++] = (int) keys[i];
+		return Arrays.copyOf(result, count);
+	}
+
+	/** Groups the row numbers by the given keys using a stable counting
+	 *  sort. Rows with a negative key are omitted.
+	 *  @param keys The key (node index) of each row.
+	 *  @param nodeCount The number of nodes.
+	 *  @param offsets Array of length nodeCount + 1 that receives the
+	 *  		offsets of each node's rows.
+	 *  @return The grouped row numbers. */
+	protected static int[] groupRows(final int[] keys, final int nodeCount,
+			final int[] offsets) {
+		for (int key : keys)
+			if (key >= 0)
+				offsets[key + 1]++;
+		for (int i = 0; i < nodeCount; i++)
+			offsets[i + 1] += offsets[i];
+
+		int[] position = Arrays.copyOf(offsets, nodeCount);
+		int[] result = new int[offsets[nodeCount]];
+		for (int row = 0; row < keys.length; row++)
+			if (keys[row] >= 0)
+				result[position[keys[row]]++] = row;
+		return result;
+	}
+
+	/** Builds the link index from links between ids. Links referring to
+	 *  unknown ids are omitted. */
+	protected static LinkIndex buildLinks(final int nodeCount, final int[] ids,
+			final IntList sources, final IntList targets, final IntList types) {
+		IntList sourceIndexes = new IntList(sources.size());
+		IntList targetIndexes = new IntList(sources.size());
+		IntList linkTypes = new IntList(sources.size());
+		for (int i = 0; i < sources.size(); i++) {
+			int source = Arrays.binarySearch(ids, sources.get(i));
+			int target = Arrays.binarySearch(ids, targets.get(i));
+			if (source < 0 || target < 0)
+				continue;
+
+			sourceIndexes.add(source);
+			targetIndexes.add(target);
+			linkTypes.add(types.get(i));
+		}
+		return LinkIndex.build(nodeCount, sourceIndexes.toArray(),
+				targetIndexes.toArray(), linkTypes.toArray());
+	}
+
+	/** Replaces the words of unchanged terms by the instances of the
+	 *  previous snapshot. */
+	protected void shareWords(final OTSnapshot result) {
+		if (previous == null || previous.arena != null || compactStrings)
+			return;
+
+		for (int t = 0; t < result.termIds.length; t++) {
+			int p = previous.getTermIndex(result.termIds[t]);
+			if (p < 0)
+				continue;
+
+			if (equals(result.words[t], previous.getWord(p)))
+				result.words[t] = previous.getWord(p);
+			if (equals(result.normalizedWords[t], previous.getNormalizedWord(p)))
+				result.normalizedWords[t] = previous.getNormalizedWord(p);
+		}
+	}
+
+	/** Replaces unchanged categories by the instances of the previous
+	 *  snapshot. */
+	protected void shareCategories(final OTSnapshot result) {
+		Map<Integer, OTCategory> shared = new HashMap<Integer, OTCategory>();
+		if (previous != null)
+			for (OTCategory category : previous.categories)
+				shared.put(category.getCategoryId(), category);
+		for (int i = 0; i < result.categories.length; i++) {
+			OTCategory category = result.categories[i];
+			OTCategory other = shared.get(category.getCategoryId());
+			if (other != null && equals(other.getName(), category.getName())
+					&& other.getType() == category.getType()
+					&& other.isDisabled() == category.isDisabled())
+				result.categories[i] = other;
+			else
+				shared.put(category.getCategoryId(), category);
+		}
+	}
+
+	protected static boolean hasSameData(final OTSnapshot snapshot1,
+			final OTSnapshot snapshot2) {
+		return Arrays.equals(snapshot1.synsetIds, snapshot2.synsetIds)
+				&& Arrays.equals(snapshot1.termIds, snapshot2.termIds)
+				&& Arrays.equals(snapshot1.termSynsetIds, snapshot2.termSynsetIds)
+				&& hasSameWords(snapshot1, snapshot2)
+				&& Arrays.equals(snapshot1.termLevels, snapshot2.termLevels)
+				&& Arrays.equals(snapshot1.termLanguageIds, snapshot2.termLanguageIds)
+				&& Arrays.equals(snapshot1.termGrammarIds, snapshot2.termGrammarIds)
+				&& snapshot1.acronyms.equals(snapshot2.acronyms)
+				&& snapshot1.shortForms.equals(snapshot2.shortForms)
+				&& hasSameLinks(snapshot1.synsetLinks, snapshot2.synsetLinks)
+				&& hasSameLinks(snapshot1.termLinks, snapshot2.termLinks)
+				&& Arrays.equals(snapshot1.categoryOffsets, snapshot2.categoryOffsets)
+				&& Arrays.equals(snapshot1.categories, snapshot2.categories)
+				&& Arrays.equals(snapshot1.tagOffsets, snapshot2.tagOffsets)
+				&& Arrays.equals(snapshot1.tags, snapshot2.tags);
+	}
+
+	protected static boolean hasSameWords(final OTSnapshot snapshot1,
+			final OTSnapshot snapshot2) {
+		for (int t = 0; t < snapshot1.termIds.length; t++)
+			if (!equals(snapshot1.getWord(t), snapshot2.getWord(t))
+					|| !equals(snapshot1.getNormalizedWord(t), snapshot2.getNormalizedWord(t)))
+				return false;
+		return true;
+	}
+
+	protected static boolean hasSameLinks(final LinkIndex links1,
+			final LinkIndex links2) {
+		return Arrays.equals(links1.getOffsets(), links2.getOffsets())
+				&& Arrays.equals(links1.getTargets(), links2.getTargets())
+				&& Arrays.equals(links1.getTypes(), links2.getTypes());
+	}
+
+	protected static boolean equals(final String value1, final String value2) {
+		return (value1 == null ? value2 == null : value1.equals(value2));
+	}
+
+}
@@ -0,0 +1,163 @@
+/*******************************************************************************
+ * Copyright 2015
+ * Ubiquitous Knowledge Processing (UKP) Lab
+ * Technische Universität Darmstadt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package org.dkpro.jotl;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * Loads the entire OpenThesaurus data from the database into an
+ * {@link OTSnapshot}. Each table is read by a single streaming query.
+ */
+public class SnapshotLoader {
+
+	protected Connection connection;
+	protected boolean compactStrings;
+
+	/** Instanciates a new loader using the given database connection. The
+	 *  connection is not closed by the loader.
+	 *  @param connection The JDBC database connection. */
+	public SnapshotLoader(final Connection connection) {
+		this.connection = connection;
+	}
+
+	/** @param compactStrings Store the words of the snapshot in a
+	 *  		{@link StringArena}; see
+	 *  		{@link SnapshotBuilder#setCompactStrings(boolean)}. */
+	public void setCompactStrings(final boolean compactStrings) {
+		this.compactStrings = compactStrings;
+	}
+
+	/** Loads a new snapshot.
+	 *  @param previous The currently active snapshot or null. If given, the
+	 *  		data of unchanged terms is shared with the previous snapshot.
+	 *  @return The new snapshot or the previous snapshot, if the data has
+	 *  		not changed.
+	 *  @throws SQLException in case of database errors. */
+	public OTSnapshot load(final OTSnapshot previous) throws SQLException {
+		SnapshotBuilder builder = new SnapshotBuilder(previous);
+		builder.setCompactStrings(compactStrings);
+		loadSynsets(builder, "");
+		loadTerms(builder, "");
+		loadSynsetLinks(builder, "");
+		loadTermLinks(builder, "");
+		loadCategories(builder, "");
+		loadTags(builder, "");
+		return builder.build();
+	}
+
+	// The load methods take an optional where clause restricting the rows
+	// to be loaded; see ParallelSnapshotLoader.
+
+	protected void loadSynsets(final SnapshotBuilder builder,
+			final String condition) throws SQLException {
+		Statement stmt = createStreamingStatement();
+		try {
+			ResultSet rs = stmt.executeQuery("SELECT id FROM synset" + condition);
+			while (rs.next())
+				builder.addSynset(rs.getInt(1));
+		} finally {
+			stmt.close();
+		}
+	}
+
+	protected void loadTerms(final SnapshotBuilder builder,
+			final String condition) throws SQLException {
+		Statement stmt = createStreamingStatement();
+		try {
+			ResultSet rs = stmt.executeQuery("SELECT id, synset_id, word,"
+					+ " normalized_word, level_id, is_acronym, is_short_form,"
+					+ " language_id, word_grammar_id FROM term" + condition);
+			while (rs.next())
+				builder.addTerm(rs.getInt(1), rs.getInt(2), rs.getString(3),
+						rs.getString(4), rs.getInt(5), rs.getInt(6) > 0,
+						rs.getInt(7) > 0, rs.getInt(8), rs.getInt(9));
+		} finally {
+			stmt.close();
+		}
+	}
+
+	protected void loadSynsetLinks(final SnapshotBuilder builder,
+			final String condition) throws SQLException {
+		Statement stmt = createStreamingStatement();
+		try {
+			ResultSet rs = stmt.executeQuery("SELECT synset_id, target_synset_id,"
+					+ " link_type_id FROM synset_link" + condition);
+			while (rs.next())
+				builder.addSynsetLink(rs.getInt(1), rs.getInt(2), rs.getInt(3));
+		} finally {
+			stmt.close();
+		}
+	}
+
+	protected void loadTermLinks(final SnapshotBuilder builder,
+			final String condition) throws SQLException {
+		Statement stmt = createStreamingStatement();
+		try {
+			ResultSet rs = stmt.executeQuery("SELECT term_id, target_term_id,"
+					+ " link_type_id FROM term_link" + condition);
+			while (rs.next())
+				builder.addTermLink(rs.getInt(1), rs.getInt(2), rs.getInt(3));
+		} finally {
+			stmt.close();
+		}
+	}
+
+	protected void loadCategories(final SnapshotBuilder builder,
+			final String condition) throws SQLException {
+		Statement stmt = createStreamingStatement();
+		try {
+			ResultSet rs = stmt.executeQuery("SELECT l.synset_id, c.id,"
+					+ " c.category_name, c.category_type_id, c.is_disabled"
+					+ " FROM category c"
+					+ " INNER JOIN category_link l ON l.category_id = c.id"
+					+ condition);
+			while (rs.next())
+				builder.addCategoryLink(rs.getInt(1), new OTCategory(rs.getInt(2),
+						rs.getString(3), rs.getInt(4), rs.getInt(5) > 0));
+		} finally {
+			stmt.close();
+		}
+	}
+
+	protected void loadTags(final SnapshotBuilder builder,
+			final String condition) throws SQLException {
+		Statement stmt = createStreamingStatement();
+		try {
+			ResultSet rs = stmt.executeQuery("SELECT tt.term_tags_id, t.name"
+					+ " FROM tag t INNER JOIN term_tag tt ON tt.tag_id = t.id"
+					+ condition);
+			while (rs.next())
+				builder.addTag(rs.getInt(1), rs.getString(2));
+		} finally {
+			stmt.close();
+		}
+	}
+
+	/** Creates a statement that streams the result rows instead of
+	 *  buffering the entire result set in memory. */
+	protected Statement createStreamingStatement() throws SQLException {
+		Statement result = connection.createStatement(
+				ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+		result.setFetchSize(Integer.MIN_VALUE); // MySQL streaming mode.
+		return result;
+	}
+
+}
@@ -0,0 +1,356 @@
+/*******************************************************************************
+ * Copyright 2015
+ * Ubiquitous Knowledge Processing (UKP) Lab
+ * Technische Universität Darmstadt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package org.dkpro.jotl;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.zip.CRC32;
+
+/**
+ * Reads the binary format written by a {@link SnapshotWriter}. The
+ * checksums of all sections are verified when opening the data. Single
+ * adjacency lists and strings can be decoded on demand without decoding
+ * the rest of the data; {@link #readSnapshot(boolean)} decodes the entire
+ * data into an {@link OTSnapshot}. The reader is thread safe.
+ */
+public class SnapshotReader {
+
+	protected static final Charset UTF8 = Charset.forName("UTF-8");
+
+	protected ByteBuffer synsets;
+	protected ByteBuffer strings;
+	protected ByteBuffer terms;
+	protected ByteBuffer synsetLinks;
+	protected ByteBuffer termLinks;
+	protected ByteBuffer categories;
+	protected ByteBuffer tags;
+	protected int[] synsetIds;
+
+	/** Instanciates a reader for the given data.
+	 *  @param data The data written by a {@link SnapshotWriter}.
+	 *  @throws IOException if the data is invalid or corrupted. */
+	public SnapshotReader(final ByteBuffer data) throws IOException {
+		if (data.remaining() < 12 || data.getInt(data.position()) != SnapshotWriter.MAGIC)
+			throw new IOException("Not a JOTL snapshot file");
+		int version = data.getInt(data.position() + 4);
+		if (version != SnapshotWriter.VERSION)
+			throw new IOException("Unsupported snapshot version " + version);
+
+		int sectionCount = data.getInt(data.position() + 8);
+		for (int i = 0; i < sectionCount; i++) {
+			int header = data.position() + 12 + 16 * i;
+			int id = data.getInt(header);
+			int offset = data.getInt(header + 4);
+			int length = data.getInt(header + 8);
+			int checksum = data.getInt(header + 12);
+			if (offset < 0 || length < 0 || offset + length > data.remaining())
+				throw new IOException("Invalid snapshot section " + id);
+
+			ByteBuffer section = data.duplicate();
+			section.position(data.position() + offset);
+			section.limit(data.position() + offset + length);
+			section = section.slice();
+			if (checksum(section) != checksum)
+				throw new IOException("Checksum error in snapshot section " + id);
+
+			switch (id) {
+				case SnapshotWriter.SECTION_SYNSETS: synsets = section; break;
+				case SnapshotWriter.SECTION_STRINGS: strings = section; break;
+				case SnapshotWriter.SECTION_TERMS: terms = section; break;
+				case SnapshotWriter.SECTION_SYNSET_LINKS: synsetLinks = section; break;
+				case SnapshotWriter.SECTION_TERM_LINKS: termLinks = section; break;
+				case SnapshotWriter.SECTION_CATEGORIES: categories = section; break;
+				case SnapshotWriter.SECTION_TAGS: tags = section; break;
+				default: // Ignore unknown sections.
+			}
+		}
+		if (synsets == null || strings == null || terms == null
+				|| synsetLinks == null || termLinks == null
+				|| categories == null || tags == null)
+			throw new IOException("Incomplete snapshot file");
+
+		Cursor cursor = new Cursor(synsets, 0);
+		synsetIds = new int[cursor.readVarInt()];
+		int previous = 0;
+		for (int s = 0; s < synsetIds.length; s++)
+			synsetIds[s] = previous = previous + cursor.readVarInt();
+	}
+
+	/** Opens the given file by mapping it into memory.
+	 *  @param file The file written by a {@link SnapshotWriter}.
+	 *  @return The reader.
+	 *  @throws IOException in case of read errors. */
+	public static SnapshotReader open(final File file) throws IOException {
+		FileInputStream in = new FileInputStream(file);
+		try {
+			FileChannel channel = in.getChannel();
+			return new SnapshotReader(channel.map(FileChannel.MapMode.READ_ONLY,
+					0, channel.size()));
+		} finally {
+			in.close();
+		}
+	}
+
+	/** Reads the data from the given stream, e.g., a class path resource.
+	 *  The stream is not closed.
+	 *  @param in The stream containing data written by a
+	 *  		{@link SnapshotWriter}.
+	 *  @return The reader.
+	 *  @throws IOException in case of read errors. */
+	public static SnapshotReader read(final InputStream in) throws IOException {
+		ByteArrayOutputStream data = new ByteArrayOutputStream();
+		byte[] buffer = new byte[65536];
+		int count;
+		while ((count = in.read(buffer)) >= 0)
+			data.write(buffer, 0, count);
+		return new SnapshotReader(ByteBuffer.wrap(data.toByteArray()));
+	}
+
+	protected static int checksum(final ByteBuffer section) {
+		CRC32 crc = new CRC32();
+		byte[] buffer = new byte[8192];
+		ByteBuffer data = section.duplicate();
+		while (data.hasRemaining()) {
+			int count = Math.min(buffer.length, data.remaining());
+			data.get(buffer, 0, count);
+			crc.update(buffer, 0, count);
+		}
+		return (int) crc.getValue();
+	}
+
+	/** Returns the number of synsets. */
+	public int getNumberOfSynsets() {
+		return synsetIds.length;
+	}
+
+	/** Returns the id of the synset with the given index. */
+	public int getSynsetId(final int synsetIndex) {
+		return synsetIds[synsetIndex];
+	}
+
+	/** Returns the number of strings in the dictionary. */
+	public int getNumberOfStrings() {
+		return strings.getInt(0);
+	}
+
+	/** Decodes the string with the given position in the dictionary. Only
+	 *  the front-coded block containing the string is decoded. */
+	public String getString(final int stringId) {
+		int block = stringId / SnapshotWriter.STRING_BLOCK_SIZE;
+		int blockCount = (getNumberOfStrings() + SnapshotWriter.STRING_BLOCK_SIZE - 1)
+				/ SnapshotWriter.STRING_BLOCK_SIZE;
+		Cursor cursor = new Cursor(strings, 4 + 4 * blockCount + strings.getInt(4 + 4 * block));
+		byte[] value = new byte[0];
+		for (int i = block * SnapshotWriter.STRING_BLOCK_SIZE; i <= stringId; i++)
+			value = cursor.readFrontCoded(value);
+		return new String(value, UTF8);
+	}
+
+	/** Decodes the synset links of the synset with the given index.
+	 *  @param synsetIndex The synset index.
+	 *  @param type The link type or 0 for links of any type.
+	 *  @return The indexes of the target synsets. */
+	public int[] getSynsetLinks(final int synsetIndex, final int type) {
+		return decodeLinks(synsetLinks, synsetIndex, type);
+	}
+
+	/** Decodes the term links of the term with the given index.
+	 *  @param termIndex The term index, i.e., the position of the term in
+	 *  		the order of ascending term ids.
+	 *  @param type The link type or 0 for links of any type.
+	 *  @return The indexes of the target terms. */
+	public int[] getTermLinks(final int termIndex, final int type) {
+		return decodeLinks(termLinks, termIndex, type);
+	}
+
+	protected static int[] decodeLinks(final ByteBuffer section,
+			final int node, final int type) {
+		IntList targets = new IntList();
+		decodeLinks(section, node, type, targets, null);
+		return targets.toArray();
+	}
+
+	/** Decodes the adjacency list of the given node and appends the
+	 *  targets and types of all links of the given type (0 for all) to the
+	 *  given lists. The type list may be null. */
+	protected static void decodeLinks(final ByteBuffer section, final int node,
+			final int type, final IntList targets, final IntList types) {
+		Cursor cursor = listCursor(section, node);
+		int count = cursor.readVarInt();
+		int previousType = -1;
+		int previousTarget = 0;
+		for (int i = 0; i < count; i++) {
+			int linkType = cursor.readVarInt();
+			if (linkType != previousType)
+				previousTarget = 0;
+			int target = previousTarget + cursor.readVarInt();
+			if (type <= 0 || type == linkType) {
+				targets.add(target);
+				if (types != null)
+					types.add(linkType);
+			}
+			previousType = linkType;
+			previousTarget = target;
+		}
+	}
+
+	/** Returns a cursor positioned at the list of the given node within a
+	 *  section with an offset table. */
+	protected static Cursor listCursor(final ByteBuffer section, final int node) {
+		int nodeCount = section.getInt(0);
+		if (node < 0 || node >= nodeCount)
+			throw new IndexOutOfBoundsException(node + " >= " + nodeCount);
+		return new Cursor(section, 4 + 4 * nodeCount + section.getInt(4 + 4 * node));
+	}
+
+	/** Decodes the entire data into a new snapshot.
+	 *  @param compactStrings Store the words in a {@link StringArena}.
+	 *  @return The snapshot.
+	 *  @throws IOException if the data is corrupted. */
+	public OTSnapshot readSnapshot(final boolean compactStrings) throws IOException {
+		try {
+			SnapshotBuilder builder = new SnapshotBuilder();
+			builder.setCompactStrings(compactStrings);
+			for (int synsetId : synsetIds)
+				builder.addSynset(synsetId);
+
+			// Strings.
+			String[] dictionary = new String[getNumberOfStrings()];
+			int blockCount = (dictionary.length + SnapshotWriter.STRING_BLOCK_SIZE - 1)
+					/ SnapshotWriter.STRING_BLOCK_SIZE;
+			Cursor cursor = new Cursor(strings, 4 + 4 * blockCount);
+			byte[] value = new byte[0];
+			for (int i = 0; i < dictionary.length; i++) {
+				if (i % SnapshotWriter.STRING_BLOCK_SIZE == 0)
+					value = new byte[0];
+				value = cursor.readFrontCoded(value);
+				dictionary[i] = new String(value, UTF8);
+			}
+
+			// Terms.
+			cursor = new Cursor(terms, 0);
+			int[] termIds = new int[cursor.readVarInt()];
+			int previous = 0;
+			for (int t = 0; t < termIds.length; t++) {
+				termIds[t] = previous = previous + cursor.readVarInt();
+				int synsetId = cursor.readVarInt();
+				String word = toString(dictionary, cursor.readVarInt());
+				String normalizedWord = toString(dictionary, cursor.readVarInt());
+				int level = cursor.readVarInt();
+				int language = cursor.readVarInt();
+				int grammar = cursor.readVarInt();
+				int flags = cursor.readVarInt();
+				builder.addTerm(termIds[t], synsetId, word, normalizedWord, level,
+						(flags & 1) != 0, (flags & 2) != 0, language, grammar);
+			}
+
+			// Links.
+			IntList targets = new IntList();
+			IntList types = new IntList();
+			for (int s = 0; s < synsetIds.length; s++) {
+				targets.clear();
+				types.clear();
+				decodeLinks(synsetLinks, s, 0, targets, types);
+				for (int i = 0; i < targets.size(); i++)
+					builder.addSynsetLink(synsetIds[s], synsetIds[targets.get(i)], types.get(i));
+			}
+			for (int t = 0; t < termIds.length; t++) {
+				targets.clear();
+				types.clear();
+				decodeLinks(termLinks, t, 0, targets, types);
+				for (int i = 0; i < targets.size(); i++)
+					builder.addTermLink(termIds[t], termIds[targets.get(i)], types.get(i));
+			}
+
+			// Categories.
+			cursor = new Cursor(categories, 4 + 4 * categories.getInt(0));
+			OTCategory[] categoryTable = new OTCategory[cursor.readVarInt()];
+			for (int i = 0; i < categoryTable.length; i++)
+				categoryTable[i] = new OTCategory(cursor.readVarInt(),
+						toString(dictionary, cursor.readVarInt()),
+						cursor.readVarInt(), cursor.readVarInt() > 0);
+			for (int s = 0; s < synsetIds.length; s++) {
+				cursor = listCursor(categories, s);
+				int count = cursor.readVarInt();
+				for (int i = 0; i < count; i++)
+					builder.addCategoryLink(synsetIds[s], categoryTable[cursor.readVarInt()]);
+			}
+
+			// Tags.
+			for (int t = 0; t < termIds.length; t++) {
+				cursor = listCursor(tags, t);
+				int count = cursor.readVarInt();
+				for (int i = 0; i < count; i++)
+					builder.addTag(termIds[t], toString(dictionary, cursor.readVarInt()));
+			}
+			return builder.build();
+		} catch (RuntimeException e) {
+			throw new IOException("Corrupted snapshot file", e);
+		}
+	}
+
+	protected static String toString(final String[] dictionary, final int ref) {
+		return (ref == 0 ? null : dictionary[ref - 1]);
+	}
+
+
+	/**
+	 * Reads varints from a buffer using absolute positions, such that
+	 * several cursors can read the same buffer concurrently.
+	 */
+	protected static class Cursor {
+
+		protected ByteBuffer buffer;
+		protected int position;
+
+		public Cursor(final ByteBuffer buffer, final int position) {
+			this.buffer = buffer;
+			this.position = position;
+		}
+
+		public int readVarInt() {
+			int result = 0;
+			for (int shift = 0; shift < 35; shift += 7) {
+				byte b = buffer.get(position++);
+				result |= (b & 0x7F) << shift;
+				if (b >= 0)
+					return result;
+			}
+			throw new IllegalStateException("Malformed varint at " + position);
+		}
+
+		/** Decodes the next front-coded string given its predecessor. */
+		public byte[] readFrontCoded(final byte[] previous) {
+			int prefix = readVarInt();
+			int suffix = readVarInt();
+			byte[] result = new byte[prefix + suffix];
+			System.arraycopy(previous, 0, result, 0, prefix);
+			for (int i = 0; i < suffix; i++)
+				result[prefix + i] = buffer.get(position++);
+			return result;
+		}
+
+	}
+
+}
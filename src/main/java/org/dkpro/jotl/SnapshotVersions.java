@@ -0,0 +1,859 @@
+/*******************************************************************************
+ * Copyright 2015
+ * Ubiquitous Knowledge Processing (UKP) Lab
+ * Technische Universität Darmstadt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package org.dkpro.jotl;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * Store of several versions (releases) of the thesaurus that can be
+ * queried side by side. Each version is a persistent map from synset ids
+ * to immutable synset records, organized as a table of fixed-size pages.
+ * A version added on top of a base version shares all unchanged records,
+ * their terms, link arrays, categories, and words as well as all pages
+ * and word index buckets without changes with the base version, such that
+ * each additional version only costs memory proportional to its
+ * differences. For the same reason, the differences between two versions
+ * are computed by skipping all shared pages and records. Words and tags
+ * are shared between all versions of the store. Versions are immutable;
+ * the store itself is thread safe.
+ * Example: <code>versions.addVersion("2015-01", snapshot1);
+ * versions.addVersion("2015-02", snapshot2);
+ * versions.diff("2015-01", "2015-02").getChanged()</code>.
+ */
+public class SnapshotVersions {
+
+	protected static final int PAGE_BITS = 6;
+	protected static final int PAGE_SIZE = 1 << PAGE_BITS;
+	protected static final int BUCKET_BITS = 12;
+	protected static final int BUCKET_COUNT = 1 << BUCKET_BITS;
+
+	protected static final int[] NO_IDS = new int[0];
+	protected static final String[] NO_TAGS = new String[0];
+	protected static final OTCategory[] NO_CATEGORIES = new OTCategory[0];
+
+	protected Map<String, Version> versions;
+	protected Version latest;
+	protected Map<String, String> strings;
+	protected Map<Integer, OTCategory> categories;
+
+	/** Instanciates a new, empty store. */
+	public SnapshotVersions() {
+		versions = new LinkedHashMap<String, Version>();
+		strings = new HashMap<String, String>();
+		categories = new HashMap<Integer, OTCategory>();
+	}
+
+	/** Adds a new version based on the most recently added version.
+	 *  @param name The name of the new version.
+	 *  @param snapshot The thesaurus data of the new version.
+	 *  @return The new version.
+	 *  @throws IllegalArgumentException if the name is already in use. */
+	public Version addVersion(final String name, final OTSnapshot snapshot) {
+		synchronized (this) {
+			return addVersion(name, snapshot, latest);
+		}
+	}
+
+	/** Adds a new version based on the given version. The snapshot is only
+	 *  needed while the version is created; unchanged data is taken from
+	 *  the base version. The base version should therefore be the version
+	 *  most similar to the new one.
+	 *  @param name The name of the new version.
+	 *  @param snapshot The thesaurus data of the new version.
+	 *  @param baseName The name of the base version.
+	 *  @return The new version.
+	 *  @throws IllegalArgumentException if the name is already in use or
+	 *  		the base version does not exist. */
+	public Version addVersion(final String name, final OTSnapshot snapshot,
+			final String baseName) {
+		synchronized (this) {
+			return addVersion(name, snapshot, getExistingVersion(baseName));
+		}
+	}
+
+	protected Version addVersion(final String name, final OTSnapshot snapshot,
+			final Version base) {
+		if (versions.containsKey(name))
+			throw new IllegalArgumentException("Version already exists: " + name);
+
+		Version result = new VersionBuilder(snapshot, base).build(name);
+		versions.put(name, result);
+		latest = result;
+		return result;
+	}
+
+	/** Removes the version with the given name. Data shared with other
+	 *  versions is retained; the words, tags, and categories no longer used
+	 *  by any version are released.
+	 *  @return true if the version existed. */
+	public synchronized boolean removeVersion(final String name) {
+		Version version = versions.remove(name);
+		if (version == latest)
+			latest = null;
+		if (version != null)
+			pruneSharedData();
+		return (version != null);
+	}
+
+	/** Rebuilds the maps of shared words, tags, and categories from the
+	 *  remaining versions. Pages shared by several versions are visited
+	 *  only once. */
+	protected void pruneSharedData() {
+		Map<String, String> usedStrings = new HashMap<String, String>();
+		Map<Integer, OTCategory> usedCategories = new HashMap<Integer, OTCategory>();
+		Set<Synset[]> visitedPages = Collections.newSetFromMap(
+				new IdentityHashMap<Synset[], Boolean>());
+		for (Version version : versions.values())
+			for (Synset[] page : version.pages) {
+				if (page == null || !visitedPages.add(page))
+					continue;
+
+				for (Synset synset : page) {
+					if (synset == null)
+						continue;
+
+					for (Term term : synset.terms) {
+						retain(usedStrings, term.word);
+						retain(usedStrings, term.normalizedWord);
+						for (String tag : term.tags)
+							retain(usedStrings, tag);
+					}
+					for (OTCategory category : synset.categories)
+						if (categories.get(category.getCategoryId()) == category)
+							usedCategories.put(category.getCategoryId(), category);
+				}
+			}
+		strings = usedStrings;
+		categories = usedCategories;
+	}
+
+	protected static void retain(final Map<String, String> strings,
+			final String string) {
+		if (string != null)
+			strings.put(string, string);
+	}
+
+	/** Returns the version with the given name or null if there is no such
+	 *  version. */
+	public synchronized Version getVersion(final String name) {
+		return versions.get(name);
+	}
+
+	/** Returns the names of all versions in the order they have been
+	 *  added. */
+	public synchronized List<String> getVersionNames() {
+		return new ArrayList<String>(versions.keySet());
+	}
+
+	/** Computes the differences between two versions.
+	 *  @param fromName The name of the older version.
+	 *  @param toName The name of the newer version.
+	 *  @return The synsets added, removed, and changed from the older to
+	 *  		the newer version.
+	 *  @throws IllegalArgumentException if one of the versions does not
+	 *  		exist. */
+	public Diff diff(final String fromName, final String toName) {
+		Version from, to;
+		synchronized (this) {
+			from = getExistingVersion(fromName);
+			to = getExistingVersion(toName);
+		}
+		return diff(from, to);
+	}
+
+	/** Computes the differences between two versions. Pages and records
+	 *  shared by both versions are skipped without comparing their
+	 *  contents. */
+	public static Diff diff(final Version from, final Version to) {
+		IntList added = new IntList();
+		IntList removed = new IntList();
+		IntList changed = new IntList();
+		int pageCount = Math.max(from.pages.length, to.pages.length);
+		for (int p = 0; p < pageCount; p++) {
+			Synset[] fromPage = (p < from.pages.length ? from.pages[p] : null);
+			Synset[] toPage = (p < to.pages.length ? to.pages[p] : null);
+			if (fromPage == toPage)
+				continue;
+
+			for (int i = 0; i < PAGE_SIZE; i++) {
+				Synset fromSynset = (fromPage == null ? null : fromPage[i]);
+				Synset toSynset = (toPage == null ? null : toPage[i]);
+				if (fromSynset == toSynset)
+					continue;
+
+				int synsetId = (p << PAGE_BITS) | i;
+				if (fromSynset == null)
+					added.add(synsetId);
+				else if (toSynset == null)
+					removed.add(synsetId);
+				else if (!fromSynset.equals(toSynset))
+					changed.add(synsetId);
+			}
+		}
+		return new Diff(added.toArray(), removed.toArray(), changed.toArray());
+	}
+
+	protected Version getExistingVersion(final String name) {
+		Version result = versions.get(name);
+		if (result == null)
+			throw new IllegalArgumentException("Unknown version: " + name);
+		return result;
+	}
+
+	protected String share(final String string) {
+		if (string == null)
+			return null;
+
+		String result = strings.get(string);
+		if (result == null) {
+			result = string;
+			strings.put(result, result);
+		}
+		return result;
+	}
+
+	protected static int getBucket(final String key) {
+		int hash = key.hashCode() * 0x9E3779B9;
+		return hash >>> (32 - BUCKET_BITS);
+	}
+
+	/** Returns the folded keys of the words of the given synset, under
+	 *  which the synset is found in the word index. */
+	protected static List<String> getKeys(final Synset synset) {
+		List<String> result = new ArrayList<String>();
+		for (Term term : synset.terms) {
+			WordNormalizer normalizer = WordNormalizer.forLanguage(term.languageId);
+			if (term.word != null)
+				result.add(normalizer.fold(term.word));
+			if (term.normalizedWord != null && !term.normalizedWord.isEmpty())
+				result.add(normalizer.fold(term.normalizedWord));
+		}
+		return result;
+	}
+
+	protected static boolean equals(final Object object1, final Object object2) {
+		return (object1 == null ? object2 == null : object1.equals(object2));
+	}
+
+	protected static int[] getTargets(final int[] targets, final int[] types,
+			final int type) {
+		if (type == 0)
+			return targets.clone();
+
+		IntList result = new IntList();
+		for (int i = 0; i < targets.length; i++)
+			if (types[i] == type)
+				result.add(targets[i]);
+		return result.toArray();
+	}
+
+	protected static int[] concat(final int[] values1, final int[] values2) {
+		int[] result = Arrays.copyOf(values1, values1.length + values2.length);
+		System.arraycopy(values2, 0, result, values1.length, values2.length);
+		return result;
+	}
+
+
+	/** Creates the records of a new version from a snapshot, reusing the
+	 *  records, pages, and buckets of the base version. */
+	protected class VersionBuilder {
+
+		protected OTSnapshot snapshot;
+		protected Version base;
+
+		protected VersionBuilder(final OTSnapshot snapshot, final Version base) {
+			this.snapshot = snapshot;
+			this.base = (base != null ? base
+					: new Version(null, new Synset[0][], 0, new Bucket[BUCKET_COUNT]));
+		}
+
+		protected Version build(final String name) {
+			int synsetCount = snapshot.getNumberOfSynsets();
+			int pageCount = (synsetCount == 0 ? 0
+					: (snapshot.getSynsetId(synsetCount - 1) >>> PAGE_BITS) + 1);
+			Synset[][] pages = new Synset[pageCount][];
+			Synset[] page = null;
+			int pageIndex = -1;
+			for (int s = 0; s < synsetCount; s++) {
+				int synsetId = snapshot.getSynsetId(s);
+				if (synsetId < 0)
+					throw new IllegalArgumentException("Invalid synset id: " + synsetId);
+
+				if (synsetId >>> PAGE_BITS != pageIndex) {
+					if (page != null)
+						pages[pageIndex] = sharePage(page, pageIndex);
+					pageIndex = synsetId >>> PAGE_BITS;
+					page = new Synset[PAGE_SIZE];
+				}
+				page[synsetId & (PAGE_SIZE - 1)] = createSynset(s,
+						base.getSynset(synsetId));
+			}
+			if (page != null)
+				pages[pageIndex] = sharePage(page, pageIndex);
+
+			Version result = new Version(name, pages, synsetCount,
+					base.buckets.clone());
+			updateBuckets(result);
+			return result;
+		}
+
+		protected Synset[] sharePage(final Synset[] page, final int pageIndex) {
+			if (pageIndex < base.pages.length && base.pages[pageIndex] != null) {
+				Synset[] basePage = base.pages[pageIndex];
+				int i = 0;
+				while (i < PAGE_SIZE && page[i] == basePage[i])
+					i++;
+				if (i == PAGE_SIZE)
+					return basePage;
+			}
+			return page;
+		}
+
+		protected Synset createSynset(final int synsetIndex, final Synset previous) {
+			int[] termIndexes = snapshot.getSynsetTermIndexes(synsetIndex);
+			Term[] terms = new Term[termIndexes.length];
+			for (int i = 0; i < terms.length; i++)
+				terms[i] = createTerm(termIndexes[i], previous);
+
+			OTCategory[] synsetCategories = snapshot.getCategories(synsetIndex);
+			for (int i = 0; i < synsetCategories.length; i++)
+				synsetCategories[i] = shareCategory(synsetCategories[i]);
+
+			LinkIndex links = snapshot.getSynsetLinks();
+			int from = links.getOffsets()[synsetIndex];
+			int to = links.getOffsets()[synsetIndex + 1];
+			int[] linkTargets = new int[to - from];
+			for (int i = from; i < to; i++)
+				linkTargets[i - from] = snapshot.getSynsetId(links.getTargets()[i]);
+			int[] linkTypes = Arrays.copyOfRange(links.getTypes(), from, to);
+
+			if (previous != null) {
+				if (Arrays.equals(terms, previous.terms))
+					terms = previous.terms;
+				if (Arrays.equals(synsetCategories, previous.categories))
+					synsetCategories = previous.categories;
+				if (Arrays.equals(linkTargets, previous.linkTargets)
+						&& Arrays.equals(linkTypes, previous.linkTypes)) {
+					linkTargets = previous.linkTargets;
+					linkTypes = previous.linkTypes;
+				}
+				if (terms == previous.terms && synsetCategories == previous.categories
+						&& linkTargets == previous.linkTargets)
+					return previous;
+			}
+			return new Synset(snapshot.getSynsetId(synsetIndex), terms,
+					(synsetCategories.length == 0 ? NO_CATEGORIES : synsetCategories),
+					(linkTargets.length == 0 ? NO_IDS : linkTargets),
+					(linkTypes.length == 0 ? NO_IDS : linkTypes));
+		}
+
+		protected Term createTerm(final int termIndex, final Synset previousSynset) {
+			int termId = snapshot.getTermId(termIndex);
+			String[] tags = snapshot.getTags(termIndex);
+			for (int i = 0; i < tags.length; i++)
+				tags[i] = share(tags[i]);
+
+			LinkIndex links = snapshot.getTermLinks();
+			int from = links.getOffsets()[termIndex];
+			int to = links.getOffsets()[termIndex + 1];
+			int[] linkTargets = new int[to - from];
+			for (int i = from; i < to; i++)
+				linkTargets[i - from] = snapshot.getTermId(links.getTargets()[i]);
+			int[] linkTypes = Arrays.copyOfRange(links.getTypes(), from, to);
+
+			Term result = new Term(termId, share(snapshot.getWord(termIndex)),
+					share(snapshot.getNormalizedWord(termIndex)),
+					snapshot.getTermLevel(termIndex), snapshot.getLanguageId(termIndex),
+					snapshot.getGrammarId(termIndex), snapshot.getIsAcronym(termIndex),
+					snapshot.getIsShortForm(termIndex),
+					(tags.length == 0 ? NO_TAGS : tags),
+					(linkTargets.length == 0 ? NO_IDS : linkTargets),
+					(linkTypes.length == 0 ? NO_IDS : linkTypes));
+			if (previousSynset != null)
+				for (Term previous : previousSynset.terms)
+					if (previous.id == termId && previous.equals(result))
+						return previous;
+			return result;
+		}
+
+		protected OTCategory shareCategory(final OTCategory category) {
+			OTCategory result = categories.get(category.getCategoryId());
+			if (result != null && SnapshotVersions.equals(result.getName(), category.getName())
+					&& result.getType() == category.getType()
+					&& result.isDisabled() == category.isDisabled())
+				return result;
+
+			categories.put(category.getCategoryId(), category);
+			return category;
+		}
+
+		/** Updates the word index buckets containing the words of the
+		 *  synsets that differ from the base version. */
+		protected void updateBuckets(final Version version) {
+			Diff diff = diff(base, version);
+			int[] oldSynsetIds = concat(diff.getRemoved(), diff.getChanged());
+			int[] newSynsetIds = concat(diff.getAdded(), diff.getChanged());
+
+			// Start from the synset ids of each affected key in the base
+			// version, remove the old and add the new synsets.
+			Map<Integer, Map<String, TreeSet<Integer>>> changes =
+					new HashMap<Integer, Map<String, TreeSet<Integer>>>();
+			for (int synsetId : oldSynsetIds)
+				for (String key : getKeys(base.getSynset(synsetId)))
+					getSynsetIds(key, changes).remove(synsetId);
+			for (int synsetId : newSynsetIds)
+				for (String key : getKeys(version.getSynset(synsetId)))
+					getSynsetIds(key, changes).add(synsetId);
+
+			for (Map.Entry<Integer, Map<String, TreeSet<Integer>>> entry : changes.entrySet())
+				version.buckets[entry.getKey()] = new Bucket(
+						base.buckets[entry.getKey()], entry.getValue());
+		}
+
+		protected TreeSet<Integer> getSynsetIds(final String key,
+				final Map<Integer, Map<String, TreeSet<Integer>>> changes) {
+			int bucketIndex = getBucket(key);
+			Map<String, TreeSet<Integer>> bucket = changes.get(bucketIndex);
+			if (bucket == null) {
+				bucket = new TreeMap<String, TreeSet<Integer>>();
+				changes.put(bucketIndex, bucket);
+			}
+			TreeSet<Integer> result = bucket.get(key);
+			if (result == null) {
+				result = new TreeSet<Integer>();
+				if (base.buckets[bucketIndex] != null)
+					for (int synsetId : base.buckets[bucketIndex].get(key))
+						result.add(synsetId);
+				bucket.put(key, result);
+			}
+			return result;
+		}
+
+	}
+
+
+
+	/** An immutable version of the thesaurus. */
+	public static class Version {
+
+		protected String name;
+		protected Synset[][] pages;
+		protected int synsetCount;
+		protected Bucket[] buckets;
+
+		protected Version(final String name, final Synset[][] pages,
+				final int synsetCount, final Bucket[] buckets) {
+			this.name = name;
+			this.pages = pages;
+			this.synsetCount = synsetCount;
+			this.buckets = buckets;
+		}
+
+		/** Returns the name of the version. */
+		public String getName() {
+			return name;
+		}
+
+		/** Returns the number of synsets. */
+		public int getNumberOfSynsets() {
+			return synsetCount;
+		}
+
+		/** Returns the synset with the given id or null if there is no
+		 *  such synset in this version. */
+		public Synset getSynset(final int synsetId) {
+			int pageIndex = synsetId >>> PAGE_BITS;
+			if (synsetId < 0 || pageIndex >= pages.length || pages[pageIndex] == null)
+				return null;
+
+			return pages[pageIndex][synsetId & (PAGE_SIZE - 1)];
+		}
+
+		/** Returns the ids of all synsets in ascending order. */
+		public int[] getSynsetIds() {
+			int count = 0;
+			int[] result = new int[synsetCount];
+			for (Synset[] page : pages)
+				if (page != null)
+					for (Synset synset : page)
+						if (synset != null)
+							result[count++] = synset.id;
+			return result;
+		}
+
+		/** Returns the synsets containing a term of the given language
+		 *  whose word or normalized word equals the given word in a case
+		 *  insensitive manner.
+		 *  @param word The word that is searched for.
+		 *  @param language The language of the terms.
+		 *  @return The synsets in the order of their ids; never null. */
+		public List<Synset> findSynsets(final String word, final int language) {
+			WordNormalizer normalizer = WordNormalizer.forLanguage(language);
+			String key = normalizer.getFoldedKey(word);
+			Bucket bucket = buckets[getBucket(key)];
+			if (bucket == null)
+				return Collections.emptyList();
+
+			List<Synset> result = new ArrayList<Synset>();
+			for (int synsetId : bucket.get(key)) {
+				Synset synset = getSynset(synsetId);
+				for (Term term : synset.terms)
+					if (term.languageId == language
+							&& (key.equals(normalizer.fold(term.word))
+								|| key.equals(normalizer.fold(term.normalizedWord)))) {
+						result.add(synset);
+						break;
+					}
+			}
+			return result;
+		}
+
+		/** Creates a snapshot of this version, which allows for using
+		 *  the full API of {@link OpenThesaurus} on this version. The
+		 *  snapshot does not share its index structures with other
+		 *  versions.
+		 *  @param compactStrings Store the words of the snapshot in a
+		 *  		{@link StringArena}.
+		 *  @return The new snapshot. */
+		public OTSnapshot toSnapshot(final boolean compactStrings) {
+			SnapshotBuilder builder = new SnapshotBuilder();
+			builder.setCompactStrings(compactStrings);
+			for (Synset[] page : pages) {
+				if (page == null)
+					continue;
+
+				for (Synset synset : page) {
+					if (synset == null)
+						continue;
+
+					builder.addSynset(synset.id);
+					for (int i = 0; i < synset.linkTargets.length; i++)
+						builder.addSynsetLink(synset.id, synset.linkTargets[i],
+								synset.linkTypes[i]);
+					for (OTCategory category : synset.categories)
+						builder.addCategoryLink(synset.id, category);
+					for (Term term : synset.terms) {
+						builder.addTerm(term.id, synset.id, term.word,
+								term.normalizedWord, term.termLevel, term.acronym,
+								term.shortForm, term.languageId, term.grammarId);
+						for (int i = 0; i < term.linkTargets.length; i++)
+							builder.addTermLink(term.id, term.linkTargets[i],
+									term.linkTypes[i]);
+						for (String tag : term.tags)
+							builder.addTag(term.id, tag);
+					}
+				}
+			}
+			return builder.build();
+		}
+
+		@Override
+		public String toString() {
+			return name;
+		}
+
+	}
+
+
+	/** An immutable synset of a version. */
+	public static class Synset {
+
+		protected int id;
+		protected Term[] terms;
+		protected OTCategory[] categories;
+		protected int[] linkTargets;
+		protected int[] linkTypes;
+
+		protected Synset(final int id, final Term[] terms,
+				final OTCategory[] categories, final int[] linkTargets,
+				final int[] linkTypes) {
+			this.id = id;
+			this.terms = terms;
+			this.categories = categories;
+			this.linkTargets = linkTargets;
+			this.linkTypes = linkTypes;
+		}
+
+		/** Returns the id of the synset. */
+		public int getId() {
+			return id;
+		}
+
+		/** Returns the terms of the synset in the order of their ids. */
+		public List<Term> getTerms() {
+			return Collections.unmodifiableList(Arrays.asList(terms));
+		}
+
+		/** Returns the categories of the synset. */
+		public List<OTCategory> getCategories() {
+			return Collections.unmodifiableList(Arrays.asList(categories));
+		}
+
+		/** Returns the ids of the synsets linked by links of the given
+		 *  type.
+		 *  @param linkType The link type (see {@link OTSynsetLinkType})
+		 *  		or 0 for links of any type. */
+		public int[] getLinks(final int linkType) {
+			return getTargets(linkTargets, linkTypes, linkType);
+		}
+
+		@Override
+		public int hashCode() {
+			return id;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj)
+				return true;
+			if (obj == null)
+				return false;
+			if (getClass() != obj.getClass())
+				return false;
+			Synset other = (Synset) obj;
+			return id == other.id
+					&& Arrays.equals(terms, other.terms)
+					&& Arrays.equals(categories, other.categories)
+					&& Arrays.equals(linkTargets, other.linkTargets)
+					&& Arrays.equals(linkTypes, other.linkTypes);
+		}
+
+		@Override
+		public String toString() {
+			return Arrays.toString(terms);
+		}
+
+	}
+
+
+	/** An immutable term of a version. */
+	public static class Term {
+
+		protected int id;
+		protected String word;
+		protected String normalizedWord;
+		protected int termLevel;
+		protected int languageId;
+		protected int grammarId;
+		protected boolean acronym;
+		protected boolean shortForm;
+		protected String[] tags;
+		protected int[] linkTargets;
+		protected int[] linkTypes;
+
+		protected Term(final int id, final String word,
+				final String normalizedWord, final int termLevel,
+				final int languageId, final int grammarId, final boolean acronym,
+				final boolean shortForm, final String[] tags,
+				final int[] linkTargets, final int[] linkTypes) {
+			this.id = id;
+			this.word = word;
+			this.normalizedWord = normalizedWord;
+			this.termLevel = termLevel;
+			this.languageId = languageId;
+			this.grammarId = grammarId;
+			this.acronym = acronym;
+			this.shortForm = shortForm;
+			this.tags = tags;
+			this.linkTargets = linkTargets;
+			this.linkTypes = linkTypes;
+		}
+
+		/** Returns the id of the term. */
+		public int getId() {
+			return id;
+		}
+
+		/** Returns the word of the term. */
+		public String getWord() {
+			return word;
+		}
+
+		/** Returns the normalized word of the term. */
+		public String getNormalizedWord() {
+			return normalizedWord;
+		}
+
+		/** Returns the level of the term or 0 if the term has no level. */
+		public int getTermLevel() {
+			return termLevel;
+		}
+
+		/** Returns the language of the term. */
+		public int getLanguageId() {
+			return languageId;
+		}
+
+		/** Returns the grammar id of the term. */
+		public int getGrammarId() {
+			return grammarId;
+		}
+
+		/** Returns true if the term is an acronym. */
+		public boolean getIsAcronym() {
+			return acronym;
+		}
+
+		/** Returns true if the term is a short form. */
+		public boolean getIsShortForm() {
+			return shortForm;
+		}
+
+		/** Returns the tags of the term. */
+		public List<String> getTags() {
+			return Collections.unmodifiableList(Arrays.asList(tags));
+		}
+
+		/** Returns the ids of the terms linked by links of the given type.
+		 *  @param linkType The link type (see {@link OTTermLinkType}) or 0
+		 *  		for links of any type. */
+		public int[] getTermLinks(final int linkType) {
+			return getTargets(linkTargets, linkTypes, linkType);
+		}
+
+		@Override
+		public int hashCode() {
+			return id;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj)
+				return true;
+			if (obj == null)
+				return false;
+			if (getClass() != obj.getClass())
+				return false;
+			Term other = (Term) obj;
+			return id == other.id
+					&& SnapshotVersions.equals(word, other.word)
+					&& SnapshotVersions.equals(normalizedWord, other.normalizedWord)
+					&& termLevel == other.termLevel
+					&& languageId == other.languageId
+					&& grammarId == other.grammarId
+					&& acronym == other.acronym
+					&& shortForm == other.shortForm
+					&& Arrays.equals(tags, other.tags)
+					&& Arrays.equals(linkTargets, other.linkTargets)
+					&& Arrays.equals(linkTypes, other.linkTypes);
+		}
+
+		@Override
+		public String toString() {
+			return word;
+		}
+
+	}
+
+
+	/** The differences between two versions. */
+	public static class Diff {
+
+		protected int[] added;
+		protected int[] removed;
+		protected int[] changed;
+
+		protected Diff(final int[] added, final int[] removed,
+				final int[] changed) {
+			this.added = added;
+			this.removed = removed;
+			this.changed = changed;
+		}
+
+		/** Returns the ids of the synsets only contained in the newer
+		 *  version in ascending order. */
+		public int[] getAdded() {
+			return added;
+		}
+
+		/** Returns the ids of the synsets only contained in the older
+		 *  version in ascending order. */
+		public int[] getRemoved() {
+			return removed;
+		}
+
+		/** Returns the ids of the synsets contained in both versions whose
+		 *  terms, categories, or links differ in ascending order. */
+		public int[] getChanged() {
+			return changed;
+		}
+
+		/** Returns true if the versions do not differ. */
+		public boolean isEmpty() {
+			return added.length == 0 && removed.length == 0 && changed.length == 0;
+		}
+
+		@Override
+		public String toString() {
+			return "added=" + Arrays.toString(added)
+					+ ", removed=" + Arrays.toString(removed)
+					+ ", changed=" + Arrays.toString(changed);
+		}
+
+	}
+
+
+	/** An immutable bucket of the word index, mapping the folded keys
+	 *  to the ids of the synsets containing a matching term. */
+	protected static class Bucket {
+
+		protected String[] keys;
+		protected int[][] synsetIds;
+
+		/** Creates a copy of the given bucket with updated synset ids for
+		 *  the given keys; keys without synsets are removed. */
+		protected Bucket(final Bucket base,
+				final Map<String, TreeSet<Integer>> changes) {
+			TreeMap<String, int[]> entries = new TreeMap<String, int[]>();
+			if (base != null)
+				for (int i = 0; i < base.keys.length; i++)
+					entries.put(base.keys[i], base.synsetIds[i]);
+			for (Map.Entry<String, TreeSet<Integer>> entry : changes.entrySet())
+				if (entry.getValue().isEmpty())
+					entries.remove(entry.getKey());
+				else {
+					int i = 0;
+					int[] ids = new int[entry.getValue().size()];
+					for (Integer synsetId : entry.getValue())
+						ids[i++] = synsetId;
+					entries.put(entry.getKey(), ids);
+				}
+
+			keys = entries.keySet().toArray(new String[entries.size()]);
+			synsetIds = entries.values().toArray(new int[entries.size()][]);
+		}
+
+		/** Returns the synset ids for the given key; never null. */
+		protected int[] get(final String key) {
+			int i = Arrays.binarySearch(keys, key);
+			return (i < 0 ? NO_IDS : synsetIds[i]);
+		}
+
+	}
+
+}
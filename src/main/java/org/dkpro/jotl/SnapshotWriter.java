@@ -0,0 +1,317 @@
+/*******************************************************************************
+ * Copyright 2015
+ * Ubiquitous Knowledge Processing (UKP) Lab
+ * Technische Universität Darmstadt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package org.dkpro.jotl;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * Writes an {@link OTSnapshot} in a compact binary format that can be
+ * shipped with an application instead of a database. Use a
+ * {@link SnapshotReader} to read the data.
+ * <p>
+ * The file starts with a header consisting of the magic bytes "JOTL",
+ * the format version, and the number of sections, followed by the id,
+ * offset, length, and CRC32 checksum of each section (all big-endian
+ * ints). Within the sections, numbers are stored as variable-length
+ * integers (varints) with 7 bits per byte. Sorted ids are gap-encoded.
+ * All strings are stored in a front-coded dictionary sorted by their
+ * UTF-8 bytes: within blocks of {@value #STRING_BLOCK_SIZE} strings,
+ * each string only stores the length of the prefix shared with its
+ * predecessor and the remaining suffix. Links, categories, and tags are
+ * stored as one adjacency list per synset or term, preceded by a table
+ * of the lists' offsets, such that single lists can be decoded without
+ * decoding the entire section. Within a list, the links are ordered by
+ * type and target, and the targets are gap-encoded per type.
+ */
+public class SnapshotWriter {
+
+	/** Magic bytes at the beginning of each file. */
+	public static final int MAGIC = 0x4A4F544C; // "JOTL"
+
+	/** Current version of the format. */
+	public static final int VERSION = 1;
+
+	/** Number of strings per front-coded block. */
+	public static final int STRING_BLOCK_SIZE = 16;
+
+	protected static final int SECTION_SYNSETS = 1;
+	protected static final int SECTION_STRINGS = 2;
+	protected static final int SECTION_TERMS = 3;
+	protected static final int SECTION_SYNSET_LINKS = 4;
+	protected static final int SECTION_TERM_LINKS = 5;
+	protected static final int SECTION_CATEGORIES = 6;
+	protected static final int SECTION_TAGS = 7;
+
+	protected static final Charset UTF8 = Charset.forName("UTF-8");
+
+	/** Writes the given snapshot to the given stream. The stream is not
+	 *  closed.
+	 *  @param snapshot The snapshot to be written.
+	 *  @param out The target stream; should be buffered.
+	 *  @throws IOException in case of write errors. */
+	public void write(final OTSnapshot snapshot, final OutputStream out)
+			throws IOException {
+		// String dictionary.
+		List<String> strings = collectStrings(snapshot);
+		Map<String, Integer> stringIds = new HashMap<String, Integer>();
+		for (int i = 0; i < strings.size(); i++)
+			stringIds.put(strings.get(i), i);
+
+		List<byte[]> sections = new ArrayList<byte[]>();
+		sections.add(writeSynsets(snapshot));
+		sections.add(writeStrings(strings));
+		sections.add(writeTerms(snapshot, stringIds));
+		sections.add(writeLinks(snapshot.getSynsetLinks()));
+		sections.add(writeLinks(snapshot.getTermLinks()));
+		sections.add(writeCategories(snapshot, stringIds));
+		sections.add(writeTags(snapshot, stringIds));
+		int[] sectionIds = {SECTION_SYNSETS, SECTION_STRINGS, SECTION_TERMS,
+				SECTION_SYNSET_LINKS, SECTION_TERM_LINKS, SECTION_CATEGORIES,
+				SECTION_TAGS};
+
+		DataOutputStream data = new DataOutputStream(out);
+		data.writeInt(MAGIC);
+		data.writeInt(VERSION);
+		data.writeInt(sections.size());
+		int offset = 12 + 16 * sections.size();
+		for (int i = 0; i < sections.size(); i++) {
+			byte[] section = sections.get(i);
+			CRC32 crc = new CRC32();
+			crc.update(section);
+			data.writeInt(sectionIds[i]);
+			data.writeInt(offset);
+			data.writeInt(section.length);
+			data.writeInt((int) crc.getValue());
+			offset += section.length;
+		}
+		for (byte[] section : sections)
+			data.write(section);
+		data.flush();
+	}
+
+	protected List<String> collectStrings(final OTSnapshot snapshot) {
+		Map<String, String> unique = new HashMap<String, String>();
+		for (int t = 0; t < snapshot.getNumberOfTerms(); t++) {
+			addString(unique, snapshot.getWord(t));
+			addString(unique, snapshot.getNormalizedWord(t));
+			for (String tag : snapshot.getTags(t))
+				addString(unique, tag);
+		}
+		for (OTCategory category : snapshot.categories)
+			addString(unique, category.getName());
+
+		List<String> result = new ArrayList<String>(unique.keySet());
+		Collections.sort(result, new Comparator<String>() {
+			public int compare(final String s1, final String s2) {
+				return compareBytes(s1.getBytes(UTF8), s2.getBytes(UTF8));
+			}
+		});
+		return result;
+	}
+
+	protected static void addString(final Map<String, String> strings,
+			final String value) {
+		if (value != null)
+			strings.put(value, value);
+	}
+
+	protected byte[] writeSynsets(final OTSnapshot snapshot) {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		writeVarInt(out, snapshot.getNumberOfSynsets());
+		int previous = 0;
+		for (int s = 0; s < snapshot.getNumberOfSynsets(); s++) {
+			writeVarInt(out, snapshot.getSynsetId(s) - previous);
+			previous = snapshot.getSynsetId(s);
+		}
+		return out.toByteArray();
+	}
+
+	protected byte[] writeStrings(final List<String> strings) {
+		ByteArrayOutputStream blocks = new ByteArrayOutputStream();
+		int blockCount = (strings.size() + STRING_BLOCK_SIZE - 1) / STRING_BLOCK_SIZE;
+		int[] blockOffsets = new int[blockCount];
+		byte[] previous = new byte[0];
+		for (int i = 0; i < strings.size(); i++) {
+			byte[] bytes = strings.get(i).getBytes(UTF8);
+			int prefix = 0;
+			if (i % STRING_BLOCK_SIZE == 0)
+				blockOffsets[i / STRING_BLOCK_SIZE] = blocks.size();
+			else
+				while (prefix < bytes.length && prefix < previous.length
+						&& bytes[prefix] == previous[prefix])
+					prefix++;
+			writeVarInt(blocks, prefix);
+			writeVarInt(blocks, bytes.length - prefix);
+			blocks.write(bytes, prefix, bytes.length - prefix);
+			previous = bytes;
+		}
+
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		writeInt(out, strings.size());
+		for (int blockOffset : blockOffsets)
+			writeInt(out, blockOffset);
+		byte[] data = blocks.toByteArray();
+		out.write(data, 0, data.length);
+		return out.toByteArray();
+	}
+
+	protected byte[] writeTerms(final OTSnapshot snapshot,
+			final Map<String, Integer> stringIds) {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		writeVarInt(out, snapshot.getNumberOfTerms());
+		int previous = 0;
+		for (int t = 0; t < snapshot.getNumberOfTerms(); t++) {
+			writeVarInt(out, snapshot.getTermId(t) - previous);
+			previous = snapshot.getTermId(t);
+			writeVarInt(out, snapshot.getTermSynsetId(t));
+			writeVarInt(out, toStringRef(stringIds, snapshot.getWord(t)));
+			writeVarInt(out, toStringRef(stringIds, snapshot.getNormalizedWord(t)));
+			writeVarInt(out, snapshot.getTermLevel(t));
+			writeVarInt(out, snapshot.getLanguageId(t));
+			writeVarInt(out, snapshot.getGrammarId(t));
+			writeVarInt(out, (snapshot.getIsAcronym(t) ? 1 : 0)
+					| (snapshot.getIsShortForm(t) ? 2 : 0));
+		}
+		return out.toByteArray();
+	}
+
+	protected static int toStringRef(final Map<String, Integer> stringIds,
+			final String value) {
+		return (value == null ? 0 : stringIds.get(value) + 1);
+	}
+
+	protected byte[] writeLinks(final LinkIndex links) {
+		ByteArrayOutputStream lists = new ByteArrayOutputStream();
+		int[] offsets = new int[links.getNodeCount()];
+		for (int node = 0; node < links.getNodeCount(); node++) {
+			offsets[node] = lists.size();
+			int from = links.getOffsets()[node];
+			int to = links.getOffsets()[node + 1];
+			writeVarInt(lists, to - from);
+			int previousType = -1;
+			int previousTarget = 0;
+			for (int i = from; i < to; i++) {
+				int type = links.getTypes()[i];
+				if (type != previousType)
+					previousTarget = 0;
+				writeVarInt(lists, type);
+				writeVarInt(lists, links.getTargets()[i] - previousTarget);
+				previousType = type;
+				previousTarget = links.getTargets()[i];
+			}
+		}
+		return withOffsetTable(offsets, lists);
+	}
+
+	protected byte[] writeCategories(final OTSnapshot snapshot,
+			final Map<String, Integer> stringIds) {
+		// Distinct categories ordered by first occurrence.
+		Map<OTCategory, Integer> categoryIndexes = new IdentityHashMap<OTCategory, Integer>();
+		List<OTCategory> categories = new ArrayList<OTCategory>();
+		for (OTCategory category : snapshot.categories)
+			if (!categoryIndexes.containsKey(category)) {
+				categoryIndexes.put(category, categories.size());
+				categories.add(category);
+			}
+
+		ByteArrayOutputStream lists = new ByteArrayOutputStream();
+		writeVarInt(lists, categories.size());
+		for (OTCategory category : categories) {
+			writeVarInt(lists, category.getCategoryId());
+			writeVarInt(lists, toStringRef(stringIds, category.getName()));
+			writeVarInt(lists, category.getType());
+			writeVarInt(lists, category.isDisabled() ? 1 : 0);
+		}
+		int[] offsets = new int[snapshot.getNumberOfSynsets()];
+		for (int s = 0; s < snapshot.getNumberOfSynsets(); s++) {
+			offsets[s] = lists.size();
+			OTCategory[] synsetCategories = snapshot.getCategories(s);
+			writeVarInt(lists, synsetCategories.length);
+			for (OTCategory category : synsetCategories)
+				writeVarInt(lists, categoryIndexes.get(category));
+		}
+		return withOffsetTable(offsets, lists);
+	}
+
+	protected byte[] writeTags(final OTSnapshot snapshot,
+			final Map<String, Integer> stringIds) {
+		ByteArrayOutputStream lists = new ByteArrayOutputStream();
+		int[] offsets = new int[snapshot.getNumberOfTerms()];
+		for (int t = 0; t < snapshot.getNumberOfTerms(); t++) {
+			offsets[t] = lists.size();
+			String[] tags = snapshot.getTags(t);
+			writeVarInt(lists, tags.length);
+			for (String tag : tags)
+				writeVarInt(lists, toStringRef(stringIds, tag));
+		}
+		return withOffsetTable(offsets, lists);
+	}
+
+	/** Prefixes the given lists with the number of lists and a table of
+	 *  fixed-size offsets for random access. */
+	protected static byte[] withOffsetTable(final int[] offsets,
+			final ByteArrayOutputStream lists) {
+		ByteArrayOutputStream out = new ByteArrayOutputStream(
+				4 + 4 * offsets.length + lists.size());
+		writeInt(out, offsets.length);
+		for (int offset : offsets)
+			writeInt(out, offset);
+		byte[] data = lists.toByteArray();
+		out.write(data, 0, data.length);
+		return out.toByteArray();
+	}
+
+	/** Writes the given non-negative value as a varint. */
+	public static void writeVarInt(final ByteArrayOutputStream out, int value) {
+		while ((value & ~0x7F) != 0) {
+			out.write((value & 0x7F) | 0x80);
+			value >>>= 7;
+		}
+		out.write(value);
+	}
+
+	/** Writes the given value as a big-endian int. */
+	public static void writeInt(final ByteArrayOutputStream out, final int value) {
+		out.write(value >>> 24);
+		out.write(value >>> 16);
+		out.write(value >>> 8);
+		out.write(value);
+	}
+
+	protected static int compareBytes(final byte[] bytes1, final byte[] bytes2) {
+		for (int i = 0; i < Math.min(bytes1.length, bytes2.length); i++) {
+			int result = (bytes1[i] & 0xFF) - (bytes2[i] & 0xFF);
+			if (result != 0)
+				return result;
+		}
+		return bytes1.length - bytes2.length;
+	}
+
+}
@@ -0,0 +1,37 @@
+/*******************************************************************************
+ * Copyright 2015
+ * Ubiquitous Knowledge Processing (UKP) Lab
+ * Technische Universität Darmstadt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package org.dkpro.jotl;
+
+/**
+ * Receives the executions of prepared statements observed by a
+ * {@link StatementMonitor}.
+ */
+public interface StatementListener {
+
+	/** Notifies about an executed statement. Called by the querying thread
+	 *  once the result set has been read or closed.
+	 *  @param name The name of the statement in {@link DatabaseStatements}.
+	 *  @param sql The SQL query of the statement.
+	 *  @param parameters The bound parameters by index (starting at 0 for
+	 *  		parameter 1); unset parameters are null.
+	 *  @param rows The number of rows read from the result set.
+	 *  @param duration The execution time of the query in nanoseconds. */
+	void statementExecuted(String name, String sql, Object[] parameters,
+			int rows, long duration);
+
+}
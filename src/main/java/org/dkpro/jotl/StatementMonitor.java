@@ -0,0 +1,279 @@
+/*******************************************************************************
+ * Copyright 2015
+ * Ubiquitous Knowledge Processing (UKP) Lab
+ * Technische Universität Darmstadt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package org.dkpro.jotl;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Observes the execution of the named prepared statements of
+ * {@link DatabaseStatements}. For each execution, the name, the bound
+ * parameters, the number of rows read, and the execution time are passed
+ * to the registered {@link StatementListener}s; e.g., a
+ * {@link JfrStatementListener} emitting Flight Recorder events. An
+ * execution is reported once its result set has been read to the end or
+ * closed, or, if the result set is abandoned, once the statement is
+ * executed again or closed. Executions
+ * exceeding the slow query threshold are logged to the logger
+ * {@value #LOGGER_NAME} with level WARNING, including the
+ * <code>EXPLAIN</code> output of the first slow execution of each
+ * statement. Activate the monitor using
+ * {@link OpenThesaurus#setStatementMonitor(StatementMonitor)}; without a
+ * monitor, the statements are not wrapped at all.
+ */
+public class StatementMonitor {
+
+	/** Name of the logger for slow queries. */
+	public static final String LOGGER_NAME = "org.dkpro.jotl.SlowQueries";
+
+	protected static final Logger LOGGER = Logger.getLogger(LOGGER_NAME);
+
+	protected List<StatementListener> listeners;
+	protected long slowQueryThreshold;
+	protected Set<String> explainedStatements;
+
+	/** Instanciates a new monitor without listeners and slow query log. */
+	public StatementMonitor() {
+		listeners = new CopyOnWriteArrayList<StatementListener>();
+		explainedStatements = Collections.newSetFromMap(
+				new ConcurrentHashMap<String, Boolean>());
+	}
+
+	/** Registers a listener receiving all executions. */
+	public void addListener(final StatementListener listener) {
+		listeners.add(listener);
+	}
+
+	/** Removes a listener registered before. */
+	public void removeListener(final StatementListener listener) {
+		listeners.remove(listener);
+	}
+
+	/** @param milliseconds The execution time from which on a statement is
+	 *  		logged as slow or 0 for disabling the slow query log. */
+	public void setSlowQueryThreshold(final long milliseconds) {
+		this.slowQueryThreshold = milliseconds * 1000000L;
+	}
+
+	/** @return The slow query threshold in milliseconds; 0 if disabled. */
+	public long getSlowQueryThreshold() {
+		return slowQueryThreshold / 1000000L;
+	}
+
+	/** Returns a statement observing the executions of the given one. */
+	public PreparedStatement wrap(final String name, final String sql,
+			final PreparedStatement statement) {
+		return (PreparedStatement) Proxy.newProxyInstance(
+				StatementMonitor.class.getClassLoader(),
+				new Class<?>[]{PreparedStatement.class},
+				new StatementHandler(name, sql, statement));
+	}
+
+	/** Passes an execution to the listeners and the slow query log. */
+	protected void report(final String name, final String sql,
+			final PreparedStatement statement, final ResultSet resultSet,
+			final Object[] parameters, final int rows, final long duration) {
+		for (StatementListener listener : listeners)
+			listener.statementExecuted(name, sql, parameters, rows, duration);
+		if (slowQueryThreshold <= 0 || duration < slowQueryThreshold)
+			return;
+
+		StringBuilder message = new StringBuilder("Slow query ").append(name)
+				.append(" (").append(duration / 1000000L).append(" ms, ")
+				.append(rows).append(" rows): ").append(sql)
+				.append(" with parameters ").append(Arrays.toString(parameters));
+		if (explainedStatements.add(name))
+			try {
+				message.append("\n").append(explain(getConnection(statement,
+						resultSet), sql, parameters));
+			} catch (SQLException e) {
+				message.append("\nUnable to explain the query: ").append(e.getMessage());
+			}
+		LOGGER.log(Level.WARNING, message.toString());
+	}
+
+	/** Returns the connection that executed the query of the given result
+	 *  set. For statements routed to replicas (see {@link ReplicaRouter}),
+	 *  this is the connection of the replica that answered the query. */
+	protected static Connection getConnection(final PreparedStatement statement,
+			final ResultSet resultSet) throws SQLException {
+		Statement executingStatement = resultSet.getStatement();
+		if (executingStatement != null)
+			return executingStatement.getConnection();
+
+		return statement.getConnection();
+	}
+
+	/** Returns the execution plan of the given query as one line per row
+	 *  of the <code>EXPLAIN</code> output. */
+	protected static String explain(final Connection connection,
+			final String sql, final Object[] parameters) throws SQLException {
+		if (connection == null)
+			throw new SQLException("No connection available");
+
+		PreparedStatement pstmt = connection.prepareStatement("EXPLAIN " + sql);
+		try {
+			for (int i = 0; i < parameters.length; i++)
+				pstmt.setObject(i + 1, parameters[i]);
+			ResultSet rs = pstmt.executeQuery();
+			try {
+				ResultSetMetaData metaData = rs.getMetaData();
+				StringBuilder result = new StringBuilder("EXPLAIN:");
+				while (rs.next()) {
+					result.append("\n ");
+					for (int c = 1; c <= metaData.getColumnCount(); c++)
+						result.append(" ").append(metaData.getColumnLabel(c))
+								.append("=").append(rs.getString(c));
+				}
+				return result.toString();
+			} finally {
+				rs.close();
+			}
+		} finally {
+			pstmt.close();
+		}
+	}
+
+	protected static Object invoke(final Object target, final Method method,
+			final Object[] args) throws Throwable {
+		try {
+			return method.invoke(target, args);
+		} catch (InvocationTargetException e) {
+			throw e.getCause();
+		}
+	}
+
+
+	/** Records the parameters of a statement and wraps its result sets. */
+	protected class StatementHandler implements InvocationHandler {
+
+		protected String name;
+		protected String sql;
+		protected PreparedStatement statement;
+		protected List<Object> parameters;
+		protected ResultSetHandler current;
+
+		public StatementHandler(final String name, final String sql,
+				final PreparedStatement statement) {
+			this.name = name;
+			this.sql = sql;
+			this.statement = statement;
+			this.parameters = new ArrayList<Object>();
+		}
+
+		public Object invoke(final Object proxy, final Method method,
+				final Object[] args) throws Throwable {
+			String methodName = method.getName();
+			if (methodName.startsWith("set") && args != null && args.length >= 2
+					&& args[0] instanceof Integer) {
+				int index = (Integer) args[0] - 1;
+				while (parameters.size() <= index)
+					parameters.add(null);
+				// setNull(index, sqlType) binds null rather than the type.
+				parameters.set(index, methodName.equals("setNull") ? null : args[1]);
+			} else if (methodName.equals("clearParameters"))
+				parameters.clear();
+			else if (methodName.equals("executeQuery") && args == null) {
+				// Executing a statement again closes its previous result set.
+				reportCurrent();
+				long start = System.nanoTime();
+				ResultSet rs = statement.executeQuery();
+				long duration = System.nanoTime() - start;
+				current = new ResultSetHandler(this, rs, parameters.toArray(), duration);
+				return Proxy.newProxyInstance(StatementMonitor.class.getClassLoader(),
+						new Class<?>[]{ResultSet.class}, current);
+			} else if (methodName.equals("close"))
+				reportCurrent();
+			return StatementMonitor.invoke(statement, method, args);
+		}
+
+		/** Reports the execution of the last result set unless reported
+		 *  already. */
+		protected void reportCurrent() {
+			if (current != null)
+				current.report();
+			current = null;
+		}
+
+	}
+
+	/** Counts the rows of a result set and reports the execution once the
+	 *  result set has been read or closed. */
+	protected class ResultSetHandler implements InvocationHandler {
+
+		protected StatementHandler statement;
+		protected ResultSet resultSet;
+		protected Object[] parameters;
+		protected long duration;
+		protected int rows;
+		protected boolean reported;
+
+		public ResultSetHandler(final StatementHandler statement,
+				final ResultSet resultSet, final Object[] parameters,
+				final long duration) {
+			this.statement = statement;
+			this.resultSet = resultSet;
+			this.parameters = parameters;
+			this.duration = duration;
+		}
+
+		public Object invoke(final Object proxy, final Method method,
+				final Object[] args) throws Throwable {
+			String methodName = method.getName();
+			if (methodName.equals("next")) {
+				boolean result = resultSet.next();
+				if (result)
+					rows++;
+				else
+					report();
+				return result;
+			}
+			if (methodName.equals("close"))
+				report();
+			return StatementMonitor.invoke(resultSet, method, args);
+		}
+
+		protected void report() {
+			if (reported)
+				return;
+
+			reported = true;
+			StatementMonitor.this.report(statement.name, statement.sql,
+					statement.statement, resultSet, parameters, rows, duration);
+		}
+
+	}
+
+}
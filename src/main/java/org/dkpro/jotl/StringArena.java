@@ -0,0 +1,199 @@
+/*******************************************************************************
+ * Copyright 2015
+ * Ubiquitous Knowledge Processing (UKP) Lab
+ * Technische Universität Darmstadt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package org.dkpro.jotl;
+
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Compact storage of a set of distinct strings. All strings are encoded
+ * as UTF-8 into a single byte array and referred to by their index
+ * (reference) within the arena. Strings are only decoded on request;
+ * lookups, hashing, and comparisons operate directly on the encoded bytes.
+ * Use a {@link StringArena.Builder} to create an arena. Arenas are
+ * immutable.
+ */
+public class StringArena {
+
+	protected static final Charset UTF8 = Charset.forName("UTF-8");
+
+	protected byte[] data;
+	protected int[] offsets;
+	protected int[] table;
+
+	/** Instanciates an arena from the given UTF-8 data. The string with
+	 *  reference <code>i</code> is stored at the positions
+	 *  <code>offsets[i]</code> (inclusive) to <code>offsets[i + 1]</code>
+	 *  (exclusive). The strings must be distinct.
+	 *  @param data The UTF-8 encoded strings.
+	 *  @param offsets The start position of each string plus the end
+	 *  		position of the last one. */
+	public StringArena(final byte[] data, final int[] offsets) {
+		this.data = data;
+		this.offsets = offsets;
+
+		// Open addressing hash table storing reference + 1; 0 marks empty slots.
+		int capacity = Integer.highestOneBit(Math.max(size(), 1) * 2) * 2;
+		table = new int[capacity];
+		for (int ref = 0; ref < size(); ref++) {
+			int slot = hashCode(ref) & (capacity - 1);
+			while (table[slot] != 0)
+				slot = (slot + 1) & (capacity - 1);
+			table[slot] = ref + 1;
+		}
+	}
+
+	/** Returns the number of strings in the arena. */
+	public int size() {
+		return offsets.length - 1;
+	}
+
+	/** Decodes the string with the given reference. */
+	public String get(final int ref) {
+		return new String(data, offsets[ref], offsets[ref + 1] - offsets[ref], UTF8);
+	}
+
+	/** Returns the number of bytes of the string with the given
+	 *  reference. */
+	public int getByteLength(final int ref) {
+		return offsets[ref + 1] - offsets[ref];
+	}
+
+	/** Returns the reference of the given string or -1 if the arena does not
+	 *  contain the string. */
+	public int indexOf(final String value) {
+		return (value == null ? -1 : indexOf(value.getBytes(UTF8)));
+	}
+
+	/** Returns the reference of the given UTF-8 encoded string or -1 if the
+	 *  arena does not contain the string. */
+	public int indexOf(final byte[] value) {
+		int slot = hash(value, 0, value.length) & (table.length - 1);
+		while (table[slot] != 0) {
+			int ref = table[slot] - 1;
+			if (equals(ref, value))
+				return ref;
+			slot = (slot + 1) & (table.length - 1);
+		}
+		return -1;
+	}
+
+	/** Returns true if the string with the given reference equals the
+	 *  given UTF-8 encoded string. */
+	public boolean equals(final int ref, final byte[] value) {
+		int offset = offsets[ref];
+		int length = offsets[ref + 1] - offset;
+		if (length != value.length)
+			return false;
+
+		for (int i = 0; i < length; i++)
+			if (data[offset + i] != value[i])
+				return false;
+		return true;
+	}
+
+	/** Returns the hash code of the string with the given reference. The
+	 *  hash code is computed from the UTF-8 bytes. */
+	public int hashCode(final int ref) {
+		return hash(data, offsets[ref], offsets[ref + 1]);
+	}
+
+	/** Compares the strings with the given references by their UTF-8 bytes,
+	 *  which corresponds to the order of their Unicode code points. */
+	public int compare(final int ref1, final int ref2) {
+		int offset1 = offsets[ref1];
+		int offset2 = offsets[ref2];
+		int length1 = offsets[ref1 + 1] - offset1;
+		int length2 = offsets[ref2 + 1] - offset2;
+		for (int i = 0; i < Math.min(length1, length2); i++) {
+			int result = (data[offset1 + i] & 0xFF) - (data[offset2 + i] & 0xFF);
+			if (result != 0)
+				return result;
+		}
+		return length1 - length2;
+	}
+
+	/** Returns the approximate number of bytes occupied by the arena. */
+	public long getMemorySize() {
+		return data.length + 4L * offsets.length + 4L * table.length;
+	}
+
+	/** FNV-1a hash of the given byte range. */
+	protected static int hash(final byte[] bytes, final int from, final int to) {
+		int result = 0x811C9DC5;
+		for (int i = from; i < to; i++) {
+			result ^= bytes[i] & 0xFF;
+			result *= 0x01000193;
+		}
+		return result ^ (result >>> 16);
+	}
+
+
+	/**
+	 * Collects distinct strings for creating a {@link StringArena}. Each
+	 * string is stored only once; adding an equal string again yields the
+	 * reference of the first occurrence.
+	 */
+	public static class Builder {
+
+		protected Map<String, Integer> refs;
+		protected byte[] data;
+		protected IntList offsets;
+
+		/** Instanciates a new, empty builder. */
+		public Builder() {
+			refs = new HashMap<String, Integer>();
+			data = new byte[1024];
+			offsets = new IntList();
+			offsets.add(0);
+		}
+
+		/** Adds the given string to the arena.
+		 *  @param value The string to be added.
+		 *  @return The reference of the string within the arena or -1 if
+		 *  		the given string is null. */
+		public int add(final String value) {
+			if (value == null)
+				return -1;
+
+			Integer result = refs.get(value);
+			if (result != null)
+				return result;
+
+			byte[] bytes = value.getBytes(UTF8);
+			int offset = offsets.get(offsets.size() - 1);
+			if (offset + bytes.length > data.length)
+				data = Arrays.copyOf(data, Math.max(offset + bytes.length, data.length * 2));
+			System.arraycopy(bytes, 0, data, offset, bytes.length);
+			offsets.add(offset + bytes.length);
+			result = refs.size();
+			refs.put(value, result);
+			return result;
+		}
+
+		/** Creates the arena from the strings added so far. */
+		public StringArena build() {
+			int length = offsets.get(offsets.size() - 1);
+			return new StringArena(Arrays.copyOf(data, length), offsets.toArray());
+		}
+
+	}
+
+}
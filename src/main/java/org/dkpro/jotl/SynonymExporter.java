@@ -0,0 +1,290 @@
+/*******************************************************************************
+ * Copyright 2015
+ * Ubiquitous Knowledge Processing (UKP) Lab
+ * Technische Universität Darmstadt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package org.dkpro.jotl;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.BitSet;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * Exports the synsets of OpenThesaurus into the synonym file formats of
+ * search engines. The thesaurus is streamed in a single pass ordered by
+ * synset id: in database mode, terms and hypernym terms are read by one
+ * streaming query, and in snapshot mode, the snapshot arrays are read
+ * directly. Only the terms of the current synset are held in memory, such
+ * that the memory required is independent of the size of the thesaurus.
+ * Use an {@link OTTermFilter} for restricting the exported terms, e.g., by
+ * term level or language.
+ */
+public class SynonymExporter {
+
+	/** Solr <code>synonyms.txt</code> format: one line of comma-separated,
+	 *  equivalent terms per synset. Also understood by the synonym filters
+	 *  of Elasticsearch and Lucene. */
+	public static final int SOLR = 1;
+
+	/** Solr <code>synonyms.txt</code> format with explicit mappings from
+	 *  the terms of a synset to themselves and the terms of their direct
+	 *  hypernyms, such that a query for a term also matches its hypernyms
+	 *  but not vice versa. */
+	public static final int SOLR_HYPERNYMS = 2;
+
+	/** WordNet prolog format (<code>wn_s.pl</code>) as read by Lucene's
+	 *  <code>WordnetSynonymParser</code>. Since OpenThesaurus does not
+	 *  distinguish parts of speech, all synsets are exported as nouns. */
+	public static final int WORDNET_PROLOG = 3;
+
+	/** Size of the output buffer in characters. */
+	protected static final int BUFFER_SIZE = 1 << 16;
+
+	/** Offset turning synset ids into nine-digit WordNet noun synset ids. */
+	protected static final int WORDNET_SYNSET_OFFSET = 100000000;
+
+	protected OpenThesaurus openThesaurus;
+	protected OTTermFilter filter;
+
+	/** Instanciates a new exporter reading from the given thesaurus. If
+	 *  the thesaurus uses an in-memory snapshot, the snapshot is exported;
+	 *  otherwise, the database.
+	 *  @param openThesaurus The thesaurus to be exported. */
+	public SynonymExporter(final OpenThesaurus openThesaurus) {
+		this.openThesaurus = openThesaurus;
+	}
+
+	/** Restrict the exported terms; synsets without any accepted term are
+	 *  skipped.
+	 *  @param filter The facet predicates or null for exporting all terms.
+	 *  @return This exporter. */
+	public SynonymExporter setFilter(final OTTermFilter filter) {
+		this.filter = filter;
+		return this;
+	}
+
+	/** @return The facet predicates restricting the exported terms or null. */
+	public OTTermFilter getFilter() {
+		return filter;
+	}
+
+	/** Exports the thesaurus into the given file, which is overwritten.
+	 *  @param format The output format; use {@link #SOLR},
+	 *  		{@link #SOLR_HYPERNYMS}, or {@link #WORDNET_PROLOG}.
+	 *  @param file The target file.
+	 *  @return The number of exported synsets.
+	 *  @throws JOTLException in case of database errors.
+	 *  @throws IOException in case of write errors. */
+	public int export(final int format, final File file)
+			throws JOTLException, IOException {
+		FileChannel channel = new FileOutputStream(file).getChannel();
+		try {
+			return export(format, channel);
+		} finally {
+			channel.close();
+		}
+	}
+
+	/** Exports the thesaurus into the given channel using the UTF-8
+	 *  encoding. The channel is not closed.
+	 *  @param format The output format; use {@link #SOLR},
+	 *  		{@link #SOLR_HYPERNYMS}, or {@link #WORDNET_PROLOG}.
+	 *  @param channel The target channel.
+	 *  @return The number of exported synsets.
+	 *  @throws JOTLException in case of database errors.
+	 *  @throws IOException in case of write errors. */
+	public int export(final int format, final WritableByteChannel channel)
+			throws JOTLException, IOException {
+		if (format < SOLR || format > WORDNET_PROLOG)
+			throw new IllegalArgumentException("Unknown export format: " + format);
+
+		Writer out = new BufferedWriter(Channels.newWriter(channel, "UTF-8"),
+				BUFFER_SIZE);
+		int result;
+		OTSnapshot snapshot = openThesaurus.getSnapshot();
+		if (snapshot != null)
+			result = export(format, snapshot, out);
+		else
+			result = exportDatabase(format, out);
+		out.flush();
+		return result;
+	}
+
+	protected int export(final int format, final OTSnapshot snapshot,
+			final Writer out) throws IOException {
+		BitSet accepted = snapshot.getTermIndexes(filter);
+		LinkIndex links = snapshot.getSynsetLinks();
+		Set<String> words = new LinkedHashSet<String>();
+		Set<String> hypernyms = new LinkedHashSet<String>();
+		int result = 0;
+		for (int i = 0; i < snapshot.getNumberOfSynsets(); i++) {
+			addWords(snapshot, i, accepted, words);
+			if (format == SOLR_HYPERNYMS) {
+				int end = links.getEnd(i, OTSynsetLinkType.HYPERNYMY);
+				for (int j = links.getStart(i, OTSynsetLinkType.HYPERNYMY); j < end; j++)
+					addWords(snapshot, links.getTargets()[j], accepted, hypernyms);
+			}
+			if (writeSynset(format, snapshot.getSynsetId(i), words, hypernyms, out))
+				result++;
+			words.clear();
+			hypernyms.clear();
+		}
+		return result;
+	}
+
+	protected static void addWords(final OTSnapshot snapshot,
+			final int synsetIndex, final BitSet accepted, final Set<String> words) {
+		for (int termIndex : snapshot.getSynsetTermIndexes(synsetIndex))
+			if (accepted == null || accepted.get(termIndex))
+				words.add(snapshot.getWord(termIndex));
+	}
+
+	protected int exportDatabase(final int format, final Writer out)
+			throws JOTLException, IOException {
+		DatabaseStatements dbStatements = openThesaurus.dbStatements;
+		if (!dbStatements.hasDatabaseConnection())
+			throw new JOTLException("No database connection available");
+
+		// Terms (kind 0) and hypernym terms (kind 1) ordered by synset, such
+		// that each synset is complete once the next synset id is read.
+		String condition = (filter == null ? "" : filter.toSqlCondition("t"));
+		String sql = "SELECT t.synset_id, 0 AS kind, t.word, t.id FROM term t"
+				+ (condition.isEmpty() ? "" : " WHERE " + condition.substring(5));
+		if (format == SOLR_HYPERNYMS)
+			sql += " UNION ALL SELECT l.synset_id, 1, t.word, t.id"
+					+ " FROM synset_link l INNER JOIN term t"
+					+ " ON t.synset_id=l.target_synset_id"
+					+ " WHERE l.link_type_id=" + OTSynsetLinkType.HYPERNYMY + condition;
+		sql += " ORDER BY 1, 2, 4";
+
+		Set<String> words = new LinkedHashSet<String>();
+		Set<String> hypernyms = new LinkedHashSet<String>();
+		int result = 0;
+		try {
+			// The streaming query blocks its connection until the export is
+			// complete, hence a separate connection is used.
+			Connection connection = DatabaseStatements.openConnection(
+					dbStatements.getDatabaseConfiguration());
+			try {
+				Statement stmt = connection.createStatement(
+						ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+				try {
+					stmt.setFetchSize(Integer.MIN_VALUE); // MySQL streaming mode.
+					ResultSet rs = stmt.executeQuery(sql);
+					int synsetId = -1;
+					while (rs.next()) {
+						if (rs.getInt(1) != synsetId) {
+							if (writeSynset(format, synsetId, words, hypernyms, out))
+								result++;
+							words.clear();
+							hypernyms.clear();
+							synsetId = rs.getInt(1);
+						}
+						(rs.getInt(2) == 0 ? words : hypernyms).add(rs.getString(3));
+					}
+					if (writeSynset(format, synsetId, words, hypernyms, out))
+						result++;
+				} finally {
+					stmt.close();
+				}
+			} finally {
+				connection.close();
+			}
+		} catch (SQLException e) {
+			throw new JOTLException("Unable to export the synsets", e);
+		}
+		return result;
+	}
+
+	/** Writes the given synset in the given format.
+	 *  @return true if the synset has been written; synsets without terms
+	 *  		and synonym lines without any synonyms are skipped. */
+	protected static boolean writeSynset(final int format, final int synsetId,
+			final Set<String> words, final Set<String> hypernyms,
+			final Writer out) throws IOException {
+		if (words.isEmpty())
+			return false;
+
+		switch (format) {
+			case SOLR:
+				if (words.size() < 2)
+					return false;
+				writeSolrList(words, out);
+				break;
+
+			case SOLR_HYPERNYMS:
+				hypernyms.removeAll(words);
+				if (words.size() < 2 && hypernyms.isEmpty())
+					return false;
+				writeSolrList(words, out);
+				out.write(" => ");
+				writeSolrList(words, out);
+				if (!hypernyms.isEmpty()) {
+					out.write(", ");
+					writeSolrList(hypernyms, out);
+				}
+				break;
+
+			case WORDNET_PROLOG:
+				int wordNumber = 0;
+				for (String word : words) {
+					if (wordNumber > 0)
+						out.write('\n');
+					out.write("s(");
+					out.write(Integer.toString(WORDNET_SYNSET_OFFSET + synsetId));
+					out.write(',');
+					out.write(Integer.toString(++wordNumber));
+					out.write(",'");
+					out.write(word.replace("'", "''"));
+					out.write("',n,1,0).");
+				}
+				break;
+		}
+		out.write('\n');
+		return true;
+	}
+
+	/** Writes the given words separated by commas. Commas, backslashes,
+	 *  and the mapping arrow are escaped by a backslash. */
+	protected static void writeSolrList(final Set<String> words,
+			final Writer out) throws IOException {
+		boolean first = true;
+		for (String word : words) {
+			if (!first)
+				out.write(", ");
+			first = false;
+			for (int i = 0; i < word.length(); i++) {
+				char c = word.charAt(i);
+				if (c == ',' || c == '\\' || (c == '=' && i + 1 < word.length()
+						&& word.charAt(i + 1) == '>'))
+					out.write('\\');
+				out.write(c);
+			}
+		}
+	}
+
+}
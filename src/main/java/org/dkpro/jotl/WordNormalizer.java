@@ -0,0 +1,181 @@
+/*******************************************************************************
+ * Copyright 2015
+ * Ubiquitous Knowledge Processing (UKP) Lab
+ * Technische Universität Darmstadt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package org.dkpro.jotl;
+
+import java.text.Normalizer;
+import java.util.Locale;
+
+/**
+ * Normalization of words for comparing query tokens with the words of
+ * OpenThesaurus terms. Words are normalized to the Unicode normal form
+ * NFC. For case insensitive comparisons, words are additionally folded
+ * into a key using the case rules of the language. For German, the
+ * folding also maps "ß" to "ss" and the umlauts "ä", "ö", "ü" to their
+ * transcriptions "ae", "oe", "ue", such that the spelling variants
+ * "Straße"/"Strasse" and "Müller"/"Mueller" yield the same key. The
+ * folded keys of query tokens are cached in a number of independently
+ * locked segments, such that concurrent lookups rarely contend.
+ */
+public class WordNormalizer {
+
+	/** Default number of folded query tokens kept in the cache. */
+	public static final int DEFAULT_CACHE_SIZE = 10000;
+
+	/** Number of independently locked segments of the cache. */
+	protected static final int CACHE_SEGMENTS = 16;
+
+	protected static final WordNormalizer GERMAN = new WordNormalizer(Locale.GERMAN, true);
+	protected static final WordNormalizer DEFAULT = new WordNormalizer(Locale.ROOT, false);
+
+	protected Locale locale;
+	protected boolean germanFolding;
+	protected LRUCache<String, String>[] foldedKeys;
+
+	/** Instanciates a new normalizer.
+	 *  @param locale The locale defining the case rules.
+	 *  @param germanFolding Fold "ß" and umlauts into their transcriptions. */
+	@SuppressWarnings({"unchecked", "rawtypes"})
+	public WordNormalizer(final Locale locale, final boolean germanFolding) {
+		this.locale = locale;
+		this.germanFolding = germanFolding;
+		foldedKeys = new LRUCache[CACHE_SEGMENTS];
+		for (int i = 0; i < CACHE_SEGMENTS; i++)
+			foldedKeys[i] = new LRUCache<String, String>(DEFAULT_CACHE_SIZE / CACHE_SEGMENTS);
+	}
+
+	/** Returns the normalizer for the given language.
+	 *  @param language The language; use the constants defined in
+	 *  		{@link OTLanguage}.
+	 *  @return The shared normalizer instance for the language. */
+	public static WordNormalizer forLanguage(final int language) {
+		return (language == OTLanguage.GERMAN ? GERMAN : DEFAULT);
+	}
+
+	/** Normalizes the given word to the Unicode normal form NFC. This form
+	 *  is used for case sensitive comparisons.
+	 *  @param word The word to be normalized; may be null.
+	 *  @return The normalized word. */
+	public String normalize(final String word) {
+		if (word == null || Normalizer.isNormalized(word, Normalizer.Form.NFC))
+			return word;
+
+		return Normalizer.normalize(word, Normalizer.Form.NFC);
+	}
+
+	/** Computes the key of the given word for case insensitive comparisons.
+	 *  @param word The word to be folded; may be null.
+	 *  @return The folded key. */
+	public String fold(final String word) {
+		if (word == null)
+			return null;
+
+		String result = normalize(word).toLowerCase(locale);
+		if (germanFolding) {
+			StringBuilder folded = null;
+			for (int i = 0; i < result.length(); i++) {
+				char c = result.charAt(i);
+				String replacement;
+				switch (c) {
+					case '\u00DF': replacement = "ss"; break;
+					case '\u00E4': replacement = "ae"; break;
+					case '\u00F6': replacement = "oe"; break;
+					case '\u00FC': replacement = "ue"; break;
+					default: replacement = null;
+				}
+				if (replacement != null && folded == null)
+					folded = new StringBuilder(result.length() + 4).append(result, 0, i);
+				if (folded != null) {
+					if (replacement != null)
+						folded.append(replacement);
+					else
+						folded.append(c);
+				}
+			}
+			if (folded != null)
+				result = folded.toString();
+		}
+		return result;
+	}
+
+	/** Computes a key of the given word that is equal for all words
+	 *  considered equal by the case insensitive collations of MySQL, i.e.,
+	 *  the key ignores case, diacritics, trailing spaces, and the spelling
+	 *  of "ß" as "s" or "ss". The key is coarser than the collations, such
+	 *  that words with different keys never match in a case insensitive
+	 *  query. Used by the {@link BloomFilter} of the database words.
+	 *  @param word The word; may be null.
+	 *  @return The collation key. */
+	public static String getCollationKey(final String word) {
+		if (word == null)
+			return null;
+
+		String decomposed = Normalizer.normalize(word, Normalizer.Form.NFD);
+		StringBuilder result = new StringBuilder(decomposed.length());
+		for (int i = 0; i < decomposed.length(); i++) {
+			char c = Character.toLowerCase(decomposed.charAt(i));
+			if (Character.getType(c) == Character.NON_SPACING_MARK)
+				continue;
+
+			switch (c) {
+				case '\u00DF': c = 's'; break;
+				case '\u00E6': result.append('a'); c = 'e'; break;
+				case '\u0153': result.append('o'); c = 'e'; break;
+				case '\u00F8': c = 'o'; break;
+				case '\u0142': c = 'l'; break;
+				case '\u0111': c = 'd'; break;
+			}
+			// "ss" and "s" are collapsed for covering both collations of "ß".
+			if (c == 's' && result.length() > 0 && result.charAt(result.length() - 1) == 's')
+				continue;
+			result.append(c);
+		}
+		int length = result.length();
+		while (length > 0 && result.charAt(length - 1) == ' ')
+			length--;
+		result.setLength(length);
+		return result.toString();
+	}
+
+	/** Returns the folded key of the given query token. Other than
+	 *  {@link #fold(String)}, the keys are cached, such that frequently
+	 *  occurring tokens are folded only once. Use {@link #fold(String)}
+	 *  for bulk operations over the words of the thesaurus, which would
+	 *  only displace the query tokens from the cache.
+	 *  @param word The query token; may be null.
+	 *  @return The folded key. */
+	public String getFoldedKey(final String word) {
+		if (word == null)
+			return null;
+
+		int hash = word.hashCode();
+		LRUCache<String, String> segment = foldedKeys[
+				((hash ^ (hash >>> 16)) & 0x7fffffff) % CACHE_SEGMENTS];
+		synchronized (segment) {
+			String result = segment.get(word);
+			if (result != null)
+				return result;
+		}
+
+		String result = fold(word);
+		synchronized (segment) {
+			segment.put(word, result);
+		}
+		return result;
+	}
+
+}
@@ -0,0 +1,526 @@
+/*******************************************************************************
+ * Copyright 2015
+ * Ubiquitous Knowledge Processing (UKP) Lab
+ * Technische Universität Darmstadt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package org.dkpro.jotl.server;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.UnsupportedEncodingException;
+import java.io.Writer;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+import org.dkpro.jotl.JOTLException;
+import org.dkpro.jotl.OTCategory;
+import org.dkpro.jotl.OTSnapshot;
+import org.dkpro.jotl.OTSynset;
+import org.dkpro.jotl.OTTerm;
+import org.dkpro.jotl.OpenThesaurus;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Embedded HTTP server answering thesaurus lookups as JSON, based on the
+ * HTTP server of the JDK. The following endpoints are available:
+ * <ul>
+ * <li><code>GET /terms?word=W[&amp;language=L]</code>: the terms having
+ * 		the given word; see {@link OpenThesaurus#getTermsByWord(String, int)}.</li>
+ * <li><code>GET /synsets/ID</code>: the synset with the given id
+ * 		including its terms and categories.</li>
+ * <li><code>GET /synsets/ID/links[?type=T1,T2][&amp;backwards=true]</code>:
+ * 		the ids of the linked synsets; see
+ * 		{@link OpenThesaurus#getSynsetLinkIds(int, int...)}.</li>
+ * <li><code>POST /batch/terms[?language=L]</code>: the terms of each word
+ * 		of the request body, which contains one word per line.</li>
+ * <li><code>POST /batch/synsets</code>: the synsets of each id of the
+ * 		request body, which contains one id per line.</li>
+ * </ul>
+ * Batch requests of more than {@value #MAX_BATCH_SIZE} lines are rejected
+ * by 413 (Payload Too Large). Responses are built completely before they
+ * are sent, such that errors while retrieving the results are reported by
+ * an error status rather than a truncated response. If the thesaurus uses
+ * an in-memory snapshot, the responses of GET requests are immutable until
+ * the snapshot changes and carry an <code>ETag</code> derived from the
+ * checksum of the snapshot and a <code>Cache-Control</code> header;
+ * conditional requests are answered by 304 (Not Modified). Without a
+ * snapshot, the requests are answered one at a time, since the prepared
+ * statements of the database connection are shared.
+ */
+public class ThesaurusServer {
+
+	/** Default number of seconds responses may be cached by clients. */
+	public static final int DEFAULT_MAX_AGE = 3600;
+
+	/** Maximum number of lines of a batch request. */
+	public static final int MAX_BATCH_SIZE = 10000;
+
+	protected OpenThesaurus openThesaurus;
+	protected HttpServer server;
+	protected ExecutorService executor;
+	protected int maxAge = DEFAULT_MAX_AGE;
+
+	/** Instanciates a new server for the given thesaurus. The server is
+	 *  started by {@link #start()}.
+	 *  @param openThesaurus The thesaurus answering the requests.
+	 *  @param address The address to listen on; use port 0 for choosing a
+	 *  		free port.
+	 *  @param threads The number of threads handling requests.
+	 *  @throws IOException if the address cannot be bound. */
+	public ThesaurusServer(final OpenThesaurus openThesaurus,
+			final InetSocketAddress address, final int threads)
+			throws IOException {
+		this.openThesaurus = openThesaurus;
+		server = HttpServer.create(address, 0);
+		executor = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+			public Thread newThread(final Runnable runnable) {
+				Thread result = new Thread(runnable, "jotl-http");
+				result.setDaemon(true);
+				return result;
+			}
+		});
+		server.setExecutor(executor);
+		server.createContext("/terms", new Handler() {
+			protected void handle(final Request request) throws Exception {
+				handleTerms(request);
+			}
+		});
+		server.createContext("/synsets/", new Handler() {
+			protected void handle(final Request request) throws Exception {
+				handleSynset(request);
+			}
+		});
+		server.createContext("/batch/terms", new Handler() {
+			protected void handle(final Request request) throws Exception {
+				handleBatchTerms(request);
+			}
+		});
+		server.createContext("/batch/synsets", new Handler() {
+			protected void handle(final Request request) throws Exception {
+				handleBatchSynsets(request);
+			}
+		});
+	}
+
+	/** Starts answering requests. */
+	public void start() {
+		server.start();
+	}
+
+	/** Stops the server after completing the current requests.
+	 *  @param delay The maximum number of seconds to wait for the current
+	 *  		requests. */
+	public void stop(final int delay) {
+		server.stop(delay);
+		executor.shutdown();
+	}
+
+	/** @return The address the server is listening on. */
+	public InetSocketAddress getAddress() {
+		return server.getAddress();
+	}
+
+	/** @param maxAge The number of seconds responses based on a snapshot
+	 *  		may be cached by clients; defaults to {@value #DEFAULT_MAX_AGE}. */
+	public void setMaxAge(final int maxAge) {
+		this.maxAge = maxAge;
+	}
+
+	/** @return The number of seconds responses may be cached by clients. */
+	public int getMaxAge() {
+		return maxAge;
+	}
+
+
+	// -- Endpoints --
+
+	protected void handleTerms(final Request request) throws Exception {
+		request.requireMethod("GET");
+		String word = request.getParameter("word");
+		if (word == null)
+			throw new BadRequestException("Missing parameter: word");
+
+		String language = request.getParameter("language");
+		Set<OTTerm> terms = (language == null ? openThesaurus.getTermsByWord(word)
+				: openThesaurus.getTermsByWord(word, parseInt(language)));
+		if (request.isNotModified())
+			return;
+
+		Writer out = request.startResponse(200);
+		writeTerms(out, terms);
+		out.close();
+	}
+
+	protected void handleSynset(final Request request) throws Exception {
+		request.requireMethod("GET");
+		String[] path = request.getPath().substring("/synsets/".length()).split("/");
+		int synsetId = parseInt(path[0]);
+		boolean links = (path.length == 2 && path[1].equals("links"));
+		if (path.length > 2 || (path.length == 2 && !links))
+			throw new NotFoundException(request.getPath());
+
+		if (links) {
+			String types = request.getParameter("type");
+			int[] linkTypes = new int[0];
+			if (types != null) {
+				String[] values = types.split(",");
+				linkTypes = new int[values.length];
+				for (int i = 0; i < values.length; i++)
+					linkTypes[i] = parseInt(values[i].trim());
+			}
+			if (request.isNotModified())
+				return;
+
+			int[] synsetIds = ("true".equals(request.getParameter("backwards"))
+					? openThesaurus.getSynsetLinkIdsBackwards(synsetId, linkTypes)
+					: openThesaurus.getSynsetLinkIds(synsetId, linkTypes));
+			Writer out = request.startResponse(200);
+			out.write('[');
+			for (int i = 0; i < synsetIds.length; i++) {
+				if (i > 0)
+					out.write(',');
+				out.write(Integer.toString(synsetIds[i]));
+			}
+			out.write(']');
+			out.close();
+			return;
+		}
+
+		OTSynset synset = openThesaurus.getSynsetById(synsetId);
+		if (synset == null)
+			throw new NotFoundException("Synset " + synsetId);
+		if (request.isNotModified())
+			return;
+
+		Writer out = request.startResponse(200);
+		writeSynset(out, synset);
+		out.close();
+	}
+
+	protected void handleBatchTerms(final Request request) throws Exception {
+		request.requireMethod("POST");
+		String language = request.getParameter("language");
+		int languageId = (language == null ? -1 : parseInt(language));
+		List<String> words = request.getBodyLines();
+		Writer out = request.startResponse(200);
+		out.write('{');
+		for (int i = 0; i < words.size(); i++) {
+			if (i > 0)
+				out.write(',');
+			writeString(out, words.get(i));
+			out.write(':');
+			writeTerms(out, (languageId < 0 ? openThesaurus.getTermsByWord(words.get(i))
+					: openThesaurus.getTermsByWord(words.get(i), languageId)));
+		}
+		out.write('}');
+		out.close();
+	}
+
+	protected void handleBatchSynsets(final Request request) throws Exception {
+		request.requireMethod("POST");
+		List<String> lines = request.getBodyLines();
+		int[] synsetIds = new int[lines.size()];
+		for (int i = 0; i < synsetIds.length; i++)
+			synsetIds[i] = parseInt(lines.get(i).trim());
+
+		Writer out = request.startResponse(200);
+		out.write('[');
+		for (int i = 0; i < synsetIds.length; i++) {
+			if (i > 0)
+				out.write(',');
+			OTSynset synset = openThesaurus.getSynsetById(synsetIds[i]);
+			if (synset == null)
+				out.write("null");
+			else
+				writeSynset(out, synset);
+		}
+		out.write(']');
+		out.close();
+	}
+
+
+	// -- JSON --
+
+	protected static void writeTerms(final Writer out, final Set<OTTerm> terms)
+			throws IOException {
+		out.write('[');
+		boolean first = true;
+		for (OTTerm term : terms) {
+			if (!first)
+				out.write(',');
+			first = false;
+			out.write("{\"id\":" + term.getTermId());
+			out.write(",\"word\":");
+			writeString(out, term.getWord());
+			out.write(",\"synsetId\":" + term.getSynset().getSynsetId()
+					+ ",\"level\":" + term.getTermLevel()
+					+ ",\"language\":" + term.getLanguageId()
+					+ ",\"acronym\":" + term.getIsAcronym()
+					+ ",\"shortForm\":" + term.getIsShortForm() + "}");
+		}
+		out.write(']');
+	}
+
+	protected static void writeSynset(final Writer out, final OTSynset synset)
+			throws IOException, JOTLException {
+		out.write("{\"id\":" + synset.getSynsetId() + ",\"terms\":");
+		writeTerms(out, synset.getTerms());
+		out.write(",\"categories\":[");
+		boolean first = true;
+		for (OTCategory category : synset.getCategories()) {
+			if (!first)
+				out.write(',');
+			first = false;
+			writeString(out, category.getName());
+		}
+		out.write("]}");
+	}
+
+	protected static void writeString(final Writer out, final String value)
+			throws IOException {
+		out.write('"');
+		for (int i = 0; i < value.length(); i++) {
+			char c = value.charAt(i);
+			switch (c) {
+				case '"': out.write("\\\""); break;
+				case '\\': out.write("\\\\"); break;
+				case '\n': out.write("\\n"); break;
+				case '\r': out.write("\\r"); break;
+				case '\t': out.write("\\t"); break;
+				default:
+					if (c < 0x20)
+						out.write(String.format("\\u%04x", (int) c));
+					else
+						out.write(c);
+			}
+		}
+		out.write('"');
+	}
+
+	protected static int parseInt(final String value) throws BadRequestException {
+		try {
+			return Integer.parseInt(value);
+		} catch (NumberFormatException e) {
+			throw new BadRequestException("Not a number: " + value);
+		}
+	}
+
+
+	// -- Requests --
+
+	/** Wraps an exchange and provides access to its parameters. */
+	protected class Request {
+
+		protected HttpExchange exchange;
+		protected Map<String, String> parameters;
+		protected int status;
+		protected ByteArrayOutputStream body;
+		protected Writer writer;
+
+		protected Request(final HttpExchange exchange)
+				throws UnsupportedEncodingException {
+			this.exchange = exchange;
+			parameters = new HashMap<String, String>();
+			String query = exchange.getRequestURI().getRawQuery();
+			if (query != null)
+				for (String parameter : query.split("&")) {
+					int i = parameter.indexOf('=');
+					if (i > 0)
+						parameters.put(URLDecoder.decode(parameter.substring(0, i), "UTF-8"),
+								URLDecoder.decode(parameter.substring(i + 1), "UTF-8"));
+				}
+		}
+
+		public String getPath() {
+			return exchange.getRequestURI().getPath();
+		}
+
+		public String getParameter(final String name) {
+			return parameters.get(name);
+		}
+
+		public void requireMethod(final String method) throws BadRequestException {
+			if (!method.equals(exchange.getRequestMethod()))
+				throw new BadRequestException("Method not allowed: "
+						+ exchange.getRequestMethod(), 405);
+		}
+
+		public BufferedReader getBody() throws IOException {
+			return new BufferedReader(new InputStreamReader(
+					exchange.getRequestBody(), "UTF-8"));
+		}
+
+		/** Reads the lines of a batch request.
+		 *  @throws BadRequestException if there are more than
+		 *  		{@link ThesaurusServer#MAX_BATCH_SIZE} lines. */
+		public List<String> getBodyLines() throws IOException, BadRequestException {
+			BufferedReader in = getBody();
+			List<String> result = new ArrayList<String>();
+			String line;
+			while ((line = in.readLine()) != null) {
+				if (result.size() >= MAX_BATCH_SIZE)
+					throw new BadRequestException("Batch exceeds " + MAX_BATCH_SIZE
+							+ " lines", 413);
+				result.add(line);
+			}
+			return result;
+		}
+
+		/** Adds the caching headers if the response is based on a snapshot
+		 *  and answers the request by 304 (Not Modified) if the client's
+		 *  version is up to date.
+		 *  @return true if the request has been answered. */
+		public boolean isNotModified() throws IOException {
+			OTSnapshot snapshot = openThesaurus.getSnapshot();
+			if (snapshot == null) {
+				exchange.getResponseHeaders().set("Cache-Control", "no-cache");
+				return false;
+			}
+
+			// The responses also depend on the default language and the
+			// case sensitivity of the lookups.
+			String etag = "\"" + snapshot.getChecksum() + "-" + openThesaurus.getLanguage()
+					+ (openThesaurus.getIsCaseSensitive() ? "c" : "i") + "\"";
+			exchange.getResponseHeaders().set("ETag", etag);
+			exchange.getResponseHeaders().set("Cache-Control", "public, max-age=" + maxAge);
+			if (!etag.equals(exchange.getRequestHeaders().getFirst("If-None-Match")))
+				return false;
+
+			exchange.sendResponseHeaders(304, -1);
+			exchange.close();
+			return true;
+		}
+
+		/** Returns a writer for the body of the response, which is sent
+		 *  by {@link #sendResponse()} once the request has been handled. */
+		public Writer startResponse(final int status) throws IOException {
+			this.status = status;
+			body = new ByteArrayOutputStream(8192);
+			writer = new BufferedWriter(new OutputStreamWriter(body, "UTF-8"), 8192);
+			return writer;
+		}
+
+		/** Sends the response built by the handler, if any. */
+		public void sendResponse() throws IOException {
+			if (body == null)
+				return;
+
+			writer.close(); // Flushes the body unless closed by the handler.
+			exchange.getResponseHeaders().set("Content-Type",
+					"application/json; charset=UTF-8");
+			exchange.sendResponseHeaders(status, body.size());
+			body.writeTo(exchange.getResponseBody());
+		}
+
+	}
+
+	/** Handles an exchange and reports errors as JSON. Without a snapshot,
+	 *  the requests are serialized. */
+	protected abstract class Handler implements HttpHandler {
+
+		public void handle(final HttpExchange exchange) throws IOException {
+			try {
+				Request request;
+				try {
+					request = new Request(exchange);
+					if (openThesaurus.getSnapshot() != null)
+						handle(request);
+					else
+						synchronized (openThesaurus) {
+							handle(request);
+						}
+				} catch (BadRequestException e) {
+					sendError(exchange, e.getStatus(), e.getMessage());
+					return;
+				} catch (JOTLException e) {
+					sendError(exchange, 500, e.getMessage());
+					return;
+				} catch (Exception e) {
+					sendError(exchange, 500, e.toString());
+					return;
+				}
+				request.sendResponse();
+			} finally {
+				exchange.close();
+			}
+		}
+
+		protected abstract void handle(final Request request) throws Exception;
+
+		protected void sendError(final HttpExchange exchange, final int status,
+				final String message) throws IOException {
+			exchange.getResponseHeaders().remove("ETag");
+			exchange.getResponseHeaders().set("Cache-Control", "no-store");
+			exchange.getResponseHeaders().set("Content-Type",
+					"application/json; charset=UTF-8");
+			exchange.sendResponseHeaders(status, 0);
+			Writer out = new OutputStreamWriter(exchange.getResponseBody(), "UTF-8");
+			out.write("{\"error\":");
+			writeString(out, (message == null ? "" : message));
+			out.write('}');
+			out.close();
+		}
+
+	}
+
+	/** Signals an invalid request answered by a 4xx status. */
+	protected static class BadRequestException extends Exception {
+
+		private static final long serialVersionUID = 1L;
+
+		protected int status;
+
+		public BadRequestException(final String message) {
+			this(message, 400);
+		}
+
+		public BadRequestException(final String message, final int status) {
+			super(message);
+			this.status = status;
+		}
+
+		public int getStatus() {
+			return status;
+		}
+
+	}
+
+	/** Signals an unknown resource answered by 404 (Not Found). */
+	protected static class NotFoundException extends BadRequestException {
+
+		private static final long serialVersionUID = 1L;
+
+		public NotFoundException(final String message) {
+			super("Not found: " + message, 404);
+		}
+
+	}
+
+}
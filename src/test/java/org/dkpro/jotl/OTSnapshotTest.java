@@ -0,0 +1,289 @@
+/*******************************************************************************
+ * Copyright 2015
+ * Ubiquitous Knowledge Processing (UKP) Lab
+ * Technische Universität Darmstadt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package org.dkpro.jotl;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+public class OTSnapshotTest extends TestCase {
+
+	/** Builds a small thesaurus with a hypernymy chain 3 -> 2 -> 1 and an
+	 *  association between 3 and 4. */
+	public static SnapshotBuilder createBuilder() {
+		SnapshotBuilder builder = new SnapshotBuilder();
+		for (int synsetId = 1; synsetId <= 4; synsetId++)
+			builder.addSynset(synsetId);
+		builder.addTerm(10, 1, "Objekt", null, 0, false, false, OTLanguage.GERMAN, 0);
+		builder.addTerm(11, 1, "Gegenstand", null, 0, false, false, OTLanguage.GERMAN, 0);
+		builder.addTerm(20, 2, "Fahrzeug", null, 0, false, false, OTLanguage.GERMAN, 0);
+		builder.addTerm(30, 3, "Auto", null, 0, false, false, OTLanguage.GERMAN, 0);
+		builder.addTerm(31, 3, "Karre", null, OTTermLevelType.COLLOQUIAL, false, false, OTLanguage.GERMAN, 0);
+		builder.addTerm(32, 3, "PKW", null, 0, true, false, OTLanguage.GERMAN, 0);
+		builder.addTerm(33, 3, "car", null, 0, false, false, OTLanguage.ENGLISH, 0);
+		builder.addTerm(40, 4, "Stra\u00DFe", null, 0, false, false, OTLanguage.GERMAN, 0);
+		builder.addTerm(41, 4, "(die) Piste", "Piste", OTTermLevelType.COLLOQUIAL, false, false, OTLanguage.GERMAN, 0);
+		builder.addSynsetLink(3, 2, OTSynsetLinkType.HYPERNYMY);
+		builder.addSynsetLink(2, 1, OTSynsetLinkType.HYPERNYMY);
+		builder.addSynsetLink(3, 4, OTSynsetLinkType.ASSOCIATION);
+		builder.addTermLink(30, 40, OTTermLinkType.ANTONYMY);
+		builder.addCategoryLink(3, new OTCategory(1, "Verkehr", 0, false));
+		builder.addCategoryLink(4, new OTCategory(1, "Verkehr", 0, false));
+		builder.addTag(31, "umgangssprachlich");
+		return builder;
+	}
+
+	public void testBuild() {
+		OTSnapshot snapshot = createBuilder().build();
+		assertEquals(4, snapshot.getNumberOfSynsets());
+		assertEquals(9, snapshot.getNumberOfTerms());
+		assertEquals(-1, snapshot.getSynsetIndex(5));
+
+		int auto = snapshot.getSynsetIndex(3);
+		assertEquals(4, snapshot.getSynsetTermIndexes(auto).length);
+		assertEquals("Verkehr", snapshot.getCategories(auto)[0].getName());
+		assertSame(snapshot.getCategories(auto)[0],
+				snapshot.getCategories(snapshot.getSynsetIndex(4))[0]);
+
+		int[] hypernyms = snapshot.getSynsetLinks().getTargets(auto, OTSynsetLinkType.HYPERNYMY);
+		assertEquals(1, hypernyms.length);
+		assertEquals(2, snapshot.getSynsetId(hypernyms[0]));
+		assertEquals(2, snapshot.getSynsetLinks().getTargets(auto, 0).length);
+		LinkIndex links = snapshot.getSynsetLinks();
+		int start = links.getStart(auto, OTSynsetLinkType.HYPERNYMY);
+		assertEquals(start + 1, links.getEnd(auto, OTSynsetLinkType.HYPERNYMY));
+		assertEquals(hypernyms[0], links.getTargets()[start]);
+		IntList buffer = new IntList();
+		assertEquals(2, links.addTargets(auto, new int[0], buffer));
+		assertEquals(1, links.addTargets(auto, new int[]{OTSynsetLinkType.HYPERNYMY}, buffer));
+		assertEquals(hypernyms[0], buffer.get(2));
+		int[] hyponyms = snapshot.getSynsetLinksBackwards().getTargets(hypernyms[0],
+				OTSynsetLinkType.HYPERNYMY);
+		assertTrue(Arrays.equals(new int[]{auto}, hyponyms));
+
+		int karre = snapshot.getTermIndex(31);
+		assertEquals("Karre", snapshot.getWord(karre));
+		assertEquals(auto, snapshot.getTermSynsetIndex(karre));
+		assertEquals("umgangssprachlich", snapshot.getTags(karre)[0]);
+		assertEquals(40, snapshot.getTermId(snapshot.getTermLinks().getTargets(
+				snapshot.getTermIndex(30), OTTermLinkType.ANTONYMY)[0]));
+	}
+
+	public void testWordIndex() {
+		OTSnapshot snapshot = createBuilder().build();
+		assertEquals(1, snapshot.getTermIndexesByWord("auto", OTLanguage.GERMAN, false).length);
+		assertEquals(0, snapshot.getTermIndexesByWord("auto", OTLanguage.GERMAN, true).length);
+		assertEquals(0, snapshot.getTermIndexesByWord("car", OTLanguage.GERMAN, false).length);
+		assertEquals(1, snapshot.getTermIndexesByWord("car", OTLanguage.ENGLISH, false).length);
+		assertEquals(1, snapshot.getTermIndexesByWord("Piste", OTLanguage.GERMAN, true).length);
+		assertEquals(1, snapshot.getTermIndexesByWord("(die) Piste", OTLanguage.GERMAN, true).length);
+	}
+
+	public void testFolding() {
+		WordNormalizer normalizer = WordNormalizer.forLanguage(OTLanguage.GERMAN);
+		assertEquals("strasse", normalizer.fold("STRASSE"));
+		assertEquals("strasse", normalizer.fold("Stra\u00DFe"));
+		assertEquals("mueller", normalizer.fold("Mu\u0308ller"));
+		assertEquals("Mu\u0308ller".length() - 1, normalizer.normalize("Mu\u0308ller").length());
+
+		OTSnapshot snapshot = createBuilder().build();
+		assertEquals(1, snapshot.getTermIndexesByWord("STRASSE", OTLanguage.GERMAN, false).length);
+		assertEquals(0, snapshot.getTermIndexesByWord("Strasse", OTLanguage.GERMAN, true).length);
+		assertEquals(1, snapshot.getTermIndexesByWord("Stra\u00DFe", OTLanguage.GERMAN, true).length);
+	}
+
+	public void testCompactStrings() {
+		OTSnapshot snapshot = createBuilder().build();
+		SnapshotBuilder builder = createBuilder();
+		builder.setCompactStrings(true);
+		OTSnapshot compact = builder.build();
+		assertNotNull(compact.getStringArena());
+		for (int t = 0; t < snapshot.getNumberOfTerms(); t++) {
+			assertEquals(snapshot.getWord(t), compact.getWord(t));
+			assertEquals(snapshot.getNormalizedWord(t), compact.getNormalizedWord(t));
+			assertEquals(snapshot.createTerm(t, null, null).getWord(),
+					compact.createTerm(t, null, null).getWord());
+		}
+		assertTrue(Arrays.equals(
+				snapshot.getTermIndexesByWord("STRASSE", OTLanguage.GERMAN, false),
+				compact.getTermIndexesByWord("STRASSE", OTLanguage.GERMAN, false)));
+		assertTrue(Arrays.equals(
+				snapshot.getTermIndexesByWord("Piste", OTLanguage.GERMAN, true),
+				compact.getTermIndexesByWord("Piste", OTLanguage.GERMAN, true)));
+		assertEquals(0, compact.getTermIndexesByWord("Pist", OTLanguage.GERMAN, false).length);
+
+		StringArena arena = compact.getStringArena();
+		int auto = arena.indexOf("Auto");
+		assertEquals("Auto", arena.get(auto));
+		assertTrue(arena.compare(auto, arena.indexOf("Karre")) < 0);
+	}
+
+	public void testSerialization() throws Exception {
+		OTSnapshot snapshot = createBuilder().build();
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		new SnapshotWriter().write(snapshot, out);
+		byte[] data = out.toByteArray();
+		SnapshotReader reader = new SnapshotReader(ByteBuffer.wrap(data));
+		assertEquals(snapshot.getNumberOfSynsets(), reader.getNumberOfSynsets());
+		int auto = snapshot.getSynsetIndex(3);
+		assertTrue(Arrays.equals(snapshot.getSynsetLinks().getTargets(auto, 0),
+				reader.getSynsetLinks(auto, 0)));
+		assertTrue(Arrays.equals(snapshot.getSynsetLinks().getTargets(auto, OTSynsetLinkType.ASSOCIATION),
+				reader.getSynsetLinks(auto, OTSynsetLinkType.ASSOCIATION)));
+
+		OTSnapshot copy = reader.readSnapshot(false);
+		assertEquals(snapshot.getNumberOfTerms(), copy.getNumberOfTerms());
+		for (int t = 0; t < snapshot.getNumberOfTerms(); t++) {
+			assertEquals(snapshot.getTermId(t), copy.getTermId(t));
+			assertEquals(snapshot.getWord(t), copy.getWord(t));
+			assertEquals(snapshot.getNormalizedWord(t), copy.getNormalizedWord(t));
+			assertEquals(snapshot.getTermLevel(t), copy.getTermLevel(t));
+			assertEquals(snapshot.getIsAcronym(t), copy.getIsAcronym(t));
+			assertTrue(Arrays.equals(snapshot.getTags(t), copy.getTags(t)));
+			assertTrue(Arrays.equals(snapshot.getTermLinks().getTargets(t, 0),
+					copy.getTermLinks().getTargets(t, 0)));
+		}
+		assertEquals("Verkehr", copy.getCategories(auto)[0].getName());
+
+		data[data.length - 1]++;
+		try {
+			new SnapshotReader(ByteBuffer.wrap(data));
+			fail("Checksum error expected");
+		} catch (IOException e) {
+			// Expected.
+		}
+	}
+
+	public void testTermFilter() {
+		OTSnapshot snapshot = createBuilder().build();
+		assertNull(snapshot.getTermIndexes(new OTTermFilter()));
+
+		OTTermFilter filter = new OTTermFilter()
+				.excludeTermLevels(OTTermLevelType.COLLOQUIAL)
+				.setIsAcronym(false)
+				.setLanguageIds(OTLanguage.GERMAN);
+		BitSet accepted = snapshot.getTermIndexes(filter);
+		assertEquals(5, accepted.cardinality());
+		for (int t = 0; t < snapshot.getNumberOfTerms(); t++) {
+			OTTerm term = snapshot.createTerm(t, null, null);
+			assertEquals(filter.accept(term), accepted.get(t));
+		}
+	}
+
+	public void testIncrementalBuild() {
+		OTSnapshot snapshot = createBuilder().build();
+		SnapshotBuilder builder = createBuilder();
+		builder.previous = snapshot;
+		assertSame(snapshot, builder.build());
+
+		builder = createBuilder();
+		builder.previous = snapshot;
+		builder.addTerm(42, 4, "Weg", null, 0, false, false, OTLanguage.GERMAN, 0);
+		OTSnapshot update = builder.build();
+		assertNotSame(snapshot, update);
+		assertEquals(10, update.getNumberOfTerms());
+		int auto = snapshot.getSynsetIndex(3);
+		assertSame(snapshot.getCategories(auto)[0], update.getCategories(auto)[0]);
+	}
+
+	public void testMerge() {
+		OTSnapshot snapshot = createBuilder().build();
+		SnapshotBuilder builder = new SnapshotBuilder(snapshot);
+		builder.addAll(new SnapshotBuilder());
+		builder.addAll(createBuilder());
+		assertSame(snapshot, builder.build());
+
+		List<long[]> ranges = ParallelSnapshotLoader.splitRange(1, 10, 4);
+		assertEquals(4, ranges.size());
+		assertEquals(1, ranges.get(0)[0]);
+		assertEquals(ranges.get(0)[1], ranges.get(1)[0]);
+		assertEquals(11, ranges.get(3)[1]);
+		assertEquals(1, ParallelSnapshotLoader.splitRange(5, 5, 8).size());
+	}
+
+	public void testVersions() {
+		SnapshotVersions versions = new SnapshotVersions();
+		SnapshotVersions.Version v1 = versions.addVersion("v1", createBuilder().build());
+		SnapshotBuilder builder = createBuilder();
+		builder.addSynset(200);
+		builder.addTerm(2000, 200, "Weg", null, 0, false, false, OTLanguage.GERMAN, 0);
+		builder.addTerm(42, 4, "Fahrbahn", null, 0, false, false, OTLanguage.GERMAN, 0);
+		SnapshotVersions.Version v2 = versions.addVersion("v2", builder.build());
+		assertEquals(Arrays.asList("v1", "v2"), versions.getVersionNames());
+		assertEquals(4, v1.getNumberOfSynsets());
+		assertEquals(5, v2.getNumberOfSynsets());
+		assertTrue(Arrays.equals(new int[]{1, 2, 3, 4, 200}, v2.getSynsetIds()));
+
+		// Unchanged synsets and terms are shared.
+		assertSame(v1.getSynset(3), v2.getSynset(3));
+		assertNotSame(v1.getSynset(4), v2.getSynset(4));
+		assertSame(v1.getSynset(4).getTerms().get(0), v2.getSynset(4).getTerms().get(0));
+		assertTrue(Arrays.equals(new int[]{2}, v2.getSynset(3).getLinks(OTSynsetLinkType.HYPERNYMY)));
+		assertTrue(Arrays.equals(new int[]{40}, v2.getSynset(3).getTerms().get(0)
+				.getTermLinks(OTTermLinkType.ANTONYMY)));
+		assertEquals("Verkehr", v2.getSynset(4).getCategories().get(0).getName());
+		assertEquals(Arrays.asList("umgangssprachlich"), v2.getSynset(3).getTerms().get(1).getTags());
+
+		SnapshotVersions.Diff diff = versions.diff("v1", "v2");
+		assertTrue(Arrays.equals(new int[]{200}, diff.getAdded()));
+		assertEquals(0, diff.getRemoved().length);
+		assertTrue(Arrays.equals(new int[]{4}, diff.getChanged()));
+		assertTrue(Arrays.equals(new int[]{200}, versions.diff("v2", "v1").getRemoved()));
+		assertTrue(versions.diff("v2", "v2").isEmpty());
+
+		// The word index of each version.
+		assertEquals(0, v1.findSynsets("weg", OTLanguage.GERMAN).size());
+		assertEquals(200, v2.findSynsets("weg", OTLanguage.GERMAN).get(0).getId());
+		assertEquals(4, v1.findSynsets("strasse", OTLanguage.GERMAN).get(0).getId());
+		assertEquals(4, v2.findSynsets("Piste", OTLanguage.GERMAN).get(0).getId());
+		assertEquals(0, v2.findSynsets("car", OTLanguage.GERMAN).size());
+
+		// Removing a synset based on another version.
+		SnapshotVersions.Version v3 = versions.addVersion("v3", createBuilder().build(), "v2");
+		assertTrue(Arrays.equals(new int[]{200}, SnapshotVersions.diff(v2, v3).getRemoved()));
+		assertTrue(SnapshotVersions.diff(v1, v3).isEmpty());
+		assertEquals(0, v3.findSynsets("Weg", OTLanguage.GERMAN).size());
+		assertEquals(1, v3.findSynsets("Stra\u00DFe", OTLanguage.GERMAN).size());
+
+		OTSnapshot snapshot = v2.toSnapshot(false);
+		assertEquals(5, snapshot.getNumberOfSynsets());
+		assertEquals(11, snapshot.getNumberOfTerms());
+		assertTrue(versions.removeVersion("v1"));
+		assertNull(versions.getVersion("v1"));
+		try {
+			versions.addVersion("v2", snapshot);
+			fail("IllegalArgumentException expected");
+		} catch (IllegalArgumentException e) {}
+
+		// Words no longer used by any version are released.
+		assertTrue(versions.strings.containsKey("Weg"));
+		assertTrue(versions.removeVersion("v2"));
+		assertFalse(versions.strings.containsKey("Weg"));
+		assertTrue(versions.strings.containsKey("Stra\u00DFe"));
+		assertTrue(versions.strings.containsKey("umgangssprachlich"));
+		assertTrue(versions.removeVersion("v3"));
+		assertTrue(versions.strings.isEmpty());
+		assertTrue(versions.categories.isEmpty());
+	}
+
+}
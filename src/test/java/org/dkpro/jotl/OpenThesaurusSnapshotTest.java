@@ -0,0 +1,409 @@
+/*******************************************************************************
+ * Copyright 2015
+ * Ubiquitous Knowledge Processing (UKP) Lab
+ * Technische Universität Darmstadt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package org.dkpro.jotl;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.StringReader;
+import java.nio.channels.Channels;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests the {@link OpenThesaurus} API on top of an in-memory snapshot,
+ * which does not require a database.
+ */
+public class OpenThesaurusSnapshotTest extends TestCase {
+
+	protected OpenThesaurus ot;
+
+	@Override
+	protected void setUp() throws Exception {
+		ot = new OpenThesaurus(OTSnapshotTest.createBuilder().build(), OTLanguage.GERMAN);
+	}
+
+	public void testGetTerms() throws JOTLException {
+		Set<OTTerm> terms = ot.getTermsByWord("auto");
+		assertEquals(1, terms.size());
+		OTTerm auto = terms.iterator().next();
+		assertEquals("Auto", auto.getWord());
+		assertEquals(3, auto.getSynset().getSynsetId());
+		assertEquals(4, auto.getSynset().getTerms().size());
+		assertEquals(auto, ot.getTermById(30));
+		assertEquals(auto.getSynset(), ot.getSynsetByTermId(30));
+		assertEquals("Stra\u00DFe", auto.getTermLinks(OTTermLinkType.ANTONYMY)
+				.iterator().next().getWord());
+		assertTrue(ot.getTermsByWord("auto", OTLanguage.ENGLISH).isEmpty());
+		assertEquals(1, ot.getTermsByWord("car", OTLanguage.ENGLISH).size());
+		assertNull(ot.getTermById(99));
+
+		OTTermFilter filter = new OTTermFilter().excludeTermLevels(OTTermLevelType.COLLOQUIAL);
+		assertTrue(ot.getTermsByWord("Karre", filter).isEmpty());
+		assertEquals(3, ot.getSynsetById(3).getTerms(filter).size());
+
+		ot.setIsCaseSensitive(true);
+		assertTrue(ot.getTermsByWord("auto").isEmpty());
+	}
+
+	public void testGetSynsets() throws JOTLException {
+		assertEquals(4, ot.getNumberOfSynsets());
+		assertEquals(4, ot.getAllSynsets().size());
+		assertNull(ot.getSynsetById(5));
+		assertTrue(ot.getSchemaWarnings().isEmpty());
+
+		OTSynset auto = ot.getSynsetById(3);
+		Set<OTSynset> hypernyms = auto.getSynsetLinks(OTSynsetLinkType.HYPERNYMY);
+		assertEquals(1, hypernyms.size());
+		assertEquals(2, hypernyms.iterator().next().getSynsetId());
+		assertEquals(auto, ot.getSynsetById(2)
+				.getSynsetLinksBackwards(OTSynsetLinkType.HYPERNYMY).iterator().next());
+		assertEquals(2, auto.getSynsetLinks().size());
+		assertEquals(2, auto.getSynsetLinks(OTSynsetLinkType.HYPERNYMY,
+				OTSynsetLinkType.ASSOCIATION).size());
+		assertEquals(1, ot.getSynsetById(4).getSynsetLinksBackwards().size());
+		assertTrue(Arrays.equals(new int[]{2, 4}, ot.getSynsetLinkIds(3)));
+		assertEquals("Verkehr", auto.getCategories().iterator().next().getName());
+		assertTrue(ot.getSynsetsByWord("Auto").contains(auto));
+	}
+
+	public void testIds() throws JOTLException {
+		assertTrue(Arrays.equals(new int[]{30}, ot.getTermIdsByWord("auto")));
+		assertTrue(Arrays.equals(new int[]{3}, ot.getSynsetIdsByWord("Auto")));
+		assertEquals(0, ot.getSynsetIdsByWord("car").length);
+		assertTrue(Arrays.equals(new int[]{3}, ot.getSynsetIdsByWord("car",
+				OTLanguage.ENGLISH, null)));
+		OTTermFilter filter = new OTTermFilter().excludeTermLevels(OTTermLevelType.COLLOQUIAL);
+		assertEquals(0, ot.getTermIdsByWord("Karre", OTLanguage.GERMAN, filter).length);
+		assertTrue(Arrays.equals(new int[]{30, 31, 32, 33}, ot.getTermIdsBySynsetId(3)));
+		assertEquals(0, ot.getTermIdsBySynsetId(5).length);
+		assertTrue(Arrays.equals(new int[]{2},
+				ot.getSynsetLinkIds(3, OTSynsetLinkType.HYPERNYMY)));
+		assertTrue(Arrays.equals(new int[]{3},
+				ot.getSynsetLinkIdsBackwards(2, OTSynsetLinkType.HYPERNYMY)));
+		assertTrue(Arrays.equals(new int[]{40},
+				ot.getTermLinkIds(30, OTTermLinkType.ANTONYMY)));
+		// Link type 0 follows links of any type.
+		assertTrue(Arrays.equals(new int[]{40}, ot.getTermLinkIds(30, 0)));
+		assertEquals(ot.getTermById(30).getTermLinks(OTTermLinkType.ANTONYMY),
+				ot.getTermById(30).getTermLinks(0));
+	}
+
+	public void testBulkLoading() throws JOTLException {
+		List<OTTerm> terms = new ArrayList<OTTerm>(ot.getSynsetById(3).getTerms());
+		Map<OTTerm, Set<String>> tags = ot.getTags(terms);
+		assertEquals(4, tags.size());
+		assertTrue(tags.get(ot.getTermById(31)).contains("umgangssprachlich"));
+		assertTrue(tags.get(ot.getTermById(30)).isEmpty());
+		Map<OTTerm, Set<OTTerm>> antonyms = ot.getTermLinks(terms, OTTermLinkType.ANTONYMY);
+		assertEquals(4, antonyms.size());
+		assertEquals("Stra\u00DFe", antonyms.get(ot.getTermById(30)).iterator().next().getWord());
+		assertTrue(antonyms.get(ot.getTermById(31)).isEmpty());
+
+		// Cached data is discarded once another snapshot is activated.
+		OTSynset synset = ot.getSynsetById(3);
+		OTTerm term = terms.get(0);
+		int generation = ot.dbStatements.getSnapshotGeneration();
+		synset.setTerms(new HashSet<OTTerm>(), generation);
+		term.setTags(new HashSet<String>(Arrays.asList("veraltet")), generation);
+		assertTrue(synset.getTerms().isEmpty());
+		assertEquals(1, term.getTags().size());
+		ot.setSnapshot(OTSnapshotTest.createBuilder().build());
+		assertEquals(4, synset.getTerms().size());
+		assertFalse(term.getTags().contains("veraltet"));
+	}
+
+	public void testExport() throws Exception {
+		SynonymExporter exporter = new SynonymExporter(ot);
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		assertEquals(4, exporter.export(SynonymExporter.WORDNET_PROLOG, Channels.newChannel(out)));
+		assertTrue(out.toString("UTF-8").startsWith("s(100000001,1,'Objekt',n,1,0).\n"
+				+ "s(100000001,2,'Gegenstand',n,1,0).\ns(100000002,1,'Fahrzeug',n,1,0).\n"));
+
+		exporter.setFilter(new OTTermFilter().setLanguageIds(OTLanguage.GERMAN)
+				.excludeTermLevels(OTTermLevelType.COLLOQUIAL));
+		out.reset();
+		assertEquals(2, exporter.export(SynonymExporter.SOLR, Channels.newChannel(out)));
+		assertEquals("Objekt, Gegenstand\nAuto, PKW\n", out.toString("UTF-8"));
+		out.reset();
+		assertEquals(3, exporter.export(SynonymExporter.SOLR_HYPERNYMS, Channels.newChannel(out)));
+		assertEquals("Objekt, Gegenstand => Objekt, Gegenstand\n"
+				+ "Fahrzeug => Fahrzeug, Objekt, Gegenstand\n"
+				+ "Auto, PKW => Auto, PKW, Fahrzeug\n", out.toString("UTF-8"));
+	}
+
+	public void testPageRank() throws JOTLException {
+		PersonalizedPageRank pageRank = new PersonalizedPageRank(ot, true);
+		double sum = 0.0;
+		for (double value : pageRank.rank("Auto"))
+			sum += value;
+		assertEquals(1.0, sum, 1e-4);
+		assertEquals(1.0, pageRank.relatedness("Auto", "PKW"), 1e-9);
+		assertTrue(pageRank.relatedness("Auto", "Fahrzeug")
+				> pageRank.relatedness("Auto", "Objekt"));
+		assertEquals(0.0, pageRank.relatedness("Auto", "Fahrrad"));
+
+		List<OTSynset> related = pageRank.topRelated("Auto", 2);
+		assertEquals(2, related.size());
+		assertEquals(2, related.get(0).getSynsetId());
+		assertEquals(4, related.get(1).getSynsetId());
+		assertTrue(pageRank.topRelated("Fahrrad", 5).isEmpty());
+	}
+
+	public void testSimilarityMatrix() throws Exception {
+		SimilarityMatrix matrix = new SimilarityMatrix(ot);
+		matrix.setTileSize(2);
+		assertEquals(0.5f, matrix.similarity("Auto", "Fahrzeug"));
+		assertEquals(1.0f / 3, matrix.similarity("Auto", "Objekt"));
+		assertEquals(0.0f, matrix.similarity("Auto", "Stra\u00DFe"));
+
+		List<String> vocabulary = Arrays.asList("Auto", "Fahrzeug", "Objekt",
+				"Stra\u00DFe", "Fahrrad");
+		File file = File.createTempFile("jotl", ".bin");
+		try {
+			matrix.writeMatrix(vocabulary, file);
+			assertEquals(5 * 5 * 4, file.length());
+			DataInputStream in = new DataInputStream(new FileInputStream(file));
+			float[] values = new float[25];
+			for (int i = 0; i < values.length; i++)
+				values[i] = in.readFloat();
+			in.close();
+			assertEquals(1.0f, values[0]);
+			assertEquals(0.5f, values[1]);
+			assertEquals(0.5f, values[5]);
+			assertEquals(0.5f, values[1 * 5 + 2]);
+			assertEquals(1.0f / 3, values[2 * 5 + 0]);
+			assertEquals(1.0f, values[3 * 5 + 3]);
+			assertEquals(0.0f, values[4 * 5 + 4]);
+
+			matrix.writeTopK(vocabulary, 1, file);
+			in = new DataInputStream(new FileInputStream(file));
+			assertEquals(5, in.readInt());
+			assertEquals(1, in.readInt());
+			assertEquals(1, in.readInt());
+			assertEquals(1, in.readInt());
+			assertEquals(0.5f, in.readFloat());
+			in.close();
+		} finally {
+			file.delete();
+		}
+	}
+
+	public void testMinHash() throws JOTLException {
+		SnapshotBuilder builder = OTSnapshotTest.createBuilder();
+		builder.addSynset(5);
+		builder.addTerm(50, 5, "Auto", null, 0, false, false, OTLanguage.GERMAN, 0);
+		builder.addTerm(51, 5, "Karre", null, 0, false, false, OTLanguage.GERMAN, 0);
+		builder.addTerm(52, 5, "Pkw", null, 0, false, false, OTLanguage.GERMAN, 0);
+		ot = new OpenThesaurus(builder.build(), OTLanguage.GERMAN);
+		MinHashIndex index = new MinHashIndex(ot);
+
+		List<OTSynset> similar = index.similarSynsets(ot.getSynsetById(3), 0.5);
+		assertEquals(1, similar.size());
+		assertEquals(5, similar.get(0).getSynsetId());
+		assertTrue(index.similarSynsets(ot.getSynsetById(3), 0.8).isEmpty());
+		similar = index.similarSynsets(Arrays.asList("auto", "Car", "PKW", "karre"), 0.7);
+		assertEquals(2, similar.size());
+		assertEquals(3, similar.get(0).getSynsetId());
+
+		List<int[]> duplicates = index.findNearDuplicates(0.7);
+		assertEquals(1, duplicates.size());
+		assertTrue(Arrays.equals(new int[]{3, 5}, duplicates.get(0)));
+	}
+
+	public void testRankSenses() throws JOTLException {
+		SnapshotBuilder builder = OTSnapshotTest.createBuilder();
+		builder.addSynset(5);
+		builder.addSynset(6);
+		builder.addTerm(50, 5, "Karre", null, 0, false, false, OTLanguage.GERMAN, 0);
+		builder.addTerm(51, 5, "Schubkarre", null, 0, false, false, OTLanguage.GERMAN, 0);
+		builder.addTerm(60, 6, "Garten", null, 0, false, false, OTLanguage.GERMAN, 0);
+		builder.addSynsetLink(5, 6, OTSynsetLinkType.ASSOCIATION);
+		ot = new OpenThesaurus(builder.build(), OTLanguage.GERMAN);
+
+		// Neighbours' terms and categories contribute to the scores.
+		List<OTSynset> senses = ot.rankSenses("Karre",
+				Arrays.asList("die", "Karre", "steht", "im", "Garten"));
+		assertEquals(2, senses.size());
+		assertEquals(5, senses.get(0).getSynsetId());
+		senses = ot.rankSenses("karre", Arrays.asList("Karre", "auf", "der", "Strasse"));
+		assertEquals(3, senses.get(0).getSynsetId());
+		senses = ot.rankSenses("Karre", Arrays.asList("Verkehr"));
+		assertEquals(3, senses.get(0).getSynsetId());
+		assertEquals(5, ot.rankSenses("Karre", Arrays.asList("Karre")).get(1).getSynsetId());
+		assertTrue(ot.rankSenses("Fahrrad", Arrays.asList("Garten")).isEmpty());
+
+		SenseRanker ranker = new SenseRanker(ot);
+		int[] context = ranker.getContext(Arrays.asList("Auto", "PKW", "Fahrzeug", "Objekt", "xyz"));
+		assertEquals(4, context.length);
+		assertEquals(3, ranker.getScore(ot.getSynsetById(3), context));
+		assertEquals(0, ranker.getScore(ot.getSynsetById(5), context));
+		assertEquals(3, ranker.rankSenses("Auto", context).get(0).getSynsetId());
+	}
+
+	public void testQueryLog() throws Exception {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		QueryLog log = new QueryLog(out);
+		ot.setQueryLog(log);
+		OTSynset synset = ot.getSynsetById(3);
+		synset.getSynsetLinks(OTSynsetLinkType.HYPERNYMY, OTSynsetLinkType.ASSOCIATION);
+		ot.getTermsByWord("Stra\u00DFe").iterator().next().getTags();
+		ot.getTermsByWord("");
+		OTTermFilter filter = new OTTermFilter().excludeTermLevels(OTTermLevelType.VULGAR)
+				.setIsAcronym(false);
+		ot.getTermsByWord("Auto", filter);
+		ot.setQueryLog(null);
+		ot.getSynsetById(4);
+		log.close();
+		assertEquals(6, log.getRecordCount());
+
+		List<QueryLog.Entry> entries = QueryLog.read(new ByteArrayInputStream(out.toByteArray()));
+		assertEquals(6, entries.size());
+		assertEquals(QueryLog.GET_SYNSET_BY_ID, entries.get(0).getOperation());
+		assertEquals(3, entries.get(0).getId());
+		assertTrue(Arrays.equals(new int[]{OTSynsetLinkType.HYPERNYMY,
+				OTSynsetLinkType.ASSOCIATION}, entries.get(1).getTypes()));
+		assertEquals("Stra\u00DFe", entries.get(2).getWord());
+		assertEquals(OTLanguage.GERMAN, entries.get(2).getLanguage());
+		assertEquals(QueryLog.GET_TAGS, entries.get(3).getOperation());
+		assertEquals(40, entries.get(3).getId());
+		assertEquals("", entries.get(4).getWord());
+		assertNull(entries.get(0).getWord());
+		assertNull(entries.get(4).getFilter());
+		assertEquals(filter, entries.get(5).getFilter());
+		assertTrue(entries.get(5).getFilter().getTermLevelsExcluded());
+
+		QueryReplay.Report report = new QueryReplay(ot).replay(entries, 2, 1000.0);
+		assertEquals(6, report.getLatencies(0).getCount());
+		assertEquals(1, report.getLatencies(QueryLog.GET_TAGS).getCount());
+		assertEquals(0, report.getErrors(0));
+		assertTrue(report.getElapsedTime() >= 4000000L);
+
+		// Calls are replayed in the order of their start times.
+		Collections.reverse(entries);
+		report = new QueryReplay(ot).replay(entries, 1, 0);
+		assertEquals(6, report.getLatencies(0).getCount());
+
+		LatencyHistogram histogram = new LatencyHistogram();
+		for (int i = 1; i <= 1000; i++)
+			histogram.record(i);
+		assertEquals(100, histogram.getPercentile(0.1));
+		assertEquals(501, histogram.getPercentile(0.5));
+		assertEquals(1003, histogram.getMax());
+	}
+
+	public void testHotKeys() throws Exception {
+		HotKeySet hotKeys = new HotKeySet(2);
+		ot.setHotKeySet(hotKeys);
+		for (int i = 0; i < 3; i++)
+			ot.getTermsByWord("Auto");
+		ot.getTermsByWord("car", OTLanguage.ENGLISH);
+		ot.getSynsetById(4).getTerms();
+		ot.setHotKeySet(null);
+		ot.getTermsByWord("Karre");
+		assertEquals(Arrays.asList("Auto"), hotKeys.getHotWords(OTLanguage.GERMAN, 10));
+		assertEquals(3, hotKeys.getWordFrequency("Auto", OTLanguage.GERMAN));
+		assertEquals(0, hotKeys.getWordFrequency("Karre", OTLanguage.GERMAN));
+		assertEquals(2, hotKeys.getSynsetFrequency(4));
+
+		// Keys below the frequency of the current hot keys are discarded.
+		hotKeys.addWordFrequencies(new StringReader("# word list\nStra\u00DFe\t5\n"
+				+ "Fahrzeug 4\nObjekt\n(die) Piste\n"), OTLanguage.GERMAN);
+		assertEquals(Arrays.asList("Stra\u00DFe", "Fahrzeug"),
+				hotKeys.getHotWords(OTLanguage.GERMAN, 10));
+		assertTrue(hotKeys.getWordFrequency("(die) Piste", OTLanguage.GERMAN) >= 1);
+
+		File file = File.createTempFile("jotl", ".keys");
+		try {
+			hotKeys.save(file);
+			HotKeySet loaded = new HotKeySet(2);
+			loaded.load(file);
+			assertEquals(hotKeys.getHotWords(OTLanguage.GERMAN, 10),
+					loaded.getHotWords(OTLanguage.GERMAN, 10));
+			assertEquals(5, loaded.getWordFrequency("Stra\u00DFe", OTLanguage.GERMAN));
+		} finally {
+			file.delete();
+		}
+
+		hotKeys = new HotKeySet();
+		hotKeys.recordSynset(3);
+		hotKeys.recordSynset(3);
+		hotKeys.recordSynset(1);
+		hotKeys.recordWord("car", OTLanguage.ENGLISH);
+		assertTrue(Arrays.equals(new int[]{3, 1}, hotKeys.getHotSynsetIds(10)));
+		assertTrue(Arrays.equals(new int[]{OTLanguage.ENGLISH}, hotKeys.getWordLanguages()));
+
+		// Keys that are no longer queried leave the set.
+		hotKeys.decay();
+		assertTrue(Arrays.equals(new int[]{3}, hotKeys.getHotSynsetIds(10)));
+		assertEquals(1, hotKeys.getSynsetFrequency(3));
+		assertEquals(0, hotKeys.getWordLanguages().length);
+
+		// Snapshots do not need to be pre-warmed.
+		ot.setTermCacheSize(10);
+		ot.prewarm(hotKeys, 2);
+	}
+
+	public void testTraverse() throws JOTLException {
+		final List<Integer> visited = new ArrayList<Integer>();
+		OTSynsetVisitor visitor = new OTSynsetVisitor() {
+			public boolean visit(final int synsetId, final int depth) {
+				visited.add(synsetId * 10 + depth);
+				return synsetId != 2;
+			}
+		};
+		assertEquals(2, ot.traverse(new int[]{3, 3}, new int[]{OTSynsetLinkType.HYPERNYMY},
+				Integer.MAX_VALUE, OTTraversalDirection.FORWARD, visitor));
+		assertEquals(Arrays.asList(30, 21), visited);
+
+		visited.clear();
+		assertEquals(4, ot.traverse(new int[]{1}, new int[0], 5,
+				OTTraversalDirection.BOTH, new OTSynsetVisitor() {
+					public boolean visit(final int synsetId, final int depth) {
+						visited.add(synsetId * 10 + depth);
+						return true;
+					}
+				}));
+		assertEquals(Arrays.asList(10, 21, 32, 43), visited);
+	}
+
+	public void testExpand() throws JOTLException {
+		ExpansionConfiguration config = new ExpansionConfiguration();
+		config.setHypernymDepth(2);
+		config.setTermLevelPenalty(OTTermLevelType.COLLOQUIAL, 0.8);
+		List<OTExpansionTerm> expansion = ot.expand("Auto", config);
+		assertEquals("PKW", expansion.get(0).getWord());
+		assertEquals("car", expansion.get(1).getWord());
+		assertEquals("Karre", expansion.get(2).getWord());
+		assertEquals(0.8, expansion.get(2).getWeight(), 0.0001);
+		assertEquals("Fahrzeug", expansion.get(3).getWord());
+		assertEquals(OTExpansionTerm.HYPERNYM, expansion.get(3).getRelation());
+		assertEquals(2, expansion.get(expansion.size() - 1).getDepth());
+		assertSame(expansion, ot.expand("Auto", config));
+	}
+
+}
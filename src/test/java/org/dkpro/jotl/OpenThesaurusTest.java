@@ -17,7 +17,11 @@
  ******************************************************************************/
 package org.dkpro.jotl;
 
+import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 import junit.framework.TestCase;
@@ -28,6 +32,7 @@ import org.dkpro.jotl.OTLanguage;
 import org.dkpro.jotl.OTSynset;
 import org.dkpro.jotl.OTSynsetLinkType;
 import org.dkpro.jotl.OTTerm;
+import org.dkpro.jotl.OTTermFilter;
 import org.dkpro.jotl.OTTermLevelType;
 import org.dkpro.jotl.OTTermLinkType;
 import org.dkpro.jotl.OpenThesaurus;
@@ -136,6 +141,207 @@ public class OpenThesaurusTest extends TestCase {
 		assertEquals("figurativ", ot.getTermById(103319).getTags().iterator().next());
 	}
 
+	public void testBulkLoading() throws JOTLException {
+		if (ot == null)
+			return; // Skip test.
+
+		List<OTTerm> terms = new ArrayList<OTTerm>();
+		terms.add(ot.getTermById(89100));
+		terms.add(ot.getTermById(103319));
+		terms.addAll(ot.getTermsByWord("Konzentration"));
+		Map<OTTerm, Set<OTTerm>> antonyms = ot.getTermLinks(terms, OTTermLinkType.ANTONYMY);
+		Map<OTTerm, Set<String>> tags = ot.getTags(terms);
+		assertEquals(new HashSet<OTTerm>(terms), antonyms.keySet());
+		for (OTTerm term : terms) {
+			// Compare with the uncached results of a new term object.
+			OTTerm uncached = ot.getTermById(term.getTermId());
+			assertEquals(uncached.getTermLinks(OTTermLinkType.ANTONYMY), antonyms.get(term));
+			assertEquals(uncached.getTags(), tags.get(term));
+			assertSame(antonyms.get(term), term.getTermLinks(OTTermLinkType.ANTONYMY));
+		}
+		assertEquals("Ablenkung", antonyms.get(terms.get(0)).iterator().next().getWord());
+		assertEquals("figurativ", tags.get(terms.get(1)).iterator().next());
+
+		// Link type 0 follows links of any type.
+		OTTerm term = ot.getTermById(89100);
+		Set<OTTerm> anyType = term.getTermLinks(0);
+		assertTrue(anyType.containsAll(term.getTermLinks(OTTermLinkType.ANTONYMY)));
+		assertEquals(anyType, ot.getTermLinks(terms, 0).get(terms.get(0)));
+		assertEquals(anyType.size(), ot.getTermLinkIds(89100, 0).length);
+	}
+
+	public void testTermFilter() throws JOTLException {
+		if (ot == null)
+			return; // Skip test.
+
+		OTTermFilter filter = new OTTermFilter().setTermLevels(OTTermLevelType.JARGON);
+		assertEquals(ot.getTermsByWord("Pneumonie"), ot.getTermsByWord("Pneumonie", filter));
+		filter = new OTTermFilter().excludeTermLevels(OTTermLevelType.JARGON);
+		assertTrue(ot.getTermsByWord("Pneumonie", filter).isEmpty());
+		assertTrue(ot.getSynsetsByWord("Pneumonie", filter).isEmpty());
+
+		filter = new OTTermFilter().setIsAcronym(false).setLanguageIds(OTLanguage.GERMAN);
+		OTSynset synset = ot.getSynsetById(1);
+		for (OTTerm term : synset.getTerms())
+			assertEquals(filter.accept(term), synset.getTerms(filter).contains(term));
+	}
+
+	public void testLanguage() throws JOTLException {
+		if (ot == null)
+			return; // Skip test.
+
+		assertEquals(ot.getTermsByWord("Konzentration"),
+				ot.getTermsByWord("Konzentration", OTLanguage.GERMAN));
+		assertTrue(ot.getTermsByWord("Konzentration", OTLanguage.ENGLISH).isEmpty());
+		assertTrue(ot.getSynsetsByWord("Konzentration", OTLanguage.ENGLISH).isEmpty());
+	}
+
+	public void testExpand() throws JOTLException {
+		if (ot == null)
+			return; // Skip test.
+
+		ExpansionConfiguration config = new ExpansionConfiguration();
+		List<OTExpansionTerm> expansion = ot.expand("Kernspaltung", config);
+		assertEquals("Atomspaltung", expansion.get(0).getWord());
+		assertEquals(OTExpansionTerm.SYNONYM, expansion.get(0).getRelation());
+		for (int i = 1; i < expansion.size(); i++)
+			assertTrue(expansion.get(i - 1).getWeight() >= expansion.get(i).getWeight());
+		assertSame(expansion, ot.expand("Kernspaltung", new ExpansionConfiguration(config)));
+
+		config.setSynonymWeight(0.0);
+		config.setHyponymDepth(0);
+		config.setMaxResults(3);
+		expansion = ot.expand("Kernspaltung", config);
+		assertTrue(expansion.size() <= 3);
+		for (OTExpansionTerm term : expansion)
+			assertEquals(OTExpansionTerm.HYPERNYM, term.getRelation());
+	}
+
+	public void testSnapshot() throws Exception {
+		if (ot == null)
+			return; // Skip test.
+
+		OTSynset synset = ot.getSynsetById(7);
+		Set<OTTerm> terms = synset.getTerms();
+		Set<OTSynset> hypernyms = synset.getSynsetLinks(OTSynsetLinkType.HYPERNYMY);
+		Set<OTTerm> konzentration = ot.getTermsByWord("Konzentration");
+		ot.loadSnapshot();
+		try {
+			assertNotNull(ot.getSnapshot());
+			assertEquals(terms, ot.getSynsetById(7).getTerms());
+			assertEquals(hypernyms, synset.getSynsetLinks(OTSynsetLinkType.HYPERNYMY));
+			assertEquals(konzentration, ot.getTermsByWord("Konzentration"));
+			assertEquals("figurativ", ot.getTermById(103319).getTags().iterator().next());
+
+			OTSnapshot snapshot = ot.getSnapshot();
+			assertSame(snapshot, ot.refreshSnapshot(ot.getDatabaseConfiguration()).get());
+		} finally {
+			ot.setSnapshot(null);
+		}
+	}
+
+	public void testSetDatabaseConfiguration() throws JOTLException {
+		if (ot == null)
+			return; // Skip test.
+
+		// The configuration is copied rather than referenced.
+		DatabaseConfiguration dbConfig = ot.getDatabaseConfiguration();
+		int language = dbConfig.getLanguage();
+		ot.setDatabaseConfiguration(dbConfig);
+		dbConfig.setLanguage(language + 1);
+		assertEquals(language, ot.getLanguage());
+		assertEquals(language, ot.getDatabaseConfiguration().getLanguage());
+
+		// A failing reconnect keeps the previous connection.
+		dbConfig.setLanguage(language);
+		dbConfig.setDatabase(dbConfig.getDatabase() + "_missing");
+		try {
+			ot.setDatabaseConfiguration(dbConfig);
+			fail("JOTLException expected");
+		} catch (JOTLException e) {
+			// Expected.
+		}
+		assertTrue(ot.getNumberOfSynsets() > 0);
+	}
+
+	public void testPrewarm() throws JOTLException {
+		if (ot == null)
+			return; // Skip test.
+
+		HotKeySet hotKeys = new HotKeySet();
+		hotKeys.recordWord("Konzentration", OTLanguage.GERMAN);
+		hotKeys.recordWord("Kernspaltung", OTLanguage.GERMAN);
+		hotKeys.recordSynset(7);
+		Set<OTTerm> konzentration = ot.getTermsByWord("Konzentration");
+		Set<OTTerm> terms = ot.getSynsetById(7).getTerms();
+		ot.setTermCacheSize(100);
+		try {
+			ot.prewarm(hotKeys, 2);
+			assertEquals(konzentration, ot.getTermsByWord("Konzentration"));
+			assertEquals(terms, ot.getSynsetById(7).getTerms());
+			assertSame(ot.getSynsetById(7), ot.getSynsetById(7));
+
+			// Changing a filter after the lookup does not affect the cache.
+			OTTermFilter filter = new OTTermFilter().setTermLevels(OTTermLevelType.JARGON);
+			Set<OTTerm> jargon = ot.getTermsByWord("Pneumonie", filter);
+			filter.excludeTermLevels(OTTermLevelType.JARGON);
+			assertTrue(ot.getTermsByWord("Pneumonie", filter).isEmpty());
+			assertEquals(jargon, ot.getTermsByWord("Pneumonie",
+					new OTTermFilter().setTermLevels(OTTermLevelType.JARGON)));
+		} finally {
+			ot.setTermCacheSize(0);
+		}
+	}
+
+	public void testWordFilter() throws JOTLException {
+		assertEquals("strase", WordNormalizer.getCollationKey("Stra\u00DFe "));
+		assertEquals("strase", WordNormalizer.getCollationKey("STRASSE"));
+		assertEquals("muller", WordNormalizer.getCollationKey("M\u00FCller"));
+
+		BloomFilter filter = new BloomFilter(1000, 10);
+		for (int i = 0; i < 1000; i++)
+			filter.add("word" + i);
+		assertEquals(1000, filter.size());
+		int falsePositives = 0;
+		for (int i = 0; i < 1000; i++) {
+			assertTrue(filter.mightContain("word" + i));
+			if (filter.mightContain("other" + i))
+				falsePositives++;
+		}
+		assertTrue(falsePositives < 50);
+
+		if (ot == null)
+			return; // Skip test.
+
+		ot.setUseWordFilter(true);
+		try {
+			assertTrue(ot.getTermsByWord("Konzentration").size() > 0);
+			assertTrue(ot.getTermsByWord("KONZENTRATION").size() > 0);
+			assertEquals(0, ot.getTermsByWord("Konzentrationxyz").size());
+		} finally {
+			ot.setUseWordFilter(false);
+		}
+	}
+
+	public void testSchemaWarnings() throws JOTLException {
+		if (ot == null)
+			return; // Skip test.
+
+		List<String> warnings = ot.getSchemaWarnings();
+		assertNotNull(warnings);
+		for (String warning : warnings)
+			assertFalse(warning.startsWith("Unable to verify"));
+
+		// Each connection verifies the database again.
+		OpenThesaurus other = new OpenThesaurus(ot.getDatabaseConfiguration());
+		try {
+			assertNotSame(warnings, other.getSchemaWarnings());
+			assertEquals(warnings, other.getSchemaWarnings());
+		} finally {
+			other.close();
+		}
+	}
+
 	public void testSetCaseSensitive() throws JOTLException {
 		if (ot == null)
 			return; // Skip test.
@@ -0,0 +1,226 @@
+/*******************************************************************************
+ * Copyright 2015
+ * Ubiquitous Knowledge Processing (UKP) Lab
+ * Technische Universität Darmstadt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package org.dkpro.jotl;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests the {@link ReplicaRouter} using stand-in replicas, whose prepared
+ * statements answer each query with the index of the replica plus the
+ * first parameter. Like JDBC statements, executing a stand-in statement
+ * closes its previous result set.
+ */
+public class ReplicaRouterTest extends TestCase {
+
+	protected volatile long[] delays;
+	protected volatile boolean[] failing;
+	protected AtomicInteger openStatements;
+
+	protected ReplicaRouter.StatementSource createReplicas(final int count) {
+		delays = new long[count];
+		failing = new boolean[count];
+		openStatements = new AtomicInteger();
+		return new ReplicaRouter.StatementSource() {
+			public PreparedStatement prepare(final int replica) {
+				openStatements.incrementAndGet();
+				return createStandIn(replica);
+			}
+		};
+	}
+
+	protected PreparedStatement createStandIn(final int replica) {
+		return (PreparedStatement) Proxy.newProxyInstance(
+				getClass().getClassLoader(), new Class<?>[]{PreparedStatement.class},
+				new InvocationHandler() {
+					protected int parameter;
+					protected boolean[] resultClosed;
+					protected boolean closed;
+
+					public Object invoke(Object proxy, Method method, Object[] args)
+							throws Throwable {
+						if (method.getName().equals("setInt")) {
+							parameter = (Integer) args[1];
+							return null;
+						}
+						if (method.getName().equals("close")) {
+							if (!closed)
+								openStatements.decrementAndGet();
+							closed = true;
+							return null;
+						}
+						if (!method.getName().equals("executeQuery"))
+							return null;
+
+						int value = replica * 1000 + parameter;
+						if (resultClosed != null)
+							resultClosed[0] = true;
+						resultClosed = new boolean[1];
+						if (delays[replica] > 0)
+							Thread.sleep(delays[replica]);
+						if (failing[replica])
+							throw new SQLException("Replica " + replica + " is down");
+						return createResult(value, resultClosed);
+					}
+				});
+	}
+
+	protected static ResultSet createResult(final int value, final boolean[] closed) {
+		return (ResultSet) Proxy.newProxyInstance(
+				ReplicaRouterTest.class.getClassLoader(), new Class<?>[]{ResultSet.class},
+				new InvocationHandler() {
+					public Object invoke(Object proxy, Method method, Object[] args)
+							throws SQLException {
+						if (method.getName().equals("close"))
+							closed[0] = true;
+						else if (closed[0])
+							throw new SQLException("Result set closed");
+						return (method.getName().equals("getInt") ? value : null);
+					}
+				});
+	}
+
+	protected static ResultSet execute(final ReplicaRouter router,
+			final ReplicaRouter.StatementSource source, final int parameter)
+			throws SQLException {
+		PreparedStatement pstmt = router.createStatement(source);
+		pstmt.setInt(1, parameter);
+		return pstmt.executeQuery();
+	}
+
+	protected static int query(final ReplicaRouter router,
+			final ReplicaRouter.StatementSource source, final int parameter)
+			throws SQLException {
+		ResultSet rs = execute(router, source, parameter);
+		try {
+			return rs.getInt(1);
+		} finally {
+			rs.close();
+		}
+	}
+
+	/** Waits until the abandoned queries on the given replica are done. */
+	protected static void awaitIdle(final ReplicaRouter router, final int replica)
+			throws InterruptedException {
+		for (int i = 0; i < 200 && router.getOutstanding(replica) > 0; i++)
+			Thread.sleep(50);
+		Thread.sleep(50);
+	}
+
+	public void testEjection() throws SQLException {
+		ReplicaRouter.StatementSource replicas = createReplicas(3);
+		ReplicaRouter router = new ReplicaRouter(3);
+		router.setHedgePercentile(0);
+		failing[0] = true;
+		for (int i = 0; i < 30; i++)
+			assertTrue(query(router, replicas, i) % 1000 == i);
+		assertTrue(router.isEjected(0));
+		assertFalse(router.isEjected(1));
+		for (int i = 0; i < 100; i++)
+			assertTrue(query(router, replicas, i) >= 1000);
+
+		// All replicas are used if all of them are ejected.
+		failing[1] = failing[2] = true;
+		for (int i = 0; i < 10; i++)
+			try {
+				query(router, replicas, i);
+				fail("Exception expected");
+			} catch (SQLException e) {}
+		failing[0] = false;
+		assertEquals(5, query(router, replicas, 5));
+	}
+
+	public void testHedging() throws Exception {
+		ReplicaRouter.StatementSource replicas = createReplicas(2);
+		ReplicaRouter router = new ReplicaRouter(2) {
+			@Override
+			public int selectReplica(final int excluded) {
+				return (excluded == 0 ? 1 : 0);
+			}
+		};
+		try {
+			for (int i = 0; i < ReplicaRouter.MIN_LATENCY_SAMPLES; i++)
+				assertEquals(i, query(router, replicas, i));
+			assertTrue(router.getHedgeDelay() > 0);
+
+			delays[0] = 1000;
+			long start = System.nanoTime();
+			for (int i = 0; i < 3; i++)
+				assertEquals(1000 + i, query(router, replicas, i));
+			assertTrue(System.nanoTime() - start < 2500000000L);
+			assertEquals(3, router.getHedgeCount());
+
+			// The abandoned queries close their statements once done.
+			awaitIdle(router, 0);
+			assertEquals(0, openStatements.get());
+		} finally {
+			router.close();
+		}
+	}
+
+	public void testBackToBackHedging() throws Exception {
+		ReplicaRouter.StatementSource replicas = createReplicas(2);
+		ReplicaRouter router = new ReplicaRouter(2) {
+			@Override
+			public int selectReplica(final int excluded) {
+				return (excluded == 0 ? 1 : 0);
+			}
+		};
+		try {
+			for (int i = 0; i < ReplicaRouter.MIN_LATENCY_SAMPLES; i++)
+				assertEquals(i, query(router, replicas, i));
+
+			// Both queries are hedged while the first attempts are still
+			// running on the slow replica; their results must neither be
+			// mixed up nor closed by the subsequent executions.
+			delays[0] = 500;
+			PreparedStatement pstmt = router.createStatement(replicas);
+			pstmt.setInt(1, 1);
+			ResultSet rs1 = pstmt.executeQuery();
+			pstmt.setInt(1, 2);
+			ResultSet rs2 = pstmt.executeQuery();
+			ResultSet rs3 = execute(router, replicas, 3);
+			assertEquals(3, router.getHedgeCount());
+
+			delays[0] = 0;
+			awaitIdle(router, 0);
+			assertEquals(4, query(router, replicas, 4) % 1000);
+			// A hedged attempt of the last query may still be closing.
+			awaitIdle(router, 0);
+			awaitIdle(router, 1);
+			assertEquals(1001, rs1.getInt(1));
+			assertEquals(1002, rs2.getInt(1));
+			assertEquals(1003, rs3.getInt(1));
+			assertEquals(3, openStatements.get());
+			rs1.close();
+			rs2.close();
+			rs3.close();
+			assertEquals(0, openStatements.get());
+		} finally {
+			router.close();
+		}
+	}
+
+}
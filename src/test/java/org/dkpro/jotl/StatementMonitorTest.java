@@ -0,0 +1,188 @@
+/*******************************************************************************
+ * Copyright 2015
+ * Ubiquitous Knowledge Processing (UKP) Lab
+ * Technische Universität Darmstadt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package org.dkpro.jotl;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.logging.Handler;
+import java.util.logging.LogRecord;
+import java.util.logging.Logger;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests the {@link StatementMonitor} using a stand-in statement, whose
+ * result sets consist of as many rows as given by the first parameter.
+ */
+public class StatementMonitorTest extends TestCase {
+
+	protected static Object createStandIn(final Class<?> type,
+			final InvocationHandler handler) {
+		return Proxy.newProxyInstance(StatementMonitorTest.class.getClassLoader(),
+				new Class<?>[]{type}, handler);
+	}
+
+	protected static ResultSet createResult(final int rows) {
+		return (ResultSet) createStandIn(ResultSet.class, new InvocationHandler() {
+			protected int row;
+
+			public Object invoke(Object proxy, Method method, Object[] args) {
+				if (method.getName().equals("next"))
+					return ++row <= rows;
+				if (method.getName().equals("getString"))
+					return "ALL";
+				if (method.getName().equals("getMetaData"))
+					return createStandIn(ResultSetMetaData.class, new InvocationHandler() {
+						public Object invoke(Object proxy, Method method, Object[] args) {
+							return (method.getName().equals("getColumnCount") ? 1 : "type");
+						}
+					});
+				return null;
+			}
+		});
+	}
+
+	protected static PreparedStatement createStatement(final List<String> explained) {
+		return (PreparedStatement) createStandIn(PreparedStatement.class, new InvocationHandler() {
+			protected int parameter;
+
+			public Object invoke(Object proxy, Method method, Object[] args)
+					throws Throwable {
+				if (method.getName().equals("setInt") || method.getName().equals("setObject"))
+					parameter = (Integer) args[1];
+				if (method.getName().equals("executeQuery"))
+					return createResult(parameter);
+				if (method.getName().equals("getConnection"))
+					return createStandIn(Connection.class, new InvocationHandler() {
+						public Object invoke(Object proxy, Method method, Object[] args) {
+							explained.add((String) args[0]);
+							return createStatement(explained);
+						}
+					});
+				return null;
+			}
+		});
+	}
+
+	public void testMonitor() throws SQLException {
+		final List<Object> executions = new ArrayList<Object>();
+		List<String> explained = new ArrayList<String>();
+		StatementMonitor monitor = new StatementMonitor();
+		monitor.addListener(new StatementListener() {
+			public void statementExecuted(String name, String sql,
+					Object[] parameters, int rows, long duration) {
+				executions.add(Arrays.asList(name, sql, Arrays.asList(parameters), rows));
+			}
+		});
+		PreparedStatement pstmt = monitor.wrap("SelectSynset",
+				"SELECT id FROM synset WHERE id=?", createStatement(explained));
+		pstmt.setInt(1, 3);
+		ResultSet rs = pstmt.executeQuery();
+		while (rs.next());
+		rs.close();
+		pstmt.clearParameters();
+		pstmt.setInt(1, 2);
+		rs = pstmt.executeQuery();
+		rs.next();
+		rs.close();
+		assertEquals(Arrays.asList(
+				Arrays.asList("SelectSynset", "SELECT id FROM synset WHERE id=?",
+						Arrays.asList(3), 3),
+				Arrays.asList("SelectSynset", "SELECT id FROM synset WHERE id=?",
+						Arrays.asList(2), 1)), executions);
+		assertTrue(explained.isEmpty());
+
+		// A threshold of one nanosecond is exceeded by every execution, but
+		// only the first slow execution of each statement is explained.
+		final List<String> messages = new ArrayList<String>();
+		Handler handler = new Handler() {
+			public void publish(LogRecord record) {
+				messages.add(record.getMessage());
+			}
+			public void flush() {}
+			public void close() {}
+		};
+		Logger logger = Logger.getLogger(StatementMonitor.LOGGER_NAME);
+		logger.addHandler(handler);
+		try {
+			monitor.slowQueryThreshold = 1;
+			for (int i = 0; i < 2; i++) {
+				rs = pstmt.executeQuery();
+				rs.close();
+			}
+		} finally {
+			logger.removeHandler(handler);
+		}
+		assertEquals(Arrays.asList("EXPLAIN SELECT id FROM synset WHERE id=?"), explained);
+		assertEquals(2, messages.size());
+		assertTrue(messages.get(0).startsWith("Slow query SelectSynset"));
+		assertTrue(messages.get(0).endsWith("EXPLAIN:\n  type=ALL\n  type=ALL"));
+		assertFalse(messages.get(1).contains("EXPLAIN"));
+
+		// Abandoned result sets are reported on the next execution.
+		monitor.slowQueryThreshold = 0;
+		executions.clear();
+		pstmt.setNull(1, Types.INTEGER);
+		pstmt.executeQuery().next();
+		assertTrue(executions.isEmpty());
+		pstmt.executeQuery();
+		pstmt.close();
+		assertEquals(Arrays.asList(
+				Arrays.asList("SelectSynset", "SELECT id FROM synset WHERE id=?",
+						Arrays.asList((Object) null), 1),
+				Arrays.asList("SelectSynset", "SELECT id FROM synset WHERE id=?",
+						Arrays.asList((Object) null), 0)), executions);
+	}
+
+	public void testFlightRecorder() throws Exception {
+		// Without an active recording or the Flight Recorder API, the
+		// listener does nothing.
+		JfrStatementListener listener = new JfrStatementListener();
+		assertFalse(listener.enabled);
+		listener.statementExecuted("SelectSynset",
+				"SELECT id FROM synset WHERE id=?", new Object[]{3}, 1, 1000L);
+		if (!JfrStatementListener.isAvailable())
+			return;
+
+		// The enabled state follows the recordings.
+		Class<?> recordingClass = Class.forName("jdk.jfr.Recording");
+		Object recording = recordingClass.getConstructor().newInstance();
+		recordingClass.getMethod("enable", String.class)
+				.invoke(recording, JfrStatementListener.EVENT_NAME);
+		recordingClass.getMethod("start").invoke(recording);
+		try {
+			assertTrue(listener.enabled);
+			listener.statementExecuted("SelectSynset",
+					"SELECT id FROM synset WHERE id=?", new Object[]{3}, 1, 1000L);
+		} finally {
+			recordingClass.getMethod("close").invoke(recording);
+		}
+		assertFalse(listener.enabled);
+	}
+
+}
@@ -0,0 +1,144 @@
+/*******************************************************************************
+ * Copyright 2015
+ * Ubiquitous Knowledge Processing (UKP) Lab
+ * Technische Universität Darmstadt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package org.dkpro.jotl.server;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.net.URL;
+
+import junit.framework.TestCase;
+
+import org.dkpro.jotl.OTLanguage;
+import org.dkpro.jotl.OTSnapshotTest;
+import org.dkpro.jotl.OpenThesaurus;
+import org.dkpro.jotl.SnapshotBuilder;
+
+/**
+ * Tests the HTTP endpoints of the {@link ThesaurusServer} based on an
+ * in-memory snapshot.
+ */
+public class ThesaurusServerTest extends TestCase {
+
+	protected OpenThesaurus ot;
+	protected ThesaurusServer server;
+
+	@Override
+	protected void setUp() throws Exception {
+		ot = new OpenThesaurus(OTSnapshotTest.createBuilder().build(),
+				OTLanguage.GERMAN);
+		server = new ThesaurusServer(ot, new InetSocketAddress("localhost", 0), 2);
+		server.start();
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		server.stop(0);
+	}
+
+	public void testLookups() throws IOException {
+		HttpURLConnection connection = open("/terms?word=Stra%C3%9Fe");
+		assertEquals(200, connection.getResponseCode());
+		assertEquals("[{\"id\":40,\"word\":\"Stra\u00DFe\",\"synsetId\":4,\"level\":0,"
+				+ "\"language\":2,\"acronym\":false,\"shortForm\":false}]", read(connection));
+		String etag = connection.getHeaderField("ETag");
+		assertNotNull(etag);
+		assertTrue(connection.getHeaderField("Cache-Control").startsWith("public"));
+
+		connection = open("/terms?word=Stra%C3%9Fe");
+		connection.setRequestProperty("If-None-Match", etag);
+		assertEquals(304, connection.getResponseCode());
+
+		// The ETag depends on the data rather than the snapshot object.
+		ot.setSnapshot(OTSnapshotTest.createBuilder().build());
+		connection = open("/terms?word=Stra%C3%9Fe");
+		connection.setRequestProperty("If-None-Match", etag);
+		assertEquals(304, connection.getResponseCode());
+		SnapshotBuilder builder = OTSnapshotTest.createBuilder();
+		builder.addSynset(5);
+		ot.setSnapshot(builder.build());
+		connection = open("/terms?word=Stra%C3%9Fe");
+		connection.setRequestProperty("If-None-Match", etag);
+		assertEquals(200, connection.getResponseCode());
+		assertFalse(etag.equals(connection.getHeaderField("ETag")));
+		ot.setSnapshot(OTSnapshotTest.createBuilder().build());
+
+		connection = open("/synsets/4");
+		assertTrue(read(connection).startsWith("{\"id\":4,\"terms\":["));
+		assertEquals("[2,4]", read(open("/synsets/3/links")));
+		assertEquals("[3]", read(open("/synsets/2/links?type=1&backwards=true")));
+		assertEquals(404, open("/synsets/5").getResponseCode());
+		assertEquals(400, open("/synsets/x").getResponseCode());
+		assertEquals(400, open("/terms").getResponseCode());
+	}
+
+	public void testBatch() throws IOException {
+		assertEquals("{\"Fahrrad\":[],\"Objekt\":[{\"id\":10,\"word\":\"Objekt\","
+				+ "\"synsetId\":1,\"level\":0,\"language\":2,\"acronym\":false,"
+				+ "\"shortForm\":false}]}", post("/batch/terms", "Fahrrad\nObjekt\n"));
+		String synsets = post("/batch/synsets", "1\n5\n");
+		assertTrue(synsets.startsWith("[{\"id\":1,"));
+		assertTrue(synsets.endsWith(",null]"));
+		assertEquals(405, open("/batch/terms").getResponseCode());
+
+		// Invalid and oversized batches are rejected before any output.
+		assertEquals(400, send("/batch/synsets", "1\nx\n").getResponseCode());
+		StringBuilder words = new StringBuilder();
+		for (int i = 0; i <= ThesaurusServer.MAX_BATCH_SIZE; i++)
+			words.append("Objekt\n");
+		assertEquals(413, send("/batch/terms", words.toString()).getResponseCode());
+	}
+
+	protected HttpURLConnection open(final String path) throws IOException {
+		InetSocketAddress address = server.getAddress();
+		return (HttpURLConnection) new URL("http", address.getHostName(),
+				address.getPort(), path).openConnection();
+	}
+
+	protected HttpURLConnection send(final String path, final String body)
+			throws IOException {
+		HttpURLConnection connection = open(path);
+		connection.setRequestMethod("POST");
+		connection.setDoOutput(true);
+		OutputStream out = connection.getOutputStream();
+		out.write(body.getBytes("UTF-8"));
+		out.close();
+		return connection;
+	}
+
+	protected String post(final String path, final String body) throws IOException {
+		HttpURLConnection connection = send(path, body);
+		assertEquals(200, connection.getResponseCode());
+		return read(connection);
+	}
+
+	protected static String read(final HttpURLConnection connection) throws IOException {
+		InputStream in = connection.getInputStream();
+		ByteArrayOutputStream result = new ByteArrayOutputStream();
+		byte[] buffer = new byte[1024];
+		int count;
+		while ((count = in.read(buffer)) > 0)
+			result.write(buffer, 0, count);
+		in.close();
+		return result.toString("UTF-8");
+	}
+
+}